@@ -162,6 +162,30 @@ public class Memory extends org.mmtk.vm.Memory {
     // Nothing required
   }
 
+  /**
+   * The simulated NUMA node of each thread.  Threads are spread across
+   * nodes round robin until they are bound to one.
+   */
+  private static final ThreadLocal<Integer> numaNode = new ThreadLocal<Integer>() {
+    private int next = 0;
+    @Override
+    protected synchronized Integer initialValue() {
+      return next++;
+    }
+  };
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumaNode() {
+    return numaNode.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindThreadToNumaNode(int node) {
+    numaNode.set(node);
+  }
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
@@ -152,6 +152,22 @@ public class Scanning extends org.mmtk.vm.Scanning {
     computeThreadRoots(trace);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void processWeakGlobalRoots(TraceLocal trace, boolean nursery) {
+    /* None */
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void forwardWeakGlobalRoots(TraceLocal trace, boolean nursery) {
+    /* None */
+  }
+
   /**
    * {@inheritDoc}
    */
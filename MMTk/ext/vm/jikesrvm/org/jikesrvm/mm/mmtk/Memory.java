@@ -18,6 +18,7 @@ import static org.jikesrvm.HeapLayoutConstants.MAXIMUM_MAPPABLE;
 import static org.jikesrvm.runtime.JavaSizeConstants.BYTES_IN_DOUBLE;
 import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_INT;
 import static org.jikesrvm.runtime.JavaSizeConstants.LOG_BYTES_IN_LONG;
+import static org.jikesrvm.runtime.SysCall.sysCall;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_WORD;
 import static org.mmtk.utility.Constants.LOG_BYTES_IN_MBYTE;
@@ -186,6 +187,28 @@ import org.vmmagic.unboxed.Offset;
                                                    org.jikesrvm.runtime.Memory.PROT_EXEC);
   }
 
+  @Override
+  public final int getNumaNode() {
+    return sysCall.sysNumaNode();
+  }
+
+  @Override
+  public final void bindToNumaNode(Address start, int size, int node) {
+    // Placement is only a preference, so failure (e.g. a kernel without NUMA support) is ignored
+    sysCall.sysNumaBind(start, Extent.fromIntZeroExtend(size), node);
+  }
+
+  @Override
+  public final void bindThreadToNumaNode(int node) {
+    sysCall.sysThreadBindToNumaNode(node);
+  }
+
+  @Override
+  public final void adviseHugePages(Address start, int size) {
+    // Huge pages are only advice, so failure (e.g. THP disabled) is ignored
+    sysCall.sysMAdviseHugePages(start, Extent.fromIntZeroExtend(size));
+  }
+
   @Override
   public final void zero(boolean useNT, Address start, Extent len) {
     org.jikesrvm.runtime.Memory.zero(useNT, start,len);
@@ -54,7 +54,11 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Class fields
    */
 
-  private static final Lock lock = new Lock("ReferenceProcessor");
+  /**
+   * Serializes the enqueueing of references, which may be done by several
+   * collectors at once
+   */
+  private static final Lock enqueueLock = new Lock("ReferenceProcessorEnqueue");
 
   private static final ReferenceProcessor softReferenceProcessor =
     new ReferenceProcessor(Semantics.SOFT);
@@ -78,11 +82,21 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private static final double GROWTH_FACTOR = 2.0;
 
+  /** The maximum number of partitions the work of a scan is divided into */
+  private static final int MAX_PARTITIONS = 64;
+
 
   /*************************************************************************
    * Instance fields
    */
 
+  /**
+   * Protects the reference table against concurrent additions.  Each
+   * semantics has its own, so registering (say) a soft reference does
+   * not contend with registering a weak one.
+   */
+  private final Lock lock = new Lock("ReferenceProcessor");
+
   /**
    * The table of reference objects for the current semantics
    */
@@ -113,6 +127,23 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private volatile boolean growingTable = false;
 
+  /**
+   * Index into the <code>references</code> table of the first reference
+   * of the current scan.
+   */
+  private int scanStart;
+
+  /**
+   * The number of partitions the current scan is divided into.
+   */
+  private int partitions;
+
+  /**
+   * For each partition of the current scan, the index following the last
+   * reference the partition retained.
+   */
+  private final int[] partitionLimit = new int[MAX_PARTITIONS];
+
   /**
    * Semantics
    */
@@ -274,13 +305,23 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * using separate traces.
    * <p>
    * Currently ignores the nursery hint.
-   * <p>
-   * TODO parallelise this code
-   *
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
+    forward(trace, nursery, 0, 1);
+    completeForward();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The table is divided into contiguous partitions, one per collector.
+   */
+  @Override
+  public void forward(TraceLocal trace, boolean nursery, int worker, int workers) {
     if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
+    int count = workers < MAX_PARTITIONS ? workers : MAX_PARTITIONS;
+    if (worker >= count) return;
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.forward(",semanticsStr,")");
     if (TRACE_DETAIL) {
       VM.sysWrite(semanticsStr," Reference table is ",
@@ -288,7 +329,8 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       VM.sysWriteln("unforwardedReferences is ",
           Magic.objectAsAddress(unforwardedReferences));
     }
-    for (int i = 0; i < maxIndex; i++) {
+    int limit = partitionStart(0, count, worker + 1);
+    for (int i = partitionStart(0, count, worker); i < limit; i++) {
       if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
       ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
       if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
@@ -296,6 +338,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       ObjectReference newReference = trace.getForwardedReference(reference);
       unforwardedReferences.set(i, newReference.toAddress());
     }
+  }
+
+  @Override
+  public void completeForward() {
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
     unforwardedReferences = null;
   }
@@ -312,26 +358,47 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * <p>
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
-   * <p>
-   * TODO parallelise this code
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   public void scan(TraceLocal trace, boolean nursery, boolean retain) {
-    unforwardedReferences = references;
+    scan(trace, nursery, retain, 0, 1);
+    completeScan(retain);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The references to be scanned are divided into contiguous partitions,
+   * one per collector.  Each collector packs the references it keeps at
+   * the start of its partition, and {@link #completeScan(boolean)} then
+   * closes the gaps between the partitions.
+   */
+  @Override
+  public void scan(TraceLocal trace, boolean nursery, boolean retain, int worker, int workers) {
+    int first = nursery ? nurseryIndex : 0;
+    int count = workers < MAX_PARTITIONS ? workers : MAX_PARTITIONS;
+    if (worker == 0) {
+      unforwardedReferences = references;
+      scanStart = first;
+      partitions = count;
+    }
+    if (worker >= count) return;
 
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
+    int fromIndex = partitionStart(first, count, worker);
+    int limit = partitionStart(first, count, worker + 1);
 
     if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
     if (retain) {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
-          ObjectReference reference = getReference(fromIndex);
-          retainReferent(trace, reference);
-        }
+      for (; fromIndex < limit; fromIndex++) {
+        ObjectReference reference = getReference(fromIndex);
+        retainReferent(trace, reference);
+      }
     } else {
-      for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+      int toIndex = fromIndex;
+      for (; fromIndex < limit; fromIndex++) {
         ObjectReference reference = getReference(fromIndex);
 
         /* Determine liveness (and forward if necessary) the reference */
@@ -345,20 +412,47 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
             VM.sysWrite(" -> ");
             VM.sysWriteln(getReferent(references.get(index).toObjectReference()));
           }
-               }
-             }
+        }
+      }
+      partitionLimit[worker] = toIndex;
+    }
+
+    /* flush out any remset entries generated during the above activities */
+    Selected.Mutator.get().flushRememberedSets();
+  }
+
+  @Override
+  public void completeScan(boolean retain) {
+    if (!retain) {
+      int toIndex = partitionLimit[0];
+      for (int p = 1; p < partitions; p++) {
+        int limit = partitionLimit[p];
+        for (int fromIndex = partitionStart(scanStart, partitions, p); fromIndex < limit; fromIndex++) {
+          references.set(toIndex++, references.get(fromIndex));
+        }
+      }
       if (Options.verbose.getValue() >= 3) {
         VM.sysWrite(semanticsStr);
         VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
       }
       nurseryIndex = maxIndex = toIndex;
     }
-
-    /* flush out any remset entries generated during the above activities */
-    Selected.Mutator.get().flushRememberedSets();
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
   }
 
+  /**
+   * Find the start of a partition of the reference table.
+   *
+   * @param first index of the first reference to be processed
+   * @param count the number of partitions
+   * @param partition the partition, or <code>count</code> for the end of
+   *  the last partition
+   * @return the index of the first reference in the partition
+   */
+  private int partitionStart(int first, int count, int partition) {
+    return first + (int)((long)(maxIndex - first) * partition / count);
+  }
+
   /**
    * This method deals only with soft references. It retains the referent
    * if the reference is definitely reachable.
@@ -549,7 +643,9 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       else if (TRACE_UNREACHABLE) VM.sysWriteln(" UNREACHABLE referent:  ",oldReferent);
 
       clearReferent(newReference);
+      enqueueLock.acquire();
       enqueueReference(newReference);
+      enqueueLock.release();
       return ObjectReference.nullReference();
     }
   }
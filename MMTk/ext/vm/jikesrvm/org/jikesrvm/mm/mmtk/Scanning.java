@@ -13,6 +13,7 @@
 package org.jikesrvm.mm.mmtk;
 
 import static org.jikesrvm.mm.mminterface.MemoryManagerConstants.MOVES_CODE;
+import static org.jikesrvm.runtime.UnboxedSizeConstants.BYTES_IN_ADDRESS;
 import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
 
 import org.jikesrvm.VM;
@@ -32,6 +33,7 @@ import org.mmtk.plan.TransitiveClosure;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.ObjectReference;
 
 @Uninterruptible
@@ -44,6 +46,25 @@ public final class Scanning extends org.mmtk.vm.Scanning {
   /** Counter to track index into thread table for root tracing.  */
   private static final SynchronizedCounter threadCounter = new SynchronizedCounter();
 
+  /**
+   * Number of stack depth classes used to order threads for scanning.
+   * Class <i>i</i> holds stacks whose depth in bytes is below 2<sup>i+1</sup>.
+   */
+  private static final int DEPTH_CLASSES = 32;
+
+  /**
+   * Slots of the threads to be scanned, deepest stacks first.  Handing
+   * out the deepest stacks first stops a single deep stack claimed at
+   * the end of the scan from holding up all the other collectors.
+   */
+  private static final int[] threadScanOrder = new int[RVMThread.MAX_THREADS];
+
+  /** Number of valid entries in {@link #threadScanOrder} */
+  private static int threadScanOrderLength;
+
+  /** Number of threads in each depth class while building the scan order */
+  private static final int[] depthClassCounts = new int[DEPTH_CLASSES];
+
   /**
    * Scanning of a object, processing each pointer field encountered.
    *
@@ -149,15 +170,66 @@ public final class Scanning extends org.mmtk.vm.Scanning {
       }
     }
 
-    /* scan jni global refs */
-    Address jniGlobalRefs = Magic.objectAsAddress(JNIGlobalRefTable.JNIGlobalRefs);
-    size = JNIGlobalRefTable.JNIGlobalRefs.length();
-    chunkSize = size / threads;
-    start = cc.parallelWorkerOrdinal() * chunkSize;
-    end = (cc.parallelWorkerOrdinal() + 1 == threads) ? size : threads * chunkSize;
+    /* scan jni global refs, interleaving segments between the workers */
+    JNIGlobalRefTable globalRefs = JNIGlobalRefTable.JNIGlobalRefs;
+    for (int s = cc.parallelWorkerOrdinal(); s < globalRefs.numSegments(); s += threads) {
+      AddressArray segment = globalRefs.getSegment(s);
+      if (segment == null) continue;
+      Address slot = Magic.objectAsAddress(segment);
+      for (int i = 0; i < JNIGlobalRefTable.SEGMENT_SIZE; i++, slot = slot.plus(BYTES_IN_ADDRESS)) {
+        Address value = slot.loadAddress();
+        if (!value.isZero() && !JNIGlobalRefTable.isFree(value)) {
+          trace.processRootEdge(slot, true);
+        }
+      }
+    }
+  }
 
-    for (int i = start; i < end; i++) {
-      trace.processRootEdge(jniGlobalRefs.plus(i << LOG_BYTES_IN_ADDRESS), true);
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Clears the JNI weak global references whose referents have died, and
+   * updates the others.  The segments of the table are interleaved between
+   * the parallel workers.
+   */
+  @Override
+  public void processWeakGlobalRoots(TraceLocal trace, boolean nursery) {
+    scanWeakGlobalRefs(trace, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void forwardWeakGlobalRoots(TraceLocal trace, boolean nursery) {
+    scanWeakGlobalRefs(trace, true);
+  }
+
+  /**
+   * Process this worker's share of the JNI weak global references.
+   *
+   * @param trace the trace to use
+   * @param forwardOnly {@code true} if the referents are known to be live
+   *  and only need forwarding
+   */
+  private void scanWeakGlobalRefs(TraceLocal trace, boolean forwardOnly) {
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    int threads = cc.parallelWorkerCount();
+    JNIGlobalRefTable weakRefs = JNIGlobalRefTable.JNIWeakGlobalRefs;
+    for (int s = cc.parallelWorkerOrdinal(); s < weakRefs.numSegments(); s += threads) {
+      AddressArray segment = weakRefs.getSegment(s);
+      if (segment == null) continue;
+      Address slot = Magic.objectAsAddress(segment);
+      for (int i = 0; i < JNIGlobalRefTable.SEGMENT_SIZE; i++, slot = slot.plus(BYTES_IN_ADDRESS)) {
+        Address value = slot.loadAddress();
+        if (value.isZero() || JNIGlobalRefTable.isFree(value)) continue;
+        ObjectReference referent = value.toObjectReference();
+        if (forwardOnly || trace.isReferentLive(referent)) {
+          slot.store(trace.getForwardedReferent(referent));
+        } else {
+          slot.store(ObjectReference.nullReference());
+        }
+      }
     }
   }
 
@@ -188,12 +260,19 @@ public final class Scanning extends org.mmtk.vm.Scanning {
   private void computeThreadRoots(TraceLocal trace, boolean newRootsSufficient) {
     boolean processCodeLocations = MOVES_CODE;
 
+    /* order the threads by stack depth */
+    CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    if (cc.parallelWorkerOrdinal() == 0) {
+      computeThreadScanOrder();
+    }
+    cc.rendezvous();
+
     /* scan all threads */
     while (true) {
-      int threadIndex = threadCounter.increment();
-      if (threadIndex > RVMThread.numThreads) break;
+      int orderIndex = threadCounter.increment();
+      if (orderIndex >= threadScanOrderLength) break;
 
-      RVMThread thread = RVMThread.threads[threadIndex];
+      RVMThread thread = RVMThread.threads[threadScanOrder[orderIndex]];
       if (thread == null || thread.isCollectorThread()) continue;
 
       /* scan the thread (stack etc.) */
@@ -204,6 +283,56 @@ public final class Scanning extends org.mmtk.vm.Scanning {
     Selected.Mutator.get().flushRememberedSets();
   }
 
+  /**
+   * Fill {@link #threadScanOrder} with the indices of the threads to be
+   * scanned, ordered so that the threads with the deepest stacks come
+   * first.  Threads are sorted (stably) into classes by the logarithm of
+   * their stack depth, which is cheap even with thousands of threads and
+   * is precise enough for load balancing.
+   */
+  private static void computeThreadScanOrder() {
+    for (int c = 0; c < DEPTH_CLASSES; c++) {
+      depthClassCounts[c] = 0;
+    }
+    int numThreads = RVMThread.numThreads;
+    for (int i = 0; i < numThreads; i++) {
+      RVMThread thread = RVMThread.threads[i];
+      if (thread == null || thread.isCollectorThread()) continue;
+      depthClassCounts[depthClass(thread)]++;
+    }
+    /* convert the counts into starting positions, deepest class first */
+    int position = 0;
+    for (int c = DEPTH_CLASSES - 1; c >= 0; c--) {
+      int count = depthClassCounts[c];
+      depthClassCounts[c] = position;
+      position += count;
+    }
+    for (int i = 0; i < numThreads; i++) {
+      RVMThread thread = RVMThread.threads[i];
+      if (thread == null || thread.isCollectorThread()) continue;
+      threadScanOrder[depthClassCounts[depthClass(thread)]++] = i;
+    }
+    threadScanOrderLength = position;
+  }
+
+  /**
+   * @param thread a thread whose stack is to be scanned
+   * @return the depth class of the thread's stack
+   */
+  private static int depthClass(RVMThread thread) {
+    byte[] stack = thread.getStack();
+    Address fp = thread.getContextRegisters().getInnermostFramePointer();
+    if (stack == null || fp.isZero()) return 0;
+    Address stackTop = Magic.objectAsAddress(stack).plus(stack.length);
+    if (fp.GE(stackTop)) return 0;
+    int depth = stackTop.diff(fp).toInt();
+    int depthClass = 0;
+    while ((depth >>>= 1) != 0 && depthClass < DEPTH_CLASSES - 1) {
+      depthClass++;
+    }
+    return depthClass;
+  }
+
   @Override
   public void computeBootImageRoots(TraceLocal trace) {
     ScanBootImage.scanBootImage(trace);
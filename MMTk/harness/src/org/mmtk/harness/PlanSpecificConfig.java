@@ -59,6 +59,10 @@ public class PlanSpecificConfig {
     /* Heap factors determined by min heap size for FixedLive benchmark */
     final double BASE_HEAP = 9472d; // Heap size in k for MS
 
+    register(
+        new PlanSpecific("org.mmtk.plan.concurrent.immix.ConcurrentImmix")
+        .addExpectedSpaces("immix"),
+        "ConcurrentImmix", "ConcImmix");
     register(
         new PlanSpecific("org.mmtk.plan.copyms.CopyMS")
         .addExpectedSpaces("nursery", "ms"),
@@ -78,7 +82,7 @@ public class PlanSpecificConfig {
         "GenMS");
     register(
         new PlanSpecific("org.mmtk.plan.immix.Immix")
-        .addExpectedSpaces("immix"),
+        .addExpectedSpaces("immix", "mos"),
         "Immix");
     register(
         new PlanSpecific("org.mmtk.plan.markcompact.MC")
@@ -87,7 +91,7 @@ public class PlanSpecificConfig {
         "MC", "MarkCompact");
     register(
         new PlanSpecific("org.mmtk.plan.marksweep.MS")
-        .addExpectedSpaces("ms"),
+        .addExpectedSpaces("ms", "mos"),
         "MS", "MarkSweep");
     register(
         new PlanSpecific("org.mmtk.plan.nogc.NoGC")
@@ -95,7 +99,7 @@ public class PlanSpecificConfig {
         "NoGC");
     register(
         new PlanSpecific("org.mmtk.plan.poisoned.Poisoned")
-        .addExpectedSpaces("ms"),
+        .addExpectedSpaces("ms", "mos"),
         "Poisoned");
     register(
         new PlanSpecific("org.mmtk.plan.semispace.usePrimitiveWriteBarriers.UsePrimitiveWriteBarriers")
@@ -119,11 +123,11 @@ public class PlanSpecificConfig {
         "SS", "SemiSpace");
     register(
         new PlanSpecific("org.mmtk.plan.stickyimmix.StickyImmix")
-        .addExpectedSpaces("immix"),
+        .addExpectedSpaces("immix", "mos"),
         "StickyImmix");
     register(
         new PlanSpecific("org.mmtk.plan.stickyms.StickyMS")
-        .addExpectedSpaces("ms"),
+        .addExpectedSpaces("ms", "mos"),
         "StickyMS");
   }
 
@@ -102,8 +102,9 @@ public class ControllerCollectorContext extends CollectorContext {
 
       // Heap growth logic
       long elapsedTime = VM.statistics.nanoTime() - startTime;
-      HeapGrowthManager.recordGCTime(VM.statistics.nanosToMillis(elapsedTime));
-      if (VM.activePlan.global().lastCollectionFullHeap() && !internalTriggeredCollection) {
+      boolean fullHeap = VM.activePlan.global().lastCollectionFullHeap();
+      HeapGrowthManager.recordGCTime(VM.statistics.nanosToMillis(elapsedTime), fullHeap);
+      if (fullHeap && !internalTriggeredCollection) {
         if (Options.variableSizeHeap.getValue() && !userTriggeredCollection) {
           // Don't consider changing the heap size if the application triggered the collection
           if (Options.verbose.getValue() >= 5) Log.writeln("[STWController: Considering heap size.]");
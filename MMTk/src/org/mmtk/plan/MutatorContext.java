@@ -16,6 +16,7 @@ import org.mmtk.policy.MarkSweepLocal;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.ImmortalLocal;
 import org.mmtk.policy.LargeObjectLocal;
+import org.mmtk.policy.MediumObjectLocal;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.alloc.BumpPointer;
 import org.mmtk.utility.Log;
@@ -116,6 +117,9 @@ public abstract class MutatorContext {
   /** Per-mutator allocator into the large object space */
   protected final LargeObjectLocal los = new LargeObjectLocal(Plan.loSpace);
 
+  /** Per-mutator allocator into the medium object space */
+  protected final MediumObjectLocal medium = Plan.USE_MEDIUM_OBJECT_SPACE ? new MediumObjectLocal(Plan.mediumObjectSpace) : null;
+
   /** Per-mutator allocator into the small code space */
   protected final MarkSweepLocal smcode = Plan.USE_CODE_SPACE ? new MarkSweepLocal(Plan.smallCodeSpace) : null;
 
@@ -161,7 +165,7 @@ public abstract class MutatorContext {
   public int checkAllocator(int bytes, int align, int allocator) {
     int maxBytes = Allocator.getMaximumAlignedSize(bytes, align);
     if (allocator == Plan.ALLOC_DEFAULT) {
-      return (maxBytes > Plan.MAX_NON_LOS_DEFAULT_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? Plan.ALLOC_LOS : Plan.ALLOC_DEFAULT;
+      return (maxBytes > Plan.MAX_NON_LOS_DEFAULT_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? largeObjectAllocator(maxBytes) : Plan.ALLOC_DEFAULT;
     }
 
     if (Plan.USE_CODE_SPACE && allocator == Plan.ALLOC_CODE) {
@@ -169,16 +173,28 @@ public abstract class MutatorContext {
     }
 
     if (allocator == Plan.ALLOC_NON_REFERENCE) {
-      return (maxBytes > Plan.MAX_NON_LOS_DEFAULT_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? Plan.ALLOC_LOS : Plan.ALLOC_DEFAULT;
+      return (maxBytes > Plan.MAX_NON_LOS_DEFAULT_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? largeObjectAllocator(maxBytes) : Plan.ALLOC_DEFAULT;
     }
 
     if (allocator == Plan.ALLOC_NON_MOVING) {
-      return (maxBytes > Plan.MAX_NON_LOS_NONMOVING_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? Plan.ALLOC_LOS : allocator;
+      return (maxBytes > Plan.MAX_NON_LOS_NONMOVING_ALLOC_BYTES || (maxBytes > Plan.MAX_NON_LOS_COPY_BYTES && maxBytes > Plan.pretenureThreshold)) ? largeObjectAllocator(maxBytes) : allocator;
     }
 
     return allocator;
   }
 
+  /**
+   * Choose between the medium object space and the LOS for an object
+   * too large for the regular allocators.
+   *
+   * @param maxBytes The maximum size of the object, allowing for alignment
+   * @return The allocator to use for the object
+   */
+  @Inline
+  private static int largeObjectAllocator(int maxBytes) {
+    return (Plan.USE_MEDIUM_OBJECT_SPACE && maxBytes <= Plan.MAX_MEDIUM_OBJECT_BYTES) ? Plan.ALLOC_MEDIUM : Plan.ALLOC_LOS;
+  }
+
   /**
    * Allocate memory for an object.
    *
@@ -193,6 +209,7 @@ public abstract class MutatorContext {
   public Address alloc(int bytes, int align, int offset, int allocator, int site) {
     switch (allocator) {
     case      Plan.ALLOC_LOS: return los.alloc(bytes, align, offset);
+    case      Plan.ALLOC_MEDIUM: return medium.alloc(bytes, align, offset);
     case      Plan.ALLOC_IMMORTAL: return immortal.alloc(bytes, align, offset);
     case      Plan.ALLOC_CODE: return smcode.alloc(bytes, align, offset);
     case      Plan.ALLOC_LARGE_CODE: return lgcode.alloc(bytes, align, offset);
@@ -217,6 +234,7 @@ public abstract class MutatorContext {
       int bytes, int allocator) {
     switch (allocator) {
     case           Plan.ALLOC_LOS: Plan.loSpace.initializeHeader(ref, true); return;
+    case        Plan.ALLOC_MEDIUM: Plan.mediumObjectSpace.initializeHeader(ref); return;
     case      Plan.ALLOC_IMMORTAL: Plan.immortalSpace.initializeHeader(ref);  return;
     case          Plan.ALLOC_CODE: Plan.smallCodeSpace.initializeHeader(ref, true); return;
     case    Plan.ALLOC_LARGE_CODE: Plan.largeCodeSpace.initializeHeader(ref, true); return;
@@ -243,6 +261,7 @@ public abstract class MutatorContext {
   public Allocator getAllocatorFromSpace(Space space) {
     if (space == Plan.immortalSpace)  return immortal;
     if (space == Plan.loSpace)        return los;
+    if (Plan.USE_MEDIUM_OBJECT_SPACE && space == Plan.mediumObjectSpace) return medium;
     if (space == Plan.nonMovingSpace) return nonmove;
     if (Plan.USE_CODE_SPACE && space == Plan.smallCodeSpace) return smcode;
     if (Plan.USE_CODE_SPACE && space == Plan.largeCodeSpace) return lgcode;
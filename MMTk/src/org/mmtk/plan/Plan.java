@@ -15,17 +15,21 @@ package org.mmtk.plan;
 import static org.mmtk.utility.Constants.*;
 import static org.mmtk.vm.VM.EXIT_CODE_REFLECTION_FAILURE;
 
+import org.mmtk.policy.ConcurrentSweepingContext;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.ImmortalSpace;
 import org.mmtk.policy.RawPageSpace;
 import org.mmtk.policy.LargeObjectSpace;
+import org.mmtk.policy.MediumObjectSpace;
 import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.utility.heap.layout.NumaMap;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.options.*;
 import org.mmtk.utility.sanitychecker.SanityChecker;
@@ -86,7 +90,8 @@ public abstract class Plan {
   public static final int ALLOC_HOT_CODE = USE_CODE_SPACE ? ALLOC_CODE : ALLOC_DEFAULT;
   public static final int ALLOC_COLD_CODE = USE_CODE_SPACE ? ALLOC_CODE : ALLOC_DEFAULT;
   public static final int ALLOC_STACK = ALLOC_LOS;
-  public static final int ALLOCATORS = 9;
+  public static final int ALLOC_MEDIUM = 9;
+  public static final int ALLOCATORS = 10;
   public static final int DEFAULT_SITE = -1;
 
   /* Miscellaneous Constants */
@@ -100,6 +105,8 @@ public abstract class Plan {
   public static final int MAX_NON_LOS_DEFAULT_ALLOC_BYTES = VM.activePlan.constraints().maxNonLOSDefaultAllocBytes();
   public static final int MAX_NON_LOS_NONMOVING_ALLOC_BYTES = VM.activePlan.constraints().maxNonLOSNonMovingAllocBytes();
   public static final int MAX_NON_LOS_COPY_BYTES = VM.activePlan.constraints().maxNonLOSCopyBytes();
+  public static final int MAX_MEDIUM_OBJECT_BYTES = VM.activePlan.constraints().maxMediumObjectBytes();
+  public static final boolean USE_MEDIUM_OBJECT_SPACE = MAX_MEDIUM_OBJECT_BYTES > 0;
 
   /* Do we support a log bit in the object header?  Some write barriers may use it */
   public static final boolean NEEDS_LOG_BIT_IN_HEADER = VM.activePlan.constraints().needsLogBitInHeader();
@@ -116,6 +123,9 @@ public abstract class Plan {
   /** Large objects are allocated into a special large object space. */
   public static final LargeObjectSpace loSpace = new LargeObjectSpace("los", VMRequest.discontiguous());
 
+  /** Medium sized objects are allocated into a space of bump allocated runs, if the plan asks for one. */
+  public static final MediumObjectSpace mediumObjectSpace = USE_MEDIUM_OBJECT_SPACE ? new MediumObjectSpace("mos", VMRequest.discontiguous()) : null;
+
   /** Space used by the sanity checker (used at runtime only if sanity checking enabled */
   public static final RawPageSpace sanitySpace = new RawPageSpace("sanity", VMRequest.discontiguous());
 
@@ -132,6 +142,7 @@ public abstract class Plan {
   public static final int VM_SPACE = vmSpace.getDescriptor();
   public static final int META = metaDataSpace.getDescriptor();
   public static final int LOS = loSpace.getDescriptor();
+  public static final int MEDIUM = USE_MEDIUM_OBJECT_SPACE ? mediumObjectSpace.getDescriptor() : 0;
   public static final int SANITY = sanitySpace.getDescriptor();
   public static final int NON_MOVING = nonMovingSpace.getDescriptor();
   public static final int SMALL_CODE = USE_CODE_SPACE ? smallCodeSpace.getDescriptor() : 0;
@@ -165,15 +176,21 @@ public abstract class Plan {
     Options.metaDataLimit = new MetaDataLimit();
     Options.nurserySize = new NurserySize();
     Options.nurseryZeroing = new NurseryZeroing();
+    Options.numaNodes = new NumaNodes();
     Options.pretenureThresholdFraction = new PretenureThresholdFraction();
     Options.variableSizeHeap = new VariableSizeHeap();
+    Options.pauseTarget = new PauseTarget();
+    Options.gcOverhead = new GCOverhead();
     Options.eagerMmapSpaces = new EagerMmapSpaces();
+    Options.hugePages = new HugePages();
+    Options.preTouch = new PreTouch();
     Options.sanityCheck = new SanityCheck();
     Options.debugAddress = new DebugAddress();
     Options.perfEvents = new PerfEvents();
     Options.useReturnBarrier = new UseReturnBarrier();
     Options.useShortStackScans = new UseShortStackScans();
     Options.threads = new Threads();
+    Options.workStealing = new WorkStealing();
     Options.cycleTriggerThreshold = new CycleTriggerThreshold();
     HeapLayout.vmMap.finalizeStaticSpaceMap();
     registerSpecializedMethods();
@@ -226,7 +243,20 @@ public abstract class Plan {
     if (Options.verbose.getValue() > 2) Space.printVMMap();
     if (Options.verbose.getValue() > 3) VM.config.printConfig();
     if (Options.verbose.getValue() > 0) Stats.startAll();
-    if (Options.eagerMmapSpaces.getValue()) Space.eagerlyMmapMMTkSpaces();
+    if (Options.eagerMmapSpaces.getValue()) {
+      int chunks = HeapLayout.mmapper.getChunksMapped();
+      long nanos = HeapLayout.mmapper.getMmapNanos();
+      long start = VM.statistics.nanoTime();
+      Space.eagerlyMmapMMTkSpaces();
+      if (Options.verbose.getValue() > 0) {
+        Log.write("Eagerly mapped ", HeapLayout.mmapper.getChunksMapped() - chunks);
+        Log.write(" chunks in ");
+        Log.write(VM.statistics.nanosToMillis(VM.statistics.nanoTime() - start));
+        Log.write(" ms (");
+        Log.write(VM.statistics.nanosToMillis(HeapLayout.mmapper.getMmapNanos() - nanos));
+        Log.writeln(" ms in mmap)");
+      }
+    }
     pretenureThreshold = (int) ((Options.nurserySize.getMaxNursery() << LOG_BYTES_IN_PAGE) * Options.pretenureThresholdFraction.getValue());
   }
 
@@ -246,6 +276,22 @@ public abstract class Plan {
     preCollectorSpawn();
 
     spawnCollectorThreads(actualThreadCount);
+
+    if (Options.preTouch.getValue()) PreTouchContext.start(actualThreadCount);
+  }
+
+  /**
+   * Give the initial heap to the spaces that are to be touched at boot
+   * time (see {@link PreTouchContext}), by calling
+   * {@link PreTouchContext#addSpace} for each, in the order the spaces
+   * should get it: the space the mutators allocate into first.  Spaces
+   * that see little allocation, such as the immortal space, are better
+   * left untouched.<p>
+   *
+   * Plans that allocate into spaces of their own should override this.
+   */
+  @Interruptible
+  public void preTouchSpaces() {
   }
 
   /**
@@ -344,6 +390,7 @@ public abstract class Plan {
   @Interruptible
   public void fullyBooted() {
     if (Options.harnessAll.getValue()) harnessBegin();
+    if (Options.lazyBlockSweep.getValue()) ConcurrentSweepingContext.start();
   }
 
   public static final ParallelCollectorGroup parallelWorkers = new ParallelCollectorGroup("ParallelWorkers");
@@ -372,7 +419,9 @@ public abstract class Plan {
 
   /**
    * Any Plan can override this to provide additional plan specific
-   * timing information.
+   * timing information.  Called at exit with totals if verbose timing
+   * is on, and after each collection for the last collection if the
+   * verbosity is above 2.
    *
    * @param totals Print totals
    */
@@ -673,9 +722,14 @@ public abstract class Plan {
       }
       Log.write("                     ");
       printUsedPages();
+      if (NumaMap.isEnabled()) {
+        Log.write("                     ");
+        NumaMap.printStats();
+      }
       Log.write("    Collection time: ");
       totalTime.printLast();
       Log.writeln(" ms");
+      printDetailedTiming(false);
     }
   }
 
@@ -917,8 +971,10 @@ public abstract class Plan {
    * allocation, excluding space reserved for copying.
    */
   public int getPagesUsed() {
-    return loSpace.reservedPages() + immortalSpace.reservedPages() +
+    int pages = loSpace.reservedPages() + immortalSpace.reservedPages() +
       metaDataSpace.reservedPages() + nonMovingSpace.reservedPages();
+    if (USE_MEDIUM_OBJECT_SPACE) pages += mediumObjectSpace.reservedPages();
+    return pages;
   }
 
   /****************************************************************************
@@ -1048,6 +1104,8 @@ public abstract class Plan {
       return true;
     if (Space.isInSpace(LOS, object))
       return true;
+    if (USE_MEDIUM_OBJECT_SPACE && Space.isInSpace(MEDIUM, object))
+      return true;
     if (Space.isInSpace(IMMORTAL, object))
       return true;
     if (Space.isInSpace(VM_SPACE, object))
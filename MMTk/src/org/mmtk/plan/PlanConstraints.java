@@ -258,6 +258,15 @@ import org.vmmagic.pragma.*;
     return org.mmtk.utility.Constants.MAX_INT;
   }
 
+  /**
+   * @return Size (in bytes) up to which objects too large for the default
+   * and non-moving spaces are allocated to the medium object space rather
+   * than the LOS, or zero if this Plan has no medium object space.
+   */
+  public int maxMediumObjectBytes() {
+    return 0;
+  }
+
   /** @return {@code true} if this object forwards objects <i>after</i>
    * determining global object liveness (e.g. many compacting collectors). */
   public boolean needsForwardAfterLiveness() {
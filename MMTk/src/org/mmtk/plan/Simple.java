@@ -44,6 +44,12 @@ public abstract class Simple extends Plan {
   private static final Timer scanTime = new Timer("scan", false, true);
   private static final Timer finalizeTime = new Timer("finalize", false, true);
 
+  /* Reference processing timers, started and stopped by the primary collector */
+  static final Timer softRefTime = new Timer("softRefs", false);
+  static final Timer weakRefTime = new Timer("weakRefs", false);
+  static final Timer phantomRefTime = new Timer("phantomRefs", false);
+  static final Timer finalizableTime = new Timer("finalizables", false);
+
   /* Phases */
   public static final short SET_COLLECTION_KIND = Phase.createSimple("set-collection-kind", null);
   public static final short INITIATE            = Phase.createSimple("initiate", null);
@@ -212,6 +218,7 @@ public abstract class Simple extends Plan {
 
     if (phaseId == PREPARE) {
       loSpace.prepare(true);
+      if (USE_MEDIUM_OBJECT_SPACE) mediumObjectSpace.prepare();
       nonMovingSpace.prepare(true);
       if (USE_CODE_SPACE) {
         smallCodeSpace.prepare(true);
@@ -236,6 +243,7 @@ public abstract class Simple extends Plan {
 
     if (phaseId == RELEASE) {
       loSpace.release(true);
+      if (USE_MEDIUM_OBJECT_SPACE) mediumObjectSpace.release();
       nonMovingSpace.release();
       if (USE_CODE_SPACE) {
         smallCodeSpace.release();
@@ -278,6 +286,39 @@ public abstract class Simple extends Plan {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Prints the time spent processing each kind of reference.
+   */
+  @Override
+  protected void printDetailedTiming(boolean totals) {
+    super.printDetailedTiming(totals);
+    Log.write("    Reference types: soft ");
+    printTime(softRefTime, totals);
+    Log.write(" ms, weak ");
+    printTime(weakRefTime, totals);
+    Log.write(" ms, phantom ");
+    printTime(phantomRefTime, totals);
+    Log.write(" ms, finalizable ");
+    printTime(finalizableTime, totals);
+    Log.writeln(" ms");
+  }
+
+  /**
+   * Print the time counted by a timer.
+   *
+   * @param timer The timer
+   * @param total Print the total rather than that of the last collection
+   */
+  private static void printTime(Timer timer, boolean total) {
+    if (total) {
+      timer.printTotal();
+    } else {
+      timer.printLast();
+    }
+  }
+
   /**
    * {@inheritDoc}
    * Used for example to replace a placeholder.
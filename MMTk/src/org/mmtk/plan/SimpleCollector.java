@@ -15,7 +15,9 @@ package org.mmtk.plan;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.sanitychecker.SanityCheckerLocal;
+import org.mmtk.utility.statistics.Timer;
 
+import org.mmtk.vm.ReferenceProcessor;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
@@ -72,55 +74,59 @@ public abstract class SimpleCollector extends ParallelCollector {
     }
 
     if (phaseId == Simple.SOFT_REFS) {
-      if (primary) {
-        if (!Options.noReferenceTypes.getValue()) {
-          if (!Plan.isEmergencyCollection()) {
-            VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),true);
-          }
+      if (!Options.noReferenceTypes.getValue()) {
+        if (!Plan.isEmergencyCollection()) {
+          scanReferences(VM.softReferences, Simple.softRefTime, true, primary);
         }
       }
       return;
     }
 
     if (phaseId == Simple.WEAK_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue()) {
+      VM.scanning.processWeakGlobalRoots(getCurrentTrace(), global().isCurrentGCNursery());
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary) {
           VM.softReferences.clear();
           VM.weakReferences.clear();
-        } else {
-            VM.softReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
-            VM.weakReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(), false);
         }
+      } else {
+        scanReferences(VM.softReferences, Simple.softRefTime, false, primary);
+        scanReferences(VM.weakReferences, Simple.weakRefTime, false, primary);
       }
       return;
     }
 
     if (phaseId == Simple.FINALIZABLE) {
       if (primary) {
+        Simple.finalizableTime.start();
         if (Options.noFinalizer.getValue())
           VM.finalizableProcessor.clear();
         else
           VM.finalizableProcessor.scan(getCurrentTrace(),global().isCurrentGCNursery());
+        Simple.finalizableTime.stop();
       }
       return;
     }
 
     if (phaseId == Simple.PHANTOM_REFS) {
-      if (primary) {
-        if (Options.noReferenceTypes.getValue())
+      if (Options.noReferenceTypes.getValue()) {
+        if (primary) {
           VM.phantomReferences.clear();
-        else
-          VM.phantomReferences.scan(getCurrentTrace(),global().isCurrentGCNursery(),false);
+        }
+      } else {
+        scanReferences(VM.phantomReferences, Simple.phantomRefTime, false, primary);
       }
       return;
     }
 
     if (phaseId == Simple.FORWARD_REFS) {
-      if (primary && !Options.noReferenceTypes.getValue() &&
-          VM.activePlan.constraints().needsForwardAfterLiveness()) {
-        VM.softReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
-        VM.weakReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
-        VM.phantomReferences.forward(getCurrentTrace(),global().isCurrentGCNursery());
+      if (VM.activePlan.constraints().needsForwardAfterLiveness()) {
+        VM.scanning.forwardWeakGlobalRoots(getCurrentTrace(), global().isCurrentGCNursery());
+        if (!Options.noReferenceTypes.getValue()) {
+          forwardReferences(VM.softReferences, primary);
+          forwardReferences(VM.weakReferences, primary);
+          forwardReferences(VM.phantomReferences, primary);
+        }
       }
       return;
     }
@@ -153,6 +159,42 @@ public abstract class SimpleCollector extends ParallelCollector {
     VM.assertions.fail("Per-collector phase not handled!");
   }
 
+  /**
+   * Scan a table of references, sharing the work among the collectors.
+   * Must be called by every collector.
+   *
+   * @param references The references to scan
+   * @param timer The timer to charge the scan to
+   * @param retain Whether to retain the referents of reachable references
+   * @param primary Is this the primary collector?
+   */
+  private void scanReferences(ReferenceProcessor references, Timer timer, boolean retain, boolean primary) {
+    if (primary) timer.start();
+    references.scan(getCurrentTrace(), global().isCurrentGCNursery(), retain,
+        parallelWorkerOrdinal(), parallelWorkerCount());
+    rendezvous();
+    if (primary) {
+      references.completeScan(retain);
+      timer.stop();
+    }
+  }
+
+  /**
+   * Forward a table of references, sharing the work among the collectors.
+   * Must be called by every collector.
+   *
+   * @param references The references to forward
+   * @param primary Is this the primary collector?
+   */
+  private void forwardReferences(ReferenceProcessor references, boolean primary) {
+    references.forward(getCurrentTrace(), global().isCurrentGCNursery(),
+        parallelWorkerOrdinal(), parallelWorkerCount());
+    rendezvous();
+    if (primary) {
+      references.completeForward();
+    }
+  }
+
   /****************************************************************************
    *
    * Miscellaneous.
@@ -53,6 +53,7 @@ public abstract class SimpleMutator extends MutatorContext {
 
     if (phaseId == Simple.PREPARE) {
       los.prepare(true);
+      if (Plan.USE_MEDIUM_OBJECT_SPACE) medium.prepare();
       lgcode.prepare(true);
       smcode.prepare();
       nonmove.prepare();
@@ -62,6 +63,7 @@ public abstract class SimpleMutator extends MutatorContext {
 
     if (phaseId == Simple.RELEASE) {
       los.release(true);
+      if (Plan.USE_MEDIUM_OBJECT_SPACE) medium.release();
       lgcode.release(true);
       smcode.release();
       nonmove.release();
@@ -220,6 +220,8 @@ public abstract class TraceLocal extends TransitiveClosure {
     Space space = Space.getSpaceForObject(object);
     if (space == Plan.loSpace)
       return Plan.loSpace.isLive(object);
+    else if (Plan.USE_MEDIUM_OBJECT_SPACE && space == Plan.mediumObjectSpace)
+      return Plan.mediumObjectSpace.isLive(object);
     else if (space == Plan.nonMovingSpace)
       return Plan.nonMovingSpace.isLive(object);
     else if (Plan.USE_CODE_SPACE && space == Plan.smallCodeSpace)
@@ -277,6 +279,8 @@ public abstract class TraceLocal extends TransitiveClosure {
       return Plan.immortalSpace.traceObject(this, object);
     if (Space.isInSpace(Plan.LOS, object))
       return Plan.loSpace.traceObject(this, object);
+    if (Plan.USE_MEDIUM_OBJECT_SPACE && Space.isInSpace(Plan.MEDIUM, object))
+      return Plan.mediumObjectSpace.traceObject(this, object);
     if (Space.isInSpace(Plan.NON_MOVING, object))
       return Plan.nonMovingSpace.traceObject(this, object);
     if (Plan.USE_CODE_SPACE && Space.isInSpace(Plan.SMALL_CODE, object))
@@ -321,6 +325,8 @@ public abstract class TraceLocal extends TransitiveClosure {
       return true;
     if (Space.isInSpace(Plan.LOS, object))
       return true;
+    if (Plan.USE_MEDIUM_OBJECT_SPACE && Space.isInSpace(Plan.MEDIUM, object))
+      return true;
     if (Space.isInSpace(Plan.IMMORTAL, object))
       return true;
     if (Space.isInSpace(Plan.VM_SPACE, object))
@@ -0,0 +1,147 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.Concurrent;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.ImmixSpace;
+import org.mmtk.utility.heap.PreTouchContext;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements the global state of a concurrent immix collector.<p>
+ *
+ * Marking is done by the collector threads while the mutators run, as in
+ * {@link org.mmtk.plan.concurrent.marksweep.CMS}: a snapshot-at-the-beginning
+ * write barrier traces the old referent of every overwritten reference, and
+ * objects allocated during the mark are allocated marked, together with their
+ * lines.  The final pause then only has to drain the barrier buffers of the
+ * mutators and whatever work the roots left, after which the blocks are swept
+ * using their line marks.<p>
+ *
+ * Objects must not move while the mutators run, so this collector never
+ * defragments the immix space.
+ */
+@Uninterruptible
+public class ConcurrentImmix extends Concurrent {
+
+  /****************************************************************************
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final ImmixSpace immixSpace = new ImmixSpace("immix", VMRequest.discontiguous());
+  public static final int IMMIX = immixSpace.getDescriptor();
+
+  static {
+    immixSpace.makeAllocAsMarked();
+    smallCodeSpace.makeAllocAsMarked();
+    nonMovingSpace.makeAllocAsMarked();
+  }
+
+  /****************************************************************************
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  public final Trace immixTrace = new Trace(metaDataSpace);
+
+  /*****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      // never defragment, whatever the kind of collection
+      immixSpace.decideWhetherToDefrag(false, false, 1, false);
+      return;
+    }
+
+    if (phaseId == PREPARE) {
+      super.collectionPhase(phaseId);
+      immixTrace.prepareNonBlocking();
+      immixSpace.prepare(true);
+      return;
+    }
+
+    if (phaseId == RELEASE) {
+      immixTrace.release();
+      immixSpace.release(true);
+      super.collectionPhase(phaseId);
+      return;
+    }
+
+    super.collectionPhase(phaseId);
+  }
+
+  /*****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * {@inheritDoc}
+   * The superclass accounts for its spaces, we just
+   * augment this with the immix space's contribution.
+   */
+  @Override
+  public int getPagesUsed() {
+    return immixSpace.reservedPages() + super.getPagesUsed();
+  }
+
+  /**
+   * Mutators allocate into the immix space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(immixSpace, Extent.max());
+  }
+
+  @Override
+  public boolean willNeverMove(ObjectReference object) {
+    if (Space.isInSpace(IMMIX, object))
+      return true;
+    return super.willNeverMove(object);
+  }
+
+  @Override
+  @Interruptible
+  public void preCollectorSpawn() {
+    immixSpace.initializeDefrag();
+  }
+
+  @Override
+  @Interruptible
+  public void fullyBooted() {
+    super.fullyBooted();
+    immixSpace.setZeroingApproach(Options.lineZeroing.getNonTemporal(), Options.lineZeroing.getConcurrent());
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.ConcurrentCollector;
+import org.mmtk.policy.immix.CollectorLocal;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * This class implements <i>per-collector thread</i> behavior
+ * and state for the <i>ConcurrentImmix</i> plan, which implements a
+ * full-heap concurrent immix collector.
+ */
+@Uninterruptible
+public class ConcurrentImmixCollector extends ConcurrentCollector {
+
+  /****************************************************************************
+   * Instance fields
+   */
+  protected final ConcurrentImmixTraceLocal trace;
+  protected final CollectorLocal immix;
+
+  /****************************************************************************
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   */
+  public ConcurrentImmixCollector() {
+    trace = new ConcurrentImmixTraceLocal(global().immixTrace);
+    immix = new CollectorLocal(ConcurrentImmix.immixSpace);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == ConcurrentImmix.PREPARE) {
+      super.collectionPhase(phaseId, primary);
+      immix.prepare(true);
+      trace.prepare();
+      return;
+    }
+
+    if (phaseId == ConcurrentImmix.CLOSURE) {
+      trace.completeTrace();
+      return;
+    }
+
+    if (phaseId == ConcurrentImmix.RELEASE) {
+      trace.release();
+      immix.release(true);
+      super.collectionPhase(phaseId, primary);
+      return;
+    }
+
+    super.collectionPhase(phaseId, primary);
+  }
+
+  @Override
+  protected boolean concurrentTraceComplete() {
+    return !global().immixTrace.hasWork();
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /** @return The active global plan as a <code>ConcurrentImmix</code> instance. */
+  @Inline
+  private static ConcurrentImmix global() {
+    return (ConcurrentImmix) VM.activePlan.global();
+  }
+
+  /** @return The current trace instance. */
+  @Override
+  public final TraceLocal getCurrentTrace() {
+    return trace;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.ConcurrentMutator;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.MutatorLocal;
+
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements <i>per-mutator thread</i> behavior
+ * and state for the <i>ConcurrentImmix</i> plan, which implements a
+ * full-heap concurrent immix collector.
+ *
+ * @see ConcurrentImmix
+ * @see ConcurrentImmixCollector
+ * @see MutatorContext
+ */
+@Uninterruptible
+public class ConcurrentImmixMutator extends ConcurrentMutator {
+
+  /****************************************************************************
+   * Instance fields
+   */
+
+  /**
+   *
+   */
+  private final MutatorLocal immix;
+  private final TraceWriteBuffer remset;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   */
+  public ConcurrentImmixMutator() {
+    immix = new MutatorLocal(ConcurrentImmix.immixSpace, false);
+    remset = new TraceWriteBuffer(global().immixTrace);
+  }
+
+  /****************************************************************************
+   *
+   * Mutator-time allocation
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * This class handles the default allocator from the immix space, and
+   * delegates everything else to the superclass.
+   */
+  @Inline
+  @Override
+  public Address alloc(int bytes, int align, int offset, int allocator, int site) {
+    if (allocator == ConcurrentImmix.ALLOC_DEFAULT) {
+      return immix.alloc(bytes, align, offset);
+    }
+    return super.alloc(bytes, align, offset, allocator, site);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Initialize the object header for objects in the immix space,
+   * and delegate to the superclass for other objects.
+   */
+  @Inline
+  @Override
+  public void postAlloc(ObjectReference ref, ObjectReference typeRef,
+      int bytes, int allocator) {
+    if (allocator == ConcurrentImmix.ALLOC_DEFAULT)
+      ConcurrentImmix.immixSpace.postAlloc(ref, bytes);
+    else
+      super.postAlloc(ref, typeRef, bytes, allocator);
+  }
+
+  @Override
+  public Allocator getAllocatorFromSpace(Space space) {
+    if (space == ConcurrentImmix.immixSpace) return immix;
+    return super.getAllocatorFromSpace(space);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Inline
+  public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == ConcurrentImmix.PREPARE) {
+      super.collectionPhase(phaseId, primary);
+      immix.prepare();
+      return;
+    }
+
+    if (phaseId == ConcurrentImmix.RELEASE) {
+      immix.release();
+      super.collectionPhase(phaseId, primary);
+      return;
+    }
+
+    super.collectionPhase(phaseId, primary);
+  }
+
+  @Override
+  public void flushRememberedSets() {
+    remset.flush();
+  }
+
+  /****************************************************************************
+   *
+   * Write and read barriers.
+   */
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void checkAndEnqueueReference(ObjectReference ref) {
+    if (ref.isNull()) return;
+    if (barrierActive) {
+      if      (Space.isInSpace(ConcurrentImmix.IMMIX,      ref)) ConcurrentImmix.immixSpace.fastTraceObject(remset, ref);
+      else if (Space.isInSpace(ConcurrentImmix.IMMORTAL,   ref)) ConcurrentImmix.immortalSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(ConcurrentImmix.LOS,        ref)) ConcurrentImmix.loSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(ConcurrentImmix.NON_MOVING, ref)) ConcurrentImmix.nonMovingSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(ConcurrentImmix.SMALL_CODE, ref)) ConcurrentImmix.smallCodeSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(ConcurrentImmix.LARGE_CODE, ref)) ConcurrentImmix.largeCodeSpace.traceObject(remset, ref);
+    }
+
+    if (VM.VERIFY_ASSERTIONS) {
+      // objects in the immix space are only allocated marked during a collection
+      if (!Plan.gcInProgress()) {
+        if      (Space.isInSpace(ConcurrentImmix.IMMORTAL,   ref)) VM.assertions._assert(ConcurrentImmix.immortalSpace.isLive(ref));
+        else if (Space.isInSpace(ConcurrentImmix.LOS,        ref)) VM.assertions._assert(ConcurrentImmix.loSpace.isLive(ref));
+        else if (Space.isInSpace(ConcurrentImmix.NON_MOVING, ref)) VM.assertions._assert(ConcurrentImmix.nonMovingSpace.isLive(ref));
+        else if (Space.isInSpace(ConcurrentImmix.SMALL_CODE, ref)) VM.assertions._assert(ConcurrentImmix.smallCodeSpace.isLive(ref));
+        else if (Space.isInSpace(ConcurrentImmix.LARGE_CODE, ref)) VM.assertions._assert(ConcurrentImmix.largeCodeSpace.isLive(ref));
+      }
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /** @return The active global plan as a <code>ConcurrentImmix</code> instance. */
+  @Inline
+  private static ConcurrentImmix global() {
+    return (ConcurrentImmix) VM.activePlan.global();
+  }
+}
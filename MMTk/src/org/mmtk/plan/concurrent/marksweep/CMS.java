@@ -16,9 +16,11 @@ import org.mmtk.plan.*;
 import org.mmtk.plan.concurrent.Concurrent;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 
 import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
@@ -99,6 +101,15 @@ public class CMS extends Concurrent {
     return (msSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * Mutators allocate into the mark-sweep space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(msSpace, Extent.max());
+  }
+
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(MARK_SWEEP, object))
@@ -16,11 +16,14 @@ import org.mmtk.plan.*;
 import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 
 import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
@@ -141,6 +144,17 @@ public class CopyMS extends StopTheWorld {
       nurserySpace.reservedPages();
   }
 
+  /**
+   * The nursery, as much of it as is used between collections, comes
+   * before the mark-sweep space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(nurserySpace, Conversions.pagesToBytes(Options.nurserySize.getMaxNursery()));
+    PreTouchContext.addSpace(msSpace, Extent.max());
+  }
+
   /**
    * Return the number of pages reserved for collection.
    * For mark sweep this is a fixed fraction of total pages.
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational;
+
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * The card table used by the card marking write barrier (see
+ * {@link GenConstraints#cardMarking()}).  There is one byte for every
+ * 512 bytes of the heap.<p>
+ *
+ * A card is dirty if it holds the current epoch.  The barrier stamps the
+ * card of every slot it stores into with the epoch, and each collection
+ * advances the epoch, which cleans all the cards at once rather than by
+ * walking the table.  After 255 collections the epoch wraps, and cards
+ * stamped that long ago look dirty again; that only costs some
+ * unnecessary scanning.<p>
+ *
+ * Cards are consulted only while scanning the objects in the modified
+ * object buffer, which the barrier logs an object into the first time it
+ * stores into it.  The cards covering an object are mapped at that
+ * point, so only the parts of the table that are used take memory.
+ */
+@Uninterruptible
+public final class CardTable {
+
+  /****************************************************************************
+   *
+   * Constants
+   */
+
+  /** The number of heap bytes covered by one card */
+  public static final int LOG_BYTES_IN_CARD = 9;
+
+  /** The start of the table */
+  private static final Address BASE = Gen.USE_CARD_MARKING ? Gen.cardSpace.getStart() : Address.zero();
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The value of a dirty card */
+  private static byte epoch = 1;
+
+  /****************************************************************************
+   *
+   * Card manipulation
+   */
+
+  /**
+   * Mark the card holding a slot as dirty.
+   *
+   * @param slot The slot being stored into
+   */
+  @Inline
+  public static void dirty(Address slot) {
+    getCard(slot).store(epoch);
+  }
+
+  /**
+   * Is the card holding a slot dirty?
+   *
+   * @param slot The slot
+   * @return {@code true} if the card was dirtied since the last collection
+   */
+  @Inline
+  public static boolean isDirty(Address slot) {
+    return getCard(slot).loadByte() == epoch;
+  }
+
+  /**
+   * Ensure the cards covering an object are mapped.
+   *
+   * @param object The object
+   */
+  @NoInline
+  public static void map(ObjectReference object) {
+    Address first = Conversions.pageAlign(getCard(VM.objectModel.objectStartRef(object)));
+    Address last = getCard(VM.objectModel.getObjectEndAddress(object).minus(1));
+    Extent bytes = last.plus(1).diff(first).toWord().toExtent();
+    HeapLayout.mmapper.ensureMapped(first, Conversions.bytesToPagesUp(bytes));
+  }
+
+  /**
+   * Clean every card.  Called at the end of each collection.
+   */
+  public static void advanceEpoch() {
+    epoch = (byte) ((epoch & 0xff) == 0xff ? 1 : epoch + 1);
+  }
+
+  /**
+   * @param address An address in the heap
+   * @return The card covering the address
+   */
+  @Inline
+  private static Address getCard(Address address) {
+    return BASE.plus(address.diff(VM.HEAP_START).toWord().rshl(LOG_BYTES_IN_CARD).toOffset());
+  }
+}
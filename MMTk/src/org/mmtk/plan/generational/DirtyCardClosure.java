@@ -0,0 +1,50 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This closure passes to a nursery trace only those edges of an object
+ * that lie on dirty cards, so that a logged object is scanned only
+ * where the card marking barrier stored into it.  Objects in the
+ * modified object buffer are shared among the collectors, so card
+ * scanning is parallel.
+ *
+ * @see CardTable
+ */
+@Uninterruptible
+final class DirtyCardClosure extends TransitiveClosure {
+
+  /** The nursery trace */
+  private final TraceLocal trace;
+
+  /**
+   * @param trace The nursery trace to pass edges on dirty cards to
+   */
+  DirtyCardClosure(TraceLocal trace) {
+    this.trace = trace;
+  }
+
+  @Override
+  @Inline
+  public void processEdge(ObjectReference source, Address slot) {
+    if (CardTable.isDirty(slot)) {
+      trace.processRootEdge(slot, false);
+    }
+  }
+}
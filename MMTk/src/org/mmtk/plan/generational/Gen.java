@@ -16,9 +16,13 @@ import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.CopySpace;
+import org.mmtk.policy.RawPageSpace;
 import org.mmtk.policy.Space;
 
+import org.mmtk.utility.Conversions;
 import org.mmtk.utility.deque.*;
+import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.heap.layout.HeapLayout;
 import org.mmtk.utility.Log;
@@ -65,6 +69,7 @@ public abstract class Gen extends StopTheWorld {
   public static final boolean USE_OBJECT_BARRIER_FOR_AASTORE = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER_FOR_PUTFIELD = false; // choose between slot and object barriers
   public static final boolean USE_OBJECT_BARRIER = USE_OBJECT_BARRIER_FOR_AASTORE || USE_OBJECT_BARRIER_FOR_PUTFIELD;
+  public static final boolean USE_CARD_MARKING = ((GenConstraints) VM.activePlan.constraints()).cardMarking(); // mark cards rather than remember slots
 
   /** Fraction of available virtual memory to give to the nursery (if contiguous) */
   protected static final float NURSERY_VM_FRACTION = 0.15f;
@@ -105,6 +110,11 @@ public abstract class Gen extends StopTheWorld {
   public static final int NURSERY = nurserySpace.getDescriptor();
   private static final Address NURSERY_START = nurserySpace.getStart();
 
+  /* The card table of the card marking barrier covers the whole heap */
+  static final RawPageSpace cardSpace = USE_CARD_MARKING ?
+      new RawPageSpace("cards", VMRequest.fixedExtent(Conversions.chunkAlign(
+          VM.HEAP_END.diff(VM.HEAP_START).toWord().rshl(CardTable.LOG_BYTES_IN_CARD).toExtent(), false), false)) : null;
+
   /*****************************************************************************
    *
    * Instance fields
@@ -118,6 +128,12 @@ public abstract class Gen extends StopTheWorld {
   public boolean gcFullHeap = false;
   public boolean nextGCFullHeap = false;
 
+  /** The number of pages in the nursery at the start of a nursery collection */
+  private int nurseryPagesBeforeGC;
+
+  /** The number of pages in use at the start of a nursery collection */
+  private int pagesUsedBeforeGC;
+
   /* The trace object */
   public final Trace nurseryTrace = new Trace(metaDataSpace);
 
@@ -175,6 +191,10 @@ public abstract class Gen extends StopTheWorld {
     }
 
     if (phaseId == PREPARE) {
+      if (!gcFullHeap) {
+        nurseryPagesBeforeGC = nurserySpace.reservedPages();
+        pagesUsedBeforeGC = getPagesUsed();
+      }
       nurserySpace.prepare(true);
       if (traceFullHeap()) {
         if (gcFullHeap) {
@@ -209,6 +229,13 @@ public abstract class Gen extends StopTheWorld {
       modbufPool.clearDeque(1);
       remsetPool.clearDeque(1);
       arrayRemsetPool.clearDeque(2);
+      if (USE_CARD_MARKING) {
+        CardTable.advanceEpoch();
+      }
+      if (!gcFullHeap) {
+        HeapGrowthManager.recordNurserySurvival(nurseryPagesBeforeGC,
+            getPagesUsed() - (pagesUsedBeforeGC - nurseryPagesBeforeGC));
+      }
       if (!traceFullHeap()) {
         nurseryTrace.release();
       } else {
@@ -224,7 +251,7 @@ public abstract class Gen extends StopTheWorld {
 
   @Override
   public final boolean collectionRequired(boolean spaceFull, Space space) {
-    int availableNurseryPages = Options.nurserySize.getMaxNursery() - nurserySpace.reservedPages();
+    int availableNurseryPages = HeapGrowthManager.getNurseryPages() - nurserySpace.reservedPages();
 
     /* periodically recalculate nursery pretenure threshold */
     Plan.pretenureThreshold = (int) ((availableNurseryPages << LOG_BYTES_IN_PAGE) * Options.pretenureThresholdFraction.getValue());
@@ -299,6 +326,17 @@ public abstract class Gen extends StopTheWorld {
     return (nurserySpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * The nursery, as much of it as is used between collections, comes
+   * before the mature space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(nurserySpace, Conversions.pagesToBytes(Options.nurserySize.getMaxNursery()));
+    PreTouchContext.addSpace(activeMatureSpace(), Extent.max());
+  }
+
   /**
    * Return the number of pages available for allocation, <i>assuming
    * all future allocation is to the nursery</i>.
@@ -392,8 +430,16 @@ public abstract class Gen extends StopTheWorld {
     return IGNORE_REMSETS || gcFullHeap;
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A subclass whose nursery collections also collect part of the mature
+   * space must answer {@code false} for those collections, so that all
+   * thread, static and boot image roots and all reference types are
+   * processed, rather than just those created since the last collection.
+   */
   @Override
-  public final boolean isCurrentGCNursery() {
+  public boolean isCurrentGCNursery() {
     return !(IGNORE_REMSETS || gcFullHeap);
   }
 
@@ -424,7 +470,7 @@ public abstract class Gen extends StopTheWorld {
     }
 
     // Mature space (nursery collection)
-    if (VM.activePlan.global().isCurrentGCNursery()) {
+    if (!traceFullHeap()) {
       return SanityChecker.UNSURE;
     }
 
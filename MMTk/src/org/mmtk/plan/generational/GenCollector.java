@@ -70,7 +70,17 @@ import org.vmmagic.pragma.*;
     arrayRemset = new AddressPairDeque(global().arrayRemsetPool);
     remset = new AddressDeque("remset", global().remsetPool);
     modbuf = new ObjectReferenceDeque("modbuf", global().modbufPool);
-    nurseryTrace = new GenNurseryTraceLocal(global().nurseryTrace, this);
+    nurseryTrace = newNurseryTrace();
+  }
+
+  /**
+   * Create the trace used by this collector for nursery collections.
+   * This is called by the constructor, once the remset consumers exist.
+   *
+   * @return The nursery trace
+   */
+  protected GenNurseryTraceLocal newNurseryTrace() {
+    return new GenNurseryTraceLocal(global().nurseryTrace, this);
   }
 
   /****************************************************************************
@@ -93,16 +103,16 @@ import org.vmmagic.pragma.*;
       nurseryTrace.prepare();
       return;
     }
-    if (phaseId == Simple.STACK_ROOTS && !global().gcFullHeap) {
+    if (phaseId == Simple.STACK_ROOTS && global().isCurrentGCNursery()) {
       VM.scanning.computeNewThreadRoots(getCurrentTrace());
       return;
     }
     if (phaseId == StopTheWorld.ROOTS) {
       VM.scanning.computeGlobalRoots(getCurrentTrace());
-      if (!Gen.USE_NON_HEAP_OBJECT_REFERENCE_WRITE_BARRIER || global().traceFullHeap()) {
+      if (!Gen.USE_NON_HEAP_OBJECT_REFERENCE_WRITE_BARRIER || !global().isCurrentGCNursery()) {
         VM.scanning.computeStaticRoots(getCurrentTrace());
       }
-      if (Plan.SCAN_BOOT_IMAGE && global().traceFullHeap()) {
+      if (Plan.SCAN_BOOT_IMAGE && !global().isCurrentGCNursery()) {
         VM.scanning.computeBootImageRoots(getCurrentTrace());
       }
       return;
@@ -70,7 +70,18 @@ public class GenConstraints extends StopTheWorldConstraints {
 
   @Override
   public boolean needsLogBitInHeader() {
-    return Gen.USE_OBJECT_BARRIER;
+    return Gen.USE_OBJECT_BARRIER || cardMarking();
+  }
+
+  /**
+   * @return {@code true} if the write barrier should mark cards (see
+   * {@link CardTable}) rather than remember the slots it stores into.
+   * The barrier then logs each mature object it stores into once per
+   * collection, and nursery collections scan only the parts of those
+   * objects on dirty cards.
+   */
+  public boolean cardMarking() {
+    return false;
   }
 
   /**
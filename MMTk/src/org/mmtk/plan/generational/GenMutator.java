@@ -20,6 +20,7 @@ import org.mmtk.utility.deque.*;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.statistics.Stats;
 import org.mmtk.vm.VM;
+import static org.mmtk.plan.generational.Gen.USE_CARD_MARKING;
 import static org.mmtk.plan.generational.Gen.USE_OBJECT_BARRIER_FOR_AASTORE;
 import static org.mmtk.plan.generational.Gen.USE_OBJECT_BARRIER_FOR_PUTFIELD;
 import static org.mmtk.utility.Constants.*;
@@ -126,7 +127,18 @@ import org.vmmagic.unboxed.*;
   @Inline
   private void fastPath(ObjectReference src, Address slot, ObjectReference tgt, int mode) {
     if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbFast.inc();
-    if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
+    if (USE_CARD_MARKING) {
+      if (!Gen.inNursery(slot)) {
+        if (HeaderByte.isUnlogged(src)) {
+          if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
+          logObject(src);
+        }
+        CardTable.dirty(slot);
+        if (!Gen.inNursery(tgt)) {
+          matureReferenceWrite(src, tgt);
+        }
+      }
+    } else if ((mode == ARRAY_ELEMENT && USE_OBJECT_BARRIER_FOR_AASTORE) ||
         (mode == INSTANCE_FIELD && USE_OBJECT_BARRIER_FOR_PUTFIELD)) {
       if (HeaderByte.isUnlogged(src)) {
         if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
@@ -134,13 +146,56 @@ import org.vmmagic.unboxed.*;
         modbuf.insert(src);
       }
     } else {
-      if (!Gen.inNursery(slot) && Gen.inNursery(tgt)) {
-        if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
-        remset.insert(slot);
+      if (!Gen.inNursery(slot)) {
+        if (Gen.inNursery(tgt)) {
+          if (Gen.GATHER_WRITE_BARRIER_STATS) Gen.wbSlow.inc();
+          remset.insert(slot);
+        } else {
+          matureReferenceWrite(src, tgt);
+        }
       }
     }
   }
 
+  /**
+   * Log an object the card marking barrier is storing into for the first
+   * time since the last collection, so the next collection scans its
+   * dirty cards.  The cards are mapped before the object is marked as
+   * logged, since other threads stop mapping them once they see the mark.
+   *
+   * @param src The object into which a reference will be stored
+   */
+  @NoInline
+  private void logObject(ObjectReference src) {
+    CardTable.map(src);
+    HeaderByte.markAsLogged(src);
+    modbuf.insert(src);
+  }
+
+  /**
+   * A reference to an object outside the nursery has been stored into
+   * an object outside the nursery.  Such references need not be
+   * remembered by a generational collector, but a subclass whose
+   * nursery collections also move mature objects may need to.
+   *
+   * @param src The object into which the new reference was stored
+   * @param tgt The target of the new reference
+   */
+  @Inline
+  protected void matureReferenceWrite(ObjectReference src, ObjectReference tgt) {
+  }
+
+  /**
+   * References have been copied in bulk into an array outside the
+   * nursery.
+   *
+   * @param dst The destination array
+   * @see #matureReferenceWrite(ObjectReference, ObjectReference)
+   */
+  @Inline
+  protected void matureReferenceBulkCopy(ObjectReference dst) {
+  }
+
   /**
    * {@inheritDoc}<p>
    *
@@ -219,12 +274,13 @@ import org.vmmagic.unboxed.*;
     if (!Gen.inNursery(dst)) {
       Address start = dst.toAddress().plus(dstOffset);
       arrayRemset.insert(start, start.plus(bytes));
+      matureReferenceBulkCopy(dst);
     }
     return false;
   }
 
   @Override
-  public final void flushRememberedSets() {
+  public void flushRememberedSets() {
     modbuf.flushLocal();
     remset.flushLocal();
     arrayRemset.flushLocal();
@@ -232,7 +288,7 @@ import org.vmmagic.unboxed.*;
   }
 
   @Override
-  public final void assertRemsetsFlushed() {
+  public void assertRemsetsFlushed() {
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(modbuf.isFlushed());
       VM.assertions._assert(remset.isFlushed());
@@ -28,7 +28,7 @@ import org.vmmagic.unboxed.*;
  * closure over the heap graph.
  */
 @Uninterruptible
-public final class GenNurseryTraceLocal extends TraceLocal {
+public class GenNurseryTraceLocal extends TraceLocal {
 
   /****************************************************************************
    *
@@ -41,6 +41,7 @@ public final class GenNurseryTraceLocal extends TraceLocal {
   private final ObjectReferenceDeque modbuf;
   private final AddressDeque remset;
   private final AddressPairDeque arrayRemset;
+  private final DirtyCardClosure dirtyCards = Gen.USE_CARD_MARKING ? new DirtyCardClosure(this) : null;
 
   /**
    * @param trace the global trace class to use
@@ -91,7 +92,11 @@ public final class GenNurseryTraceLocal extends TraceLocal {
     while (!(obj = modbuf.pop()).isNull()) {
       if (VM.DEBUG) VM.debugging.modbufEntry(obj);
       HeaderByte.markAsUnlogged(obj);
-      scanObject(obj);
+      if (Gen.USE_CARD_MARKING) {
+        VM.scanning.scanObject(dirtyCards, obj);
+      } else {
+        scanObject(obj);
+      }
     }
     logMessage(5, "processing remset");
     while (!remset.isEmpty()) {
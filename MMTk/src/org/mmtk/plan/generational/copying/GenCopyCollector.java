@@ -108,7 +108,7 @@ public class GenCopyCollector extends GenCollector {
       Plan.loSpace.initializeHeader(object, false);
     else if (GenCopy.IGNORE_REMSETS)
       GenCopy.immortalSpace.traceObject(getCurrentTrace(), object); // FIXME this does not look right
-    if (Gen.USE_OBJECT_BARRIER)
+    if (HeaderByte.NEEDS_UNLOGGED_BIT)
       HeaderByte.markAsUnlogged(object);
   }
 
@@ -18,7 +18,10 @@ import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.policy.immix.ImmixSpace;
 import org.mmtk.policy.immix.ObjectHeader;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.SharedDeque;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.Log;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
 
@@ -45,6 +48,15 @@ import org.vmmagic.unboxed.*;
  * collection and fast allocation." SP&amp;E 19(2):171--183, 1989.<p>
  *
  *
+ * When the <code>mixedEvacuationBudget</code> option is set, nursery
+ * collections also evacuate the most fragmented mature blocks, a budgeted
+ * number of live lines at a time.  The sparsest blocks found by one full
+ * heap collection become candidates; the next full heap collection
+ * remembers the objects that refer to them and shares them out among
+ * rounds, each of which is evacuated by a subsequent nursery collection.
+ * The remembered set is kept up to date by the write barrier and by each
+ * round's trace.  See <code>ImmixSpace.selectEvacuationSet</code>.<p>
+ *
  * For general comments about the global/local distinction among classes refer
  * to Plan.java and PlanLocal.java.
  */
@@ -73,6 +85,16 @@ public class GenImmix extends Gen {
   public final Trace matureTrace = new Trace(metaDataSpace);
   private boolean lastGCWasDefrag = false;
 
+  /**
+   * Objects that refer to blocks awaiting evacuation, consumed by odd and
+   * even numbered rounds of mixed evacuation respectively
+   */
+  public final SharedDeque oddRoundRemsetPool = new SharedDeque("oddRoundRemSets", metaDataSpace, 1);
+  public final SharedDeque evenRoundRemsetPool = new SharedDeque("evenRoundRemSets", metaDataSpace, 1);
+
+  /** Pinned objects that a round of mixed evacuation reached and left in place */
+  public final SharedDeque pinnedInPlacePool = new SharedDeque("pinnedInPlace", metaDataSpace, 1);
+
   /*****************************************************************************
    *
    * Collection
@@ -88,6 +110,9 @@ public class GenImmix extends Gen {
       super.collectionPhase(phaseId);
       if (gcFullHeap) {
         immixSpace.decideWhetherToDefrag(emergencyCollection, true, collectionAttempt, userTriggeredCollection);
+      } else if (immixSpace.evacuationPending()) {
+        if (Options.verbose.getValue() >= 1) Log.write("[Mixed]");
+        immixSpace.startEvacuationRound();
       }
       return;
     }
@@ -97,6 +122,9 @@ public class GenImmix extends Gen {
         super.collectionPhase(phaseId);
         matureTrace.prepare();
         immixSpace.prepare(true);
+        // a full heap trace rebuilds the remembered sets for mixed evacuation
+        oddRoundRemsetPool.clearDeque(1);
+        evenRoundRemsetPool.clearDeque(1);
         return;
       }
 
@@ -108,15 +136,45 @@ public class GenImmix extends Gen {
       if (phaseId == RELEASE) {
         matureTrace.release();
         lastGCWasDefrag = immixSpace.release(true);
+        immixSpace.selectEvacuationSet(!lastGCWasDefrag);
         super.collectionPhase(phaseId);
         return;
       }
-    } else
+    } else {
       lastGCWasDefrag = false;
 
+      if (phaseId == RELEASE && immixSpace.inEvacuationRound()) {
+        super.collectionPhase(phaseId);
+        evacuationRemsetPool(immixSpace.getEvacuationRound()).reset();
+        pinnedInPlacePool.reset();
+        immixSpace.finishEvacuationRound();
+        return;
+      }
+    }
+
     super.collectionPhase(phaseId);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * A nursery collection that evacuates a round of mature blocks is
+   * not considered a nursery collection.
+   */
+  @Override
+  public boolean isCurrentGCNursery() {
+    return super.isCurrentGCNursery() && !immixSpace.inEvacuationRound();
+  }
+
+  /**
+   * @param round A round of mixed evacuation
+   * @return The pool of objects that refer to the blocks evacuated by the round
+   */
+  @Inline
+  public final SharedDeque evacuationRemsetPool(int round) {
+    return (round & 1) == 1 ? oddRoundRemsetPool : evenRoundRemsetPool;
+  }
+
   @Override
   public boolean lastCollectionWasExhaustive() {
     return lastGCWasDefrag;
@@ -144,7 +202,7 @@ public class GenImmix extends Gen {
 
   @Override
   public int getCollectionReserve() {
-    return super.getCollectionReserve() + immixSpace.defragHeadroomPages();
+    return super.getCollectionReserve() + immixSpace.defragHeadroomPages() + immixSpace.evacuationReservePages();
   }
 
   /*****************************************************************************
@@ -176,6 +234,7 @@ public class GenImmix extends Gen {
     TransitiveClosure.registerSpecializedScan(SCAN_IMMIX, GenImmixMatureTraceLocal.class);
 //    TransitiveClosure.registerSpecializedScan(SCAN_DEFRAG, GenImmixMatureDefragTraceLocal.class);
     super.registerSpecializedMethods();
+    TransitiveClosure.registerSpecializedScan(SCAN_NURSERY, GenImmixNurseryTraceLocal.class);
   }
 
   @Override
@@ -183,4 +242,11 @@ public class GenImmix extends Gen {
   public void preCollectorSpawn() {
     immixSpace.initializeDefrag();
   }
+
+  @Override
+  @Interruptible
+  public void fullyBooted() {
+    super.fullyBooted();
+    immixSpace.setZeroingApproach(Options.lineZeroing.getNonTemporal(), Options.lineZeroing.getConcurrent());
+  }
 }
@@ -63,6 +63,16 @@ public class GenImmixCollector extends GenCollector {
   private final ImmixAllocator copy = new ImmixAllocator(GenImmix.immixSpace, true, false);
   private final ImmixAllocator defragCopy = new ImmixAllocator(GenImmix.immixSpace, true, true);
 
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  @Override
+  protected GenNurseryTraceLocal newNurseryTrace() {
+    return new GenImmixNurseryTraceLocal(global().nurseryTrace, this);
+  }
+
   /****************************************************************************
    *
    * Collection-time allocation
@@ -110,7 +120,7 @@ public class GenImmixCollector extends GenCollector {
       }
       GenImmix.immixSpace.postCopy(object, bytes, allocator == GenImmix.ALLOC_MATURE_MAJORGC);
     }
-    if (Gen.USE_OBJECT_BARRIER)
+    if (HeaderByte.NEEDS_UNLOGGED_BIT)
       HeaderByte.markAsUnlogged(object);
   }
 
@@ -153,6 +163,10 @@ public class GenImmixCollector extends GenCollector {
         super.collectionPhase(phaseId, primary);
         return;
       }
+    } else if (phaseId == GenImmix.RELEASE && GenImmix.immixSpace.inEvacuationRound()) {
+      super.collectionPhase(phaseId, primary);
+      immix.releaseEvacuatedBlocks();
+      return;
     }
 
     super.collectionPhase(phaseId, primary);
@@ -18,6 +18,8 @@ import org.mmtk.plan.generational.GenCollector;
 import org.mmtk.plan.generational.GenMatureTraceLocal;
 import org.mmtk.plan.Trace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
 
 import org.vmmagic.unboxed.*;
 import org.vmmagic.pragma.*;
@@ -30,12 +32,19 @@ import org.vmmagic.pragma.*;
 @Uninterruptible
 public final class GenImmixMatureTraceLocal extends GenMatureTraceLocal{
 
+  /** Objects that refer to blocks selected for evacuation by mixed collections */
+  private final ObjectReferenceDeque evacuationRemset;
+
+  /** Whether the object being scanned refers to a block selected for evacuation */
+  private boolean refersToEvacuationCandidate;
+
   /**
    * @param global the global trace class to use
    * @param plan the state of the generational collector
    */
   public GenImmixMatureTraceLocal(Trace global, GenCollector plan) {
     super(GenImmix.SCAN_IMMIX, global, plan);
+    evacuationRemset = new ObjectReferenceDeque("evacuationRemset", global().evacuationRemsetPool(1));
   }
 
   @Override
@@ -44,6 +53,8 @@ public final class GenImmixMatureTraceLocal extends GenMatureTraceLocal{
     if (object.isNull()) return object;
 
     if (Space.isInSpace(GenImmix.IMMIX, object)) {
+      if (GenImmix.immixSpace.hasEvacuationCandidates() && GenImmix.immixSpace.inEvacuationCandidate(object))
+        refersToEvacuationCandidate = true;
       return GenImmix.immixSpace.fastTraceObject(this, object);
     }
     return super.traceObject(object);
@@ -66,11 +77,32 @@ public final class GenImmixMatureTraceLocal extends GenMatureTraceLocal{
     return super.willNotMoveInCurrentCollection(object);
   }
 
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects that refer to blocks selected for evacuation are remembered
+   * for the first round of mixed evacuation.
+   */
   @Inline
   @Override
   protected void scanObject(ObjectReference object) {
+    refersToEvacuationCandidate = false;
     super.scanObject(object);
     if (MARK_LINE_AT_SCAN_TIME && Space.isInSpace(GenImmix.IMMIX, object))
       GenImmix.immixSpace.markLines(object);
+    if (refersToEvacuationCandidate)
+      evacuationRemset.push(object);
+  }
+
+  @Override
+  public void release() {
+    super.release();
+    evacuationRemset.flushLocal();
+  }
+
+  /** @return The active global plan as a <code>GenImmix</code> instance. */
+  @Inline
+  private static GenImmix global() {
+    return (GenImmix) VM.activePlan.global();
   }
 }
@@ -16,6 +16,7 @@ import org.mmtk.plan.generational.*;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.immix.MutatorLocal;
 import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
 
 import org.mmtk.vm.VM;
 
@@ -56,6 +57,13 @@ public class GenImmixMutator extends GenMutator {
    */
   private final MutatorLocal mature;
 
+  /**
+   * Objects that have been made to refer to blocks awaiting evacuation,
+   * for the odd and even numbered rounds of mixed evacuation respectively
+   */
+  private final ObjectReferenceDeque oddRoundRemset;
+  private final ObjectReferenceDeque evenRoundRemset;
+
 
   /****************************************************************************
    *
@@ -67,6 +75,8 @@ public class GenImmixMutator extends GenMutator {
    */
   public GenImmixMutator() {
     mature = new MutatorLocal(GenImmix.immixSpace, false);
+    oddRoundRemset = new ObjectReferenceDeque("oddRoundRemset", global().oddRoundRemsetPool);
+    evenRoundRemset = new ObjectReferenceDeque("evenRoundRemset", global().evenRoundRemsetPool);
   }
 
   /****************************************************************************
@@ -104,6 +114,61 @@ public class GenImmixMutator extends GenMutator {
     return super.getAllocatorFromSpace(space);
   }
 
+  /****************************************************************************
+   *
+   * Barriers
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * While blocks await evacuation, we remember the source of any
+   * reference into them for the next round.
+   */
+  @Override
+  @Inline
+  protected final void matureReferenceWrite(ObjectReference src, ObjectReference tgt) {
+    if (GenImmix.immixSpace.evacuationPending() && !tgt.isNull() &&
+        Space.isInSpace(GenImmix.IMMIX, tgt) && GenImmix.immixSpace.isAwaitingEvacuation(tgt)) {
+      nextRoundRemset().insert(src);
+    }
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * While blocks await evacuation, we remember the destination array,
+   * since it may now refer to them.
+   */
+  @Override
+  @Inline
+  protected final void matureReferenceBulkCopy(ObjectReference dst) {
+    if (GenImmix.immixSpace.evacuationPending()) {
+      nextRoundRemset().insert(dst);
+    }
+  }
+
+  @Override
+  public final void flushRememberedSets() {
+    super.flushRememberedSets();
+    oddRoundRemset.flushLocal();
+    evenRoundRemset.flushLocal();
+  }
+
+  @Override
+  public final void assertRemsetsFlushed() {
+    super.assertRemsetsFlushed();
+    if (VM.VERIFY_ASSERTIONS) {
+      VM.assertions._assert(oddRoundRemset.isFlushed());
+      VM.assertions._assert(evenRoundRemset.isFlushed());
+    }
+  }
+
+  @Inline
+  private ObjectReferenceDeque nextRoundRemset() {
+    return (GenImmix.immixSpace.getEvacuationRound() & 1) == 1 ? evenRoundRemset : oddRoundRemset;
+  }
+
   /*****************************************************************************
    *
    * Collection
@@ -119,6 +184,8 @@ public class GenImmixMutator extends GenMutator {
       if (phaseId == GenImmix.PREPARE) {
         super.collectionPhase(phaseId, primary);
         if (global().gcFullHeap) mature.prepare();
+        oddRoundRemset.flushLocal();
+        evenRoundRemset.flushLocal();
         return;
       }
 
@@ -0,0 +1,192 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational.immix;
+
+import org.mmtk.plan.generational.GenCollector;
+import org.mmtk.plan.generational.GenNurseryTraceLocal;
+import org.mmtk.plan.Trace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the core functionality for a nursery collection
+ * in a generational immix collector.  When a round of mixed evacuation
+ * is under way, objects in the blocks of that round are also evacuated,
+ * and the objects that refer to blocks of later rounds are remembered.
+ */
+@Uninterruptible
+public final class GenImmixNurseryTraceLocal extends GenNurseryTraceLocal {
+
+  /****************************************************************************
+   *
+   * Instance fields.
+   */
+
+  /**
+   * Objects that refer to blocks awaiting evacuation, consumed by odd
+   * and even numbered rounds respectively
+   */
+  private final ObjectReferenceDeque oddRoundRemset;
+  private final ObjectReferenceDeque evenRoundRemset;
+
+  /** Pinned objects that the current round of evacuation left in place */
+  private final ObjectReferenceDeque pinnedInPlace;
+
+  /** Whether the object being scanned refers to a block awaiting evacuation */
+  private boolean refersToEvacuationSet;
+
+  /**
+   * @param trace the global trace class to use
+   * @param plan the state of the generational collector
+   */
+  public GenImmixNurseryTraceLocal(Trace trace, GenCollector plan) {
+    super(trace, plan);
+    oddRoundRemset = new ObjectReferenceDeque("oddRoundRemset", global().oddRoundRemsetPool);
+    evenRoundRemset = new ObjectReferenceDeque("evenRoundRemset", global().evenRoundRemsetPool);
+    pinnedInPlace = new ObjectReferenceDeque("pinnedInPlace", global().pinnedInPlacePool);
+  }
+
+  /****************************************************************************
+   *
+   * Externally visible Object processing and tracing
+   */
+
+  @Override
+  public boolean isLive(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (inEvacuatingBlock(object)) {
+      return GenImmix.immixSpace.evacuatingIsLive(object);
+    }
+    return super.isLive(object);
+  }
+
+  @Override
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (GenImmix.immixSpace.inEvacuationRound() && !object.isNull() && Space.isInSpace(GenImmix.IMMIX, object)) {
+      if (GenImmix.immixSpace.isEvacuating(object))
+        return GenImmix.immixSpace.traceEvacuatingObject(this, object, GenImmix.ALLOC_MATURE_MINORGC, pinnedInPlace);
+      if (GenImmix.immixSpace.isAwaitingEvacuation(object))
+        refersToEvacuationSet = true;
+      return object;
+    }
+    return super.traceObject(object);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Objects that refer to blocks awaiting a later round of evacuation
+   * are remembered for the next round.
+   */
+  @Override
+  @Inline
+  protected void scanObject(ObjectReference object) {
+    refersToEvacuationSet = false;
+    super.scanObject(object);
+    if (refersToEvacuationSet)
+      nextRoundRemset().push(object);
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The objects remembered for this round of evacuation are scanned,
+   * except for those that are themselves being evacuated: if such an
+   * object is live it is scanned once it has been copied.
+   */
+  @Override
+  @Inline
+  protected void processRememberedSets() {
+    if (GenImmix.immixSpace.inEvacuationRound()) {
+      logMessage(5, "processing evacuation remset");
+      ObjectReferenceDeque remset = currentRoundRemset();
+      ObjectReference obj;
+      while (!(obj = remset.pop()).isNull()) {
+        if (inEvacuatingBlock(obj)) {
+          if (!GenImmix.immixSpace.willNotMoveThisMixedGC(obj)) continue;
+          traceObject(obj);
+        }
+        scanObject(obj);
+      }
+    }
+    super.processRememberedSets();
+  }
+
+  @Override
+  public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (inEvacuatingBlock(object)) {
+      return GenImmix.immixSpace.willNotMoveThisMixedGC(object);
+    }
+    return super.willNotMoveInCurrentCollection(object);
+  }
+
+  @Override
+  public void prepare() {
+    super.prepare();
+    if (GenImmix.immixSpace.inEvacuationRound()) {
+      global().evacuationRemsetPool(GenImmix.immixSpace.getEvacuationRound()).prepareNonBlocking();
+      global().pinnedInPlacePool.prepareNonBlocking();
+    }
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Reference processing is over, so the pinned objects this round left
+   * in place no longer need to be told apart from those it did not reach.
+   */
+  @Override
+  public void release() {
+    super.release();
+    if (GenImmix.immixSpace.inEvacuationRound()) {
+      nextRoundRemset().flushLocal();
+      ObjectReference obj;
+      while (!(obj = pinnedInPlace.pop()).isNull()) {
+        GenImmix.immixSpace.clearPinnedInPlace(obj);
+      }
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  @Inline
+  private boolean inEvacuatingBlock(ObjectReference object) {
+    return GenImmix.immixSpace.inEvacuationRound() && Space.isInSpace(GenImmix.IMMIX, object) &&
+        GenImmix.immixSpace.isEvacuating(object);
+  }
+
+  @Inline
+  private ObjectReferenceDeque currentRoundRemset() {
+    return (GenImmix.immixSpace.getEvacuationRound() & 1) == 1 ? oddRoundRemset : evenRoundRemset;
+  }
+
+  @Inline
+  private ObjectReferenceDeque nextRoundRemset() {
+    return (GenImmix.immixSpace.getEvacuationRound() & 1) == 1 ? evenRoundRemset : oddRoundRemset;
+  }
+
+  /** @return The active global plan as a <code>GenImmix</code> instance. */
+  @Inline
+  private static GenImmix global() {
+    return (GenImmix) VM.activePlan.global();
+  }
+}
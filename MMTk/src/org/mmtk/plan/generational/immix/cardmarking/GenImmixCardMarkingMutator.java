@@ -0,0 +1,25 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.generational.immix.cardmarking;
+
+import org.mmtk.plan.generational.immix.GenImmixMutator;
+import org.vmmagic.pragma.*;
+
+/**
+ * This class extends the {@link GenImmixMutator} class as part of the
+ * {@link GenImmixCardMarking} collector. The card marking barrier is
+ * implemented by {@link org.mmtk.plan.generational.GenMutator}
+ */
+@Uninterruptible
+public class GenImmixCardMarkingMutator extends GenImmixMutator {
+}
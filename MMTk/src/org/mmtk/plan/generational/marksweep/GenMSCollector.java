@@ -100,7 +100,7 @@ public class GenMSCollector extends GenCollector {
       Plan.loSpace.initializeHeader(object, false);
     else
       GenMS.msSpace.postCopy(object, allocator == GenMS.ALLOC_MATURE_MAJORGC);
-    if (Gen.USE_OBJECT_BARRIER)
+    if (HeaderByte.NEEDS_UNLOGGED_BIT)
       HeaderByte.markAsUnlogged(object);
   }
 
@@ -16,7 +16,9 @@ import org.mmtk.plan.*;
 import org.mmtk.policy.Space;
 import org.mmtk.policy.immix.ImmixSpace;
 import org.mmtk.policy.immix.ObjectHeader;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
 
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.*;
@@ -142,6 +144,15 @@ public class Immix extends StopTheWorld {
     return immixSpace.reservedPages() + super.getPagesUsed();
   }
 
+  /**
+   * Mutators allocate into the immix space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(immixSpace, Extent.max());
+  }
+
   /**
    * Return the number of pages reserved for collection.
    */
@@ -172,4 +183,11 @@ public class Immix extends StopTheWorld {
   public void preCollectorSpawn() {
     immixSpace.initializeDefrag();
   }
+
+  @Override
+  @Interruptible
+  public void fullyBooted() {
+    super.fullyBooted();
+    immixSpace.setZeroingApproach(Options.lineZeroing.getNonTemporal(), Options.lineZeroing.getConcurrent());
+  }
 }
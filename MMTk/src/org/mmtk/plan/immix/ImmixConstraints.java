@@ -13,6 +13,7 @@
 package org.mmtk.plan.immix;
 
 import org.mmtk.plan.StopTheWorldConstraints;
+import org.mmtk.policy.MediumObjectSpace;
 import org.mmtk.policy.immix.ObjectHeader;
 
 import static org.mmtk.policy.immix.ImmixConstants.MAX_IMMIX_OBJECT_BYTES;
@@ -57,4 +58,9 @@ public class ImmixConstraints extends StopTheWorldConstraints {
   public int maxNonLOSCopyBytes() {
     return MAX_IMMIX_OBJECT_BYTES;
   }
+
+  @Override
+  public int maxMediumObjectBytes() {
+    return MediumObjectSpace.MAX_MEDIUM_OBJECT_BYTES;
+  }
 }
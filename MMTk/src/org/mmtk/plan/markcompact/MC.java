@@ -15,10 +15,12 @@ package org.mmtk.plan.markcompact;
 import org.mmtk.plan.*;
 import org.mmtk.policy.MarkCompactSpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 
 import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
@@ -65,7 +67,10 @@ import org.vmmagic.unboxed.ObjectReference;
   public static final short FORWARD_CLOSURE     = Phase.createSimple("fw-closure");
   public static final short RELEASE_FORWARD     = Phase.createSimple("fw-release");
 
-  /** Calculate forwarding pointers via a linear scan over the heap */
+  /**
+   * Summarize the live data and calculate forwarding pointers via a linear
+   * scan over the heap
+   */
   public static final short CALCULATE_FP        = Phase.createSimple("calc-fp");
 
   /** Perform compaction via a linear scan over the heap */
@@ -83,6 +88,7 @@ import org.vmmagic.unboxed.ObjectReference;
       Phase.scheduleComplex  (rootClosurePhase),
       Phase.scheduleComplex  (refTypeClosurePhase),
       Phase.scheduleComplex  (completeClosurePhase),
+      Phase.scheduleGlobal   (CALCULATE_FP),
       Phase.scheduleCollector(CALCULATE_FP),
       Phase.scheduleGlobal   (PREPARE_FORWARD),
       Phase.scheduleCollector(PREPARE_FORWARD),
@@ -148,6 +154,11 @@ import org.vmmagic.unboxed.ObjectReference;
       return;
     }
 
+    if (phaseId == CALCULATE_FP) {
+      mcSpace.summarize();
+      return;
+    }
+
     if (phaseId == PREPARE_FORWARD) {
       super.collectionPhase(PREPARE);
       forwardTrace.prepare();
@@ -179,6 +190,15 @@ import org.vmmagic.unboxed.ObjectReference;
     return (mcSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * Mutators allocate into the mark-compact space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(mcSpace, Extent.max());
+  }
+
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(MARK_COMPACT, object))
@@ -15,6 +15,7 @@ package org.mmtk.plan.marksweep;
 import org.mmtk.plan.*;
 import org.mmtk.policy.MarkSweepSpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 
 import org.vmmagic.pragma.*;
@@ -110,6 +111,15 @@ public class MS extends StopTheWorld {
     return (msSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * Mutators allocate into the mark-sweep space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(msSpace, Extent.max());
+  }
+
   /*****************************************************************************
    * Miscellaneous
    */
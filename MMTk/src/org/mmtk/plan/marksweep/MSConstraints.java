@@ -15,6 +15,7 @@ package org.mmtk.plan.marksweep;
 import org.mmtk.plan.StopTheWorldConstraints;
 
 import org.mmtk.policy.MarkSweepSpace;
+import org.mmtk.policy.MediumObjectSpace;
 import org.mmtk.policy.SegregatedFreeListSpace;
 
 import org.vmmagic.pragma.*;
@@ -40,6 +41,10 @@ public class MSConstraints extends StopTheWorldConstraints {
     return SegregatedFreeListSpace.MAX_FREELIST_OBJECT_BYTES;
   }
   @Override
+  public int maxMediumObjectBytes() {
+    return MediumObjectSpace.MAX_MEDIUM_OBJECT_BYTES;
+  }
+  @Override
   public int numSpecializedScans() {
     return 1;
   }
@@ -14,10 +14,12 @@ package org.mmtk.plan.nogc;
 
 import org.mmtk.plan.*;
 import org.mmtk.policy.ImmortalSpace;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.Extent;
 
 
 /**
@@ -84,6 +86,15 @@ public class NoGC extends Plan {
     return (noGCSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * Mutators allocate into the default space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(noGCSpace, Extent.max());
+  }
+
 
   /*****************************************************************************
    * Miscellaneous
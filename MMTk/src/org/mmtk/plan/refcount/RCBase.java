@@ -23,12 +23,14 @@ import org.mmtk.policy.Space;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.sanitychecker.SanityChecker;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.*;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
@@ -298,6 +300,15 @@ public class RCBase extends StopTheWorld {
     return (rcSpace.reservedPages() + rcloSpace.reservedPages() + super.getPagesUsed());
   }
 
+  /**
+   * Mutators allocate into the reference counted space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(rcSpace, Extent.max());
+  }
+
   /**
    * Perform a linear scan across all objects in the heap to check for leaks.
    */
@@ -15,6 +15,8 @@ package org.mmtk.plan.refcount.generational;
 import org.mmtk.plan.refcount.RCBase;
 import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.Space;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 import org.mmtk.utility.options.Options;
 import org.vmmagic.pragma.*;
@@ -91,6 +93,17 @@ public class GenRC extends RCBase {
     return nurserySpace.reservedPages() + super.getCollectionReserve();
   }
 
+  /**
+   * The nursery, as much of it as is used between collections, comes
+   * before the reference counted space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(nurserySpace, Conversions.pagesToBytes(Options.nurserySize.getMaxNursery()));
+    super.preTouchSpaces();
+  }
+
   @Override
   public boolean willNeverMove(ObjectReference object) {
     if (Space.isInSpace(NURSERY, object)) {
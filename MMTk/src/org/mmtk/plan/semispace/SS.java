@@ -15,6 +15,7 @@ package org.mmtk.plan.semispace;
 import org.mmtk.policy.CopySpace;
 import org.mmtk.policy.Space;
 import org.mmtk.plan.*;
+import org.mmtk.utility.heap.PreTouchContext;
 import org.mmtk.utility.heap.VMRequest;
 
 import org.vmmagic.pragma.*;
@@ -159,6 +160,15 @@ public class SS extends StopTheWorld {
     return super.getPagesUsed() + toSpace().reservedPages();
   }
 
+  /**
+   * Mutators allocate into the current to-space.
+   */
+  @Override
+  @Interruptible
+  public void preTouchSpaces() {
+    PreTouchContext.addSpace(toSpace(), Extent.max());
+  }
+
   /**
    * Return the number of pages available for allocation, <i>assuming
    * all future allocation is to the semi-space</i>.
@@ -0,0 +1,64 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import org.mmtk.utility.heap.ConcurrentSpaceContext;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * This context sweeps the blocks of segregated free list spaces in the
+ * background, after a collection has deferred their sweep (see
+ * {@link SegregatedFreeListSpace#concurrentSweep()}).  Allocators sweep
+ * any block they take before the context reaches it, so the context
+ * only takes work off the allocation path; it is never required for
+ * correctness.
+ */
+@Uninterruptible
+public class ConcurrentSweepingContext extends ConcurrentSpaceContext {
+
+  /** The single sweeping context, if lazy block sweeping is enabled */
+  private static ConcurrentSweepingContext context;
+
+  private ConcurrentSweepingContext() {
+    super("SweepingThread", "ConcurrentSweepingLock");
+  }
+
+  /**
+   * Start the sweeping context.
+   */
+  @Interruptible
+  public static void start() {
+    if (context == null) {
+      context = new ConcurrentSweepingContext();
+      VM.collection.spawnCollectorContext(context);
+    }
+  }
+
+  /**
+   * Ask for the deferred blocks of a space to be swept.  Does nothing
+   * if the context has not been started.
+   *
+   * @param space The space
+   */
+  public static void trigger(SegregatedFreeListSpace space) {
+    if (context == null) return;
+    context.request(space);
+  }
+
+  @Override
+  protected void work(Space space) {
+    ((SegregatedFreeListSpace) space).concurrentSweep();
+  }
+}
@@ -34,10 +34,12 @@ import org.vmmagic.unboxed.ObjectReference;
  *  <li>Performs the compaction pass over the heap.</li>
  * </ul>
  *<p>
- * Each collector thread maintains a private list of the pages that it compacts.
- * If it runs out of work during the calculateForwardingPointers pass, it requests
- * a new region from the global MarkCompactSpace.  Regions compacted by a collector
- * remain local to the collector.
+ * Each collector thread maintains a private list of the pages that it compacts,
+ * made up of partitions of the regions of the global MarkCompactSpace that each
+ * hold a similar amount of live data.  If it runs out of work during the
+ * calculateForwardingPointers pass, it requests another partition.  Once
+ * compacted, the regions are returned to the global list, so that the next
+ * collection can divide them up afresh.
  *
  * @see MarkCompactSpace
  * @see MarkCompactLocal
@@ -288,20 +290,19 @@ public final class MarkCompactCollector {
 
     /**
      * Advance the cursor either to the next region in the list,
-     * or to a new region allocated from the global list.
+     * or to a new partition taken from the global list.
      * @param space the space that acts as the global list
      */
     void advanceToNextForwardableRegion(MarkCompactSpace space) {
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(get().EQ(getLimit()));
       Address nextRegion = BumpPointer.getNextRegion(region);
       if (nextRegion.isZero()) {
-        nextRegion = space.getNextRegion();
+        nextRegion = space.getNextPartition();
         if (nextRegion.isZero()) {
           region = Address.zero();
           return;
         }
         MarkCompactLocal.setNextRegion(region,nextRegion);
-        MarkCompactLocal.clearNextRegion(nextRegion);
       }
       init(nextRegion);
       if (VM.VERIFY_ASSERTIONS) assertCursorInBounds();
@@ -435,9 +436,8 @@ public final class MarkCompactCollector {
    * The outer loop advances the 'from' pointer
    */
   public void calculateForwardingPointers() {
-    if (regions.isZero()) {
-      regions = space.getNextRegion();
-    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(regions.isZero());
+    regions = space.getNextPartition();
 
     if (regions.isZero())
       return;
@@ -556,5 +556,11 @@ public final class MarkCompactCollector {
       space.release(region);
       region = nextRegion;
     }
+
+    /*
+     * Hand the compacted regions back, to be partitioned again next time
+     */
+    space.append(regions);
+    regions = Address.zero();
   }
 }
@@ -12,9 +12,13 @@
  */
 package org.mmtk.policy;
 
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_INT;
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_PAGE;
+
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.utility.alloc.BumpPointer;
+import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.utility.heap.*;
 import org.mmtk.utility.Log;
 
@@ -26,7 +30,14 @@ import org.vmmagic.pragma.*;
 
 /**
  * This class implements functionality for a simple sliding mark-compact
- * space.
+ * space.<p>
+ *
+ * The marking trace keeps a summary table of the live bytes in each
+ * fixed-size block of the space.  Before forwarding pointers are
+ * calculated, the summary is used to cut the list of occupied regions into
+ * partitions of roughly equal live data, one per collector thread.  Each
+ * collector then slides the objects of its own partitions, so all of them
+ * compact at the same time without any ordering between them.
  */
 @Uninterruptible public final class MarkCompactSpace extends Space {
 
@@ -45,11 +56,24 @@ import org.vmmagic.pragma.*;
   private static final Word GC_MARK_BIT_MASK = Word.one();
   private static final Offset FORWARDING_POINTER_OFFSET = VM.objectModel.GC_HEADER_OFFSET();
 
+  /** The (log of the) size of the blocks whose live bytes are summarized, the bump pointer's block size */
+  private static final int LOG_BYTES_IN_SUMMARY_BLOCK = LOG_BYTES_IN_PAGE + 3;
+  private static final int BYTES_IN_SUMMARY_BLOCK = 1 << LOG_BYTES_IN_SUMMARY_BLOCK;
+  /**
+   * The summary table takes one int per block at the start of each meta data
+   * region.  A whole block is set aside for it, so that the regions of the
+   * bump pointers stay block aligned.
+   */
+  private static final int META_DATA_PAGES_PER_REGION = 1 << (LOG_BYTES_IN_SUMMARY_BLOCK - LOG_BYTES_IN_PAGE);
+
   private static final Lock lock = VM.newLock("mcSpace");
 
   /** The list of occupied regions */
   private Address regionList = Address.zero();
 
+  /** The live bytes a partition of the region list should hold */
+  private long partitionLiveBytes;
+
   // TODO - maintain a separate list of partially allocated regions
   // for threads to allocate into immediately after a collection.
 
@@ -74,9 +98,9 @@ import org.vmmagic.pragma.*;
   public MarkCompactSpace(String name, VMRequest vmRequest) {
     super(name, true, false, true, vmRequest);
     if (vmRequest.isDiscontiguous()) {
-      pr = new FreeListPageResource(this, 0);
+      pr = new FreeListPageResource(this, META_DATA_PAGES_PER_REGION);
     } else {
-      pr = new FreeListPageResource(this, start, extent, 0);
+      pr = new FreeListPageResource(this, start, extent, META_DATA_PAGES_PER_REGION);
     }
   }
 
@@ -139,6 +163,7 @@ import org.vmmagic.pragma.*;
       Log.write("marking ", object);
     }
     if (testAndMark(object)) {
+      addLiveBytes(object);
       trace.processNode(object);
     } else if (!getForwardingPointer(object).isNull()) {
       if (MarkCompactCollector.VERY_VERBOSE) {
@@ -315,38 +340,109 @@ import org.vmmagic.pragma.*;
     object.toAddress().store(Address.zero(), FORWARDING_POINTER_OFFSET);
   }
 
+  /****************************************************************************
+   * Summary of the live data
+   */
+
+  /**
+   * @param address An address in the space
+   * @return The address of the summary table entry of the block that
+   *   contains the address
+   */
+  @Inline
+  private static Address getSummaryEntry(Address address) {
+    Address base = EmbeddedMetaData.getMetaDataBase(address);
+    return base.plus(EmbeddedMetaData.getMetaDataOffset(address, LOG_BYTES_IN_SUMMARY_BLOCK - LOG_BYTES_IN_INT, LOG_BYTES_IN_INT));
+  }
+
   /**
-   * @return A region of this space that has net yet been compacted during
-   *   the current collection
+   * Add a newly marked object to the live bytes of the block it starts in.
+   * Several collectors may be marking objects of the same block.
+   *
+   * @param object The object that was marked
    */
-  public Address getNextRegion() {
-    lock.acquire();
-    if (regionList.isZero()) {
-      lock.release();
-      return Address.zero();
+  @Inline
+  private static void addLiveBytes(ObjectReference object) {
+    Address entry = getSummaryEntry(VM.objectModel.objectStartRef(object));
+    int bytes = VM.objectModel.getSizeWhenCopied(object);
+    int oldValue;
+    do {
+      oldValue = entry.prepareInt();
+    } while (!entry.attempt(oldValue, oldValue + bytes));
+  }
+
+  /**
+   * Sum up the live bytes of each occupied region, once marking is
+   * complete, and work out how much live data each partition should hold.
+   * The live bytes of a region are kept in the summary table entry of its
+   * first block until the region is handed out, and the other entries are
+   * cleared for the next collection.
+   */
+  public void summarize() {
+    long total = 0;
+    for (Address region = regionList; !region.isZero(); region = BumpPointer.getNextRegion(region)) {
+      int live = 0;
+      Address limit = BumpPointer.getRegionLimit(region);
+      for (Address block = region; block.LT(limit); block = block.plus(BYTES_IN_SUMMARY_BLOCK)) {
+        Address entry = getSummaryEntry(block);
+        live += entry.loadInt();
+        entry.store(0);
+      }
+      getSummaryEntry(region).store(live);
+      total += live;
     }
+    partitionLiveBytes = total / VM.activePlan.collectorCount() + 1;
+    if (MarkCompactCollector.VERBOSE) {
+      Log.write("Live bytes ", total);
+      Log.writeln(", per partition ", partitionLiveBytes);
+    }
+  }
+
+  /**
+   * Take the next partition of the occupied regions.  A partition is a
+   * list of regions that together hold about the share of the live data
+   * that {@link #summarize()} worked out.
+   *
+   * @return The first region of a list of regions that has not been
+   *   compacted during the current collection, or zero if there are none left
+   */
+  public Address getNextPartition() {
+    lock.acquire();
     Address result = regionList;
-    regionList = BumpPointer.getNextRegion(regionList);
-    BumpPointer.clearNextRegion(result);
+    if (!result.isZero()) {
+      long live = 0;
+      Address last;
+      do {
+        last = regionList;
+        Address entry = getSummaryEntry(last);
+        live += entry.loadInt();
+        entry.store(0);
+        regionList = BumpPointer.getNextRegion(last);
+      } while (!regionList.isZero() && live < partitionLiveBytes);
+      BumpPointer.clearNextRegion(last);
+    }
     lock.release();
     return result;
   }
 
   /**
-   * Append a region or list of regions to the global list
-   * @param region the region to append
+   * Add a region or list of regions to the global list.  The order of
+   * the regions in the list does not matter, so they are added at the front.
+   * @param region the region to add
    */
   public void append(Address region) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!region.isZero());
+    Address last = region;
+    while (!BumpPointer.getNextRegion(last).isZero()) {
+      last = BumpPointer.getNextRegion(last);
+    }
     lock.acquire();
     if (MarkCompactCollector.VERBOSE) {
       Log.write("Appending region ", region);
       Log.writeln(" to global list");
     }
-    if (regionList.isZero()) {
-      regionList = region;
-    } else {
-      appendRegion(regionList,region);
-    }
+    BumpPointer.setNextRegion(last, regionList);
+    regionList = region;
     lock.release();
   }
 
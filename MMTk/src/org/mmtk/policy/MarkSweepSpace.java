@@ -19,6 +19,7 @@ import org.mmtk.utility.heap.*;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.options.MarkSweepMarkBits;
 import org.mmtk.utility.options.EagerCompleteSweep;
+import org.mmtk.utility.options.LazyBlockSweep;
 import org.mmtk.utility.HeaderByte;
 
 import org.mmtk.vm.VM;
@@ -91,6 +92,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
   static {
     Options.markSweepMarkBits = new MarkSweepMarkBits();
     Options.eagerCompleteSweep = new EagerCompleteSweep();
+    Options.lazyBlockSweep = new LazyBlockSweep();
   }
 
   /**
@@ -188,6 +190,7 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
    * @param gcWholeMS True if we are going to collect the whole marksweep space
    */
   public void prepare(boolean gcWholeMS) {
+    finishDeferredSweep();
     if (HEADER_MARK_BITS && Options.eagerCompleteSweep.getValue()) {
       consumeBlocks();
     } else {
@@ -210,10 +213,16 @@ public final class MarkSweepSpace extends SegregatedFreeListSpace {
 
   /**
    * A new collection increment has completed.  For the mark-sweep
-   * collector this means we can perform the sweep phase.
- */
+   * collector this means we can perform the sweep phase, or, when
+   * sweeping lazily, defer it to the allocators and the background
+   * sweeper.
+   */
   public void release() {
-    sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    if (Options.lazyBlockSweep.getValue()) {
+      deferBlockSweep(!EAGER_MARK_CLEAR);
+    } else {
+      sweepConsumedBlocks(!EAGER_MARK_CLEAR);
+    }
     inMSCollection = false;
   }
 
@@ -0,0 +1,170 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import static org.mmtk.policy.MediumObjectSpace.*;
+
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements unsynchronized bump allocation into the runs
+ * of a medium object space.  The allocator owns one run at a time and
+ * allocates into the gaps between the granules that were live at the
+ * last collection.  When its run is exhausted it claims the next run
+ * awaiting a lazy sweep, and only when there are none left does it
+ * take a fresh run from the page resource.
+ *
+ * @see MediumObjectSpace
+ */
+@Uninterruptible
+public final class MediumObjectLocal extends Allocator {
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   *
+   */
+  private final MediumObjectSpace space;
+
+  /** The run being allocated into, or zero */
+  private Address run = Address.zero();
+  /** The bump pointer */
+  private Address cursor = Address.zero();
+  /** The end of the current gap */
+  private Address limit = Address.zero();
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param space The medium object space to which this thread instance
+   * is bound.
+   */
+  public MediumObjectLocal(MediumObjectSpace space) {
+    this.space = space;
+  }
+
+  @Override
+  protected MediumObjectSpace getSpace() {
+    return space;
+  }
+
+  /****************************************************************************
+   *
+   * Allocation
+   */
+
+  /**
+   * Allocate space for a new object.  Objects always start on a
+   * granule boundary.
+   *
+   * @param bytes The number of bytes allocated
+   * @param align The requested alignment
+   * @param offset The offset from the alignment
+   * @return The address of the first byte of the allocated region
+   */
+  @Inline
+  public Address alloc(int bytes, int align, int offset) {
+    Address start = alignAllocationNoFill(cursor, align, offset);
+    Address end = start.plus(bytes);
+    if (end.GT(limit))
+      return allocSlow(bytes, align, offset);
+    fillAlignmentGap(cursor, start);
+    cursor = MediumObjectSpace.alignToGranule(end);
+    return start;
+  }
+
+  /**
+   * Find a gap large enough for the object, first in the current run,
+   * then in runs awaiting a lazy sweep, and finally in a fresh run.
+   *
+   * @param bytes The number of bytes allocated
+   * @param align The requested alignment
+   * @param offset The offset from the alignment
+   * @return The address of the first byte of the allocated region, or
+   * zero on failure
+   */
+  @Override
+  protected Address allocSlowOnce(int bytes, int align, int offset) {
+    Extent required = Extent.fromIntZeroExtend(getMaximumAlignedSize(bytes, align));
+    Address search = limit;
+    while (true) {
+      if (!run.isZero()) {
+        Address runEnd = run.plus(BYTES_IN_RUN);
+        while (search.LT(runEnd)) {
+          Address gap = MediumObjectSpace.nextFreeGranule(search, runEnd);
+          search = MediumObjectSpace.nextUsedGranule(gap, runEnd);
+          if (search.diff(gap).toWord().toExtent().GE(required)) {
+            VM.memory.zero(false, gap, search.diff(gap).toWord().toExtent());
+            cursor = gap;
+            limit = search;
+            return alloc(bytes, align, offset);
+          }
+        }
+      }
+      run = space.sweepNextRun();
+      if (run.isZero()) break;
+      search = run;
+    }
+
+    /* no recyclable run has a large enough gap, so take a fresh one */
+    run = space.acquireRun();
+    if (run.isZero()) {
+      reset();
+      return Address.zero();
+    }
+    cursor = run;
+    limit = run.plus(BYTES_IN_RUN);
+    return alloc(bytes, align, offset);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Prepare for a collection.  The current run will be swept along
+   * with the others, so give it up.
+   */
+  public void prepare() {
+    reset();
+  }
+
+  /**
+   * Finish up after a collection.
+   */
+  public void release() {
+    reset();
+  }
+
+  /**
+   * Give up the current run.
+   */
+  public void reset() {
+    run = Address.zero();
+    cursor = Address.zero();
+    limit = Address.zero();
+  }
+}
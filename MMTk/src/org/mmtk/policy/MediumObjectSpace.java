@@ -0,0 +1,484 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.policy;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.LOG_BYTES_IN_CHUNK;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.HeaderByte;
+import org.mmtk.utility.heap.FreeListPageResource;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements a non-moving space for medium sized objects,
+ * those too large for the size classes of a segregated free list but
+ * small enough that giving each one its own pages in the large object
+ * space is wasteful.<p>
+ *
+ * The space is carved into fixed size <i>runs</i> of pages, which are
+ * handed out to thread-local bump allocators (see
+ * {@link MediumObjectLocal}).  Liveness is recorded in a per-chunk
+ * mark bitmap with one bit per granule, and a second <i>used</i>
+ * bitmap records which granules held live objects at the last
+ * collection.  Objects are granule aligned so no two objects share a
+ * granule.<p>
+ *
+ * Sweeping is lazy: after a collection each run is swept (its mark
+ * bits become its used bits) only when an allocator claims it, and
+ * the allocator then bump allocates into the gaps between used
+ * granules.  Runs that no allocator reached are swept at the start of
+ * the next collection, which is also when entirely free runs are
+ * returned to the page resource.<p>
+ *
+ * Like the large object space, the space is only collected by full
+ * heap collections.
+ */
+@Uninterruptible
+public final class MediumObjectSpace extends Space {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /**
+   *
+   */
+  public static final int LOG_BYTES_IN_RUN = 17;
+  public static final int BYTES_IN_RUN = 1 << LOG_BYTES_IN_RUN;
+  public static final int PAGES_IN_RUN = 1 << (LOG_BYTES_IN_RUN - LOG_BYTES_IN_PAGE);
+  public static final int LOG_BYTES_IN_GRANULE = 8;
+  public static final int BYTES_IN_GRANULE = 1 << LOG_BYTES_IN_GRANULE;
+
+  /** The largest object the space will accept */
+  public static final int MAX_MEDIUM_OBJECT_BYTES = BYTES_IN_RUN >> 1;
+
+  private static final Word GRANULE_MASK = Word.fromIntZeroExtend(BYTES_IN_GRANULE - 1);
+  private static final Word CHUNK_MASK = Word.one().lsh(LOG_BYTES_IN_CHUNK).minus(Word.one());
+
+  private static final int LOG_GRANULES_IN_RUN = LOG_BYTES_IN_RUN - LOG_BYTES_IN_GRANULE;
+  private static final int GRANULES_IN_RUN = 1 << LOG_GRANULES_IN_RUN;
+  private static final int WORDS_IN_RUN_BITMAP = GRANULES_IN_RUN >> LOG_BITS_IN_WORD;
+  private static final int LOG_GRANULES_IN_CHUNK = LOG_BYTES_IN_CHUNK - LOG_BYTES_IN_GRANULE;
+
+  /* per-chunk meta data, held in the first pages of each chunk */
+  private static final int BITMAP_BYTES = 1 << (LOG_GRANULES_IN_CHUNK - LOG_BITS_IN_BYTE);
+  private static final int MARK_BITMAP_OFFSET = 0;
+  private static final int USED_BITMAP_OFFSET = MARK_BITMAP_OFFSET + BITMAP_BYTES;
+  private static final int RUN_STATE_TABLE_OFFSET = USED_BITMAP_OFFSET + BITMAP_BYTES;
+  private static final int MAX_RUNS_IN_CHUNK = 1 << (LOG_BYTES_IN_CHUNK - LOG_BYTES_IN_RUN);
+  private static final int NEXT_CHUNK_OFFSET = RUN_STATE_TABLE_OFFSET + (MAX_RUNS_IN_CHUNK << LOG_BYTES_IN_INT);
+  private static final int PREV_CHUNK_OFFSET = NEXT_CHUNK_OFFSET + BYTES_IN_ADDRESS;
+  private static final int META_DATA_BYTES = PREV_CHUNK_OFFSET + BYTES_IN_ADDRESS;
+  private static final int META_DATA_PAGES = Conversions.bytesToPagesUp(Extent.fromIntZeroExtend(META_DATA_BYTES));
+
+  /* runs follow the meta data; the pages after the last whole run are never allocated */
+  private static final int FIRST_RUN_OFFSET = META_DATA_PAGES << LOG_BYTES_IN_PAGE;
+  private static final int RUNS_IN_CHUNK = ((1 << LOG_BYTES_IN_CHUNK) - FIRST_RUN_OFFSET) >> LOG_BYTES_IN_RUN;
+
+  /** The state of a run whose pages belong to the page resource */
+  private static final int RUN_FREE = 0;
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /**
+   * The sweep epoch.  A run whose state equals the current epoch has
+   * been swept since the last collection.
+   */
+  private int epoch = 1;
+  private boolean inCollection;
+  private Address headChunk = Address.zero();
+
+  /** The lazy sweep cursor, protected by <code>lock</code> */
+  private final Lock lock = VM.newLock("MediumObjectSpace");
+  private Address sweepChunk = Address.zero();
+  private int sweepRun;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * The caller specifies the region of virtual memory to be used for
+   * this space.  If this region conflicts with an existing space,
+   * then the constructor will fail.
+   *
+   * @param name The name of this space (used when printing error messages etc)
+   * @param vmRequest An object describing the virtual memory requested.
+   */
+  public MediumObjectSpace(String name, VMRequest vmRequest) {
+    super(name, false, false, true, vmRequest);
+    if (vmRequest.isDiscontiguous())
+      pr = new FreeListPageResource(this, META_DATA_PAGES);
+    else
+      pr = new FreeListPageResource(this, start, extent, META_DATA_PAGES);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Prepare for a new collection increment.  Sweep every run that
+   * no allocator claimed since the last collection, so that the mark
+   * bits are clear for this collection, and return entirely free runs
+   * to the page resource.
+   */
+  public void prepare() {
+    Address chunk = headChunk;
+    while (!chunk.isZero()) {
+      Address next = chunk.loadAddress(Offset.fromIntZeroExtend(NEXT_CHUNK_OFFSET));
+      int freeRuns = 0;
+      for (int index = 0; index < RUNS_IN_CHUNK; index++) {
+        Address run = getRun(chunk, index);
+        Address state = getRunStateAddress(run);
+        int value = state.loadInt();
+        if (value != RUN_FREE && value != epoch) {
+          if (sweepRun(run) == 0) {
+            state.store(RUN_FREE);
+            freeRuns |= 1 << index;
+          } else {
+            state.store(epoch);
+          }
+        }
+      }
+      /* release last, since releasing the final run may free the chunk */
+      for (int index = 0; freeRuns != 0; index++) {
+        if ((freeRuns & (1 << index)) != 0) {
+          freeRuns &= ~(1 << index);
+          ((FreeListPageResource) pr).releasePages(getRun(chunk, index));
+        }
+      }
+      chunk = next;
+    }
+    inCollection = true;
+  }
+
+  /**
+   * A new collection increment has completed.  Every run in use now
+   * awaits a (lazy) sweep.
+   */
+  public void release() {
+    inCollection = false;
+    epoch++;
+    if (epoch == RUN_FREE) epoch++;
+    sweepChunk = headChunk;
+    sweepRun = 0;
+  }
+
+  /**
+   * Release a run.  Runs are only released by {@link #prepare()}.
+   *
+   * @param start The address of the start of the run
+   */
+  @Override
+  public void release(Address start) {
+    ((FreeListPageResource) pr).releasePages(start);
+  }
+
+  /****************************************************************************
+   *
+   * Run management
+   */
+
+  /**
+   * Claim the next run awaiting a lazy sweep, and sweep it.  Each run
+   * is claimed by at most one allocator between collections.
+   *
+   * @return The swept run, which has at least one free granule, or
+   * zero if every run has been claimed.
+   */
+  public Address sweepNextRun() {
+    while (true) {
+      Address run = claimNextRun();
+      if (run.isZero() || sweepRun(run) < GRANULES_IN_RUN)
+        return run;
+    }
+  }
+
+  /**
+   * Acquire a fresh run from the page resource.  This may trigger a
+   * collection.
+   *
+   * @return The zeroed run, or zero on failure
+   */
+  public Address acquireRun() {
+    Address run = acquire(PAGES_IN_RUN);
+    if (!run.isZero()) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(run.EQ(getRun(run.toWord().and(CHUNK_MASK.not()).toAddress(), getRunIndex(run))));
+      getRunStateAddress(run).store(epoch);
+    }
+    return run;
+  }
+
+  /**
+   * @return The next run that has not been swept since the last
+   * collection, marked as swept, or zero if there is none.
+   */
+  private Address claimNextRun() {
+    lock.acquire();
+    while (!sweepChunk.isZero()) {
+      while (sweepRun < RUNS_IN_CHUNK) {
+        Address run = getRun(sweepChunk, sweepRun++);
+        Address state = getRunStateAddress(run);
+        int value = state.loadInt();
+        if (value != RUN_FREE && value != epoch) {
+          state.store(epoch);
+          lock.release();
+          return run;
+        }
+      }
+      sweepChunk = sweepChunk.loadAddress(Offset.fromIntZeroExtend(NEXT_CHUNK_OFFSET));
+      sweepRun = 0;
+    }
+    lock.release();
+    return Address.zero();
+  }
+
+  /**
+   * Sweep a run: the granules marked at the last collection become
+   * the used granules, and the mark bits are cleared.
+   *
+   * @param run The run
+   * @return The number of used granules in the run
+   */
+  private static int sweepRun(Address run) {
+    Address mark = getBitmapWordAddress(run, MARK_BITMAP_OFFSET);
+    Address used = getBitmapWordAddress(run, USED_BITMAP_OFFSET);
+    int count = 0;
+    for (int i = 0; i < WORDS_IN_RUN_BITMAP; i++) {
+      Word value = mark.loadWord();
+      used.store(value);
+      mark.store(Word.zero());
+      while (!value.isZero()) {
+        value = value.and(value.minus(Word.one()));
+        count++;
+      }
+      mark = mark.plus(BYTES_IN_WORD);
+      used = used.plus(BYTES_IN_WORD);
+    }
+    return count;
+  }
+
+  /**
+   * Find the start of the next free gap in a run.
+   *
+   * @param cursor The granule aligned address from which to search
+   * @param limit The end of the run
+   * @return The address of the first granule at or after
+   * <code>cursor</code> which is not used, or <code>limit</code>
+   */
+  public static Address nextFreeGranule(Address cursor, Address limit) {
+    while (cursor.LT(limit) && isUsed(cursor))
+      cursor = cursor.plus(BYTES_IN_GRANULE);
+    return cursor;
+  }
+
+  /**
+   * Find the end of a free gap in a run.
+   *
+   * @param cursor The granule aligned address from which to search
+   * @param limit The end of the run
+   * @return The address of the first granule at or after
+   * <code>cursor</code> which is used, or <code>limit</code>
+   */
+  public static Address nextUsedGranule(Address cursor, Address limit) {
+    while (cursor.LT(limit) && !isUsed(cursor))
+      cursor = cursor.plus(BYTES_IN_GRANULE);
+    return cursor;
+  }
+
+  /**
+   * @param address An address in the space
+   * @return The address rounded up to the next granule boundary
+   */
+  @Inline
+  public static Address alignToGranule(Address address) {
+    return address.plus(GRANULE_MASK.toInt()).toWord().and(GRANULE_MASK.not()).toAddress();
+  }
+
+  @Inline
+  private static boolean isUsed(Address granule) {
+    Address word = getBitmapWordAddress(granule, USED_BITMAP_OFFSET);
+    return !word.loadWord().and(getBitmapMask(granule)).isZero();
+  }
+
+  /****************************************************************************
+   *
+   * Chunk management
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * New chunks have their meta data cleared and are added to the
+   * list of chunks.  This is called with the page resource lock held.
+   */
+  @Override
+  public void growSpace(Address start, Extent bytes, boolean newChunk) {
+    super.growSpace(start, bytes, newChunk);
+    if (newChunk) {
+      Address chunk = start.toWord().and(CHUNK_MASK.not()).toAddress();
+      HeapLayout.mmapper.ensureMapped(chunk, META_DATA_PAGES);
+      VM.memory.zero(false, chunk, Extent.fromIntZeroExtend(META_DATA_BYTES));
+      chunk.store(headChunk, Offset.fromIntZeroExtend(NEXT_CHUNK_OFFSET));
+      if (!headChunk.isZero())
+        headChunk.store(chunk, Offset.fromIntZeroExtend(PREV_CHUNK_OFFSET));
+      headChunk = chunk;
+    }
+  }
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * Chunks are only released by {@link #prepare()}, so no allocator
+   * can be sweeping the chunk.
+   */
+  @Override
+  public int releaseDiscontiguousChunks(Address chunk) {
+    Address next = chunk.loadAddress(Offset.fromIntZeroExtend(NEXT_CHUNK_OFFSET));
+    Address prev = chunk.loadAddress(Offset.fromIntZeroExtend(PREV_CHUNK_OFFSET));
+    if (prev.isZero())
+      headChunk = next;
+    else
+      prev.store(next, Offset.fromIntZeroExtend(NEXT_CHUNK_OFFSET));
+    if (!next.isZero())
+      next.store(prev, Offset.fromIntZeroExtend(PREV_CHUNK_OFFSET));
+    return super.releaseDiscontiguousChunks(chunk);
+  }
+
+  /****************************************************************************
+   *
+   * Object processing and tracing
+   */
+
+  /**
+   * Trace a reference to an object.  If the object is not already
+   * marked, mark every granule it occupies, and enqueue it for
+   * subsequent processing.
+   *
+   * @param trace The trace being conducted.
+   * @param object The object to be traced.
+   * @return The object (there is no object forwarding in this
+   * space, so we always return the same object).
+   */
+  @Override
+  @Inline
+  public ObjectReference traceObject(TransitiveClosure trace, ObjectReference object) {
+    if (inCollection && testAndMark(object)) {
+      trace.processNode(object);
+    }
+    return object;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if this object is known to be live (i.e. it is marked)
+   */
+  @Override
+  @Inline
+  public boolean isLive(ObjectReference object) {
+    Address start = VM.objectModel.objectStartRef(object);
+    Address word = getBitmapWordAddress(start, MARK_BITMAP_OFFSET);
+    return !word.loadWord().and(getBitmapMask(start)).isZero();
+  }
+
+  /**
+   * Perform any required initialization of the GC portion of the header.
+   * Objects allocated during a collection are allocated marked.
+   *
+   * @param object the object ref to the storage to be initialized
+   */
+  @Inline
+  public void initializeHeader(ObjectReference object) {
+    if (HeaderByte.NEEDS_UNLOGGED_BIT) HeaderByte.markAsUnlogged(object);
+    if (inCollection) testAndMark(object);
+  }
+
+  /**
+   * Atomically set the mark bit of the first granule of an object and,
+   * if this thread set it, the mark bits of the rest of its granules.
+   *
+   * @param object The object to be marked
+   * @return {@code true} if this thread marked the object, {@code false}
+   * if it was already marked.
+   */
+  @Inline
+  private static boolean testAndMark(ObjectReference object) {
+    Address start = VM.objectModel.objectStartRef(object);
+    Address word = getBitmapWordAddress(start, MARK_BITMAP_OFFSET);
+    Word mask = getBitmapMask(start);
+    Word oldValue;
+    do {
+      oldValue = word.prepareWord();
+      if (!oldValue.and(mask).isZero()) return false;
+    } while (!word.attempt(oldValue, oldValue.or(mask)));
+
+    Address end = VM.objectModel.getObjectEndAddress(object);
+    for (Address granule = alignToGranule(start.plus(1)); granule.LT(end); granule = granule.plus(BYTES_IN_GRANULE)) {
+      word = getBitmapWordAddress(granule, MARK_BITMAP_OFFSET);
+      mask = getBitmapMask(granule);
+      do {
+        oldValue = word.prepareWord();
+      } while (!word.attempt(oldValue, oldValue.or(mask)));
+    }
+    return true;
+  }
+
+  /****************************************************************************
+   *
+   * Meta data
+   */
+
+  @Inline
+  private static Address getRun(Address chunk, int index) {
+    return chunk.plus(FIRST_RUN_OFFSET + (index << LOG_BYTES_IN_RUN));
+  }
+
+  @Inline
+  private static int getRunIndex(Address run) {
+    return (run.toWord().and(CHUNK_MASK).toInt() - FIRST_RUN_OFFSET) >> LOG_BYTES_IN_RUN;
+  }
+
+  @Inline
+  private static Address getRunStateAddress(Address run) {
+    Address chunk = run.toWord().and(CHUNK_MASK.not()).toAddress();
+    return chunk.plus(RUN_STATE_TABLE_OFFSET + (getRunIndex(run) << LOG_BYTES_IN_INT));
+  }
+
+  @Inline
+  private static Address getBitmapWordAddress(Address address, int bitmapOffset) {
+    Address chunk = address.toWord().and(CHUNK_MASK.not()).toAddress();
+    int granule = address.toWord().and(CHUNK_MASK).rshl(LOG_BYTES_IN_GRANULE).toInt();
+    return chunk.plus(bitmapOffset + ((granule >> LOG_BITS_IN_WORD) << LOG_BYTES_IN_WORD));
+  }
+
+  @Inline
+  private static Word getBitmapMask(Address address) {
+    int granule = address.toWord().and(CHUNK_MASK).rshl(LOG_BYTES_IN_GRANULE).toInt();
+    return Word.one().lsh(granule & (BITS_IN_WORD - 1));
+  }
+}
@@ -86,6 +86,13 @@ public abstract class SegregatedFreeListSpace extends Space {
   protected final AddressArray consumedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray flushedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray availableBlockHead = AddressArray.create(sizeClassCount());
+  protected final AddressArray unsweptBlockHead = AddressArray.create(sizeClassCount());
+
+  /* deferred (lazy) block sweeping, protected by <code>lock</code> */
+  private boolean sweepDeferred = false;
+  private boolean clearMarksOnDeferredSweep;
+  private boolean stopSweeping = false;
+  private int blocksBeingSwept = 0;
 
   private final int[] cellSize = new int[sizeClassCount()];
   private final byte[] blockSizeClass = new byte[sizeClassCount()];
@@ -198,6 +205,28 @@ public abstract class SegregatedFreeListSpace extends Space {
       consumedBlockHead.set(sizeClass, block);
     }
     lock.release();
+    if (sweepDeferred) {
+      /* Sweep blocks the last collection left unswept */
+      while (!(block = getUnsweptBlock(sizeClass)).isZero()) {
+        Address cell = Address.zero();
+        boolean liveBlock = sweepDeferredBlock(block, sizeClass);
+        if (liveBlock) {
+          cell = advanceToBlock(block, sizeClass);
+        }
+        lock.acquire();
+        blocksBeingSwept--;
+        if (liveBlock && cell.isZero()) {
+          /* Block was full */
+          BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
+          consumedBlockHead.set(sizeClass, block);
+        }
+        lock.release();
+        if (!cell.isZero()) {
+          freeList.set(sizeClass, cell);
+          return block;
+        }
+      }
+    }
     return expandSizeClass(sizeClass, freeList);
   }
 
@@ -573,6 +602,140 @@ public abstract class SegregatedFreeListSpace extends Space {
     }
   }
 
+  /****************************************************************************
+   *
+   * Deferred block sweeping
+   */
+
+  /**
+   * Defer the sweep of the blocks consumed or flushed during this
+   * collection.  Rather than sweeping every block in the pause, each
+   * block is swept by the allocator that takes it, or by the
+   * background sweeper (see {@link ConcurrentSweepingContext}) if that
+   * gets there first.  Whatever is left is swept when the next
+   * collection starts (see {@link #finishDeferredSweep()}).
+   *
+   * @param clearMarks should we clear block mark bits as we process.
+   */
+  protected final void deferBlockSweep(boolean clearMarks) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!sweepDeferred);
+    /* Flushed blocks stay where they are, consumed blocks become unswept */
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      unsweptBlockHead.set(sizeClass, consumedBlockHead.get(sizeClass));
+      consumedBlockHead.set(sizeClass, Address.zero());
+    }
+    clearMarksOnDeferredSweep = clearMarks;
+    stopSweeping = false;
+    sweepDeferred = true;
+    ConcurrentSweepingContext.trigger(this);
+  }
+
+  /**
+   * Finish a deferred sweep.  This must happen before the next
+   * collection marks anything, so the background sweeper is stopped and
+   * the blocks it did not reach are swept here.
+   */
+  protected final void finishDeferredSweep() {
+    if (!sweepDeferred) return;
+    lock.acquire();
+    stopSweeping = true;
+    while (blocksBeingSwept > 0) {
+      lock.release();
+      lock.acquire();
+    }
+    lock.release();
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+      Address availableHead = availableBlockHead.get(sizeClass);
+      /* Flushed blocks */
+      Address block = flushedBlockHead.get(sizeClass);
+      flushedBlockHead.set(sizeClass, Address.zero());
+      while (!block.isZero()) {
+        Address next = BlockAllocator.getNext(block);
+        availableHead = sweepBlock(block, sizeClass, blockSize, availableHead, clearMarksOnDeferredSweep);
+        block = next;
+      }
+      /* Unswept blocks */
+      block = unsweptBlockHead.get(sizeClass);
+      unsweptBlockHead.set(sizeClass, Address.zero());
+      while (!block.isZero()) {
+        Address next = BlockAllocator.getNext(block);
+        availableHead = sweepBlock(block, sizeClass, blockSize, availableHead, clearMarksOnDeferredSweep);
+        block = next;
+      }
+      availableBlockHead.set(sizeClass, availableHead);
+    }
+    sweepDeferred = false;
+  }
+
+  /**
+   * Sweep deferred blocks in the background, making the live ones
+   * available to the allocators.  Called by the
+   * {@link ConcurrentSweepingContext}.
+   */
+  public void concurrentSweep() {
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Address block;
+      while (!(block = getUnsweptBlock(sizeClass)).isZero()) {
+        boolean liveBlock = sweepDeferredBlock(block, sizeClass);
+        lock.acquire();
+        blocksBeingSwept--;
+        if (liveBlock) {
+          BlockAllocator.setNext(block, availableBlockHead.get(sizeClass));
+          availableBlockHead.set(sizeClass, block);
+        }
+        lock.release();
+      }
+    }
+  }
+
+  /**
+   * Take a block whose sweep was deferred.  The caller must decrement
+   * <code>blocksBeingSwept</code> once it has dealt with the block.
+   *
+   * @param sizeClass The size class of the block to sweep.
+   * @return The block or zero if no blocks remain to be swept.
+   */
+  private Address getUnsweptBlock(int sizeClass) {
+    lock.acquire();
+    Address block = Address.zero();
+    if (!stopSweeping) {
+      block = flushedBlockHead.get(sizeClass);
+      if (!block.isZero()) {
+        flushedBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+      } else {
+        block = unsweptBlockHead.get(sizeClass);
+        if (!block.isZero())
+          unsweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+      }
+      if (!block.isZero())
+        blocksBeingSwept++;
+    }
+    lock.release();
+    if (!block.isZero())
+      BlockAllocator.setNext(block, Address.zero());
+    return block;
+  }
+
+  /**
+   * Sweep a block whose sweep was deferred, freeing it if it contains
+   * no live cells.
+   *
+   * @param block the block's address
+   * @param sizeClass the block's size class
+   * @return {@code true} if the block contains live cells
+   */
+  private boolean sweepDeferredBlock(Address block, int sizeClass) {
+    Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    boolean liveBlock = containsLiveCell(block, blockSize, clearMarksOnDeferredSweep);
+    if (!liveBlock) {
+      BlockAllocator.free(this, block);
+    } else if (!LAZY_SWEEP) {
+      setFreeList(block, makeFreeList(block, sizeClass));
+    }
+    return liveBlock;
+  }
+
   /**
    * Does this block contain any live cells.
    *
@@ -408,6 +408,13 @@ public abstract class Space {
     pr.triggerConcurrentZeroing();
   }
 
+  /**
+   * The entry point for the concurrent zeroing context.
+   */
+  public void concurrentZeroing() {
+    pr.concurrentZeroing();
+  }
+
   /**
    * Acquire a number of pages from the page resource, returning
    * either the address of the first page, or zero on failure.<p>
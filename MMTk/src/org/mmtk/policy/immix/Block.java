@@ -13,6 +13,7 @@
 package org.mmtk.policy.immix;
 
 import static org.mmtk.policy.immix.ImmixConstants.*;
+import static org.mmtk.utility.Constants.LOG_BYTES_IN_INT;
 import static org.mmtk.utility.Constants.LOG_BYTES_IN_SHORT;
 
 import org.mmtk.vm.VM;
@@ -205,6 +206,114 @@ public class Block  {
     defragStateBase.store(defragState, csOffset);
   }
 
+  /****************************************************************************
+   * Block evacuation state
+   */
+
+  /**
+   * The evacuation state of a block is zero unless the block was selected
+   * for evacuation by the mixed collections of a generational plan.  A
+   * candidate block is selected at one full heap collection, has the
+   * objects referring to it remembered at the next, and is then given the
+   * number of the nursery collection (round) that will evacuate it.  A
+   * block that must be retained because it holds a pinned object has its
+   * round negated.
+   *
+   * @param address the block's address
+   * @return the evacuation state of the block
+   */
+  static short getEvacuationState(Address address) {
+    return getEvacuationStateAddress(address).loadShort();
+  }
+
+  static void setEvacuationState(Address address, short state) {
+    getEvacuationStateAddress(address).store(state);
+  }
+
+  static void clearEvacuationState(Address address) {
+    getEvacuationStateAddress(address).store((short) 0);
+  }
+
+  /**
+   * @param address the block's address
+   * @return whether the block is either a candidate for, or awaiting, evacuation
+   */
+  static boolean isEvacuationCandidate(Address address) {
+    return getEvacuationStateAddress(address).loadShort() != 0;
+  }
+
+  /**
+   * @param address the block's address
+   * @return whether the block has been given a round of evacuation, in
+   * which case it must not be used for allocation
+   */
+  public static boolean isAwaitingEvacuation(Address address) {
+    return getEvacuationStateAddress(address).loadShort() > 0;
+  }
+
+  private static Address getEvacuationStateAddress(Address address) {
+    Address chunk = Chunk.align(address);
+    int index = getChunkIndex(address);
+    Address rtn = chunk.plus(Chunk.BLOCK_EVACUATION_STATE_TABLE_OFFSET).plus(index << LOG_BYTES_IN_BLOCK_EVACUATION_STATE_ENTRY);
+    if (VM.VERIFY_ASSERTIONS) {
+      boolean valid = rtn.GE(chunk.plus(Chunk.BLOCK_EVACUATION_STATE_TABLE_OFFSET)) && rtn.LT(chunk.plus(Chunk.BLOCK_EVACUATION_STATE_TABLE_OFFSET + BLOCK_EVACUATION_STATE_TABLE_BYTES));
+      VM.assertions._assert(valid);
+    }
+    return rtn;
+  }
+
+  /****************************************************************************
+   * Block zeroing state
+   */
+
+  /**
+   * Claim a block so that the free lines can be zeroed in the background.
+   * This fails if an allocator or another thread has already claimed it.
+   *
+   * @param address the block's address
+   * @return whether the block was claimed
+   */
+  static boolean attemptToZero(Address address) {
+    Address cursor = getZeroingStateAddress(address);
+    return cursor.prepareInt() == LINES_NOT_ZEROED && cursor.attempt(LINES_NOT_ZEROED, LINES_BEING_ZEROED);
+  }
+
+  static void setLinesZeroed(Address address) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(getZeroingStateAddress(address).loadInt() == LINES_BEING_ZEROED);
+    getZeroingStateAddress(address).store(LINES_ZEROED);
+  }
+
+  static void clearZeroingState(Address address) {
+    getZeroingStateAddress(address).store(LINES_NOT_ZEROED);
+  }
+
+  /**
+   * Claim a block for allocation, waiting for any zeroing of its free
+   * lines that is in progress to complete.
+   *
+   * @param address the block's address
+   * @return whether the free lines of the block have been zeroed
+   */
+  static boolean claimForAllocation(Address address) {
+    Address cursor = getZeroingStateAddress(address);
+    int state;
+    do {
+      state = cursor.prepareInt();
+    } while (state == LINES_BEING_ZEROED || !cursor.attempt(state, LINES_CLAIMED));
+    return state == LINES_ZEROED;
+  }
+
+  private static Address getZeroingStateAddress(Address address) {
+    Address chunk = Chunk.align(address);
+    int index = getChunkIndex(address);
+    Address rtn = chunk.plus(Chunk.BLOCK_ZEROING_STATE_TABLE_OFFSET).plus(index << LOG_BYTES_IN_BLOCK_ZEROING_STATE_ENTRY);
+    if (VM.VERIFY_ASSERTIONS) {
+      boolean valid = rtn.GE(chunk.plus(Chunk.BLOCK_ZEROING_STATE_TABLE_OFFSET)) && rtn.LT(chunk.plus(Chunk.BLOCK_ZEROING_STATE_TABLE_OFFSET + BLOCK_ZEROING_STATE_TABLE_BYTES));
+      VM.assertions._assert(valid);
+    }
+    return rtn;
+  }
+
   private static final short UNALLOCATED_BLOCK_STATE = 0;
   private static final short UNMARKED_BLOCK_STATE = (short) (MAX_BLOCK_MARK_STATE + 1);
   private static final short REUSED_BLOCK_STATE = (short) (MAX_BLOCK_MARK_STATE + 2);
@@ -222,4 +331,17 @@ public class Block  {
   static final int BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY = 1 << LOG_BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY;
 
   static final int BLOCK_DEFRAG_STATE_TABLE_BYTES = BLOCKS_IN_CHUNK << LOG_BYTES_IN_BLOCK_DEFRAG_STATE_ENTRY;
+
+  /* per-block evacuation state */
+  static final short EVACUATION_CANDIDATE = Short.MIN_VALUE;
+  static final int LOG_BYTES_IN_BLOCK_EVACUATION_STATE_ENTRY = LOG_BYTES_IN_SHORT;
+  static final int BLOCK_EVACUATION_STATE_TABLE_BYTES = BLOCKS_IN_CHUNK << LOG_BYTES_IN_BLOCK_EVACUATION_STATE_ENTRY;
+
+  /* per-block zeroing state, an int so that it can be claimed atomically */
+  private static final int LINES_NOT_ZEROED = 0;
+  private static final int LINES_BEING_ZEROED = 1;
+  private static final int LINES_ZEROED = 2;
+  private static final int LINES_CLAIMED = 3;
+  static final int LOG_BYTES_IN_BLOCK_ZEROING_STATE_ENTRY = LOG_BYTES_IN_INT;
+  static final int BLOCK_ZEROING_STATE_TABLE_BYTES = BLOCKS_IN_CHUNK << LOG_BYTES_IN_BLOCK_ZEROING_STATE_ENTRY;
 }
@@ -56,6 +56,7 @@ public class Chunk {
       if (block.GT(end)) break;
       final boolean defragSource = space.inImmixDefragCollection() && Block.isDefragSource(block);
       short marked = Block.sweepOneBlock(block, markHistogram, markValue, resetMarks);
+      Block.clearZeroingState(block);
       if (marked == 0) {
         if (!Block.isUnusedState(cursor)) {
           space.release(block);
@@ -154,7 +155,9 @@ public class Chunk {
   static final int LINE_MARK_TABLE_OFFSET = 0;
   static final int BLOCK_STATE_TABLE_OFFSET = LINE_MARK_TABLE_OFFSET + Line.LINE_MARK_TABLE_BYTES;
   static final int BLOCK_DEFRAG_STATE_TABLE_OFFSET = BLOCK_STATE_TABLE_OFFSET + Block.BLOCK_STATE_TABLE_BYTES;
-  static final int HIGHWATER_OFFSET = BLOCK_DEFRAG_STATE_TABLE_OFFSET + Block.BLOCK_DEFRAG_STATE_TABLE_BYTES;
+  static final int BLOCK_EVACUATION_STATE_TABLE_OFFSET = BLOCK_DEFRAG_STATE_TABLE_OFFSET + Block.BLOCK_DEFRAG_STATE_TABLE_BYTES;
+  static final int BLOCK_ZEROING_STATE_TABLE_OFFSET = BLOCK_EVACUATION_STATE_TABLE_OFFSET + Block.BLOCK_EVACUATION_STATE_TABLE_BYTES;
+  static final int HIGHWATER_OFFSET = BLOCK_ZEROING_STATE_TABLE_OFFSET + Block.BLOCK_ZEROING_STATE_TABLE_BYTES;
   static final int MAP_OFFSET = HIGHWATER_OFFSET + HIGHWATER_BYTES;
   static final int METADATA_BYTES_PER_CHUNK = MAP_OFFSET + MAP_BYTES;
 
@@ -106,6 +106,33 @@ public final class CollectorLocal {
     sweepAllBlocks(majorGC);
   }
 
+  /**
+   * Finish up after a mixed collection.
+   *
+   * We help release the blocks it evacuated in parallel.  A block that
+   * turned out to hold a pinned object is kept, and is no longer subject
+   * to evacuation.
+   */
+  public void releaseEvacuatedBlocks() {
+    int stride = VM.activePlan.collector().parallelWorkerCount();
+    int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
+    final short round = immixSpace.getEvacuationRound();
+    Address chunk = chunkMap.firstChunk(ordinal, stride);
+    while (!chunk.isZero()) {
+      Address end = Chunk.getHighWater(chunk);
+      for (int index = Chunk.FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+        Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+        if (block.GT(end)) break;
+        short state = Block.getEvacuationState(block);
+        if (state == round)
+          immixSpace.release(block);
+        else if (state == -round)
+          Block.clearEvacuationState(block);
+      }
+      chunk = chunkMap.nextChunk(chunk, ordinal, stride);
+    }
+  }
+
   private void sweepAllBlocks(boolean majorGC) {
     int stride = VM.activePlan.collector().parallelWorkerCount();
     int ordinal = VM.activePlan.collector().parallelWorkerOrdinal();
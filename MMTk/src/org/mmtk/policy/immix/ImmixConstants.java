@@ -42,6 +42,7 @@ public class ImmixConstants {
   public static final float DEFAULT_DEFRAG_HEADROOM_FRACTION = (float) 0.020;
   public static final int DEFAULT_DEFRAG_FREE_HEADROOM = 0; // number of pages.  This should only deviate from zero for analytical purposes.  Otherwise the defragmenter is cheating!
   public static final float DEFAULT_DEFRAG_FREE_HEADROOM_FRACTION = (float) 0.0;
+  public static final int DEFAULT_MIXED_EVACUATION_BUDGET = 0; // number of pages.  Zero disables mixed collections.
   /* sizes etc */
   static final int LOG_BYTES_IN_BLOCK = (LOG_BYTES_IN_PAGE > 15 ? LOG_BYTES_IN_PAGE : 15);
   public static final int BYTES_IN_BLOCK = 1 << LOG_BYTES_IN_BLOCK;
@@ -69,6 +70,11 @@ public class ImmixConstants {
   public static final short SPILL_HISTOGRAM_BUCKETS = (short) (MAX_CONSV_SPILL_COUNT + 1);
   public static final short MARK_HISTOGRAM_BUCKETS = (short) (LINES_IN_BLOCK + 1);
 
+  /* the number of nursery collections over which blocks selected at a full heap collection are evacuated */
+  static final int MAX_EVACUATION_ROUNDS = 8;
+  /* only blocks with at most this many live lines are selected for evacuation by mixed collections */
+  static final short MAX_EVACUATION_CANDIDATE_LINES = (short) (LINES_IN_BLOCK / 4);
+
   public static final Word RECYCLE_ALLOC_CHUNK_MASK = Word.fromIntZeroExtend(BYTES_IN_RECYCLE_ALLOC_CHUNK - 1);
   protected static final Word CHUNK_MASK = Word.fromIntZeroExtend(BYTES_IN_CHUNK - 1);
   public static final Word BLOCK_MASK = Word.fromIntZeroExtend(BYTES_IN_BLOCK - 1);
@@ -20,8 +20,12 @@ import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.heap.*;
 import org.mmtk.utility.options.LineReuseRatio;
+import org.mmtk.utility.options.LineZeroing;
+import org.mmtk.utility.options.MixedEvacuationBudget;
+import org.mmtk.utility.options.MixedEvacuationStress;
 import org.mmtk.utility.options.Options;
 import org.mmtk.utility.Conversions;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.utility.ForwardingWord;
 import org.mmtk.utility.HeaderByte;
 import org.mmtk.utility.Log;
@@ -67,6 +71,7 @@ public final class ImmixSpace extends Space {
           byte lineMarkState = RESET_LINE_MARK_STATE;
   private byte lineUnavailState = RESET_LINE_MARK_STATE;
   private boolean inCollection;
+  private boolean isAllocAsMarked = false;
   private int linesConsumed = 0;
 
   private final Lock mutatorLock = VM.newLock(getName() + "mutator");
@@ -79,6 +84,17 @@ public final class ImmixSpace extends Space {
   private final ChunkList chunkMap = new ChunkList();
   private final Defrag defrag;
 
+  private final int[] evacuationHistogram = new int[MARK_HISTOGRAM_BUCKETS];
+  private boolean hasEvacuationCandidates = false;
+  private boolean inEvacuationRound = false;
+  private short evacuationRound = 0;
+  private short lastEvacuationRound = 0;
+
+  private boolean zeroLinesNT = false;
+  private boolean zeroLinesConcurrently = false;
+  /** Set while a collection needs the background zeroing of lines to stay stopped */
+  private volatile boolean stopZeroing = false;
+
   /****************************************************************************
    *
    * Initialization
@@ -86,6 +102,9 @@ public final class ImmixSpace extends Space {
 
   static {
     Options.lineReuseRatio = new LineReuseRatio();
+    Options.lineZeroing = new LineZeroing();
+    Options.mixedEvacuationBudget = new MixedEvacuationBudget();
+    Options.mixedEvacuationStress = new MixedEvacuationStress();
     reusableMarkStateThreshold = (short) (Options.lineReuseRatio.getValue() * MAX_BLOCK_MARK_STATE);
   }
 
@@ -124,6 +143,15 @@ public final class ImmixSpace extends Space {
     defrag.prepareHistograms();
   }
 
+  /**
+   * Mark objects that are allocated while the space is being collected,
+   * for collectors that trace concurrently with the mutators.  Such
+   * collectors must never defragment the space.
+   */
+  public void makeAllocAsMarked() {
+    isAllocAsMarked = true;
+  }
+
   /****************************************************************************
    *
    * Global prepare and release
@@ -135,6 +163,7 @@ public final class ImmixSpace extends Space {
    * @param majorGC whether the collection will be a full heap collection
    */
   public void prepare(boolean majorGC) {
+    stopConcurrentZeroing();
     if (majorGC) {
       markState = ObjectHeader.deltaMarkState(markState, true);
         lineMarkState++;
@@ -177,6 +206,7 @@ public final class ImmixSpace extends Space {
     Defrag.defragReusableMarkStateThreshold = (short) (Options.defragLineReuseRatio.getValue() * MAX_BLOCK_MARK_STATE);
 
     linesConsumed = 0;
+    startConcurrentZeroing();
     return didDefrag;
   }
 
@@ -351,6 +381,8 @@ public final class ImmixSpace extends Space {
   public void release(Address block) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isAligned(block));
     Block.setBlockAsUnallocated(block);
+    Block.clearEvacuationState(block);
+    Block.clearZeroingState(block);
     ((FreeListPageResource) pr).releasePages(block);
   }
 
@@ -379,12 +411,32 @@ public final class ImmixSpace extends Space {
   */
   @Inline
   public void postAlloc(ObjectReference object, int bytes) {
+    if (isAllocAsMarked && inCollection) {
+      postAllocMarked(object, bytes);
+      return;
+    }
     if (bytes > BYTES_IN_LINE)
       ObjectHeader.markAsStraddling(object);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!ForwardingWord.isForwardedOrBeingForwarded(object));
   }
 
+ /**
+  * Initialize an object that is allocated while the space is being
+  * marked concurrently.  Both the object and its lines are marked live,
+  * since the trace may already have passed the objects that will refer
+  * to it.
+  *
+  * @param object the object ref to the storage to be initialized
+  * @param bytes size of the allocated object in bytes
+  */
+  @NoInline
+  private void postAllocMarked(ObjectReference object, int bytes) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
+    ObjectHeader.writeMarkState(object, markState, bytes > BYTES_IN_LINE);
+    markLines(object);
+  }
+
  /**
   * Perform any required post copy (i.e. in-GC allocation) initialization.
   * This is relevant (for example) when Squish is used as the mature space in
@@ -695,6 +747,370 @@ public final class ImmixSpace extends Space {
     return usableLines;
   }
 
+  /****************************************************************************
+   *
+   * Mixed evacuation
+   */
+
+  /**
+   * Choose the blocks to be evacuated by the nursery collections that
+   * follow a full heap collection.  Blocks chosen as candidates at the
+   * previous full heap collection have had the objects that refer to them
+   * remembered during this one, so they are shared out, in address order,
+   * among rounds that each evacuate at most the budgeted number of live
+   * lines.  The sparsest remaining blocks become the candidates for the
+   * next full heap collection, or, under the
+   * <code>mixedEvacuationStress</code> option, all of them do.  This must
+   * be called once the space has been swept.
+   *
+   * @param sourcesRemembered Whether this collection remembered the objects
+   * that refer to candidate blocks
+   */
+  public void selectEvacuationSet(boolean sourcesRemembered) {
+    int budget = Options.mixedEvacuationBudget.getPages() << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_LINE);
+    if (budget == 0 && !hasEvacuationCandidates) return;
+    boolean stress = Options.mixedEvacuationStress.getValue();
+
+    for (int i = 0; i < MARK_HISTOGRAM_BUCKETS; i++) evacuationHistogram[i] = 0;
+    short round = 0;
+    int roundLines = budget;
+    Address chunk = chunkMap.firstChunk(0, 1);
+    while (!chunk.isZero()) {
+      Address end = Chunk.getHighWater(chunk);
+      for (int index = Chunk.FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+        Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+        if (block.GT(end)) break;
+        short live = Block.getBlockMarkState(block);
+        if (live == 0 || live > MAX_BLOCK_MARK_STATE) continue; // free, or acquired since the sweep
+        if (sourcesRemembered && budget > 0 && (live <= MAX_EVACUATION_CANDIDATE_LINES || (stress && live <= budget)) &&
+            Block.isEvacuationCandidate(block)) {
+          if (roundLines + live > budget) {
+            if (round == MAX_EVACUATION_ROUNDS) {
+              Block.clearEvacuationState(block);
+              continue;
+            }
+            round++;
+            roundLines = 0;
+          }
+          roundLines += live;
+          Block.setEvacuationState(block, round);
+        } else {
+          Block.clearEvacuationState(block);
+          if (live <= MAX_EVACUATION_CANDIDATE_LINES) evacuationHistogram[live]++;
+        }
+      }
+      chunk = chunkMap.nextChunk(chunk, 0, 1);
+    }
+
+    /* take the sparsest blocks, up to the number of lines the rounds could evacuate */
+    int capacity = MAX_EVACUATION_ROUNDS * budget;
+    int lines = 0;
+    short threshold = 0;
+    for (short live = 1; live <= MAX_EVACUATION_CANDIDATE_LINES; live++) {
+      lines += live * evacuationHistogram[live];
+      if (lines > capacity) break;
+      threshold = live;
+    }
+    if (stress && budget > 0) threshold = MAX_BLOCK_MARK_STATE;
+    if (threshold > 0) {
+      chunk = chunkMap.firstChunk(0, 1);
+      while (!chunk.isZero()) {
+        Address end = Chunk.getHighWater(chunk);
+        for (int index = Chunk.FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK; index++) {
+          Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+          if (block.GT(end)) break;
+          short live = Block.getBlockMarkState(block);
+          if (live > 0 && live <= threshold && !Block.isEvacuationCandidate(block))
+            Block.setEvacuationState(block, Block.EVACUATION_CANDIDATE);
+        }
+        chunk = chunkMap.nextChunk(chunk, 0, 1);
+      }
+    }
+
+    evacuationRound = 0;
+    lastEvacuationRound = round;
+    hasEvacuationCandidates = round > 0 || threshold > 0;
+    if (Options.verbose.getValue() >= 3) {
+      Log.write("[Mixed evacuation: ");
+      Log.write(round);
+      Log.write(" rounds, candidates <= ");
+      Log.write(threshold);
+      Log.writeln(" lines]");
+    }
+  }
+
+  /**
+   * Begin a nursery collection that also evacuates the next round of
+   * blocks chosen by {@link #selectEvacuationSet(boolean)}.
+   */
+  public void startEvacuationRound() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(evacuationPending() && !inCollection);
+    stopConcurrentZeroing();
+    evacuationRound++;
+    inEvacuationRound = true;
+    chunkMap.reset();
+  }
+
+  /**
+   * A mixed collection has completed, and the blocks it evacuated have
+   * been released.
+   */
+  public void finishEvacuationRound() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(inEvacuationRound);
+    inEvacuationRound = false;
+    if (evacuationRound == lastEvacuationRound) {
+      evacuationRound = 0;
+      lastEvacuationRound = 0;
+    }
+    startConcurrentZeroing();
+  }
+
+  /**
+   * @return {@code true} if blocks remain to be evacuated by nursery collections
+   */
+  @Inline
+  public boolean evacuationPending() {
+    return evacuationRound < lastEvacuationRound;
+  }
+
+  /**
+   * @return {@code true} if the current collection is evacuating a round of blocks
+   */
+  @Inline
+  public boolean inEvacuationRound() {
+    return inEvacuationRound;
+  }
+
+  /**
+   * @return {@code true} if a full heap trace must remember the objects that
+   * refer to blocks selected for evacuation
+   */
+  @Inline
+  public boolean hasEvacuationCandidates() {
+    return hasEvacuationCandidates;
+  }
+
+  /**
+   * @return The round of mixed evacuation currently (or last) under way
+   */
+  public short getEvacuationRound() {
+    return evacuationRound;
+  }
+
+  /**
+   * Return the number of pages that must be reserved to evacuate the
+   * next round of blocks, so this can be included in a collection reserve.
+   *
+   * @return The number of pages.
+   */
+  public int evacuationReservePages() {
+    return evacuationPending() ? Options.mixedEvacuationBudget.getPages() : 0;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object lies in a block that is either a
+   * candidate for, or awaiting, evacuation
+   */
+  @Inline
+  public boolean inEvacuationCandidate(ObjectReference object) {
+    return Block.isEvacuationCandidate(VM.objectModel.refToAddress(object));
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object lies in a block to be evacuated by
+   * a later round than the current one
+   */
+  @Inline
+  public boolean isAwaitingEvacuation(ObjectReference object) {
+    return Block.getEvacuationState(VM.objectModel.refToAddress(object)) > evacuationRound;
+  }
+
+  /**
+   * @param object The object in question
+   * @return {@code true} if the object lies in a block being evacuated by
+   * the current round
+   */
+  @Inline
+  public boolean isEvacuating(ObjectReference object) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(inEvacuationRound);
+    short state = Block.getEvacuationState(VM.objectModel.refToAddress(object));
+    return state == evacuationRound || state == -evacuationRound;
+  }
+
+  /**
+   * Trace a reference to an object in a block being evacuated by a mixed
+   * collection.  The first thread to reach the object copies it and
+   * enqueues the copy.  A pinned object stays where it is, the release
+   * of its block is cancelled, and the object is recorded as reached by
+   * this round until {@link #clearPinnedInPlace} is called on it.
+   *
+   * @param trace The trace performing the transitive closure
+   * @param object The object to be traced.
+   * @param allocator The allocator to which the object should be copied
+   * @param pinned The pinned objects left in place by this round, to which
+   * the object is added if it is pinned and this is the first time it is
+   * reached
+   * @return The forwarded object, or the object itself if it is pinned.
+   */
+  @Inline
+  public ObjectReference traceEvacuatingObject(TransitiveClosure trace, ObjectReference object, int allocator,
+                                               ObjectReferenceDeque pinned) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isEvacuating(object));
+    Word priorStatusWord = ForwardingWord.attemptToForward(object);
+    if (ForwardingWord.stateIsForwardedOrBeingForwarded(priorStatusWord))
+      return ForwardingWord.spinAndGetForwardedObject(object, priorStatusWord);
+
+    if (ObjectHeader.isPinnedObject(object)) {
+      ObjectHeader.markPinnedInPlace(object, (byte) (priorStatusWord.toInt() & 0xFF));
+      Block.setEvacuationState(VM.objectModel.refToAddress(object), (short) -evacuationRound);
+      pinned.push(object);
+      return object;
+    }
+    ObjectReference newObject = ForwardingWord.forwardObject(object, allocator);
+    trace.processNode(newObject);
+    return newObject;
+  }
+
+  /**
+   * Forget that the current round of mixed evacuation reached a pinned
+   * object, once reference processing is over.
+   *
+   * @param object An object recorded by {@link #traceEvacuatingObject}
+   */
+  @Inline
+  public void clearPinnedInPlace(ObjectReference object) {
+    ObjectHeader.clearPinnedInPlace(object);
+  }
+
+  /**
+   * Test the liveness of an object in a block being evacuated by a mixed
+   * collection.  The object is live only if this round reached it, that is
+   * if it has been (or is being) copied, or if it is pinned and was left in
+   * place.  Its mark state says nothing about this round: the blocks of a
+   * round are released at its end, so an object this round has not reached
+   * is gone, even if it was live at the last full heap collection.
+   *
+   * @param object The object in question
+   * @return {@code true} if the object has been forwarded, or is pinned and
+   * was reached by this round
+   */
+  @Inline
+  public boolean evacuatingIsLive(ObjectReference object) {
+    return ForwardingWord.isForwardedOrBeingForwarded(object);
+  }
+
+  /****************************************************************************
+   *
+   * Line zeroing
+   */
+
+  /**
+   * {@inheritDoc}<p>
+   *
+   * The zeroing approach applies to the free lines of recyclable blocks.
+   * Clean blocks are zeroed by the page resource, which may use
+   * non-temporal instructions but does not zero them concurrently.
+   */
+  @Override
+  @Interruptible
+  public void setZeroingApproach(boolean useNT, boolean concurrent) {
+    super.setZeroingApproach(useNT, false);
+    zeroLinesNT = useNT;
+    zeroLinesConcurrently = concurrent;
+    if (concurrent)
+      ConcurrentZeroingContext.register(this);
+  }
+
+  /**
+   * Zero the free lines of recyclable blocks in the background, ahead of
+   * the allocators.  Each block is claimed before its lines are zeroed,
+   * so an allocator that acquires the block either waits for the zeroing
+   * to finish or zeroes the lines itself.  A collection that is about to
+   * sweep the space or release blocks stops the zeroing first (see
+   * {@link #stopConcurrentZeroing()}).
+   */
+  @Override
+  public void concurrentZeroing() {
+    Address chunk = stopZeroing ? Address.zero() : chunkMap.firstChunk(0, 1);
+    while (!chunk.isZero()) {
+      Address end = Chunk.getHighWater(chunk);
+      for (int index = Chunk.FIRST_USABLE_BLOCK_INDEX; index < BLOCKS_IN_CHUNK && !stopZeroing; index++) {
+        Address block = chunk.plus(index << LOG_BYTES_IN_BLOCK);
+        if (block.GT(end)) break;
+        short markState = Block.getBlockMarkState(block);
+        if (markState > 0 && markState <= reusableMarkStateThreshold &&
+            !Block.isAwaitingEvacuation(block) && Block.attemptToZero(block)) {
+          zeroFreeLines(block);
+          Block.setLinesZeroed(block);
+        }
+      }
+      chunk = stopZeroing ? Address.zero() : chunkMap.nextChunk(chunk, 0, 1);
+    }
+  }
+
+  /**
+   * Zero each run of free lines in a block, exactly as an allocator
+   * recycling the block would.
+   *
+   * @param block The block
+   */
+  private void zeroFreeLines(Address block) {
+    Address markTable = Line.getBlockMarkTable(block);
+    int line = 0;
+    while (line < LINES_IN_BLOCK) {
+      line = getNextAvailableLine(markTable, line);
+      if (line < LINES_IN_BLOCK) {
+        int endLine = getNextUnavailableLine(markTable, line);
+        Extent bytes = Extent.fromIntZeroExtend((endLine - line) << LOG_BYTES_IN_LINE);
+        VM.memory.zero(zeroLinesNT, block.plus(line << LOG_BYTES_IN_LINE), bytes);
+        ConcurrentZeroingContext.zeroedAhead.inc(bytes.toInt());
+        line = endLine;
+      }
+    }
+  }
+
+  /**
+   * Stop the background zeroing of lines, and wait until the zeroing
+   * thread is no longer looking at the space.
+   */
+  private void stopConcurrentZeroing() {
+    if (!zeroLinesConcurrently) return;
+    stopZeroing = true;
+    ConcurrentZeroingContext.awaitStopped(this);
+  }
+
+  /**
+   * (Re)start the background zeroing of lines.
+   */
+  private void startConcurrentZeroing() {
+    if (!zeroLinesConcurrently) return;
+    stopZeroing = false;
+    ConcurrentZeroingContext.trigger(this);
+  }
+
+  /**
+   * Claim a recyclable block for allocation.
+   *
+   * @param block The block
+   * @return {@code true} if the free lines of the block have already been
+   * zeroed
+   */
+  @Inline
+  public boolean claimRecyclableBlock(Address block) {
+    return zeroLinesConcurrently && Block.claimForAllocation(block);
+  }
+
+  /**
+   * @return {@code true} if allocators should use non-temporal
+   * instructions to zero lines
+   */
+  @Inline
+  public boolean zeroLinesNonTemporal() {
+    return zeroLinesNT;
+  }
+
   /****************************************************************************
    *
    * Object state
@@ -750,6 +1166,12 @@ public final class ImmixSpace extends Space {
     return ObjectHeader.isMatureObject(object);
   }
 
+  @Inline
+  public boolean willNotMoveThisMixedGC(ObjectReference object) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(getSpaceForObject(object) == this && isEvacuating(object));
+    return ObjectHeader.isPinnedObject(object);
+  }
+
   @Inline
   private boolean isDefragSource(ObjectReference object) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(getSpaceForObject(object) == this);
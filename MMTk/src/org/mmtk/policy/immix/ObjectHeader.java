@@ -39,6 +39,14 @@ public class ObjectHeader {
   public static final int PINNED_BIT_NUMBER = ForwardingWord.FORWARDING_BITS;
   public static final byte PINNED_BIT = 1 << PINNED_BIT_NUMBER;
 
+  /**
+   * The forwarding bits of a pinned object that a round of mixed evacuation
+   * reached and left in place.  {@link ForwardingWord} does not use this
+   * pattern: it reads as forwarded or being forwarded, and as forwarded to
+   * the object itself.
+   */
+  private static final byte PINNED_IN_PLACE = 1; // ...01
+
   private static final int STRADDLE_BIT_NUMBER = PINNED_BIT_NUMBER + 1;
   public static final byte STRADDLE_BIT = 1 << STRADDLE_BIT_NUMBER;
 
@@ -141,6 +149,30 @@ public class ObjectHeader {
     return (VM.objectModel.readAvailableByte(object) & PINNED_BIT) == PINNED_BIT;
   }
 
+  /**
+   * Record that a round of mixed evacuation reached a pinned object and
+   * left it in place.  The caller must have claimed the object with
+   * {@link ForwardingWord#attemptToForward}.
+   *
+   * @param object The object
+   * @param status The GC byte of the object before it was claimed
+   */
+  static void markPinnedInPlace(ObjectReference object, byte status) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert((status & ForwardingWord.FORWARDING_MASK) == 0);
+    returnToPriorStateAndEnsureUnlogged(object, (byte) (status | PINNED_IN_PLACE));
+  }
+
+  /**
+   * Forget that a round of mixed evacuation left a pinned object in place.
+   *
+   * @param object The object
+   */
+  static void clearPinnedInPlace(ObjectReference object) {
+    byte oldValue = VM.objectModel.readAvailableByte(object);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert((oldValue & ForwardingWord.FORWARDING_MASK) == PINNED_IN_PLACE);
+    VM.objectModel.writeAvailableByte(object, (byte) (oldValue & ~ForwardingWord.FORWARDING_MASK));
+  }
+
   /**
    * Write the allocState into the mark state fields of an object non-atomically.
    * This is appropriate for collection time initialization.
@@ -21,6 +21,7 @@ import org.mmtk.policy.immix.ImmixSpace;
 import static org.mmtk.policy.immix.ImmixConstants.*;
 
 import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.ConcurrentZeroingContext;
 import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 
@@ -61,6 +62,8 @@ public class ImmixAllocator extends Allocator {
   private Address recyclableBlock;
   private int line;
   private boolean recyclableExhausted;
+  /** have the free lines of the recyclable block been zeroed in the background? */
+  private boolean recyclableBlockZeroed;
 
   /**
    * Constructor.
@@ -260,7 +263,10 @@ public class ImmixAllocator extends Allocator {
           Address end = start.plus(bytes);
           VM.assertions._assert(end.LE(limit));
         }
-        VM.memory.zero(false, cursor, limit.diff(cursor).toWord().toExtent());
+        if (recyclableBlockZeroed)
+          ConcurrentZeroingContext.allocZeroingAvoided.inc(limit.diff(cursor).toInt());
+        else
+          VM.memory.zero(space.zeroLinesNonTemporal(), cursor, limit.diff(cursor).toWord().toExtent());
         if (VM.VERIFY_ASSERTIONS && Options.verbose.getValue() >= 9) {
           Log.write("Z[", cursor);
           Log.write("->", limit);
@@ -280,6 +286,7 @@ public class ImmixAllocator extends Allocator {
     rtn = acquireRecyclableBlockAddressOrder();
     if (rtn) {
       markTable = Line.getBlockMarkTable(recyclableBlock);
+      recyclableBlockZeroed = space.claimRecyclableBlock(recyclableBlock);
       line = 0;
     }
     return rtn;
@@ -314,6 +321,8 @@ public class ImmixAllocator extends Allocator {
       usable = (markState > 0 && markState <= ImmixSpace.getReusuableMarkStateThreshold(copy));
       if (copy && Block.isDefragSource(recyclableBlock))
         usable = false;
+      if (Block.isAwaitingEvacuation(recyclableBlock))
+        usable = false;
     }
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!Block.isUnused(recyclableBlock));
     Block.setBlockAsReused(recyclableBlock);
@@ -75,6 +75,20 @@ public class SharedDeque extends Deque {
    */
   final void enqueue(Address buf, int arity, boolean toTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
+    int worker = workerOrdinal();
+    if (worker < 0 || !pushLocal(worker, buf)) {
+      enqueueShared(buf, toTail);
+    }
+  }
+
+  /**
+   * Enqueue a block on the head or tail of the shared list itself,
+   * bypassing any per-collector deques.
+   *
+   * @param buf the block to enqueue
+   * @param toTail whether to enqueue to the tail of the shared queue
+   */
+  final void enqueueShared(Address buf, boolean toTail) {
     lock();
     if (toTail) {
       // Add to the tail of the queue
@@ -116,6 +130,19 @@ public class SharedDeque extends Deque {
 
   final Address dequeue(int arity, boolean fromTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
+    int worker = workerOrdinal();
+    if (worker >= 0) return popLocal(worker, fromTail, false);
+    return dequeue(false, fromTail);
+  }
+
+  /**
+   * Dequeue a block from the shared list itself, without waiting and
+   * bypassing any per-collector deques.
+   *
+   * @param fromTail whether to dequeue from the tail
+   * @return the block, or zero if the shared list is empty
+   */
+  final Address dequeueShared(boolean fromTail) {
     return dequeue(false, fromTail);
   }
 
@@ -126,6 +153,8 @@ public class SharedDeque extends Deque {
 
   final Address dequeueAndWait(int arity, boolean fromTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
+    int worker = workerOrdinal();
+    if (worker >= 0) return popLocal(worker, fromTail, true);
     Address buf = dequeue(false, fromTail);
     if (buf.isZero() && (!complete())) {
       buf = dequeue(true, fromTail);  // Wait inside dequeue
@@ -140,11 +169,12 @@ public class SharedDeque extends Deque {
    */
   public final void prepare() {
     if (DISABLE_WAITING) {
-      prepareNonBlocking();
+      prepare(1);
     } else {
       /* This should be the normal mode of operation once performance is fixed */
       prepare(VM.activePlan.collector().parallelWorkerCount());
     }
+    prepareWorkers();
   }
 
   /**
@@ -153,6 +183,7 @@ public class SharedDeque extends Deque {
    */
   public final void prepareNonBlocking() {
     prepare(1);
+    releaseWorkers();
   }
 
   /**
@@ -172,6 +203,7 @@ public class SharedDeque extends Deque {
     clearCompletionFlag();
     setNumConsumersWaiting(0);
     assertExhausted();
+    resetWorkers();
   }
 
   public final void assertExhausted() {
@@ -197,7 +229,59 @@ public class SharedDeque extends Deque {
 
   @Inline
   public final int enqueuedPages() {
-    return bufsenqueued * PAGES_PER_BUFFER;
+    return bufsenqueued * PAGES_PER_BUFFER + workerPages();
+  }
+
+  /****************************************************************************
+   *
+   * Per-collector deques.  The shared list is the only store of buffers
+   * here; {@link WorkStealingDeque} overrides these to give each parallel
+   * collector a deque of its own.
+   */
+
+  /**
+   * @return the ordinal of the current thread if it is a parallel collector
+   * with a deque of its own, or -1 if it must use the shared list
+   */
+  int workerOrdinal() {
+    return -1;
+  }
+
+  /**
+   * Push a buffer onto a collector's own deque.
+   *
+   * @param worker the ordinal of the current collector
+   * @param buf the buffer
+   * @return {@code false} if the buffer must go on the shared list instead
+   */
+  boolean pushLocal(int worker, Address buf) {
+    return false;
+  }
+
+  /**
+   * Take a buffer for a collector with a deque of its own.
+   *
+   * @param worker the ordinal of the current collector
+   * @param fromTail whether to take the shared list's tail
+   * @param wait whether to wait for work until all collectors are idle
+   * @return a buffer, or zero if none is available
+   */
+  Address popLocal(int worker, boolean fromTail, boolean wait) {
+    return dequeueShared(fromTail);
+  }
+
+  /** Set up the per-collector deques for parallel processing */
+  void prepareWorkers() {}
+
+  /** Hand any buffers in the per-collector deques back to the shared list */
+  void releaseWorkers() {}
+
+  /** Empty the per-collector deques at the end of processing */
+  void resetWorkers() {}
+
+  /** @return the number of pages of buffers held in per-collector deques */
+  int workerPages() {
+    return 0;
   }
 
   /****************************************************************************
@@ -0,0 +1,493 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import static org.mmtk.utility.Constants.*;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.Plan;
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.heap.layout.NumaMap;
+import org.mmtk.utility.options.Options;
+import org.mmtk.utility.statistics.CollectorEventCounter;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A shared deque in which each parallel collector thread owns a
+ * Chase-Lev style work-stealing deque of buffers.<p>
+ *
+ * A collector enqueues the buffers it fills onto the bottom of its own
+ * deque and dequeues from there, without synchronization other than a
+ * compare-and-swap when it takes the last buffer.  A collector that has
+ * run out of work steals buffers from the top of the other collectors'
+ * deques.  Buffers enqueued by threads that are not parallel collectors
+ * (or that do not fit in a full deque) go to the lock-protected list
+ * inherited from {@link SharedDeque}.<p>
+ *
+ * Termination is detected with a count of idle collectors rather than
+ * the consumer/waiting protocol of {@link SharedDeque}: a collector only
+ * declares itself idle when it can find no work anywhere, and the trace
+ * is complete once all collectors are idle.<p>
+ *
+ * The deques are kept in raw pages taken from the deque's
+ * {@link RawPageSpace}: one control page followed by one page per
+ * collector, holding the top and bottom indices, an idle flag and a
+ * circular array of buffer addresses.
+ */
+@Uninterruptible
+public class WorkStealingDeque extends SharedDeque {
+
+  /** Offset of the count of idle collectors in the control page */
+  private static final Offset IDLE_COUNT = Offset.zero();
+
+  /** Offset of the index of the (stealing) top entry in a collector's page */
+  private static final Offset TOP = Offset.zero();
+  /** Offset of the index one past the (owner's) bottom entry in a collector's page */
+  private static final Offset BOTTOM = Offset.fromIntZeroExtend(BYTES_IN_INT);
+  /** Offset of the collector's state: {@link #BUSY}, {@link #WAITING} or {@link #FINISHED} */
+  private static final Offset IDLE = Offset.fromIntZeroExtend(2 * BYTES_IN_INT);
+  /** State of a collector that may hold or produce work */
+  private static final int BUSY = 0;
+  /** State of an idle collector waiting for work or for the others to finish */
+  private static final int WAITING = 1;
+  /** State of an idle collector that has seen all collectors idle */
+  private static final int FINISHED = 2;
+  /** Offset of the first entry in a collector's page */
+  private static final int ENTRIES = 4 * BYTES_IN_INT;
+  /** Number of buffers a collector's deque can hold */
+  private static final int CAPACITY = (BYTES_IN_PAGE - ENTRIES) >> LOG_BYTES_IN_ADDRESS;
+
+  /** Buffers pushed onto collectors' own deques */
+  private static final CollectorEventCounter pushes = new CollectorEventCounter("wsPush", true, true);
+  /** Buffers stolen from other collectors' deques */
+  private static final CollectorEventCounter steals = new CollectorEventCounter("wsSteal", true, true);
+  /** Buffers stolen from collectors bound to another NUMA node */
+  private static final CollectorEventCounter remoteSteals = new CollectorEventCounter("wsRemoteSteal", true, true);
+
+  /** Raw page space from which to allocate the deques */
+  private final RawPageSpace rps;
+
+  /** Control page, followed by one page per collector */
+  private Address pages = Address.zero();
+
+  /** Number of collectors for which pages have been allocated */
+  private int allocated = 0;
+
+  /** Number of collectors taking part in the current round */
+  private int workers = 0;
+
+  /** Are the per-collector deques in use for the current round? */
+  private boolean active = false;
+
+  /**
+   * @param name the queue's human-readable name
+   * @param rps the space to get pages from
+   * @param arity the arity (number of words per entry) of this queue
+   */
+  public WorkStealingDeque(String name, RawPageSpace rps, int arity) {
+    super(name, rps, arity);
+    this.rps = rps;
+  }
+
+  /****************************************************************************
+   *
+   * Overrides of the shared deque
+   */
+
+  /**
+   * Set up the per-collector deques for parallel processing. All
+   * active GC threads will participate, and pop operations will block
+   * until all collectors have run out of work.
+   */
+  @Override
+  void prepareWorkers() {
+    if (!Options.workStealing.getValue() || VM.activePlan.isMutator()) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!active);
+      return;
+    }
+    int n = VM.activePlan.collector().parallelWorkerCount();
+    if (!active) {
+      if (n > allocated) {
+        if (!pages.isZero()) rps.release(pages);
+        pages = rps.acquire(n + 1);
+        if (pages.isZero()) {
+          Space.printUsageMB();
+          VM.assertions.fail("Failed to allocate space for work-stealing deques.  Is metadata virtual memory exhausted?");
+        }
+        allocated = n;
+      }
+      for (int i = 0; i < n; i++) {
+        clearDeque(deque(i));
+      }
+      workers = n;
+      active = true;
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(n == workers);
+    for (int i = 0; i < workers; i++) {
+      deque(i).store(BUSY, IDLE);
+    }
+    pages.store(0, IDLE_COUNT);
+    VM.memory.sync();
+  }
+
+  /**
+   * Processing where pop operations never block may be performed by
+   * threads that are not parallel collectors (e.g. concurrent workers),
+   * so any buffers held by the per-collector deques are handed back to
+   * the shared list and the deques are not used.
+   */
+  @Override
+  void releaseWorkers() {
+    if (active) {
+      for (int i = 0; i < workers; i++) {
+        Address d = deque(i);
+        for (int j = d.loadInt(TOP); j < d.loadInt(BOTTOM); j++) {
+          enqueueShared(slot(d, j).loadAddress(), true);
+        }
+        clearDeque(d);
+      }
+      active = false;
+    }
+  }
+
+  @Override
+  void resetWorkers() {
+    if (active) {
+      for (int i = 0; i < workers; i++) {
+        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(size(deque(i)) == 0);
+        clearDeque(deque(i));
+      }
+      pages.store(0, IDLE_COUNT);
+      active = false;
+    }
+  }
+
+  @Override
+  boolean pushLocal(int me, Address buf) {
+    beginRound(me);
+    if (!push(deque(me), buf)) return false;
+    pushes.inc(me);
+    return true;
+  }
+
+  @Override
+  Address popLocal(int me, boolean fromTail, boolean wait) {
+    beginRound(me);
+    Address buf = findWork(me, fromTail);
+    if (buf.isZero() && wait) {
+      buf = awaitWork(me, fromTail);
+    }
+    return buf;
+  }
+
+  @Override
+  int workerPages() {
+    int pending = 0;
+    if (active) {
+      for (int i = 0; i < workers; i++) {
+        pending += size(deque(i)) * PAGES_PER_BUFFER;
+      }
+    }
+    return pending;
+  }
+
+  /****************************************************************************
+   *
+   * Work distribution and termination
+   */
+
+  /**
+   * @return the ordinal of the current thread if it is a parallel collector
+   * that owns a deque, or -1 if it must use the shared list.
+   */
+  @Override
+  @Inline
+  int workerOrdinal() {
+    if (!active || VM.activePlan.isMutator()) return -1;
+    CollectorContext collector = VM.activePlan.collector();
+    if (!Plan.parallelWorkers.isMember(collector)) return -1;
+    int ordinal = collector.parallelWorkerOrdinal();
+    return ordinal < workers ? ordinal : -1;
+  }
+
+  /**
+   * Take a buffer from the collector's own deque, the shared list or
+   * another collector's deque, in that order.
+   *
+   * @param me the ordinal of the current collector
+   * @param fromTail whether to take the shared list's tail
+   * @return a buffer, or zero if none could be found
+   */
+  private Address findWork(int me, boolean fromTail) {
+    Address buf = pop(deque(me));
+    if (buf.isZero()) {
+      buf = dequeueShared(fromTail);
+    }
+    if (buf.isZero()) {
+      buf = stealFromOthers(me);
+    }
+    if (!buf.isZero()) {
+      setIdle(me, false);
+    }
+    return buf;
+  }
+
+  /**
+   * The collector has run out of work. Wait until either another
+   * collector makes work available or all collectors are idle.
+   *
+   * @param me the ordinal of the current collector
+   * @param fromTail whether to take the shared list's tail
+   * @return a buffer, or zero if all work is complete
+   */
+  private Address awaitWork(int me, boolean fromTail) {
+    setIdle(me, true);
+    while (true) {
+      VM.memory.isync();
+      if (pages.loadInt(IDLE_COUNT) == workers) {
+        // Still counted as idle, until the collector starts another round
+        deque(me).store(FINISHED, IDLE);
+        return Address.zero();
+      }
+      if (workVisible(me)) {
+        // Become busy before taking the work so that the other
+        // collectors cannot see everybody idle while we hold it.
+        setIdle(me, false);
+        Address buf = findWork(me, fromTail);
+        if (!buf.isZero()) return buf;
+        setIdle(me, true);
+      }
+    }
+  }
+
+  /**
+   * @param me the ordinal of the current collector
+   * @return whether there is any work the collector could take
+   */
+  private boolean workVisible(int me) {
+    if (!head.isZero()) return true;
+    for (int i = 0; i < workers; i++) {
+      if (i != me && size(deque(i)) > 0) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Start a new round of processing if the collector saw the previous
+   * one finish.  A round ends when all collectors are idle, but the
+   * closure may then be run again (e.g. after reference processing or
+   * remembered set processing) without the deque being prepared anew,
+   * so each collector marks itself busy again on its first push or pop
+   * of the next round.  Collectors still waiting at the end of the
+   * previous round simply wait on until this one ends.
+   *
+   * @param me the ordinal of the current collector
+   */
+  @Inline
+  private void beginRound(int me) {
+    if (deque(me).loadInt(IDLE) == FINISHED) {
+      setIdle(me, false);
+    }
+  }
+
+  /**
+   * Attempt to steal a buffer from each of the other collectors in turn.
+   * Collectors bound to the same NUMA node as the current collector are
+   * tried first, since the objects they have copied are on that node.
+   *
+   * @param me the ordinal of the current collector
+   * @return a buffer, or zero if none could be stolen
+   */
+  private Address stealFromOthers(int me) {
+    if (NumaMap.isEnabled()) {
+      Address buf = stealFromNode(me, true);
+      return buf.isZero() ? stealFromNode(me, false) : buf;
+    }
+    for (int i = 1; i < workers; i++) {
+      int victim = (me + i) % workers;
+      Address buf = steal(deque(victim));
+      if (!buf.isZero()) {
+        steals.inc(me);
+        return buf;
+      }
+    }
+    return Address.zero();
+  }
+
+  /**
+   * Attempt to steal a buffer from each of the other collectors that
+   * are (or are not) bound to the current collector's NUMA node.
+   *
+   * @param me the ordinal of the current collector
+   * @param local whether to steal from collectors on the same node
+   * @return a buffer, or zero if none could be stolen
+   */
+  private Address stealFromNode(int me, boolean local) {
+    int node = NumaMap.getCollectorNode(me);
+    for (int i = 1; i < workers; i++) {
+      int victim = (me + i) % workers;
+      if ((NumaMap.getCollectorNode(victim) == node) != local) continue;
+      Address buf = steal(deque(victim));
+      if (!buf.isZero()) {
+        steals.inc(me);
+        if (!local) remoteSteals.inc(me);
+        return buf;
+      }
+    }
+    return Address.zero();
+  }
+
+  /**
+   * Record whether a collector is idle, maintaining the count of idle
+   * collectors.
+   *
+   * @param me the ordinal of the current collector
+   * @param idle whether the collector is now idle
+   */
+  private void setIdle(int me, boolean idle) {
+    Address d = deque(me);
+    if ((d.loadInt(IDLE) != BUSY) == idle) return;
+    d.store(idle ? WAITING : BUSY, IDLE);
+    int old;
+    do {
+      old = pages.prepareInt(IDLE_COUNT);
+    } while (!pages.attempt(old, idle ? old + 1 : old - 1, IDLE_COUNT));
+  }
+
+  /****************************************************************************
+   *
+   * The per-collector deques
+   */
+
+  /**
+   * @param worker a collector ordinal
+   * @return the page holding the collector's deque
+   */
+  @Inline
+  private Address deque(int worker) {
+    return pages.plus((worker + 1) << LOG_BYTES_IN_PAGE);
+  }
+
+  /**
+   * @param d a deque
+   * @param index an index into the deque
+   * @return the address of the entry with the given index
+   */
+  @Inline
+  private static Address slot(Address d, int index) {
+    return d.plus(ENTRIES + ((index % CAPACITY) << LOG_BYTES_IN_ADDRESS));
+  }
+
+  /**
+   * @param d a deque
+   * @return the number of buffers in the deque (racy when read by a thief)
+   */
+  @Inline
+  private static int size(Address d) {
+    int size = d.loadInt(BOTTOM) - d.loadInt(TOP);
+    return size < 0 ? 0 : size;
+  }
+
+  /**
+   * Empty a deque.
+   *
+   * @param d the deque
+   */
+  private static void clearDeque(Address d) {
+    d.store(0, TOP);
+    d.store(0, BOTTOM);
+    d.store(BUSY, IDLE);
+  }
+
+  /**
+   * Push a buffer onto the bottom of the current collector's deque.
+   *
+   * @param d the current collector's deque
+   * @param buf the buffer
+   * @return {@code false} if the deque is full
+   */
+  private static boolean push(Address d, Address buf) {
+    int b = d.loadInt(BOTTOM);
+    int t = d.loadInt(TOP);
+    if (b - t >= CAPACITY) return false;
+    slot(d, b).store(buf);
+    VM.memory.sync();
+    d.store(b + 1, BOTTOM);
+    return true;
+  }
+
+  /**
+   * Pop a buffer from the bottom of the current collector's deque.
+   *
+   * @param d the current collector's deque
+   * @return the buffer, or zero if the deque is empty
+   */
+  private static Address pop(Address d) {
+    int b = d.loadInt(BOTTOM) - 1;
+    // The store to bottom must be visible before top is read, so that
+    // a thief and the owner cannot both take the last entry.  Only the
+    // owner writes bottom, so the atomic update serves as a full fence.
+    int old;
+    do {
+      old = d.prepareInt(BOTTOM);
+    } while (!d.attempt(old, b, BOTTOM));
+    VM.memory.sync();
+    int t = d.loadInt(TOP);
+    if (t > b) {
+      d.store(t, BOTTOM);
+      return Address.zero();
+    }
+    Address buf = slot(d, b).loadAddress();
+    if (t == b) {
+      // last entry: race against thieves for it
+      if (!casTop(d, t)) buf = Address.zero();
+      d.store(t + 1, BOTTOM);
+    }
+    return buf;
+  }
+
+  /**
+   * Steal a buffer from the top of another collector's deque.
+   *
+   * @param d the victim's deque
+   * @return the buffer, or zero if the deque was empty or another
+   * thread won the race for the entry
+   */
+  private static Address steal(Address d) {
+    int t = d.loadInt(TOP);
+    VM.memory.isync();
+    int b = d.loadInt(BOTTOM);
+    if (t >= b) return Address.zero();
+    Address buf = slot(d, t).loadAddress();
+    if (!casTop(d, t)) return Address.zero();
+    return buf;
+  }
+
+  /**
+   * Atomically advance the top index of a deque.
+   *
+   * @param d the deque
+   * @param expected the value top must have
+   * @return whether the update succeeded
+   */
+  private static boolean casTop(Address d, int expected) {
+    int old = d.prepareInt(TOP);
+    if (old != expected) return false;
+    return d.attempt(old, old + 1, TOP);
+  }
+}
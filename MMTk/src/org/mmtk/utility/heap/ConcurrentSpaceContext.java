@@ -0,0 +1,135 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import org.mmtk.utility.Log;
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Monitor;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A context that works on spaces in the background, on request.  Each
+ * request for a space is answered by one call of {@link #work(Space)}
+ * for that space, made by the context's own thread.  Subclasses decide
+ * what the work is.
+ */
+@Uninterruptible
+public abstract class ConcurrentSpaceContext extends CollectorContext {
+
+  /** The maximum number of spaces a context may work on */
+  private static final int MAX_SPACES = 8;
+
+  /** The name the context's thread reports itself under */
+  private final String name;
+  private final Space[] spaces = new Space[MAX_SPACES];
+  private final int[] triggers = new int[MAX_SPACES];
+  private int registeredSpaces;
+  /** The space being worked on, if any */
+  private Space working;
+  private final Monitor lock;
+  private int trigger;
+
+  /**
+   * @param name The name the context's thread reports itself under
+   * @param lockName The name of the context's monitor
+   */
+  protected ConcurrentSpaceContext(String name, String lockName) {
+    this.name = name;
+    this.lock = VM.newHeavyCondLock(lockName);
+  }
+
+  /**
+   * Add a space to those the context may work on, if it is not there
+   * already.
+   *
+   * @param space The space
+   */
+  protected final void add(Space space) {
+    lock.lock();
+    addLocked(space);
+    lock.unlock();
+  }
+
+  /**
+   * Ask for work on a space, adding it to the spaces the context may
+   * work on if need be.
+   *
+   * @param space The space
+   */
+  protected final void request(Space space) {
+    lock.lock();
+    triggers[addLocked(space)]++;
+    trigger++;
+    lock.broadcast();
+    lock.unlock();
+  }
+
+  /**
+   * Wait until the context is not working on a space.  Work that has
+   * been requested but not yet started may still follow.
+   *
+   * @param space The space
+   */
+  protected final void awaitIdle(Space space) {
+    lock.lock();
+    while (working == space) {
+      lock.await();
+    }
+    lock.unlock();
+  }
+
+  /**
+   * Work on a space, once for each request for it.
+   *
+   * @param space The space
+   */
+  protected abstract void work(Space space);
+
+  private int addLocked(Space space) {
+    for (int i = 0; i < registeredSpaces; i++) {
+      if (spaces[i] == space) return i;
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(registeredSpaces < MAX_SPACES);
+    spaces[registeredSpaces] = space;
+    return registeredSpaces++;
+  }
+
+  @Override
+  public void run() {
+    if (Options.verbose.getValue() >= 2) {
+      Log.write(name);
+      Log.writeln(" running");
+    }
+    while (true) {
+      lock.lock();
+      while (trigger == 0) {
+        lock.await();
+      }
+      trigger--;
+      int next = 0;
+      while (triggers[next] == 0) next++;
+      triggers[next]--;
+      working = spaces[next];
+      lock.unlock();
+      work(working);
+      lock.lock();
+      working = null;
+      lock.broadcast();
+      lock.unlock();
+    }
+  }
+}
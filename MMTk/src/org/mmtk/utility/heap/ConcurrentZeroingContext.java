@@ -10,52 +10,76 @@
  *  See the COPYRIGHT.txt file distributed with this work for information
  *  regarding copyright ownership.
  */
-
 package org.mmtk.utility.heap;
 
-import org.mmtk.utility.Log;
-import org.mmtk.plan.CollectorContext;
-import org.mmtk.utility.options.Options;
-import org.mmtk.vm.Monitor;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.statistics.SizeCounter;
 import org.mmtk.vm.VM;
 
 import org.vmmagic.pragma.*;
 
 /**
- * This context concurrently zeroes a space when triggered.
+ * This context concurrently zeroes memory on behalf of the spaces
+ * registered with it.  A space is called back (see
+ * {@link Space#concurrentZeroing()}) once for each time it triggers the
+ * context.  A single context serves every space, so background zeroing
+ * occupies at most one otherwise idle core.
  */
 @Uninterruptible
-public class ConcurrentZeroingContext extends CollectorContext {
+public class ConcurrentZeroingContext extends ConcurrentSpaceContext {
+
+  /** Memory zeroed ahead of the allocators */
+  public static final SizeCounter zeroedAhead = new SizeCounter("zeroedAhead", true, true);
+  /** Memory the allocators found already zeroed, so did not zero themselves */
+  public static final SizeCounter allocZeroingAvoided = new SizeCounter("zeroAvoided", true, true);
 
-  private final PageResource pr;
-  private final Monitor lock;
-  private volatile int trigger;
+  /** The single zeroing context, created when the first space registers */
+  private static ConcurrentZeroingContext context;
 
-  public ConcurrentZeroingContext(PageResource pr) {
-    this.pr = pr;
-    this.lock = VM.newHeavyCondLock("ConcurrentZeroingLock");
+  private ConcurrentZeroingContext() {
+    super("ZeroingThread", "ConcurrentZeroingLock");
+  }
+
+  /**
+   * Register a space to be zeroed concurrently, starting the zeroing
+   * context if this is the first such space.
+   *
+   * @param space The space
+   */
+  @Interruptible
+  public static void register(Space space) {
+    if (context == null) {
+      context = new ConcurrentZeroingContext();
+      VM.collection.spawnCollectorContext(context);
+    }
+    context.add(space);
   }
 
-  public void trigger() {
-    lock.lock();
-    trigger++;
-    lock.broadcast();
-    lock.unlock();
+  /**
+   * Ask for a registered space to be zeroed.
+   *
+   * @param space The space
+   */
+  public static void trigger(Space space) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(context != null);
+    context.request(space);
+  }
+
+  /**
+   * Wait until the zeroing context is not zeroing a space.  A space that
+   * wants its zeroing to stop must first make its
+   * {@link Space#concurrentZeroing()} return promptly, and must check
+   * that it should stop on entry.
+   *
+   * @param space The space
+   */
+  public static void awaitStopped(Space space) {
+    if (context == null) return;
+    context.awaitIdle(space);
   }
 
   @Override
-  public void run() {
-    if (Options.verbose.getValue() >= 2) {
-      Log.writeln("ZeroingThread running");
-    }
-    while (true) {
-      lock.lock();
-      while (trigger == 0) {
-        lock.await();
-      }
-      trigger--;
-      lock.unlock();
-      pr.concurrentZeroing();
-    }
+  protected void work(Space space) {
+    space.concurrentZeroing();
   }
 }
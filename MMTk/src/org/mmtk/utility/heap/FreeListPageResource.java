@@ -22,6 +22,7 @@ import org.mmtk.utility.GenericFreeList;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.utility.heap.layout.NumaMap;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
@@ -58,7 +59,7 @@ public final class FreeListPageResource extends PageResource {
   public FreeListPageResource(Space space, Address start, Extent bytes) {
     super(space, start);
     int pages = Conversions.bytesToPages(bytes);
-    freeList = HeapLayout.vmMap.createFreeList(this);
+    freeList = HeapLayout.vmMap.createFreeList(this, pages, pages);
     pagesCurrentlyOnFreeList = pages;
     this.metaDataPagesPerRegion = 0;
   }
@@ -181,6 +182,7 @@ public final class FreeListPageResource extends PageResource {
       commitPages(reservedPages, requiredPages);
       space.growSpace(rtn, bytes, newChunk);
       unlock();
+      if (NumaMap.isEnabled()) NumaMap.recordAcquire(rtn, requiredPages, NumaMap.getCurrentNode());
       HeapLayout.mmapper.ensureMapped(rtn, requiredPages);
       if (zeroed)
         VM.memory.zero(zeroNT, rtn, bytes);
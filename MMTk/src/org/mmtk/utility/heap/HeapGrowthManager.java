@@ -87,6 +87,40 @@ import org.vmmagic.unboxed.*;
   private static long endLastMajorGC;
   private static double accumulatedGCTime;
 
+  /*
+   * State used when sizing the heap against a pause target
+   * (see {@link #usingPauseTarget()}).  The pause, load and survival
+   * figures are exponentially weighted averages, which damps the
+   * response to any one collection.
+   */
+
+  /** Weight given to the most recent observation in the averages */
+  private static final double HISTORY_WEIGHT = 0.3;
+
+  /** Largest factor by which the heap may grow at one collection */
+  private static final double MAX_GROWTH = 1.5;
+
+  /** Smallest factor by which the heap may shrink at one collection */
+  private static final double MAX_SHRINK = 0.9;
+
+  /** Average pause of nursery collections, in milliseconds */
+  private static double nurseryPause;
+
+  /** Average pause of full heap collections, in milliseconds */
+  private static double fullHeapPause;
+
+  /** Average GC load over the periods between full heap collections */
+  private static double averageGCLoad;
+
+  /** Average fraction of the nursery that survives a nursery collection */
+  private static double survivalRate;
+
+  /** Average number of pages that survive a nursery collection */
+  private static double survivedPages;
+
+  /** The current nursery size in pages, or zero if not yet computed */
+  private static int nurseryPages;
+
   /**
    * Initialize heap size parameters and the mechanisms
    * used to adaptively change heap size.
@@ -148,9 +182,52 @@ import org.vmmagic.unboxed.*;
    *
    * @param time number of time taking for current GC, in
    *  milliseconds
+   * @param fullHeap whether the GC was a full heap collection
    */
-  public static void recordGCTime(double time) {
+  public static void recordGCTime(double time, boolean fullHeap) {
     accumulatedGCTime += time;
+    if (fullHeap) {
+      fullHeapPause = average(fullHeapPause, time);
+    } else {
+      nurseryPause = average(nurseryPause, time);
+      if (usingPauseTarget()) adjustNurserySize();
+    }
+  }
+
+  /**
+   * Record how much of the nursery survived a nursery collection;
+   * used to size the nursery against the pause target.
+   *
+   * @param nursery the number of pages in the nursery before the collection
+   * @param survived the number of pages that survived the collection
+   */
+  public static void recordNurserySurvival(int nursery, int survived) {
+    if (nursery <= 0) return;
+    if (survived < 0) survived = 0;
+    if (survived > nursery) survived = nursery;
+    survivalRate = average(survivalRate, survived / (double) nursery);
+    survivedPages = average(survivedPages, survived);
+  }
+
+  /**
+   * @return {@code true} if the heap and nursery are being sized to meet
+   * the pause target and GC overhead options, rather than by the default
+   * heap sizing function.
+   */
+  public static boolean usingPauseTarget() {
+    return Options.pauseTarget != null && Options.pauseTarget.getMicroseconds() > 0;
+  }
+
+  /**
+   * Return the number of pages the nursery may grow to before a nursery
+   * collection is required.  This is the bounded nursery size unless the
+   * nursery is being sized against a pause target.
+   *
+   * @return the current maximum nursery size in pages
+   */
+  public static int getNurseryPages() {
+    if (usingPauseTarget() && nurseryPages > 0) return nurseryPages;
+    return Options.nurserySize.getMaxNursery();
   }
 
   /**
@@ -170,8 +247,12 @@ import org.vmmagic.unboxed.*;
     Extent oldSize = currentHeapSize;
     Extent reserved = Plan.reservedMemory();
     double liveRatio = reserved.toLong() / ((double) currentHeapSize.toLong());
-    double ratio = computeHeapChangeRatio(liveRatio);
+    double ratio = usingPauseTarget() ? computePauseTargetRatio(liveRatio) : computeHeapChangeRatio(liveRatio);
     Extent newSize = Word.fromIntSignExtend((int)(ratio * (oldSize.toLong() >> LOG_BYTES_IN_MBYTE))).lsh(LOG_BYTES_IN_MBYTE).toExtent(); // do arith in MB to avoid overflow
+    if (usingPauseTarget() && VM.activePlan.constraints().generational()) {
+      // leave room for a full nursery above the live data
+      reserved = reserved.plus(Conversions.pagesToBytes(getNurseryPages()));
+    }
     if (newSize.LT(reserved)) newSize = reserved;
     newSize = newSize.plus(BYTES_IN_MBYTE - 1).toWord().rshl(LOG_BYTES_IN_MBYTE).lsh(LOG_BYTES_IN_MBYTE).toExtent(); // round to next megabyte
     if (newSize.GT(maxHeapSize)) newSize = maxHeapSize;
@@ -192,18 +273,114 @@ import org.vmmagic.unboxed.*;
     }
   }
 
-  private static double computeHeapChangeRatio(double liveRatio) {
-    // (1) compute GC load.
+  /**
+   * Choose the heap change ratio that keeps the GC load within the
+   * overhead budget.  The heap grows when the load is over budget, and
+   * shrinks when the load is well under budget and full heap pauses are
+   * within the pause target (a smaller heap means more frequent full heap
+   * collections, so a heap whose full heap collections already exceed the
+   * target is not shrunk).  In between, the heap size is left alone, so
+   * that the heap does not oscillate around the budget.
+   *
+   * @param liveRatio the fraction of the heap that is live
+   * @return the ratio by which to grow or shrink the heap
+   */
+  private static double computePauseTargetRatio(double liveRatio) {
+    if (liveRatio > 1) liveRatio = 1;
+    double gcLoad = computeGCLoad();
+    averageGCLoad = average(averageGCLoad, gcLoad);
+    double budget = Options.gcOverhead.getValue();
+    double pauseTarget = Options.pauseTarget.getMicroseconds() / 1000.0;
+    double free = 1 - liveRatio;
+
+    // For a tracing collector the GC load is roughly inversely
+    // proportional to the free space in the heap.
+    double factor = 1;
+    if (averageGCLoad > budget) {
+      factor = liveRatio + free * (averageGCLoad / budget);
+      if (factor > MAX_GROWTH) factor = MAX_GROWTH;
+    } else if (averageGCLoad < budget / 2 && fullHeapPause <= pauseTarget) {
+      factor = liveRatio + free * (2 * averageGCLoad / budget);
+      if (factor < MAX_SHRINK) factor = MAX_SHRINK;
+      if (factor > 1) factor = 1;
+    }
+
+    if (Options.verbose.getValue() > 2) {
+      Log.write("Live ratio ");
+      Log.writeln(liveRatio);
+      Log.write("GCLoad     ");
+      Log.write(gcLoad);
+      Log.write(" (average ");
+      Log.write(averageGCLoad);
+      Log.writeln(")");
+      Log.write("Full heap pause ");
+      Log.write(fullHeapPause);
+      Log.write(" ms, nursery pause ");
+      Log.write(nurseryPause);
+      Log.writeln(" ms");
+      Log.write("Heap adjustment factor is ");
+      Log.writeln(factor);
+    }
+    return factor;
+  }
+
+  /**
+   * Size the nursery so that the expected nursery pause meets the pause
+   * target.  The cost of a nursery collection is dominated by copying the
+   * survivors, so the pause is estimated from the average pause per
+   * surviving page, and the nursery is sized so that its expected
+   * survivors can be copied within the target.  The nursery is kept
+   * within the fixed and bounded nursery sizes, and changes by at most a
+   * factor of two at a time.
+   */
+  private static void adjustNurserySize() {
+    int min = Options.nurserySize.getMinNursery();
+    int max = Options.nurserySize.getMaxNursery();
+    int current = nurseryPages > 0 ? nurseryPages : max;
+    if (survivedPages <= 0 || nurseryPause <= 0 || survivalRate <= 0) {
+      nurseryPages = current;
+      return;
+    }
+    double pauseTarget = Options.pauseTarget.getMicroseconds() / 1000.0;
+    double pausePerPage = nurseryPause / survivedPages;
+    double target = (pauseTarget / pausePerPage) / survivalRate;
+    if (target > 2.0 * current) target = 2.0 * current;
+    if (target < 0.5 * current) target = 0.5 * current;
+    int heapPages = Conversions.bytesToPagesUp(currentHeapSize) / 2;
+    if (target > heapPages) target = heapPages;
+    if (target > max) target = max;
+    if (target < min) target = min;
+    if (Options.verbose.getValue() >= 2 && (int) target != current) {
+      Log.write("GC Message: Nursery changed from ");
+      Log.write(Conversions.pagesToKBytes(current));
+      Log.write("KB to ");
+      Log.write(Conversions.pagesToKBytes((int) target));
+      Log.writeln("KB");
+    }
+    nurseryPages = (int) target;
+  }
+
+  /**
+   * @param average the current average
+   * @param value the new observation
+   * @return the average updated with the observation
+   */
+  private static double average(double average, double value) {
+    if (average == 0) return value;
+    return average + HISTORY_WEIGHT * (value - average);
+  }
+
+  /**
+   * Compute the GC load (the fraction of time spent in GC) since
+   * the end of the last major GC.
+   *
+   * @return the GC load
+   */
+  private static double computeGCLoad() {
     long totalNanos = VM.statistics.nanoTime() - endLastMajorGC;
     double totalTime = VM.statistics.nanosToMillis(totalNanos);
     double gcLoad = accumulatedGCTime / totalTime;
 
-    if (liveRatio > 1) {
-      // Perhaps indicates bad bookkeeping in MMTk?
-      Log.write("GCWarning: Live ratio greater than 1: ");
-      Log.writeln(liveRatio);
-      liveRatio = 1;
-    }
     if (gcLoad > 1) {
       if (gcLoad > 1.0001) {
         Log.write("GC Error: GC load was greater than 1!! ");
@@ -215,7 +392,6 @@ import org.vmmagic.unboxed.*;
       }
       gcLoad = 1;
     }
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio >= 0);
     if (VM.VERIFY_ASSERTIONS && gcLoad < -0.0) {
       Log.write("gcLoad computed to be ");
       Log.writeln(gcLoad);
@@ -225,6 +401,20 @@ import org.vmmagic.unboxed.*;
       Log.writeln(totalTime);
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(false);
     }
+    return gcLoad;
+  }
+
+  private static double computeHeapChangeRatio(double liveRatio) {
+    // (1) compute GC load.
+    double gcLoad = computeGCLoad();
+
+    if (liveRatio > 1) {
+      // Perhaps indicates bad bookkeeping in MMTk?
+      Log.write("GCWarning: Live ratio greater than 1: ");
+      Log.writeln(liveRatio);
+      liveRatio = 1;
+    }
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio >= 0);
 
     if (Options.verbose.getValue() > 2) {
       Log.write("Live ratio ");
@@ -19,6 +19,7 @@ import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.utility.heap.layout.NumaMap;
 import org.mmtk.utility.heap.layout.VMLayoutConstants;
 import org.mmtk.utility.options.Options;
 
@@ -27,6 +28,7 @@ import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
@@ -63,6 +65,22 @@ public final class MonotonePageResource extends PageResource {
   /** Current limit of zeroing.  If zeroingCursor < zeroingSentinel, zeroing is still happening. */
   private Address zeroingSentinel;
 
+  /**
+   * The next page to be allocated on each NUMA node, or zero if the node
+   * has not allocated since the last reset (only for contiguous spaces
+   * without metadata, when NUMA-aware allocation is enabled).  The
+   * <code>cursor</code> is then the highest page allocated on any node.
+   */
+  private final AddressArray nodeCursors;
+
+  /**
+   * The pages allocated, or skipped so they will not be allocated, by
+   * NUMA-aware allocation since the last reset.  Pages below the
+   * <code>cursor</code> may still be free on other nodes, so these rather
+   * than the cursor give the pages available.
+   */
+  private int nodeLocalPagesUsed;
+
   /**
    * Constructor
    *
@@ -83,6 +101,7 @@ public final class MonotonePageResource extends PageResource {
     this.zeroingCursor = this.sentinel;
     this.zeroingSentinel = start;
     this.metaDataPagesPerRegion = metaDataPagesPerRegion;
+    this.nodeCursors = metaDataPagesPerRegion == 0 ? AddressArray.create(NumaMap.MAX_NODES) : null;
   }
 
   /**
@@ -102,11 +121,15 @@ public final class MonotonePageResource extends PageResource {
     this.currentChunk = Address.zero();
     this.sentinel = Address.zero();
     this.metaDataPagesPerRegion = metaDataPagesPerRegion;
+    this.nodeCursors = null;
   }
 
 
   @Override
   public int getAvailablePhysicalPages() {
+    if (nodeCursors != null && NumaMap.isEnabled()) {
+      return Conversions.bytesToPages(sentinel.diff(start)) - nodeLocalPagesUsed;
+    }
     int rtn = Conversions.bytesToPages(sentinel.diff(cursor));
     if (!contiguous)
       rtn += HeapLayout.vmMap.getAvailableDiscontiguousChunks() * VMLayoutConstants.PAGES_IN_CHUNK;
@@ -129,6 +152,9 @@ public final class MonotonePageResource extends PageResource {
   @Override
   @Inline
   protected Address allocPages(int reservedPages, int requiredPages, boolean zeroed) {
+    if (nodeCursors != null && NumaMap.isEnabled()) {
+      return allocNodeLocalPages(reservedPages, requiredPages, zeroed);
+    }
     boolean newChunk = false;
     lock();
     Address rtn = cursor;
@@ -187,12 +213,14 @@ public final class MonotonePageResource extends PageResource {
       commitPages(reservedPages, requiredPages);
       space.growSpace(old, bytes, newChunk);
       unlock();
+      if (NumaMap.isEnabled()) NumaMap.recordAcquire(old, requiredPages, NumaMap.getCurrentNode());
       HeapLayout.mmapper.ensureMapped(old, requiredPages);
       if (zeroed) {
         if (!zeroConcurrent) {
           VM.memory.zero(zeroNT, old, bytes);
         } else {
           while (cursor.GT(zeroingCursor));
+          ConcurrentZeroingContext.allocZeroingAvoided.inc(bytes.toInt());
         }
       }
       VM.events.tracePageAcquired(space, rtn, requiredPages);
@@ -200,6 +228,127 @@ public final class MonotonePageResource extends PageResource {
     }
   }
 
+  /**
+   * Allocate <code>pages</code> pages from the chunks of this resource
+   * that are placed on the current thread's NUMA node, or if those are
+   * exhausted, on another node.  Each node bumps its own cursor through
+   * its chunks, skipping to its next chunk rather than spanning into
+   * another node's.  A request larger than a chunk is placed above every
+   * node's cursor.
+   *
+   * @param reservedPages The number of pages reserved due to the initial request.
+   * @param requiredPages The number of pages required to be allocated.
+   * @param zeroed If true allocated pages are zeroed.
+   * @return The start of the first page if successful, zero on
+   * failure.
+   */
+  private Address allocNodeLocalPages(int reservedPages, int requiredPages, boolean zeroed) {
+    int nodes = NumaMap.nodes();
+    int home = NumaMap.getCurrentNode();
+    Extent bytes = Conversions.pagesToBytes(requiredPages);
+    lock();
+    Address rtn = Address.zero();
+    if (requiredPages > VMLayoutConstants.PAGES_IN_CHUNK) {
+      rtn = Conversions.chunkAlign(cursor, false);
+      Address end = rtn.plus(bytes);
+      if (end.GT(sentinel)) {
+        rtn = Address.zero();
+      } else {
+        /* every node skips whatever it had left below the request */
+        Address next = Conversions.chunkAlign(end, false);
+        for (int node = 0; node < nodes; node++) {
+          nodeLocalPagesUsed += pagesLeftBelow(node, next);
+          nodeCursors.set(node, NumaMap.getChunkOnNode(next, node));
+        }
+      }
+    } else {
+      for (int i = 0; i < nodes && rtn.isZero(); i++) {
+        rtn = bumpNodeCursor((home + i) % nodes, bytes);
+      }
+    }
+    if (rtn.isZero()) {
+      unlock();
+      return Address.zero();
+    }
+    Address end = rtn.plus(bytes);
+    if (end.GT(cursor)) {
+      cursor = end;
+      currentChunk = Conversions.chunkAlign(cursor, true);
+    }
+    commitPages(reservedPages, requiredPages);
+    space.growSpace(rtn, bytes, false);
+    unlock();
+    NumaMap.recordAcquire(rtn, requiredPages, home);
+    HeapLayout.mmapper.ensureMapped(rtn, requiredPages);
+    if (zeroed) {
+      if (!zeroConcurrent) {
+        VM.memory.zero(zeroNT, rtn, bytes);
+      } else {
+        while (end.GT(zeroingCursor));
+        ConcurrentZeroingContext.allocZeroingAvoided.inc(bytes.toInt());
+      }
+    }
+    VM.events.tracePageAcquired(space, rtn, requiredPages);
+    return rtn;
+  }
+
+  /**
+   * Bump a node's cursor past a request that fits in a chunk.  The caller
+   * must hold the lock.
+   *
+   * @param node The node
+   * @param bytes The size of the request
+   * @return The start of the request, or zero if the node's chunks are exhausted
+   */
+  private Address bumpNodeCursor(int node, Extent bytes) {
+    Address rtn = nodeCursors.get(node);
+    if (rtn.isZero()) {
+      rtn = NumaMap.getChunkOnNode(Conversions.chunkAlign(start, true), node);
+    }
+    Address end = rtn.plus(bytes);
+    int skipped = 0;
+    if (Conversions.chunkAlign(end.minus(1), true).NE(Conversions.chunkAlign(rtn, true))) {
+      /* the request would spill into another node's chunk, so skip the rest of this one */
+      Address chunkEnd = Conversions.chunkAlign(end, true);
+      skipped = Conversions.bytesToPages(chunkEnd.diff(rtn));
+      rtn = NumaMap.getChunkOnNode(chunkEnd, node);
+      end = rtn.plus(bytes);
+    }
+    if (end.GT(sentinel)) {
+      return Address.zero();
+    }
+    nodeLocalPagesUsed += skipped + Conversions.bytesToPages(bytes);
+    if (Conversions.chunkAlign(end, true).EQ(end)) {
+      /* the chunk is full, so move to the node's next chunk */
+      nodeCursors.set(node, NumaMap.getChunkOnNode(end, node));
+    } else {
+      nodeCursors.set(node, end);
+    }
+    return rtn;
+  }
+
+  /**
+   * Count the pages a node has yet to allocate below an address.  The
+   * caller must hold the lock.
+   *
+   * @param node The node
+   * @param limit The start of a chunk
+   * @return The number of pages left to the node below <code>limit</code>
+   */
+  private int pagesLeftBelow(int node, Address limit) {
+    Address next = nodeCursors.get(node);
+    if (next.isZero()) {
+      next = NumaMap.getChunkOnNode(Conversions.chunkAlign(start, true), node);
+    }
+    int pages = 0;
+    while (next.LT(limit)) {
+      Address chunkEnd = Conversions.chunkAlign(next, true).plus(VMLayoutConstants.BYTES_IN_CHUNK);
+      pages += Conversions.bytesToPages(chunkEnd.diff(next));
+      next = NumaMap.getChunkOnNode(chunkEnd, node);
+    }
+    return pages;
+  }
+
   /**
    * {@inheritDoc}<p>
    *
@@ -293,6 +442,12 @@ public final class MonotonePageResource extends PageResource {
       zeroingCursor = start;
       cursor = start;
       currentChunk = Conversions.chunkAlign(start, true);
+      if (nodeCursors != null) {
+        for (int node = 0; node < NumaMap.MAX_NODES; node++) {
+          nodeCursors.set(node, Address.zero());
+        }
+        nodeLocalPagesUsed = 0;
+      }
     } else { /* Not contiguous */
       if (!cursor.isZero()) {
         do {
@@ -355,10 +510,15 @@ public final class MonotonePageResource extends PageResource {
     while (first.LT(zeroingSentinel)) {
       Address last = first.plus(CONCURRENT_ZEROING_BLOCKSIZE);
       if (last.GT(zeroingSentinel)) last = zeroingSentinel;
-      VM.memory.zero(zeroNT, first, Extent.fromIntSignExtend(last.diff(first).toInt()));
+      /* chunks skipped by NUMA-aware allocation may never have been mapped, and are zero when they are */
+      if (HeapLayout.mmapper.addressIsMapped(first)) {
+        VM.memory.zero(zeroNT, first, Extent.fromIntSignExtend(last.diff(first).toInt()));
+      }
       zeroingCursor = last;
       first = first.plus(CONCURRENT_ZEROING_BLOCKSIZE);
     }
+    if (zeroingSentinel.GT(start))
+      ConcurrentZeroingContext.zeroedAhead.inc(zeroingSentinel.diff(start).toInt());
     zeroingCursor = sentinel;
   }
 
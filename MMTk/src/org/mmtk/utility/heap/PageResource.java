@@ -74,7 +74,6 @@ public abstract class PageResource {
   // zeroing
   protected boolean zeroNT;
   protected boolean zeroConcurrent;
-  protected ConcurrentZeroingContext zeroingContext;
 
   /****************************************************************************
    *
@@ -188,8 +187,7 @@ public abstract class PageResource {
     this.zeroNT = nontemporal;
     this.zeroConcurrent = concurrent;
     if (concurrent) {
-      this.zeroingContext = new ConcurrentZeroingContext(this);
-      VM.collection.spawnCollectorContext(zeroingContext);
+      ConcurrentZeroingContext.register(space);
     }
   }
 
@@ -206,7 +204,7 @@ public abstract class PageResource {
    */
   public void triggerConcurrentZeroing() {
     zeroConcurrent = true;
-    this.zeroingContext.trigger();
+    ConcurrentZeroingContext.trigger(space);
   }
 
   /**
@@ -0,0 +1,226 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import static org.mmtk.utility.Constants.*;
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.LOG_MMAP_CHUNK_BYTES;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.heap.layout.HeapLayout;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Monitor;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * These contexts touch every page of the initial heap at boot time (see
+ * the {@link org.mmtk.utility.options.PreTouch} option), so that the
+ * page faults, and any huge page assembly, happen before the program
+ * runs rather than on its allocation path.<p>
+ *
+ * The plan chooses the spaces to touch (see
+ * {@link org.mmtk.plan.Plan#preTouchSpaces}), so the initial heap goes to
+ * the spaces the program allocates into first, say its nursery, rather
+ * than to whichever spaces happened to be created first.  A contiguous
+ * space is touched from its start, and the discontiguous spaces share the
+ * region their chunks come from.  The memory is handed out to the
+ * contexts a chunk at a time.  A page is touched by atomically storing
+ * back the word at its start, so memory the VM is already using is left
+ * unchanged.  The VM waits for the contexts to finish before the program
+ * starts, so they never race with its allocation.
+ */
+@Uninterruptible
+public final class PreTouchContext extends CollectorContext {
+
+  /** The ranges of memory to touch: the spaces and the discontiguous region */
+  private static AddressArray rangeStarts;
+  /** The number of chunks to touch in each range */
+  private static int[] rangeChunks;
+  /** The number of ranges */
+  private static int ranges;
+  /** The range in the discontiguous region, or -1 if there is none yet */
+  private static int discontiguousRange;
+  /** The total number of chunks to touch */
+  private static int totalChunks;
+  /** The next chunk to be touched */
+  private static int nextChunk;
+  /** The number of contexts yet to finish */
+  private static int running;
+  /** When touching started */
+  private static long startTime;
+  /** How much of the initial heap is left to be added to the ranges */
+  private static Extent budget;
+  /** Guards the claiming of chunks, and signals when touching is done */
+  private static Monitor lock;
+
+  private PreTouchContext() {
+  }
+
+  /**
+   * Map the memory to be touched, then start the contexts that touch it
+   * and wait for them to finish.
+   *
+   * @param threads The number of contexts to touch the memory with
+   */
+  @Interruptible
+  public static void start(int threads) {
+    chooseRanges();
+    if (totalChunks == 0) return;
+    for (int i = 0; i < ranges; i++) {
+      HeapLayout.mmapper.ensureMapped(rangeStarts.get(i), rangeChunks[i] << (LOG_MMAP_CHUNK_BYTES - LOG_BYTES_IN_PAGE));
+    }
+
+    lock = VM.newHeavyCondLock("PreTouch");
+    running = threads;
+    startTime = VM.statistics.nanoTime();
+    for (int i = 0; i < threads; i++) {
+      VM.collection.spawnCollectorContext(new PreTouchContext());
+    }
+    lock.lock();
+    while (running > 0) {
+      lock.await();
+    }
+    lock.unlock();
+  }
+
+  /**
+   * Have the plan choose the ranges of memory to touch, sharing out as
+   * much as the initial heap size between them.
+   */
+  @Interruptible
+  static void chooseRanges() {
+    int count = Space.getSpaceCount();
+    rangeStarts = AddressArray.create(count + 1);
+    rangeChunks = new int[count + 1];
+    ranges = 0;
+    discontiguousRange = -1;
+    totalChunks = 0;
+    nextChunk = 0;
+    budget = HeapGrowthManager.getInitialHeapSize();
+    VM.activePlan.global().preTouchSpaces();
+  }
+
+  /**
+   * Touch up to a given amount of a space, or of the discontiguous region
+   * if the space is discontiguous, as far as what is left of the initial
+   * heap size allows.  The plan calls this for the spaces it allocates
+   * into, in the order they should be given the initial heap.
+   *
+   * @param space The space
+   * @param limit The most of the space to touch
+   */
+  @Interruptible
+  public static void addSpace(Space space, Extent limit) {
+    if (SpaceDescriptor.isContiguous(space.getDescriptor())) {
+      int chunks = takeChunks(limit.LT(space.getExtent()) ? limit : space.getExtent());
+      if (chunks == 0) return;
+      rangeStarts.set(ranges, space.getStart());
+      rangeChunks[ranges++] = chunks;
+    } else {
+      Extent region = Space.getDiscontigEnd().diff(Space.getDiscontigStart()).toWord().toExtent();
+      if (discontiguousRange >= 0) {
+        region = region.minus(Word.fromIntZeroExtend(rangeChunks[discontiguousRange]).lsh(LOG_MMAP_CHUNK_BYTES).toExtent());
+      }
+      int chunks = takeChunks(limit.LT(region) ? limit : region);
+      if (chunks == 0) return;
+      if (discontiguousRange < 0) {
+        discontiguousRange = ranges;
+        rangeStarts.set(ranges, Space.getDiscontigStart());
+        rangeChunks[ranges++] = 0;
+      }
+      rangeChunks[discontiguousRange] += chunks;
+    }
+  }
+
+  /**
+   * Take as many whole chunks for a range as the budget allows.
+   *
+   * @param extent The size of the range
+   * @return The number of chunks taken
+   */
+  @Interruptible
+  private static int takeChunks(Extent extent) {
+    if (extent.GT(budget)) extent = budget;
+    int chunks = extent.plus((1 << LOG_MMAP_CHUNK_BYTES) - 1).toWord().rshl(LOG_MMAP_CHUNK_BYTES).toInt();
+    Extent touched = Word.fromIntZeroExtend(chunks).lsh(LOG_MMAP_CHUNK_BYTES).toExtent();
+    budget = touched.GE(budget) ? Extent.zero() : budget.minus(touched);
+    totalChunks += chunks;
+    return chunks;
+  }
+
+  /** @return The number of ranges chosen to touch */
+  static int getRangeCount() {
+    return ranges;
+  }
+
+  /**
+   * @param range A range chosen to touch
+   * @return The start of the range
+   */
+  static Address getRangeStart(int range) {
+    return rangeStarts.get(range);
+  }
+
+  /**
+   * @param range A range chosen to touch
+   * @return The number of chunks to touch in the range
+   */
+  static int getRangeChunks(int range) {
+    return rangeChunks[range];
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      Address chunk = claimChunk();
+      if (chunk.isZero()) break;
+      Address end = chunk.plus(1 << LOG_MMAP_CHUNK_BYTES);
+      for (Address page = chunk; page.LT(end); page = page.plus(BYTES_IN_PAGE)) {
+        Word value = page.prepareWord();
+        page.attempt(value, value);
+      }
+    }
+    lock.lock();
+    if (--running == 0) {
+      if (Options.verbose.getValue() > 0) {
+        Log.write("Pre-touched ", totalChunks << (LOG_MMAP_CHUNK_BYTES - LOG_BYTES_IN_PAGE));
+        Log.write(" pages in ");
+        Log.write(VM.statistics.nanosToMillis(VM.statistics.nanoTime() - startTime));
+        Log.writeln(" ms");
+      }
+      lock.broadcast();
+    }
+    lock.unlock();
+  }
+
+  /**
+   * @return The start of the next chunk to touch, or zero if every
+   * chunk has been handed out
+   */
+  private static Address claimChunk() {
+    lock.lock();
+    int chunk = nextChunk;
+    if (chunk < totalChunks) nextChunk++;
+    lock.unlock();
+    if (chunk == totalChunks) return Address.zero();
+    int range = 0;
+    while (chunk >= rangeChunks[range]) {
+      chunk -= rangeChunks[range++];
+    }
+    return rangeStarts.get(range).plus(Word.fromIntZeroExtend(chunk).lsh(LOG_MMAP_CHUNK_BYTES).toOffset());
+  }
+}
@@ -146,7 +146,7 @@ public final class ByteMapMmapper extends Mmapper {
 //      Log.writeln(mmapStart);
       // might have become MAPPED here
       if (mapped[chunk] == UNMAPPED) {
-        int errno = VM.memory.dzmmap(mmapStart, MMAP_CHUNK_BYTES);
+        int errno = mmapChunk(mmapStart);
         if (errno != 0) {
           lock.release();
           Log.write("ensureMapped failed with errno ", errno);
@@ -414,7 +414,7 @@ public final class FragmentedMmapper extends Mmapper {
             Log.write(":", mmapStart.plus(MMAP_CHUNK_BYTES));
             Log.writeln(")");
           }
-          int errno = VM.memory.dzmmap(mmapStart, MMAP_CHUNK_BYTES);
+          int errno = mmapChunk(mmapStart);
           if (errno != 0) {
             lock.release();
             Log.write("ensureMapped failed with errno ", errno);
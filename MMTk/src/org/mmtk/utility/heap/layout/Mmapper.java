@@ -12,6 +12,8 @@
  */
 package org.mmtk.utility.heap.layout;
 
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
@@ -25,6 +27,12 @@ public abstract class Mmapper {
   protected static final int MMAP_CHUNK_BYTES = 1 << VMLayoutConstants.LOG_MMAP_CHUNK_BYTES;   // the granularity VMResource operates at
   protected static final int MMAP_CHUNK_MASK = MMAP_CHUNK_BYTES - 1;
 
+  /** The number of chunks demand zero mapped so far */
+  private int chunksMapped;
+
+  /** The time spent demand zero mapping chunks, in nanoseconds */
+  private long mmapNanos;
+
   /****************************************************************************
    * Generic mmap and protection functionality
    */
@@ -83,6 +91,38 @@ public abstract class Mmapper {
    */
   public abstract void protect(Address start, int pages);
 
+  /**
+   * Demand zero map a chunk, then place it on its NUMA node and ask for
+   * it to be backed by huge pages if the options call for them.  Called
+   * with the mmapper's lock held.
+   *
+   * @param start The start of the chunk
+   * @return 0 if successful, otherwise the system errno
+   */
+  protected final int mmapChunk(Address start) {
+    long before = VM.statistics.nanoTime();
+    int errno = VM.memory.dzmmap(start, MMAP_CHUNK_BYTES);
+    if (errno == 0) {
+      NumaMap.bind(start, MMAP_CHUNK_BYTES);
+      if (Options.hugePages != null && Options.hugePages.getValue()) {
+        VM.memory.adviseHugePages(start, MMAP_CHUNK_BYTES);
+      }
+      chunksMapped++;
+      mmapNanos += VM.statistics.nanoTime() - before;
+    }
+    return errno;
+  }
+
+  /** @return The number of chunks demand zero mapped so far */
+  public final int getChunksMapped() {
+    return chunksMapped;
+  }
+
+  /** @return The time spent demand zero mapping chunks, in nanoseconds */
+  public final long getMmapNanos() {
+    return mmapNanos;
+  }
+
   /**
    * Return a given address rounded up to an mmap chunk size
    *
@@ -0,0 +1,184 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap.layout;
+
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.*;
+
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class maps the heap onto NUMA nodes (see the
+ * {@link org.mmtk.utility.options.NumaNodes} option).<p>
+ *
+ * Chunks are interleaved across the nodes by address, so the node of
+ * any heap address is known without a table, and the mmappers ask the
+ * VM to place each chunk on its node as it is first mapped.  Page
+ * resources that can choose where to allocate give a thread pages from
+ * chunks on its own node, and collector threads are bound to nodes
+ * round robin, by ordinal.
+ */
+@Uninterruptible
+public final class NumaMap {
+
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The largest number of nodes that may be configured */
+  public static final int MAX_NODES = 8;
+
+  /** Lock protecting the statistics */
+  private static final Lock lock = VM.newLock("NumaMap");
+
+  /** Pages acquired on each node */
+  private static final long[] pagesAcquired = new long[MAX_NODES];
+
+  /** Pages acquired on each node by threads running on another node */
+  private static final long[] remotePagesAcquired = new long[MAX_NODES];
+
+  /****************************************************************************
+   *
+   * Node mapping
+   */
+
+  /**
+   * @return The number of nodes the heap is partitioned across
+   */
+  @Inline
+  public static int nodes() {
+    return Options.numaNodes == null ? 1 : Options.numaNodes.getValue();
+  }
+
+  /**
+   * @return {@code true} if the heap is partitioned across more than one node
+   */
+  @Inline
+  public static boolean isEnabled() {
+    return nodes() > 1;
+  }
+
+  /**
+   * @param address An address in the heap
+   * @return The node the chunk containing the address is placed on
+   */
+  @Inline
+  public static int getNode(Address address) {
+    return address.toWord().rshl(LOG_BYTES_IN_CHUNK).toInt() % nodes();
+  }
+
+  /**
+   * @return The node the current thread is running on
+   */
+  public static int getCurrentNode() {
+    int nodes = nodes();
+    if (nodes == 1) return 0;
+    int node = VM.memory.getNumaNode();
+    return node < 0 ? 0 : node % nodes;
+  }
+
+  /**
+   * @param ordinal The ordinal of a parallel collector
+   * @return The node the collector is bound to
+   */
+  @Inline
+  public static int getCollectorNode(int ordinal) {
+    return ordinal % nodes();
+  }
+
+  /**
+   * Return the first chunk at or after a chunk that is placed on a node.
+   *
+   * @param chunk The start of a chunk
+   * @param node The node
+   * @return The first chunk on the node at or after <code>chunk</code>
+   */
+  @Inline
+  public static Address getChunkOnNode(Address chunk, int node) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Conversions.chunkAlign(chunk, true).EQ(chunk));
+    int nodes = nodes();
+    int skip = (node - getNode(chunk) + nodes) % nodes;
+    return chunk.plus(skip << LOG_BYTES_IN_CHUNK);
+  }
+
+  /****************************************************************************
+   *
+   * Placement
+   */
+
+  /**
+   * Place a newly mapped area of memory on the node of the chunk that
+   * contains it.  The area must not span chunks.
+   *
+   * @param start The start of the area
+   * @param bytes The size of the area in bytes
+   */
+  public static void bind(Address start, int bytes) {
+    if (!isEnabled()) return;
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Conversions.chunkAlign(start, true).EQ(Conversions.chunkAlign(start.plus(bytes - 1), true)));
+    VM.memory.bindToNumaNode(start, bytes, getNode(start));
+  }
+
+  /**
+   * Bind the current thread, a parallel collector, to its node.
+   *
+   * @param ordinal The ordinal of the collector
+   */
+  public static void bindCollector(int ordinal) {
+    if (!isEnabled()) return;
+    VM.memory.bindThreadToNumaNode(getCollectorNode(ordinal));
+  }
+
+  /****************************************************************************
+   *
+   * Statistics
+   */
+
+  /**
+   * Record the acquisition of pages by the current thread.
+   *
+   * @param start The start of the pages
+   * @param pages The number of pages
+   * @param home The node the current thread is running on
+   */
+  public static void recordAcquire(Address start, int pages, int home) {
+    int node = getNode(start);
+    lock.acquire();
+    pagesAcquired[node] += pages;
+    if (node != home) remotePagesAcquired[node] += pages;
+    lock.release();
+  }
+
+  /**
+   * Print the number of pages acquired on each node, and how many of
+   * them were acquired by threads on another node.
+   */
+  public static void printStats() {
+    Log.write("NUMA pages acquired:");
+    for (int node = 0; node < nodes(); node++) {
+      if (node > 0) Log.write(",");
+      Log.write(" node ", node);
+      Log.write(": ", pagesAcquired[node]);
+      Log.write(" (", remotePagesAcquired[node]);
+      Log.write(" remote)");
+    }
+    Log.writeln();
+  }
+}
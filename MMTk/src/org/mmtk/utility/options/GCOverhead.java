@@ -0,0 +1,36 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The fraction of total time that may be spent in GC when the heap is
+ * sized against a pause target.
+ */
+public final class GCOverhead extends org.vmutil.options.FloatOption {
+  /**
+   * Create the option.
+   */
+  public GCOverhead() {
+    super(Options.set, "GC Overhead",
+          "Fraction of time that may be spent in GC when sizing the heap against a pause target",
+          0.05f);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  @Override
+  protected void validate() {
+    failIf((this.value <= 0 || this.value >= 1.0), "Overhead must be a float between 0 and 1");
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should chunks of virtual memory be backed by (transparent) huge pages
+ * when they are mapped?
+ */
+public final class HugePages extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public HugePages() {
+    super(Options.set, "Huge Pages",
+          "If true, ask for huge pages to back each chunk of memory as it is mapped",
+          false);
+  }
+}
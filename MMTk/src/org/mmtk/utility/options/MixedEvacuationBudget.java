@@ -0,0 +1,31 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+import static org.mmtk.policy.immix.ImmixConstants.DEFAULT_MIXED_EVACUATION_BUDGET;
+
+/**
+ * The amount of live mature data that each nursery collection of a
+ * generational immix collector may evacuate from fragmented blocks.
+ * Zero disables such mixed collections.
+ */
+public class MixedEvacuationBudget extends org.vmutil.options.PagesOption {
+  /**
+   * Create the option.
+   */
+  public MixedEvacuationBudget() {
+    super(Options.set, "Mixed Evacuation Budget",
+          "Evacuate up to this much live data from fragmented mature blocks at each nursery collection.",
+          DEFAULT_MIXED_EVACUATION_BUDGET);
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should every mature block with live data be evacuated by mixed
+ * collections, however full it is?  Only has an effect when the
+ * mixed evacuation budget is set, and blocks with more live data than
+ * the budget are still left alone.
+ */
+public final class MixedEvacuationStress extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public MixedEvacuationStress() {
+    super(Options.set, "Mixed Evacuation Stress",
+        "Should every mature block with live data be evacuated by mixed collections, however full it is?",
+        false);
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+import org.mmtk.utility.heap.layout.NumaMap;
+
+/**
+ * The number of NUMA nodes across which to partition the heap.
+ */
+public final class NumaNodes extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public NumaNodes() {
+    super(Options.set, "Numa Nodes",
+          "Number of NUMA nodes to interleave heap chunks across and bind collector threads to (1 disables NUMA-aware allocation)",
+          1);
+  }
+
+  /**
+   * Only accept values between 1 and the maximum number of nodes (inclusive)
+   */
+  @Override
+  protected void validate() {
+    failIf(this.value < 1, "Must have at least one NUMA node");
+    failIf(this.value > NumaMap.MAX_NODES, "Too many NUMA nodes");
+  }
+}
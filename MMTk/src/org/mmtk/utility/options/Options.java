@@ -42,18 +42,27 @@ public final class Options {
   public static GCspyPort gcspyPort;
   public static GCspyTileSize gcspyTileSize;
   public static GCspyWait gcspyWait;
+  public static GCOverhead gcOverhead;
   public static GCTimeCap gcTimeCap;
   public static GenCycleDetection genCycleDetection;
   public static HarnessAll harnessAll;
+  public static HugePages hugePages;
   public static IgnoreSystemGC ignoreSystemGC;
+  public static LazyBlockSweep lazyBlockSweep;
   public static LineReuseRatio lineReuseRatio;
+  public static LineZeroing lineZeroing;
   public static MarkSweepMarkBits markSweepMarkBits;
   public static MetaDataLimit metaDataLimit;
+  public static MixedEvacuationBudget mixedEvacuationBudget;
+  public static MixedEvacuationStress mixedEvacuationStress;
   public static NoFinalizer noFinalizer;
   public static NoReferenceTypes noReferenceTypes;
   public static NurserySize nurserySize;
+  public static NumaNodes numaNodes;
+  public static PauseTarget pauseTarget;
   public static PerfEvents perfEvents;
   public static PretenureThresholdFraction pretenureThresholdFraction;
+  public static PreTouch preTouch;
   public static PrintPhaseStats printPhaseStats;
   public static ProtectOnRelease protectOnRelease;
   public static SanityCheck sanityCheck;
@@ -66,5 +75,6 @@ public final class Options {
   public static VerboseFragmentationStats verboseFragmentationStats;
   public static Verbose verbose;
   public static VerboseTiming verboseTiming;
+  public static WorkStealing workStealing;
   public static XmlStats xmlStats;
 }
@@ -0,0 +1,28 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The pause time the heap growth manager should aim for when sizing the
+ * heap and nursery.  Zero selects the default heap sizing function.
+ */
+public final class PauseTarget extends org.vmutil.options.MicrosecondsOption {
+  /**
+   * Create the option.
+   */
+  public PauseTarget() {
+    super(Options.set, "Pause Target",
+          "Size the heap and nursery to keep collection pauses below this time (0 to disable)",
+          0);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.statistics;
+
+import org.mmtk.utility.Log;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * An event counter that parallel collector threads can increment
+ * without synchronization.  Each collector counts into its own slot,
+ * and the slots are folded into the phase count when the phase ends.
+ * The totals for each collector are reported separately, which shows
+ * how evenly work was spread between them.
+ */
+@Uninterruptible
+public class CollectorEventCounter extends EventCounter {
+
+  /** The number of collectors for which counts are kept */
+  public static final int MAX_COLLECTORS = 64;
+
+  /****************************************************************************
+   *
+   * Instance variables
+   */
+
+  /** Events counted by each collector in the current phase */
+  private final long[] current = new long[MAX_COLLECTORS];
+
+  /** Events counted by each collector in all phases */
+  private final long[] total = new long[MAX_COLLECTORS];
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   *
+   * @param name The name to be associated with this counter
+   * @param start {@code true} if this counter is to be implicitly started
+   * when <code>startAll()</code> is called (otherwise the counter
+   * must be explicitly started).
+   * @param mergephases {@code true} if this counter does not separately
+   * report GC and Mutator phases.
+   */
+  public CollectorEventCounter(String name, boolean start, boolean mergephases) {
+    super(name, start, mergephases);
+  }
+
+  /****************************************************************************
+   *
+   * Counter-specific methods
+   */
+
+  /**
+   * Increment the count for a collector.
+   *
+   * @param collector The ordinal of the collector recording the event
+   */
+  @Inline
+  public void inc(int collector) {
+    if (Stats.gatheringStats && collector < MAX_COLLECTORS) current[collector]++;
+  }
+
+  /**
+   * Fold the counts of the individual collectors into the current count.
+   */
+  private void gather() {
+    for (int i = 0; i < MAX_COLLECTORS; i++) {
+      currentCount += current[i];
+      total[i] += current[i];
+      current[i] = 0;
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Generic counter control methods: start, stop, print etc
+   */
+
+  @Override
+  protected void stop() {
+    if (Stats.gatheringStats) gather();
+    super.stop();
+  }
+
+  @Override
+  void phaseChange(int oldPhase) {
+    gather();
+    super.phaseChange(oldPhase);
+  }
+
+  /**
+   * Print the total for each collector that recorded an event.
+   */
+  @Override
+  void printDetail() {
+    Log.write(getName());
+    Log.write(" per collector:");
+    for (int i = 0; i < MAX_COLLECTORS; i++) {
+      if (total[i] != 0) {
+        Log.write(" ");
+        Log.write(i);
+        Log.write("=");
+        Log.write(total[i]);
+      }
+    }
+    Log.writeln();
+  }
+}
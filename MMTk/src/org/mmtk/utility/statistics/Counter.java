@@ -147,6 +147,13 @@ public abstract class Counter {
     if (Stats.phase > 0) printCount(Stats.phase - 1);
   }
 
+  /**
+   * Print any further breakdown of this counter's totals, on lines
+   * of its own.  By default there is none.
+   */
+  void printDetail() {
+  }
+
 
   /****************************************************************************
    *
@@ -209,6 +209,9 @@ public class Stats {
       }
     }
     Log.writeln();
+    for (int c = 0; c < counters; c++) {
+      counter[c].printDetail();
+    }
     Log.write("Total time: ");
     Plan.totalTime.printTotal();
     Log.writeln(" ms");
@@ -136,6 +136,46 @@ import org.vmmagic.pragma.*;
   @Inline
   public abstract void isync();
 
+  /**
+   * @return The NUMA node of the processor the current thread is running
+   * on.  VMs that do not support NUMA placement return 0.
+   */
+  public int getNumaNode() {
+    return 0;
+  }
+
+  /**
+   * Prefer a NUMA node for the physical pages backing an area of virtual
+   * memory.  Only pages that have not yet been touched are affected.
+   * VMs that do not support NUMA placement ignore the request.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @param node the NUMA node
+   */
+  public void bindToNumaNode(Address start, int size, int node) {
+  }
+
+  /**
+   * Restrict the current thread to the processors of a NUMA node.
+   * VMs that do not support NUMA placement ignore the request.
+   *
+   * @param node the NUMA node
+   */
+  public void bindThreadToNumaNode(int node) {
+  }
+
+  /**
+   * Ask for an area of virtual memory to be backed by huge pages, to
+   * reduce TLB misses.  This is only advice: VMs or operating systems
+   * that do not support huge pages ignore the request.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   */
+  public void adviseHugePages(Address start, int size) {
+  }
+
   /*
    * NOTE: The following methods must be implemented by subclasses of this
    * class, but are internal to the VM<->MM interface glue, so are never
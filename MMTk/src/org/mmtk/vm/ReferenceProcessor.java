@@ -40,6 +40,33 @@ public abstract class ReferenceProcessor {
    */
   public abstract void scan(TraceLocal trace, boolean nursery, boolean retain);
 
+  /**
+   * Scan through a share of the list of references.  Every collector
+   * calls this with its own trace, and once all of them have returned
+   * exactly one calls {@link #completeScan(boolean)}.
+   * <p>
+   * By default the first collector scans the whole list.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery {@code true} if it is safe to only scan new references.
+   * @param retain whether to retain those references whose referents are not
+   *  reachable
+   * @param worker the ordinal of the calling collector
+   * @param workers the number of collectors sharing the scan
+   */
+  public void scan(TraceLocal trace, boolean nursery, boolean retain, int worker, int workers) {
+    if (worker == 0) scan(trace, nursery, retain);
+  }
+
+  /**
+   * Complete a scan shared among the collectors.
+   *
+   * @param retain whether the scan retained those references whose
+   *  referents are not reachable
+   */
+  public void completeScan(boolean retain) {
+  }
+
   /**
    * Iterate over all references and forward.
    *
@@ -48,6 +75,28 @@ public abstract class ReferenceProcessor {
    */
   public abstract void forward(TraceLocal trace, boolean nursery);
 
+  /**
+   * Forward a share of the references.  Every collector calls this with
+   * its own trace, and once all of them have returned exactly one calls
+   * {@link #completeForward()}.
+   * <p>
+   * By default the first collector forwards all references.
+   *
+   * @param trace The MMTk trace to forward to
+   * @param nursery The nursery collection hint
+   * @param worker the ordinal of the calling collector
+   * @param workers the number of collectors sharing the work
+   */
+  public void forward(TraceLocal trace, boolean nursery, int worker, int workers) {
+    if (worker == 0) forward(trace, nursery);
+  }
+
+  /**
+   * Complete forwarding shared among the collectors.
+   */
+  public void completeForward() {
+  }
+
   /**
    * @return the number of references objects on the queue
    */
@@ -146,6 +146,28 @@ import org.vmmagic.unboxed.*;
    */
   public abstract void computeBootImageRoots(TraceLocal trace);
 
+  /**
+   * Process the weak roots that the VM holds outside of reference objects
+   * (such as JNI weak global references): roots whose referents are not
+   * live are cleared, and the others are updated to the forwarded
+   * referents.  This is called by every collector thread during weak
+   * reference processing, and each should process its share of the roots.
+   *
+   * @param trace The trace to use.
+   * @param nursery {@code true} if this is a nursery collection
+   */
+  public abstract void processWeakGlobalRoots(TraceLocal trace, boolean nursery);
+
+  /**
+   * Forward the weak roots that survived {@link #processWeakGlobalRoots},
+   * for collectors that move objects after determining liveness.  This is
+   * called by every collector thread.
+   *
+   * @param trace The trace to use.
+   * @param nursery {@code true} if this is a nursery collection
+   */
+  public abstract void forwardWeakGlobalRoots(TraceLocal trace, boolean nursery);
+
   /**
    * @return true if the runtime supports a return barrier
    */
@@ -31,6 +31,7 @@ import org.jikesrvm.classloader.TypeDescriptorParsing;
 import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.compilers.baseline.BaselineCompiler;
 import org.jikesrvm.compilers.common.BootImageCompiler;
+import org.jikesrvm.compilers.common.CompiledMethods;
 import org.jikesrvm.compilers.common.RuntimeCompiler;
 import org.jikesrvm.mm.mminterface.MemoryManager;
 import org.jikesrvm.runtime.BootRecord;
@@ -291,6 +292,12 @@ public class VM extends Properties {
     if (verboseBoot >= 1) VM.sysWriteln("Booting Lock");
     Lock.boot();
 
+    // Index the code of the boot image methods (and anything compiled since)
+    // so that instruction addresses can be mapped to methods efficiently.
+    //
+    if (verboseBoot >= 1) VM.sysWriteln("Building compiled code index");
+    CompiledMethods.boot();
+
     // Enable multiprocessing.
     // Among other things, after this returns, GC and dynamic class loading are enabled.
     //
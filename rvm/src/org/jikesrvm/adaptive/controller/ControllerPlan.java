@@ -187,7 +187,7 @@ public final class ControllerPlan {
     int newCMID = RuntimeCompiler.recompileWithOpt(cp);
     int prevCMID = getPrevCMID();
 
-    if (Controller.options.sampling()) {
+    if (Controller.options.sampling() && prevCMID != -1) {
       // transfer the samples from the old CMID to the new CMID.
       // scale the number of samples down by the expected speedup
       // in the newly compiled method.
@@ -31,6 +31,8 @@ import org.jikesrvm.adaptive.util.AOSExternalOptions;
 import org.jikesrvm.adaptive.util.AOSGenerator;
 import org.jikesrvm.adaptive.util.AOSLogging;
 import org.jikesrvm.adaptive.util.AOSOptions;
+import org.jikesrvm.adaptive.util.ProfileCache;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
 import org.jikesrvm.scheduler.SoftLatch;
 import org.jikesrvm.scheduler.SystemThread;
 import org.vmmagic.pragma.NonMoving;
@@ -113,7 +115,7 @@ public final class ControllerThread extends SystemThread {
       }
       Controller.osrOrganizer = new OSROrganizerThread();
       Controller.osrOrganizer.start();
-      createCompilationThread();
+      createCompilationThreads();
       // We're running an AOS bootimage with a non-adaptive primary strategy.
       // We already set up any requested profiling infrastructure, so nothing
       // left to do but exit.
@@ -139,8 +141,8 @@ public final class ControllerThread extends SystemThread {
     // Create the organizerThreads and schedule them
     createOrganizerThreads();
 
-    // Create the compilationThread and schedule it
-    createCompilationThread();
+    // Create the compilation threads and schedule them
+    createCompilationThreads();
 
     if (Controller.options.sampling()) {
       // Create our set of standard optimization plans.
@@ -150,6 +152,9 @@ public final class ControllerThread extends SystemThread {
 
     }
 
+    // Replay the hot methods of the previous run, if it left a snapshot
+    ProfileCache.boot();
+
     controllerInitDone();
 
     // Enter main controller loop.
@@ -221,12 +226,20 @@ public final class ControllerThread extends SystemThread {
   ///////////////////////
 
   /**
-   *  Creates and schedules the compilationThread.
+   *  Creates and schedules the compilation threads and allows the
+   *  runtime compiler to run as many opt compilations in parallel.
    */
-  private void createCompilationThread() {
-    CompilationThread ct = new CompilationThread();
-    Controller.compilationThread = ct;
-    ct.start();
+  private void createCompilationThreads() {
+    int n = Math.max(1, Controller.options.COMPILATION_THREADS);
+    RuntimeCompiler.setMaxParallelOptCompilations(n);
+    CompilationThread[] threads = new CompilationThread[n];
+    for (int i = 0; i < n; i++) {
+      threads[i] = new CompilationThread(i);
+    }
+    Controller.compilationThreads = threads;
+    for (CompilationThread ct : threads) {
+      ct.start();
+    }
   }
 
   /**
@@ -44,6 +44,29 @@ public final class MethodCountSet {
     counters = _counters;
   }
 
+  /**
+   * @return the number of compiled methods in the set
+   */
+  public int size() {
+    return cms.length;
+  }
+
+  /**
+   * @param i an index into the set
+   * @return the compiled method at the given index
+   */
+  public CompiledMethod getCompiledMethod(int i) {
+    return cms[i];
+  }
+
+  /**
+   * @param i an index into the set
+   * @return the count of the compiled method at the given index
+   */
+  public double getCount(int i) {
+    return counters[i];
+  }
+
   /**
    * String representation of fields
    *
@@ -12,9 +12,11 @@
  */
 package org.jikesrvm.adaptive.recompilation;
 
+import org.jikesrvm.VM;
 import org.jikesrvm.adaptive.OnStackReplacementPlan;
 import org.jikesrvm.adaptive.controller.Controller;
 import org.jikesrvm.adaptive.controller.ControllerPlan;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.scheduler.SystemThread;
 import org.vmmagic.pragma.NonMoving;
 
@@ -24,17 +26,37 @@ import org.vmmagic.pragma.NonMoving;
  *  thread will pick the highest priority compilation plan from the queue
  *  and invoke the OPT compiler to perform the plan.
  *  <p>
+ *  There may be several compilation threads (see the
+ *  {@code COMPILATION_THREADS} option), all draining the same queue.
+ *  <p>
  *  No intelligence is contained in this class.  All policy decisions are
  *  made by the ControllerThread.
  */
 @NonMoving
 public final class CompilationThread extends SystemThread {
 
+  /**
+   * Index of this thread among the compilation threads
+   */
+  private final int id;
+
+  /**
+   * Number of plans performed by this thread
+   */
+  private int plansPerformed;
+
+  /**
+   * Total time in milliseconds this thread spent performing plans
+   */
+  private double planTime;
+
   /**
    * constructor
+   * @param id index of this thread among the compilation threads
    */
-  public CompilationThread() {
-    super("CompilationThread");
+  public CompilationThread(int id) {
+    super(id == 0 ? "CompilationThread" : "CompilationThread-" + id);
+    this.id = id;
   }
 
   /**
@@ -48,13 +70,29 @@ public final class CompilationThread extends SystemThread {
     // Repeat...
     while (true) {
       Object plan = Controller.compilationQueue.deleteMin();
+      long start = Time.nanoTime();
       if (plan instanceof ControllerPlan) {
         ((ControllerPlan) plan).doRecompile();
       } else if (plan instanceof OnStackReplacementPlan) {
         ((OnStackReplacementPlan) plan).execute();
       }
+      planTime += Time.nanosToMillis(Time.nanoTime() - start);
+      plansPerformed++;
     }
   }
 
+  /**
+   * Prints the number of plans performed by this thread and the time
+   * spent performing them.
+   */
+  public void report() {
+    VM.sysWrite("CompThread", id);
+    VM.sysWrite("\t");
+    VM.sysWrite(plansPerformed);
+    VM.sysWrite("\t");
+    VM.sysWrite(planTime);
+    VM.sysWriteln();
+  }
+
 }
 
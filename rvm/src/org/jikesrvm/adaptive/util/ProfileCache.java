@@ -0,0 +1,286 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.adaptive.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jikesrvm.VM;
+import org.jikesrvm.adaptive.controller.Controller;
+import org.jikesrvm.adaptive.controller.ControllerMemory;
+import org.jikesrvm.adaptive.controller.ControllerPlan;
+import org.jikesrvm.adaptive.database.methodsamples.MethodCountSet;
+import org.jikesrvm.adaptive.recompilation.InvocationCounts;
+import org.jikesrvm.classloader.Atom;
+import org.jikesrvm.classloader.BootstrapClassLoader;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.baseline.EdgeCounts;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.runtimesupport.OptCompiledMethod;
+import org.jikesrvm.runtime.Callbacks;
+
+/**
+ * A profile snapshot that is carried over from one run to the next, so that
+ * the hot methods of an application don't have to be rediscovered after
+ * every start.
+ * <p>
+ * The snapshot lives in the directory given by
+ * <code>-X:aos:pcd=path-to-directory</code> and is written when the VM
+ * exits.  It consists of three files in the formats that are already used
+ * for replay compilation:
+ * <ul>
+ *   <li>the hot optimized methods and their opt levels, as compiler advice
+ *       (see {@link CompilerAdviceInfoReader}), hottest first;</li>
+ *   <li>the dynamic call graph (see {@link DynamicCallFileInfoReader});</li>
+ *   <li>the baseline edge counts (see {@link EdgeCounts}).</li>
+ * </ul>
+ * When the VM starts with a snapshot in place, the call graph and edge
+ * counts seed the profile data of the new run, and each recorded hot method
+ * is handed to the background compilation threads as soon as its class has
+ * been initialized, instead of waiting for the method samples to show that
+ * it is hot again.
+ *
+ * @see org.jikesrvm.adaptive.recompilation.BulkCompile
+ */
+public final class ProfileCache implements Callbacks.ClassInitializedMonitor, Callbacks.ExitMonitor {
+
+  private static final String ADVICE_FILE = "profile.ca";
+  private static final String CALL_GRAPH_FILE = "profile.dc";
+  private static final String EDGE_COUNT_FILE = "profile.ec";
+
+  /**
+   * A method that was hot in the previous run.
+   */
+  private static final class HotMethod {
+    final Atom name;
+    final Atom descriptor;
+    final int optLevel;
+    /** Priority of the compilation, higher for methods that were hotter */
+    final double priority;
+
+    HotMethod(Atom name, Atom descriptor, int optLevel, double priority) {
+      this.name = name;
+      this.descriptor = descriptor;
+      this.optLevel = optLevel;
+      this.priority = priority;
+    }
+  }
+
+  /**
+   * The recorded hot methods that have not been compiled yet, by the
+   * descriptor of their class.
+   */
+  private final Map<Atom, List<HotMethod>> pending = new HashMap<Atom, List<HotMethod>>();
+
+  /** The directory the snapshot is read from and written to */
+  private final String directory;
+
+  private ProfileCache(String directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Load the snapshot, if there is one, and arrange for a new one to be
+   * written at exit.  Called by the controller thread once the
+   * recompilation strategy has been set up.
+   */
+  public static void boot() {
+    String directory = Controller.options.PROFILE_CACHE_DIR;
+    if (directory == null) return;
+
+    ProfileCache cache = new ProfileCache(directory);
+    cache.load();
+    Callbacks.addClassInitializedMonitor(cache);
+    Callbacks.addExitMonitor(cache);
+    cache.compileInitializedClasses();
+  }
+
+  /*
+   * Loading the snapshot
+   */
+
+  private void load() {
+    File edgeCounts = new File(directory, EDGE_COUNT_FILE);
+    if (edgeCounts.exists()) {
+      EdgeCounts.readCounts(edgeCounts.getPath());
+    }
+    File callGraph = new File(directory, CALL_GRAPH_FILE);
+    if (callGraph.exists() && Controller.dcgAvailable()) {
+      DynamicCallFileInfoReader.readDynamicCallFile(callGraph.getPath(), false);
+    }
+    File advice = new File(directory, ADVICE_FILE);
+    if (advice.exists()) {
+      List<CompilerAdviceAttribute> attributes = CompilerAdviceInfoReader.readCompilerAdviceFile(advice.getPath());
+      if (attributes != null) {
+        int rank = attributes.size();
+        for (CompilerAdviceAttribute attribute : attributes) {
+          if (attribute == null || attribute.getOptLevel() < 0) continue;
+          List<HotMethod> methods = pending.get(attribute.getClassName());
+          if (methods == null) {
+            methods = new ArrayList<HotMethod>();
+            pending.put(attribute.getClassName(), methods);
+          }
+          methods.add(new HotMethod(attribute.getMethodName(), attribute.getMethodSig(),
+                                    attribute.getOptLevel(), rank--));
+        }
+      }
+    }
+    if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
+      VM.sysWriteln("Loaded profile cache from ", directory);
+    }
+  }
+
+  /**
+   * Schedule the hot methods of classes that were initialized before the
+   * snapshot was loaded, e.g. those of the boot image.
+   */
+  private void compileInitializedClasses() {
+    List<RVMClass> initialized = new ArrayList<RVMClass>();
+    synchronized (this) {
+      for (Atom className : pending.keySet()) {
+        TypeReference tRef = TypeReference.findOrCreate(BootstrapClassLoader.getBootstrapClassLoader(), className);
+        RVMType type = tRef.peekType();
+        if (type != null && type.isClassType() && type.asClass().isInitialized()) {
+          initialized.add(type.asClass());
+        }
+      }
+    }
+    for (RVMClass klass : initialized) {
+      notifyClassInitialized(klass);
+    }
+  }
+
+  @Override
+  public void notifyClassInitialized(RVMClass klass) {
+    List<HotMethod> methods;
+    synchronized (this) {
+      if (pending.isEmpty()) return;
+      methods = pending.remove(klass.getDescriptor());
+    }
+    if (methods == null) return;
+    for (HotMethod hot : methods) {
+      RVMMethod method = klass.findDeclaredMethod(hot.name, hot.descriptor);
+      if (method instanceof NormalMethod && !method.hasNoOptCompileAnnotation()) {
+        schedule((NormalMethod) method, hot);
+      }
+    }
+  }
+
+  /**
+   * Hand a hot method to the compilation threads, unless the controller
+   * already took care of it.
+   *
+   * @param method the method to compile
+   * @param hot what was recorded about the method
+   */
+  private void schedule(NormalMethod method, HotMethod hot) {
+    if (ControllerMemory.findLatestPlan(method) != null) return;
+
+    int optLevel = Math.min(hot.optLevel, Controller.options.DERIVED_MAX_OPT_LEVEL);
+    CompiledMethod cm = method.getCurrentCompiledMethod();
+    if (cm != null && cm.getCompilerType() == CompiledMethod.OPT &&
+        ((OptCompiledMethod) cm).getOptLevel() >= optLevel) {
+      return;
+    }
+
+    CompilationPlan compPlan;
+    if (Controller.options.counters()) {
+      compPlan = InvocationCounts.createCompilationPlan(method);
+    } else {
+      compPlan = Controller.recompilationStrategy.createCompilationPlan(method, optLevel, null);
+    }
+    int prevCMID = cm == null ? -1 : cm.getId();
+    new ControllerPlan(compPlan, Controller.controllerClock, prevCMID, 1.0, 0.0, hot.priority).execute();
+  }
+
+  /*
+   * Writing the snapshot
+   */
+
+  @Override
+  public void notifyExit(int value) {
+    File dir = new File(directory);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      VM.sysWriteln("Unable to create profile cache directory ", directory);
+      return;
+    }
+    writeHotMethods(new File(dir, ADVICE_FILE).getPath());
+    if (Controller.dcgAvailable()) {
+      Controller.dcg.dumpGraph(new File(dir, CALL_GRAPH_FILE).getPath());
+    }
+    EdgeCounts.dumpCounts(new File(dir, EDGE_COUNT_FILE).getPath());
+  }
+
+  /**
+   * Write the optimized methods whose share of the method samples is above
+   * the threshold, hottest first.
+   *
+   * @param fileName the name of the advice file
+   */
+  private void writeHotMethods(String fileName) {
+    if (Controller.methodSamples == null) return;
+
+    final List<CompiledMethod> hot = new ArrayList<CompiledMethod>();
+    final Map<CompiledMethod, Double> samples = new HashMap<CompiledMethod, Double>();
+    for (int level = 0; level <= Controller.options.DERIVED_MAX_OPT_LEVEL; level++) {
+      MethodCountSet set = Controller.methodSamples.collectHotMethods(level, Controller.options.PROFILE_CACHE_THRESHOLD);
+      for (int i = 0; i < set.size(); i++) {
+        CompiledMethod cm = set.getCompiledMethod(i);
+        // code that has been replaced doesn't say anything about the method
+        if (cm.getMethod().getCurrentCompiledMethod() == cm) {
+          hot.add(cm);
+          samples.put(cm, set.getCount(i));
+        }
+      }
+    }
+    Collections.sort(hot, new Comparator<CompiledMethod>() {
+      @Override
+      public int compare(CompiledMethod cm1, CompiledMethod cm2) {
+        return Double.compare(samples.get(cm2), samples.get(cm1));
+      }
+    });
+
+    PrintStream out;
+    try {
+      out = new PrintStream(new FileOutputStream(fileName));
+    } catch (IOException e) {
+      VM.sysWriteln("Unable to write profile cache file ", fileName);
+      return;
+    }
+    for (CompiledMethod cm : hot) {
+      RVMMethod method = cm.getMethod();
+      out.println(method.getDeclaringClass().getDescriptor() +
+                  " " +
+                  method.getName() +
+                  " " +
+                  method.getDescriptor() +
+                  " " +
+                  CompiledMethod.OPT +
+                  " " +
+                  ((OptCompiledMethod) cm).getOptLevel());
+    }
+    out.close();
+  }
+}
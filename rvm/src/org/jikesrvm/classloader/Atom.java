@@ -26,11 +26,12 @@ import static org.jikesrvm.classloader.ClassLoaderConstants.VoidTypeCode;
 
 import java.io.UTFDataFormatException;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.runtime.Statics;
-import org.jikesrvm.util.ImmutableEntryHashMapRVM;
+import org.jikesrvm.scheduler.Synchronization;
+import org.jikesrvm.util.ConcurrentImmutableEntryHashMapRVM;
 import org.jikesrvm.util.StringUtilities;
 import org.vmmagic.pragma.Pure;
 import org.vmmagic.pragma.Uninterruptible;
@@ -57,8 +58,8 @@ public final class Atom {
   /**
    * Used to canonicalize Atoms: possibly non-canonical Atom =&gt; Atom
    */
-  private static final ImmutableEntryHashMapRVM<Atom, Atom> dictionary =
-    new ImmutableEntryHashMapRVM<Atom, Atom>(12000);
+  private static final ConcurrentImmutableEntryHashMapRVM<Atom, Atom> dictionary =
+    new ConcurrentImmutableEntryHashMapRVM<Atom, Atom>(12000);
 
   /**
    * 2^LOG_ROW_SIZE is the number of elements per row
@@ -75,8 +76,9 @@ public final class Atom {
 
   /**
    * Used to assign ids. Don't use id 0 to allow clients to use id 0 as a 'null'.
+   * An array, so that ids can be handed out with an atomic increment.
    */
-  private static int nextId = 1;
+  private static final int[] nextId = {1};
 
   /**
    * A reference to either a unicode String encoding the atom, an offset in the
@@ -201,27 +203,66 @@ public final class Atom {
     val = dictionary.get(val);
     if (val != null || !create) return val;
 
-    synchronized (Atom.class) {
-      // Check if a matching Atom was created while
-      // the current thread tried to acquire the lock
-      val = new Atom(bytes, -1, str);
-      val = dictionary.get(val);
-      if (val != null) return val;
+    // Make the new atom reachable through its id before publishing it, so
+    // that getAtom works for any atom another thread can find.  If another
+    // thread publishes a matching atom first, ours and its id are dropped.
+    val = new Atom(bytes, newId(), str);
+    setAtom(val.id, val);
+    Atom existing = dictionary.putIfAbsent(val, val);
+    if (existing != null) {
+      setAtom(val.id, null);
+      return existing;
+    }
+    return val;
+  }
 
-      val = new Atom(bytes, nextId++, str);
-      int column = val.id >> LOG_ROW_SIZE;
-      if (column == atoms.length) {
-        Atom[][] tmp = new Atom[column + 1][];
-        for (int i = 0; i < column; i++) {
-          tmp[i] = atoms[i];
-        }
-        atoms = tmp;
-        atoms[column] = new Atom[1 << LOG_ROW_SIZE];
+  /**
+   * @return a fresh atom id
+   */
+  private static int newId() {
+    if (VM.runningVM) {
+      return Synchronization.fetchAndAdd(nextId, Offset.zero(), 1);
+    } else {
+      synchronized (nextId) {
+        return nextId[0]++;
       }
-      atoms[column][val.id & ROW_MASK] = val;
-      dictionary.put(val, val);
     }
-    return val;
+  }
+
+  /**
+   * Records the atom with the given id, growing the table of atoms if
+   * necessary.  Ids are unique, so only growing the table needs a lock.
+   *
+   * @param id the id of the atom
+   * @param atom the atom, or {@code null} to forget the id
+   */
+  private static void setAtom(int id, Atom atom) {
+    int column = id >> LOG_ROW_SIZE;
+    Atom[][] table = atoms;
+    if (column >= table.length || table[column] == null) {
+      table = growAtoms(column);
+    }
+    table[column][id & ROW_MASK] = atom;
+  }
+
+  /**
+   * @param column the row that is needed
+   * @return the table of atoms, with the given row allocated
+   */
+  private static synchronized Atom[][] growAtoms(int column) {
+    Atom[][] table = atoms;
+    if (column >= table.length) {
+      Atom[][] tmp = new Atom[column + 1][];
+      for (int i = 0; i < table.length; i++) {
+        tmp[i] = table[i];
+      }
+      table = tmp;
+    }
+    if (table[column] == null) {
+      table[column] = new Atom[1 << LOG_ROW_SIZE];
+    }
+    atoms = table;
+    return table;
   }
 
   /**
@@ -973,26 +1014,54 @@ public final class Atom {
   /**
    * Inner class responsible for string interning. This class' initializer is
    * run during booting.
+   * <p>
+   * Interned strings are held weakly in chains of immutable entries.  Lookups
+   * don't lock; adding a string, and rebuilding the table to drop dead
+   * entries or to grow it, happen while holding the class' lock.  A lookup
+   * that races with an addition may miss the new string, but the miss is then
+   * re-checked under the lock before the string is added.
    */
   private static class InternedStrings {
+    /**
+     * An interned string and the next entry of its chain.
+     */
+    private static final class Entry {
+      final WeakReference<String> ref;
+      final int hash;
+      final Entry next;
+
+      Entry(WeakReference<String> ref, int hash, Entry next) {
+        this.ref = ref;
+        this.hash = hash;
+        this.next = next;
+      }
+    }
+
+    /** Average chain length at which the table is rebuilt */
+    private static final int LOAD = 3;
+
     /**
      * Look up for interned strings.
      */
-    private static final WeakHashMap<String,WeakReference<String>> internedStrings =
-      new WeakHashMap<String,WeakReference<String>>();
+    private static Entry[] internedStrings = new Entry[1021];
+
+    /** Number of entries in the table, including those whose string died */
+    private static int numEntries;
 
     /**
      * Find an interned string but don't create it if not found
      * @param str string to lookup
      * @return the interned string or null if it isn't interned
      */
-    static synchronized String findInternedString(String str) {
-      WeakReference<String> ref;
-      ref = internedStrings.get(str);
-      if (ref != null) {
-        String s = ref.get();
-        if (s != null) {
-          return s;
+    static String findInternedString(String str) {
+      Entry[] table = internedStrings;
+      int hash = str.hashCode();
+      for (Entry e = table[bucketIndex(hash, table.length)]; e != null; e = e.next) {
+        if (e.hash == hash) {
+          String s = e.ref.get();
+          if (s != null && s.equals(str)) {
+            return s;
+          }
         }
       }
       return null;
@@ -1026,10 +1095,53 @@ public final class Atom {
       if (s != null) return s;
       // If we get to here, then there is no interned version of the String.
       // So we make one.
-      WeakReference<String> ref = new WeakReference<String>(str);
-      internedStrings.put(str, ref);
+      if (numEntries > internedStrings.length * LOAD) {
+        rebuild();
+      }
+      Entry[] table = internedStrings;
+      int hash = str.hashCode();
+      int idx = bucketIndex(hash, table.length);
+      Entry e = new Entry(new WeakReference<String>(str), hash, table[idx]);
+      if (VM.runningVM) Magic.storeStoreBarrier();
+      table[idx] = e;
+      numEntries++;
       return str;
     }
+
+    /**
+     * Replace the table by a copy without the entries whose strings died,
+     * that is twice as large if the surviving entries would still fill more
+     * than half of it.
+     */
+    private static void rebuild() {
+      Entry[] table = internedStrings;
+      int live = 0;
+      for (Entry head : table) {
+        for (Entry e = head; e != null; e = e.next) {
+          if (e.ref.get() != null) live++;
+        }
+      }
+      int length = table.length;
+      if (live > length * LOAD / 2) {
+        length = length * 2 + 1;
+      }
+      Entry[] newTable = new Entry[length];
+      for (Entry head : table) {
+        for (Entry e = head; e != null; e = e.next) {
+          if (e.ref.get() != null) {
+            int idx = bucketIndex(e.hash, length);
+            newTable[idx] = new Entry(e.ref, e.hash, newTable[idx]);
+          }
+        }
+      }
+      if (VM.runningVM) Magic.storeStoreBarrier();
+      internedStrings = newTable;
+      numEntries = live;
+    }
+
+    private static int bucketIndex(int hash, int length) {
+      return (hash & 0x7fffffff) % length;
+    }
   }
 
   /**
@@ -234,6 +234,27 @@ public abstract class RVMType extends AnnotatedElement {
    */
   protected int[] doesImplement;
 
+  /*
+   * Biased locking state, maintained by ThinLock.  The epoch and the
+   * disabled flag only change while all mutators are stopped; the
+   * counters are updated without synchronization and are approximate.
+   */
+
+  /** Current bias epoch of instances of this type */
+  private int biasEpoch;
+  /** Have biases on instances of this type been revoked in bulk? */
+  private boolean biasingDisabled;
+  /** Bias revocations since the last bulk rebias decayed */
+  private int recentBiasRevocations;
+  /** Total number of bias revocations that needed a handshake */
+  private int biasRevocations;
+  /** Number of stale biases that were rebiased with a CAS */
+  private int biasRebiases;
+  /** Number of bulk rebiases */
+  private int bulkRebiases;
+  /** Time of the last bulk rebias (nanoseconds), or 0 if none is pending decay */
+  private long lastBulkRebiasTime;
+
   /**
    * Create an instance of a {@link RVMType}
    * @param typeRef The canonical type reference for this type.
@@ -293,6 +314,116 @@ public abstract class RVMType extends AnnotatedElement {
     return id;
   }
 
+  /**
+   * @return the current bias epoch of instances of this type
+   */
+  @Uninterruptible
+  @Inline
+  public final int getBiasEpoch() {
+    return biasEpoch;
+  }
+
+  /**
+   * @return whether instances of this type may no longer be biased
+   */
+  @Uninterruptible
+  public final boolean isBiasingDisabled() {
+    return biasingDisabled;
+  }
+
+  /**
+   * Records the revocation of a bias on an instance of this type.
+   */
+  @Uninterruptible
+  public final void recordBiasRevocation() {
+    biasRevocations++;
+    recentBiasRevocations++;
+  }
+
+  /**
+   * @return the number of bias revocations since the last decay
+   */
+  @Uninterruptible
+  public final int getRecentBiasRevocations() {
+    return recentBiasRevocations;
+  }
+
+  /**
+   * Records that a stale bias on an instance of this type was taken over
+   * by another thread.
+   */
+  @Uninterruptible
+  public final void recordBiasRebias() {
+    biasRebiases++;
+  }
+
+  /**
+   * @return the time of the last bulk rebias that has not yet decayed
+   */
+  @Uninterruptible
+  public final long getLastBulkRebiasTime() {
+    return lastBulkRebiasTime;
+  }
+
+  /**
+   * Forgets about the last bulk rebias and the revocations since.
+   */
+  @Uninterruptible
+  public final void decayBiasRevocations() {
+    recentBiasRevocations = 0;
+    lastBulkRebiasTime = 0;
+  }
+
+  /**
+   * Moves instances of this type to a new bias epoch, invalidating all
+   * existing biases.  Must only be called while all mutators are stopped.
+   *
+   * @param epoch the new epoch
+   * @param time the current time in nanoseconds
+   */
+  @Uninterruptible
+  public final void bulkRebias(int epoch, long time) {
+    biasEpoch = epoch;
+    lastBulkRebiasTime = time;
+    bulkRebiases++;
+  }
+
+  /**
+   * Stops biasing instances of this type and moves them to a new bias
+   * epoch.  Must only be called while all mutators are stopped.
+   *
+   * @param epoch the new epoch
+   */
+  @Uninterruptible
+  public final void bulkRevokeBiases(int epoch) {
+    biasEpoch = epoch;
+    biasingDisabled = true;
+  }
+
+  /**
+   * @return total number of bias revocations on instances of this type
+   */
+  @Uninterruptible
+  public final int getBiasRevocations() {
+    return biasRevocations;
+  }
+
+  /**
+   * @return number of stale biases on instances of this type taken over by another thread
+   */
+  @Uninterruptible
+  public final int getBiasRebiases() {
+    return biasRebiases;
+  }
+
+  /**
+   * @return number of bulk rebiases of this type
+   */
+  @Uninterruptible
+  public final int getBulkRebiases() {
+    return bulkRebiases;
+  }
+
   /**
    * @return instance of java.lang.Class corresponding to this type.
    * This is commonly used for reflection. NB: this method will cause
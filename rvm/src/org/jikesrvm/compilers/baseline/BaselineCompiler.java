@@ -342,6 +342,12 @@ public abstract class BaselineCompiler extends TemplateCompilerFramework {
       if (edgeCounterIdx > 0) {
         EdgeCounts.allocateCounters(method, edgeCounterIdx);
       }
+      if (typeProfileIdx > 0) {
+        TypeProfiles.allocateCounters(method, typeProfileSites, typeProfileIdx);
+      }
+      if (inlineCacheIdx > 0) {
+        InlineCaches.allocateCaches(method, inlineCacheSites, inlineCacheIdx);
+      }
       if (shouldPrint) {
         ((BaselineCompiledMethod) compiledMethod).printExceptionTable();
         printEndHeader(method);
@@ -53,6 +53,13 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
   @Entrypoint
   private static int[][] data;
 
+  /**
+   * Whether the counts of each method, indexed by the ID of the method,
+   * were read from a profile and have yet to be used by a compilation
+   * of the method.
+   */
+  private static boolean[] loaded;
+
   @Override
   public void notifyExit(int value) {
     dumpCounts();
@@ -96,7 +103,15 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
       registered = true;
       Callbacks.addExitMonitor(new EdgeCounts());
     }
-    allocateCounters(m.getId(), numEntries);
+    int id = m.getId();
+    if (loaded != null && id < loaded.length && loaded[id]) {
+      loaded[id] = false;
+      if (data[id].length == numEntries) {
+        // keep the counts that were read from a profile
+        return;
+      }
+    }
+    allocateCounters(id, numEntries);
   }
 
   private static synchronized void allocateCounters(int id, int numEntries) {
@@ -112,6 +127,26 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
       data = tmp;
     }
     data[id] = new int[numEntries];
+    if (loaded != null && id < loaded.length) {
+      loaded[id] = false;
+    }
+  }
+
+  /**
+   * Records that the counts of a method were read from a profile, so the
+   * next compilation of the method keeps them rather than starting afresh.
+   *
+   * @param id the ID of the method
+   */
+  private static synchronized void markLoaded(int id) {
+    if (loaded == null || id >= loaded.length) {
+      boolean[] tmp = new boolean[data.length];
+      if (loaded != null) {
+        System.arraycopy(loaded, 0, tmp, 0, loaded.length);
+      }
+      loaded = tmp;
+    }
+    loaded[id] = true;
   }
 
   public static BranchProfiles getBranchProfiles(NormalMethod m) {
@@ -186,6 +221,7 @@ public final class EdgeCounts implements Callbacks.ExitMonitor {
           MemberReference key = MemberReference.parse(parser);
           int id = key.getId();
           allocateCounters(id, numCounts);
+          markLoaded(id);
           cur = data[id];
           curIdx = 0;
           if (Controller.options.BULK_COMPILATION_VERBOSITY >= 1) {
@@ -0,0 +1,244 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_OBJECT_ALOAD_BARRIER;
+import static org.jikesrvm.mm.mminterface.Barriers.NEEDS_OBJECT_GETSTATIC_BARRIER;
+import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_WORD;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.MemberReference;
+import org.jikesrvm.classloader.MethodReference;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+import org.vmmagic.unboxed.WordArray;
+
+/**
+ * The inline caches of the invokeinterface bytecodes of baseline compiled
+ * methods (see {@link BaselineOptions#INLINE_CACHES}).<p>
+ *
+ * Each cached call (a site) has {@link #SITE_WORDS} words: the bytecode
+ * index of the site, the number of misses, and {@link #ENTRIES} entries of
+ * a receiver TIB, the offset in that TIB of the receiver type's
+ * implementation of the interface method, the type's id plus one and the
+ * number of hits.  Baseline code compares the receiver's TIB with the TIB
+ * of each entry, and on a match calls through the entry's offset of the
+ * receiver's TIB instead of going through the IMT or an itable.  On a miss
+ * it calls {@link #fill} while the site still has a free entry, and then
+ * dispatches as usual.  Calling through the TIB rather than a cached code
+ * address means a recompiled target is picked up as soon as its TIB slot
+ * is updated, so compiled code is never patched.<p>
+ *
+ * An entry is claimed with a compare and swap and filled once, its TIB
+ * last, so code that finds a matching TIB also sees the rest of the entry.
+ * A miss that finds an entry being filled by another thread leaves the
+ * cache alone, so a type racing to be cached takes only one entry.
+ * TIBs never move and are only compared, so the caches hold them as words.
+ * The counts are updated without synchronization, like those of
+ * {@link TypeProfiles}, and give the opt compiler a receiver type profile
+ * of each site (see {@link #getTypeProfile}).
+ */
+public final class InlineCaches {
+
+  /** The number of receiver types cached at each site */
+  public static final int ENTRIES = 3;
+
+  /** Offset of the bytecode index of a site from the start of its words */
+  private static final int BYTECODE_INDEX = 0;
+
+  /** Offset of the count of misses from the start of a site's words */
+  public static final int MISSES = 1;
+
+  /** Offset of the first entry from the start of a site's words */
+  private static final int FIRST_ENTRY = 2;
+
+  /** Offset of the receiver TIB from the start of an entry */
+  public static final int ENTRY_TIB = 0;
+
+  /** Offset of the TIB offset of the target from the start of an entry */
+  public static final int ENTRY_OFFSET = 1;
+
+  /** Offset of the type id plus one from the start of an entry */
+  private static final int ENTRY_TYPE = 2;
+
+  /** Offset of the count of hits from the start of an entry */
+  public static final int ENTRY_HITS = 3;
+
+  /** The number of words of each entry */
+  private static final int ENTRY_WORDS = 4;
+
+  /** The number of words for each site */
+  public static final int SITE_WORDS = FIRST_ENTRY + ENTRIES * ENTRY_WORDS;
+
+  /** The TIB word of an entry that is being filled, which matches no TIB */
+  private static final Word CLAIMED = Word.one();
+
+  /**
+   * Array of inline caches.  The first index is the ID of the method, the
+   * second is the number of the site times {@link #SITE_WORDS} plus the
+   * offset of the word within the site.
+   */
+  @Entrypoint
+  private static WordArray[] data;
+
+  /**
+   * @param site the number of a site within its method
+   * @param word the offset of a word from the start of the site
+   * @return the offset of the word from the start of the method's caches
+   */
+  public static Offset siteOffset(int site, int word) {
+    return Offset.fromIntZeroExtend((site * SITE_WORDS + word) << LOG_BYTES_IN_WORD);
+  }
+
+  /**
+   * @param site the number of a site within its method
+   * @param entry the number of an entry of the site
+   * @param word the offset of a word from the start of the entry
+   * @return the offset of the word from the start of the method's caches
+   */
+  public static Offset entryOffset(int site, int entry, int word) {
+    return siteOffset(site, FIRST_ENTRY + entry * ENTRY_WORDS + word);
+  }
+
+  /**
+   * Cache the receiver type of an interface call that missed in its site's
+   * cache.  This is called from baseline compiled code with the arguments
+   * of the call still on the expression stack, so it must not allocate.
+   * The receiver's type is cached only if it implements the method, so
+   * calls that must throw keep going through the usual dispatch.
+   *
+   * @param receiver the receiver of the call
+   * @param methodId the ID of the method containing the site
+   * @param site the number of the site within the method
+   * @param methodRefId the ID of the interface method reference
+   */
+  @Entrypoint
+  public static void fill(Object receiver, int methodId, int site, int methodRefId) {
+    if (receiver == null) return;
+    WordArray[] all = data;
+    if (all == null || methodId >= all.length) return;
+    WordArray caches = all[methodId];
+    int base = site * SITE_WORDS;
+    if (caches == null || base + SITE_WORDS > caches.length()) return;
+    RVMType type = Magic.getObjectType(receiver);
+    if (!type.isClassType()) return;
+    MethodReference ref = MemberReference.getMemberRef(methodRefId).asMethodReference();
+    RVMMethod target = type.findVirtualMethod(ref.getName(), ref.getDescriptor());
+    if (target == null || target.isAbstract()) return;
+    Word tib = Magic.objectAsAddress(ObjectModel.getTIB(receiver)).toWord();
+    for (int entry = base + FIRST_ENTRY; entry < base + SITE_WORDS; entry += ENTRY_WORDS) {
+      Offset tibOffset = Offset.fromIntZeroExtend((entry + ENTRY_TIB) << LOG_BYTES_IN_WORD);
+      Word seen = Magic.prepareWord(caches, tibOffset);
+      if (seen.EQ(tib) || seen.EQ(CLAIMED)) return;
+      if (seen.isZero()) {
+        // another thread filling this entry may be caching the same type
+        if (!Magic.attemptWord(caches, tibOffset, seen, CLAIMED)) return;
+        caches.set(entry + ENTRY_OFFSET, target.getOffset().toWord());
+        caches.set(entry + ENTRY_TYPE, Word.fromIntZeroExtend(type.getId() + 1));
+        Magic.sync();
+        caches.set(entry + ENTRY_TIB, tib);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Allocate the caches for the sites of a method.
+   *
+   * @param m the method
+   * @param sites the bytecode indices of the cached sites, in site order
+   * @param numSites the number of cached sites
+   */
+  public static synchronized void allocateCaches(NormalMethod m, int[] sites, int numSites) {
+    if (numSites == 0) return;
+    int id = m.getId();
+    if (data == null) {
+      data = new WordArray[id + 500];
+    }
+    if (id >= data.length) {
+      int newSize = data.length * 2;
+      if (newSize <= id) newSize = id + 500;
+      WordArray[] tmp = new WordArray[newSize];
+      for (int i = 0; i < data.length; i++) {
+        tmp[i] = data[i];
+      }
+      Magic.sync();
+      data = tmp;
+    }
+    WordArray caches = WordArray.create(numSites * SITE_WORDS);
+    for (int i = 0; i < numSites; i++) {
+      caches.set(i * SITE_WORDS + BYTECODE_INDEX, Word.fromIntZeroExtend(sites[i]));
+    }
+    Magic.sync();
+    data[id] = caches;
+  }
+
+  /**
+   * Build the receiver type profile of a cached site from its hit and miss
+   * counts.  The types that missed before they were cached, or found the
+   * cache full, are counted as other types.
+   *
+   * @param m the method containing the site
+   * @param bcIndex the bytecode index of the site
+   * @return the profile, or {@code null} if the site has no cache or it
+   *  was never executed
+   */
+  public static TypeProfile getTypeProfile(NormalMethod m, int bcIndex) {
+    WordArray[] all = data;
+    int id = m.getId();
+    if (all == null || id >= all.length) return null;
+    WordArray caches = all[id];
+    if (caches == null) return null;
+    for (int base = 0; base < caches.length(); base += SITE_WORDS) {
+      if (caches.get(base + BYTECODE_INDEX).toInt() == bcIndex) {
+        int[] rows = new int[2 * ENTRIES];
+        int n = 0;
+        for (int entry = base + FIRST_ENTRY; entry < base + SITE_WORDS; entry += ENTRY_WORDS) {
+          Word tib = caches.get(entry + ENTRY_TIB);
+          if (tib.isZero() || tib.EQ(CLAIMED)) continue;
+          rows[2 * n] = caches.get(entry + ENTRY_TYPE).toInt();
+          rows[2 * n + 1] = caches.get(entry + ENTRY_HITS).toInt();
+          n++;
+        }
+        TypeProfile profile = new TypeProfile(bcIndex, rows, 0, n, caches.get(base + MISSES).toInt());
+        return profile.getTotal() == 0 ? null : profile;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Should the interface calls of a method be cached?  Methods of the VM
+   * itself are never cached, as filling a cache calls back into the VM.
+   * The cache lookup reads the caches without read barriers, so caching
+   * is also off for collectors that need them.
+   *
+   * @param m the method being compiled
+   * @return whether inline cache code should be inserted
+   */
+  static boolean shouldCache(NormalMethod m) {
+    return !VM.runningTool &&
+      BaselineCompiler.options.INLINE_CACHES &&
+      !NEEDS_OBJECT_ALOAD_BARRIER &&
+      !NEEDS_OBJECT_GETSTATIC_BARRIER &&
+      m.isInterruptible() &&
+      !m.isForOsrSpecialization() &&
+      !m.getDeclaringClass().getDescriptor().isRVMDescriptor();
+  }
+}
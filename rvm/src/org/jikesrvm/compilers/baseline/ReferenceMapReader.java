@@ -19,10 +19,31 @@ import org.vmmagic.unboxed.Offset;
 
 /**
  * This class encapsulates the functionality that the baseline GC map iterators
- * require to read baseline compiler reference maps.
+ * require to read baseline compiler reference maps.<p>
+ *
+ * Locating the map for a GC point requires a search of all of the
+ * method's map sites.  Deep stacks tend to contain the same call sites
+ * many times, and mostly unchanged stacks present the same call sites at
+ * every collection, so each reader remembers the maps it has located in a
+ * small direct-mapped cache keyed by compiled method id and instruction
+ * offset.  Compiled method ids are never reused, so entries never become
+ * stale.  Each reader belongs to a single collector thread's iterator, so
+ * the cache needs no synchronization.
  */
 @Uninterruptible
 public final class ReferenceMapReader {
+  /** log2 of the number of entries in the GC point cache */
+  private static final int LOG_GC_POINT_CACHE_SIZE = 8;
+  /** Number of entries in the GC point cache */
+  private static final int GC_POINT_CACHE_SIZE = 1 << LOG_GC_POINT_CACHE_SIZE;
+
+  /** Compiled method ids of the cached GC points (0 is never a valid id) */
+  private final int[] cachedMethodIds = new int[GC_POINT_CACHE_SIZE];
+  /** Instruction offsets of the cached GC points */
+  private final int[] cachedOffsets = new int[GC_POINT_CACHE_SIZE];
+  /** Map ids of the cached GC points */
+  private final int[] cachedMapIds = new int[GC_POINT_CACHE_SIZE];
+
   /** Current index in current map */
   protected int mapIndex;
   /** id of current map out of all maps */
@@ -34,8 +55,12 @@ public final class ReferenceMapReader {
 
   protected NormalMethod currentMethod;
 
+  /** id of the compiled method whose maps are being read */
+  protected int currentMethodId;
+
   public void setMethod(NormalMethod currentMethod, CompiledMethod compiledMethod) {
     this.currentMethod = currentMethod;
+    this.currentMethodId = compiledMethod.getId();
     maps = ((BaselineCompiledMethod) compiledMethod).referenceMaps;
   }
 
@@ -64,7 +89,16 @@ public final class ReferenceMapReader {
   }
 
   public void locateGCPoint(Offset instructionOffset) {
-    mapId = maps.locateGCPoint(instructionOffset, currentMethod);
+    int offset = instructionOffset.toInt();
+    int slot = (currentMethodId * 31 + offset) & (GC_POINT_CACHE_SIZE - 1);
+    if (cachedMethodIds[slot] == currentMethodId && cachedOffsets[slot] == offset) {
+      mapId = cachedMapIds[slot];
+    } else {
+      mapId = maps.locateGCPoint(instructionOffset, currentMethod);
+      cachedMethodIds[slot] = currentMethodId;
+      cachedOffsets[slot] = offset;
+      cachedMapIds[slot] = mapId;
+    }
     mapIndex = 0;
   }
 
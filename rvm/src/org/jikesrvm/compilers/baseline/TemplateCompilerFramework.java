@@ -133,6 +133,38 @@ public abstract class TemplateCompilerFramework {
    */
   protected final boolean isUnpreemptible;
 
+  /**
+   * Are receiver types recorded at call and type check sites (see
+   * {@link TypeProfiles})?
+   */
+  protected final boolean profileTypes;
+
+  /**
+   * Bytecode indices of the type profiling sites emitted so far
+   */
+  protected int[] typeProfileSites;
+
+  /**
+   * Next type profiling site to allocate
+   */
+  protected int typeProfileIdx;
+
+  /**
+   * Are interface calls dispatched through inline caches (see
+   * {@link InlineCaches})?
+   */
+  protected final boolean cacheInterfaceCalls;
+
+  /**
+   * Bytecode indices of the inline cache sites emitted so far
+   */
+  protected int[] inlineCacheSites;
+
+  /**
+   * Next inline cache site to allocate
+   */
+  protected int inlineCacheIdx;
+
   public enum BranchCondition {
     EQ, NE, LT, GE, GT, LE
   }
@@ -160,6 +192,14 @@ public abstract class TemplateCompilerFramework {
       isUnpreemptible = method.isUnpreemptible();
     }
     doesCheckStore = !method.hasNoCheckStoreAnnotation();
+    profileTypes = TypeProfiles.shouldProfile(method);
+    if (profileTypes) {
+      typeProfileSites = new int[8];
+    }
+    cacheInterfaceCalls = InlineCaches.shouldCache(method);
+    if (cacheInterfaceCalls) {
+      inlineCacheSites = new int[8];
+    }
 
     // Double check logically uninterruptible methods have been annotated as
     // uninterruptible
@@ -1451,15 +1491,21 @@ public abstract class TemplateCompilerFramework {
             // Forbidden from uninterruptible code as interface invocation
             // causes runtime checks that can be interrupted
             if (VM.VerifyUnint && !isInterruptible) forbiddenBytecode("invokeinterface ", methodRef, bcodes.index());
+            profileType(methodRef.getParameterWords());
             emit_invokeinterface(methodRef);
           } else {
             if (methodRef.needsDynamicLink(method)) {
               // Forbidden from uninterruptible code as dynamic linking can
               // cause interruptions
               if (VM.VerifyUnint && !isInterruptible) forbiddenBytecode("unresolved invokevirtual ", methodRef, bcodes.index());
+              profileType(methodRef.getParameterWords());
               emit_unresolved_invokevirtual(methodRef);
             } else {
               if (VM.VerifyUnint && !isInterruptible) checkTarget(methodRef.peekResolvedMethod(), bcodes.index());
+              RVMMethod target = methodRef.peekResolvedMethod();
+              if (!target.isFinal() && !target.getDeclaringClass().isFinal()) {
+                profileType(methodRef.getParameterWords());
+              }
               emit_resolved_invokevirtual(methodRef);
             }
           }
@@ -1552,6 +1598,7 @@ public abstract class TemplateCompilerFramework {
           // Forbidden from uninterruptible code as interface invocation
           // causes runtime checks that can be interrupted
           if (VM.VerifyUnint && !isInterruptible) forbiddenBytecode("invokeinterface ", methodRef, bcodes.index());
+          profileType(methodRef.getParameterWords());
           emit_invokeinterface(methodRef);
 
           if (xx != null) {
@@ -1665,6 +1712,9 @@ public abstract class TemplateCompilerFramework {
           TypeReference typeRef = bcodes.getTypeReference();
           if (shouldPrint) lister.noteBytecode(biStart, "checkcast", typeRef);
           RVMType type = typeRef.peekType();
+          if (typeRef.isClassType() && (type == null || !type.asClass().isFinal())) {
+            profileType(0);
+          }
           if (type != null) {
             if (type.isClassType()) {
               RVMClass cType = type.asClass();
@@ -1703,6 +1753,9 @@ public abstract class TemplateCompilerFramework {
           TypeReference typeRef = bcodes.getTypeReference();
           if (shouldPrint) lister.noteBytecode(biStart, "instanceof", typeRef);
           RVMType type = typeRef.peekType();
+          if (typeRef.isClassType() && (type == null || !type.asClass().isFinal())) {
+            profileType(0);
+          }
           if (type != null) {
             if (type.isClassType()) {
               RVMClass cType = type.asClass();
@@ -2010,6 +2063,42 @@ public abstract class TemplateCompilerFramework {
     return new MachineCode(getAssembler().getMachineCodes(),bytecodeMap);
   }
 
+  /**
+   * Record the type of an object on the expression stack in the receiver
+   * type profile of the current bytecode, if receiver types are being
+   * profiled.
+   *
+   * @param stackIndex the depth of the object on the expression stack,
+   *  0 being the top
+   */
+  private void profileType(int stackIndex) {
+    if (!profileTypes) return;
+    if (typeProfileIdx == typeProfileSites.length) {
+      int[] tmp = new int[typeProfileSites.length * 2];
+      System.arraycopy(typeProfileSites, 0, tmp, 0, typeProfileIdx);
+      typeProfileSites = tmp;
+    }
+    typeProfileSites[typeProfileIdx] = biStart;
+    emit_type_profile(stackIndex, typeProfileIdx++);
+  }
+
+  /**
+   * Allocate an inline cache for the interface call of the current
+   * bytecode, if interface calls are being cached.
+   *
+   * @return the number of the cache's site, or -1 if the call is not cached
+   */
+  protected final int inlineCacheSite() {
+    if (!cacheInterfaceCalls) return -1;
+    if (inlineCacheIdx == inlineCacheSites.length) {
+      int[] tmp = new int[inlineCacheSites.length * 2];
+      System.arraycopy(inlineCacheSites, 0, tmp, 0, inlineCacheIdx);
+      inlineCacheSites = tmp;
+    }
+    inlineCacheSites[inlineCacheIdx] = biStart;
+    return inlineCacheIdx++;
+  }
+
   /**
    * Handle if.. bytecodes
    * @param biStart offset of bytecode
@@ -2944,7 +3033,9 @@ public abstract class TemplateCompilerFramework {
   protected abstract ForwardReference emit_pending_goto(int origidx);
 
   /**
-   * Emit code to implement the invokeinterface bytecode
+   * Emit code to implement the invokeinterface bytecode.  Implementations
+   * that support inline caches dispatch through the cache of
+   * {@link #inlineCacheSite} when it allocates one.
    * @param methodRef the referenced method
    */
   protected abstract void emit_invokeinterface(MethodReference methodRef);
@@ -2995,6 +3086,16 @@ public abstract class TemplateCompilerFramework {
    */
   protected abstract void emit_athrow();
 
+  /**
+   * Emit code to record the type of an object in a receiver type profile,
+   * by calling {@link TypeProfiles#record}.  The expression stack must be
+   * left unchanged.
+   * @param stackIndex the depth of the object on the expression stack,
+   *  0 being the top
+   * @param site the number of the profiled site within the method
+   */
+  protected abstract void emit_type_profile(int stackIndex, int site);
+
   /**
    * Emit code to implement the checkcast bytecode
    * @param typeRef the LHS type
@@ -0,0 +1,125 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import org.jikesrvm.classloader.RVMType;
+
+/**
+ * A snapshot of the receiver type histogram of a single call or type check
+ * site, with the types ordered from the most to the least frequent.
+ *
+ * @see TypeProfiles
+ */
+public final class TypeProfile {
+  /** The bytecode index of the site */
+  private final int bci;
+  /** The types seen at the site, most frequent first */
+  private final RVMType[] types;
+  /** The number of times each type was seen */
+  private final float[] counts;
+  /** The number of objects seen whose types did not fit in the histogram */
+  private final float other;
+  /** The number of objects seen */
+  private final float total;
+
+  /**
+   * @param bci the bytecode index of the site
+   * @param cs the counters of the site's method
+   * @param start the index of the first row of the site in cs
+   * @param rows the number of rows of (type id plus one, count) pairs
+   * @param otherCount the count of objects of other types
+   */
+  TypeProfile(int bci, int[] cs, int start, int rows, int otherCount) {
+    this.bci = bci;
+    int n = 0;
+    while (n < rows && cs[start + 2 * n] != 0) n++;
+    RVMType[] types = new RVMType[n];
+    float[] counts = new float[n];
+    float total = BranchProfile.countToFloat(otherCount);
+    for (int i = 0; i < n; i++) {
+      RVMType type = RVMType.getType(cs[start + 2 * i] - 1);
+      float count = BranchProfile.countToFloat(cs[start + 2 * i + 1]);
+      total += count;
+      // insertion sort, highest count first
+      int j = i;
+      while (j > 0 && counts[j - 1] < count) {
+        types[j] = types[j - 1];
+        counts[j] = counts[j - 1];
+        j--;
+      }
+      types[j] = type;
+      counts[j] = count;
+    }
+    this.types = types;
+    this.counts = counts;
+    this.other = BranchProfile.countToFloat(otherCount);
+    this.total = total;
+  }
+
+  public int getBytecodeIndex() {
+    return bci;
+  }
+
+  /** @return the number of distinct types in the histogram */
+  public int getNumberOfTypes() {
+    return types.length;
+  }
+
+  /**
+   * @param i the rank of the type, 0 being the most frequent
+   * @return the type
+   */
+  public RVMType getType(int i) {
+    return types[i];
+  }
+
+  /**
+   * @param i the rank of the type, 0 being the most frequent
+   * @return the number of times an object of the type was seen
+   */
+  public float getCount(int i) {
+    return counts[i];
+  }
+
+  /**
+   * @param i the rank of the type, 0 being the most frequent
+   * @return the fraction of all objects seen that had the type
+   */
+  public float getFraction(int i) {
+    return counts[i] / total;
+  }
+
+  /**
+   * @return the number of objects seen whose types were not recorded
+   *  because the histogram was full
+   */
+  public float getOtherCount() {
+    return other;
+  }
+
+  /** @return the total number of objects seen */
+  public float getTotal() {
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    s.append(bci).append("\ttypes <");
+    for (int i = 0; i < types.length; i++) {
+      s.append(' ').append(types[i]).append('=').append((int) counts[i]);
+    }
+    s.append(" other=").append((int) other).append(" >");
+    return s.toString();
+  }
+}
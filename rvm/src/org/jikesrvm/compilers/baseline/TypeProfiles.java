@@ -0,0 +1,156 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.baseline;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * A repository of receiver type histograms for the invokevirtual,
+ * invokeinterface, checkcast and instanceof bytecodes of baseline compiled
+ * methods (see {@link BaselineOptions#PROFILE_RECEIVER_TYPES}).<p>
+ *
+ * Each profiled bytecode (a site) has {@link #SITE_WORDS} counters: the
+ * bytecode index of the site, {@link #ROWS} pairs of a type id (plus one,
+ * so that zero marks a free row) and the number of times an object of that
+ * type was seen, and a count of the objects of all other types.  Rows are
+ * claimed in the order types are first seen.  The counters are updated
+ * without synchronization, so counts may be lost when several threads
+ * execute the same site; profiles only need to be approximately right.
+ */
+public final class TypeProfiles {
+
+  /** The number of distinct types recorded at each site */
+  public static final int ROWS = 4;
+
+  /** Offset of the bytecode index of a site from the start of its counters */
+  private static final int BYTECODE_INDEX = 0;
+
+  /** Offset of the count of unrecorded types from the start of a site's counters */
+  private static final int OTHER = 1 + 2 * ROWS;
+
+  /** The number of counters for each site */
+  public static final int SITE_WORDS = OTHER + 1;
+
+  /**
+   * Array of type profile data.  The first index is the ID of the
+   * method, the second is the number of the site times {@link #SITE_WORDS}
+   * plus the offset of the counter within the site.
+   */
+  @Entrypoint
+  private static int[][] data;
+
+  /**
+   * Record the type of an object reaching a profiled site.  This is called
+   * from baseline compiled code before the bytecode of the site executes,
+   * with the operands of the bytecode still on the expression stack, so it
+   * must not allocate or otherwise reach a GC point.
+   *
+   * @param object the receiver of the call, or the object being tested
+   * @param methodId the ID of the method containing the site
+   * @param site the number of the site within the method
+   */
+  @Entrypoint
+  @Uninterruptible
+  public static void record(Object object, int methodId, int site) {
+    if (object == null) return;
+    int[][] all = data;
+    if (all == null || methodId >= all.length) return;
+    int[] counts = all[methodId];
+    int base = site * SITE_WORDS;
+    if (counts == null || base + SITE_WORDS > counts.length) return;
+    int key = Magic.getObjectType(object).getId() + 1;
+    for (int row = base + 1; row < base + OTHER; row += 2) {
+      int seen = counts[row];
+      if (seen == key) {
+        counts[row + 1]++;
+        return;
+      }
+      if (seen == 0) {
+        counts[row] = key;
+        counts[row + 1] = 1;
+        return;
+      }
+    }
+    counts[base + OTHER]++;
+  }
+
+  /**
+   * Allocate the counters for the sites of a method.
+   *
+   * @param m the method
+   * @param sites the bytecode indices of the profiled sites, in site order
+   * @param numSites the number of profiled sites
+   */
+  public static synchronized void allocateCounters(NormalMethod m, int[] sites, int numSites) {
+    if (numSites == 0) return;
+    int id = m.getId();
+    if (data == null) {
+      data = new int[id + 500][];
+    }
+    if (id >= data.length) {
+      int newSize = data.length * 2;
+      if (newSize <= id) newSize = id + 500;
+      int[][] tmp = new int[newSize][];
+      System.arraycopy(data, 0, tmp, 0, data.length);
+      Magic.sync();
+      data = tmp;
+    }
+    int[] counts = new int[numSites * SITE_WORDS];
+    for (int i = 0; i < numSites; i++) {
+      counts[i * SITE_WORDS + BYTECODE_INDEX] = sites[i];
+    }
+    data[id] = counts;
+  }
+
+  /**
+   * Find the receiver type profile of a site.
+   *
+   * @param m the method containing the site
+   * @param bcIndex the bytecode index of the site
+   * @return the profile, or {@code null} if the site was not profiled or
+   *  never executed with a non-null object
+   */
+  public static TypeProfile getTypeProfile(NormalMethod m, int bcIndex) {
+    int[][] all = data;
+    int id = m.getId();
+    if (all == null || id >= all.length) return null;
+    int[] counts = all[id];
+    if (counts == null) return null;
+    for (int base = 0; base < counts.length; base += SITE_WORDS) {
+      if (counts[base + BYTECODE_INDEX] == bcIndex) {
+        TypeProfile profile = new TypeProfile(bcIndex, counts, base + 1, ROWS, counts[base + OTHER]);
+        return profile.getTotal() == 0 ? null : profile;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Should the sites of a method be profiled?  Methods of the VM itself are
+   * never profiled, as the profiling helper could end up profiling itself.
+   *
+   * @param m the method being compiled
+   * @return whether receiver type profiling code should be inserted
+   */
+  static boolean shouldProfile(NormalMethod m) {
+    return !VM.runningTool &&
+      BaselineCompiler.options.PROFILE_RECEIVER_TYPES &&
+      m.isInterruptible() &&
+      !m.isForOsrSpecialization() &&
+      !m.getDeclaringClass().getDescriptor().isRVMDescriptor();
+  }
+}
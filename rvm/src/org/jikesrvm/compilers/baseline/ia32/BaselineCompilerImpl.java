@@ -93,6 +93,7 @@ import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.compilers.baseline.BaselineCompiledMethod;
 import org.jikesrvm.compilers.baseline.BaselineCompiler;
 import org.jikesrvm.compilers.baseline.EdgeCounts;
+import org.jikesrvm.compilers.baseline.InlineCaches;
 import org.jikesrvm.compilers.baseline.TemplateCompilerFramework;
 import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.common.assembler.AbstractAssembler;
@@ -2993,7 +2994,51 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
       }
     }
 
-    // (2) Emit interface invocation sequence.
+    // (2) Look the receiver's TIB up in the site's inline cache.
+    int site = inlineCacheSite();
+    ForwardReference[] hits = null;
+    if (site >= 0) {
+      // T1 = "this" object
+      stackMoveHelper(T1, Offset.fromIntZeroExtend((count - 1) << LG_WORDSIZE));
+      asm.baselineEmitLoadTIB(S0, T1);
+      // S1 = the inline caches of this method
+      asm.generateJTOCloadWord(S1, Entrypoints.inlineCachesField.getOffset());
+      if (VM.BuildFor32Addr) {
+        asm.emitMOV_Reg_RegDisp(S1, S1, Offset.fromIntZeroExtend(method.getId() << LG_WORDSIZE));
+      } else {
+        asm.emitMOV_Reg_RegDisp_Quad(S1, S1, Offset.fromIntZeroExtend(method.getId() << LG_WORDSIZE));
+      }
+      hits = new ForwardReference[InlineCaches.ENTRIES];
+      for (int entry = 0; entry < InlineCaches.ENTRIES; entry++) {
+        Offset tibOffset = InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_TIB);
+        if (VM.BuildFor32Addr) {
+          asm.emitCMP_Reg_RegDisp(S0, S1, tibOffset);
+        } else {
+          asm.emitCMP_Reg_RegDisp_Quad(S0, S1, tibOffset);
+        }
+        hits[entry] = asm.forwardJcc(EQ);
+      }
+      // a miss: count it and, if an entry is still free, fill one
+      Offset missesOffset = InlineCaches.siteOffset(site, InlineCaches.MISSES);
+      Offset lastOffset = InlineCaches.entryOffset(site, InlineCaches.ENTRIES - 1, InlineCaches.ENTRY_TIB);
+      if (VM.BuildFor32Addr) {
+        asm.emitADD_RegDisp_Imm(S1, missesOffset, 1);
+        asm.emitCMP_RegDisp_Imm(S1, lastOffset, 0);
+      } else {
+        asm.emitADD_RegDisp_Imm_Quad(S1, missesOffset, 1);
+        asm.emitCMP_RegDisp_Imm_Quad(S1, lastOffset, 0);
+      }
+      ForwardReference full = asm.forwardJcc(NE);
+      asm.emitPUSH_Reg(T1);                        // push "this"
+      asm.emitPUSH_Imm(method.getId());
+      asm.emitPUSH_Imm(site);
+      asm.emitPUSH_Imm(methodRef.getId());
+      genParameterRegisterLoad(asm, 4);            // pass 4 parameter words
+      asm.generateJTOCcall(Entrypoints.inlineCacheFillMethod.getOffset()); // fill(obj, method id, site, method ref id)
+      full.resolve(asm);
+    }
+
+    // (3) Emit interface invocation sequence.
     if (VM.BuildForIMTInterfaceInvocation) {
       InterfaceMethodSignature sig = InterfaceMethodSignature.findOrCreate(methodRef);
       // squirrel away signature ID
@@ -3062,6 +3107,39 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
         asm.emitCALL_RegDisp(S0, Offset.fromIntZeroExtend(itableIndex << LG_WORDSIZE));
       }
     }
+
+    // (4) On a hit, count it and call through the cached offset of the receiver's TIB.
+    if (hits != null) {
+      ForwardReference done = asm.forwardJMP();
+      ForwardReference[] calls = new ForwardReference[InlineCaches.ENTRIES - 1];
+      for (int entry = 0; entry < InlineCaches.ENTRIES; entry++) {
+        hits[entry].resolve(asm);
+        Offset hitsOffset = InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_HITS);
+        Offset targetOffset = InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_OFFSET);
+        if (VM.BuildFor32Addr) {
+          asm.emitADD_RegDisp_Imm(S1, hitsOffset, 1);
+          asm.emitMOV_Reg_RegDisp(S1, S1, targetOffset);
+        } else {
+          asm.emitADD_RegDisp_Imm_Quad(S1, hitsOffset, 1);
+          asm.emitMOV_Reg_RegDisp_Quad(S1, S1, targetOffset);
+        }
+        if (entry < InlineCaches.ENTRIES - 1) {
+          calls[entry] = asm.forwardJMP();
+        }
+      }
+      for (ForwardReference call : calls) {
+        call.resolve(asm);
+      }
+      // S0 = TIB of "this" object, S1 = offset of the target in it
+      if (VM.BuildFor32Addr) {
+        asm.emitMOV_Reg_RegIdx(S0, S0, S1, BYTE, NO_SLOT);
+      } else {
+        asm.emitMOV_Reg_RegIdx_Quad(S0, S0, S1, BYTE, NO_SLOT);
+      }
+      genParameterRegisterLoad(methodRef, true);
+      asm.emitCALL_Reg(S0);                        // the cached target
+      done.resolve(asm);
+    }
     genResultRegisterUnload(methodRef);
   }
 
@@ -3174,6 +3252,15 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     asm.generateJTOCcall(Entrypoints.athrowMethod.getOffset());
   }
 
+  @Override
+  protected void emit_type_profile(int stackIndex, int site) {
+    asm.emitPUSH_RegDisp(SP, Offset.fromIntZeroExtend(stackIndex << LG_WORDSIZE)); // copy the object
+    asm.emitPUSH_Imm(method.getId());
+    asm.emitPUSH_Imm(site);
+    genParameterRegisterLoad(asm, 3);          // pass 3 parameter words
+    asm.generateJTOCcall(Entrypoints.typeProfileMethod.getOffset()); // record(obj, method id, site)
+  }
+
   @Override
   protected void emit_checkcast(TypeReference typeRef) {
     asm.emitPUSH_RegInd(SP);                        // duplicate the object ref on the stack
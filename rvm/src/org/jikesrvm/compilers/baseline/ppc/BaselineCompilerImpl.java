@@ -140,6 +140,7 @@ import org.jikesrvm.classloader.TypeReference;
 import org.jikesrvm.compilers.baseline.BaselineCompiledMethod;
 import org.jikesrvm.compilers.baseline.BaselineCompiler;
 import org.jikesrvm.compilers.baseline.EdgeCounts;
+import org.jikesrvm.compilers.baseline.InlineCaches;
 import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.common.assembler.AbstractAssembler;
 import org.jikesrvm.compilers.common.assembler.ForwardReference;
@@ -2639,7 +2640,39 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
         }
       }
     }
-    // (2) Emit interface invocation sequence.
+    // (2) Look the receiver's TIB up in the site's inline cache.
+    int site = inlineCacheSite();
+    ForwardReference[] hits = null;
+    if (site >= 0) {
+      peekAddr(T0, count - 1);                 // the "this" object
+      asm.baselineEmitLoadTIB(T1, T0);         // T1 = TIB of "this" object
+      asm.emitLAddrToc(T2, Entrypoints.inlineCachesField.getOffset());
+      asm.emitLAddrOffset(T2, T2, Offset.fromIntZeroExtend(method.getId() << LOG_BYTES_IN_ADDRESS)); // T2 = the inline caches of this method
+      hits = new ForwardReference[InlineCaches.ENTRIES];
+      for (int entry = 0; entry < InlineCaches.ENTRIES; entry++) {
+        asm.emitLAddrOffset(T3, T2, InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_TIB));
+        asm.emitCMPLAddr(T1, T3);
+        hits[entry] = asm.emitForwardBC(EQ);
+      }
+      // a miss: count it and, if an entry is still free, fill one
+      Offset missesOffset = InlineCaches.siteOffset(site, InlineCaches.MISSES);
+      asm.emitLAddrOffset(T3, T2, missesOffset);
+      asm.emitADDI(T3, 1, T3);
+      asm.emitSTAddrOffset(T3, T2, missesOffset);
+      asm.emitLAddrOffset(T3, T2, InlineCaches.entryOffset(site, InlineCaches.ENTRIES - 1, InlineCaches.ENTRY_TIB));
+      asm.emitCMPAddrI(T3, 0);
+      ForwardReference full = asm.emitForwardBC(NE);
+      asm.emitLAddrToc(T0, Entrypoints.inlineCacheFillMethod.getOffset());
+      asm.emitMTCTR(T0);
+      peekAddr(T0, count - 1);                 // the "this" object
+      asm.emitLVAL(T1, method.getId());
+      asm.emitLVAL(T2, site);
+      asm.emitLVAL(T3, methodRef.getId());
+      asm.emitBCCTRL();                        // fill(obj, method id, site, method ref id) leaves the stack unchanged
+      full.resolve(asm);
+    }
+
+    // (3) Emit interface invocation sequence.
     if (VM.BuildForIMTInterfaceInvocation) {
       InterfaceMethodSignature sig = InterfaceMethodSignature.findOrCreate(methodRef);
       genMoveParametersToRegisters(true, methodRef); // T0 is "this"
@@ -2686,6 +2719,32 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
         asm.emitBCCTRL();
       }
     }
+
+    // (4) On a hit, count it and call through the cached offset of the receiver's TIB.
+    if (hits != null) {
+      ForwardReference done = asm.emitForwardB();
+      ForwardReference[] calls = new ForwardReference[InlineCaches.ENTRIES - 1];
+      for (int entry = 0; entry < InlineCaches.ENTRIES; entry++) {
+        hits[entry].resolve(asm);
+        asm.emitISYNC();                       // read the entry only after its TIB matched
+        Offset hitsOffset = InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_HITS);
+        asm.emitLAddrOffset(T3, T2, hitsOffset);
+        asm.emitADDI(T3, 1, T3);
+        asm.emitSTAddrOffset(T3, T2, hitsOffset);
+        asm.emitLAddrOffset(T3, T2, InlineCaches.entryOffset(site, entry, InlineCaches.ENTRY_OFFSET));
+        if (entry < InlineCaches.ENTRIES - 1) {
+          calls[entry] = asm.emitForwardB();
+        }
+      }
+      for (ForwardReference call : calls) {
+        call.resolve(asm);
+      }
+      asm.emitLAddrX(S0, T3, T1);              // T1 = TIB of "this" object, T3 = offset of the target in it
+      asm.emitMTCTR(S0);
+      genMoveParametersToRegisters(true, methodRef);
+      asm.emitBCCTRL();                        // the cached target
+      done.resolve(asm);
+    }
     genPopParametersAndPushReturnValue(true, methodRef);
   }
 
@@ -2789,6 +2848,16 @@ public final class BaselineCompilerImpl extends BaselineCompiler {
     asm.emitBCCTRL();
   }
 
+  @Override
+  protected void emit_type_profile(int stackIndex, int site) {
+    asm.emitLAddrToc(T0, Entrypoints.typeProfileMethod.getOffset());
+    asm.emitMTCTR(T0);
+    peekAddr(T0, stackIndex);
+    asm.emitLVAL(T1, method.getId());
+    asm.emitLVAL(T2, site);
+    asm.emitBCCTRL();               // record(obj, method id, site) leaves the stack unchanged
+  }
+
   @Override
   protected void emit_checkcast(TypeReference typeRef) {
     asm.emitLAddrToc(T0, Entrypoints.checkcastMethod.getOffset());
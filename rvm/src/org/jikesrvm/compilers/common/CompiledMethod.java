@@ -280,6 +280,14 @@ public abstract class CompiledMethod {
     return !(ip.LE(beg) || ip.GT(end));
   }
 
+  /**
+   * @return the address of the first instruction of this method's code
+   */
+  @Uninterruptible
+  final Address getCodeStart() {
+    return Magic.objectAsAddress(instructions);
+  }
+
   /**
    * Records that the compilation is complete.
    *
@@ -288,6 +296,9 @@ public abstract class CompiledMethod {
   public final void compileComplete(CodeArray code) {
     instructions = code;
     flags |= COMPILED;
+    if (VM.runningVM) {
+      CompiledMethods.addToCodeIndex(this);
+    }
   }
 
   /**
@@ -29,6 +29,7 @@ import org.jikesrvm.runtime.Memory;
 import org.jikesrvm.util.Services;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.AddressArray;
 
 /**
  * Manage pool of compiled methods. <p>
@@ -61,6 +62,44 @@ public class CompiledMethods {
    */
   private static boolean scanForObsoleteMethods = false;
 
+  /**
+   * Initial number of entries in the code index.
+   */
+  private static final int INITIAL_CODE_INDEX_SIZE = 1 << 12;
+
+  /**
+   * Start addresses of the code of compiled methods, sorted in
+   * ascending order. Entry {@code i} describes the compiled method
+   * whose id is {@code codeIndexCmids[i]}. The index is only built
+   * once the VM is running (see {@link #boot()}), as addresses of
+   * code arrays are not known while writing the boot image. Code
+   * does not move (see {@code MemoryManagerConstants.MOVES_CODE}),
+   * so entries stay valid until the method is snipped.
+   */
+  private static AddressArray codeIndexStarts;
+
+  /**
+   * Compiled method ids, parallel to {@link #codeIndexStarts}.
+   */
+  private static int[] codeIndexCmids;
+
+  /**
+   * Number of valid entries in the code index.
+   */
+  private static int codeIndexSize = 0;
+
+  /**
+   * Version counter guarding the code index. It is odd while the index
+   * is being modified, so that lookups that race with an update can
+   * detect this and fall back to a linear scan rather than take a lock.
+   */
+  private static int codeIndexVersion = 0;
+
+  /**
+   * Has the code index been built?
+   */
+  private static boolean codeIndexReady = false;
+
   /**
    * Ensure space in backing array for id.
    *
@@ -150,6 +189,205 @@ public class CompiledMethods {
     return cm;
   }
 
+  /**
+   * Builds the address ordered index over the code of all methods
+   * compiled so far (including the methods in the boot image). Methods
+   * that complete compilation after this point are added to the index
+   * by {@link CompiledMethod#compileComplete}.
+   */
+  public static synchronized void boot() {
+    int n = 0;
+    for (int i = 0, max = numCompiledMethods(); i < max; i++) {
+      CompiledMethod cm = getCompiledMethodUnchecked(i);
+      if (cm != null && cm.isCompiled()) n++;
+    }
+    int capacity = INITIAL_CODE_INDEX_SIZE;
+    while (capacity < n) capacity <<= 1;
+    AddressArray starts = AddressArray.create(capacity);
+    int[] cmids = new int[capacity];
+    n = 0;
+    for (int i = 0, max = numCompiledMethods(); i < max; i++) {
+      CompiledMethod cm = getCompiledMethodUnchecked(i);
+      if (cm != null && cm.isCompiled()) {
+        starts.set(n, cm.getCodeStart());
+        cmids[n] = i;
+        n++;
+      }
+    }
+    sortCodeIndex(starts, cmids, n);
+    codeIndexStarts = starts;
+    codeIndexCmids = cmids;
+    codeIndexSize = n;
+    Magic.sync();
+    codeIndexReady = true;
+  }
+
+  /**
+   * Sorts the first {@code n} entries of a code index by start address
+   * (heapsort, as the index is built in place at boot time).
+   *
+   * @param starts start addresses of code
+   * @param cmids compiled method ids, permuted together with the addresses
+   * @param n number of entries to sort
+   */
+  private static void sortCodeIndex(AddressArray starts, int[] cmids, int n) {
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(starts, cmids, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swapCodeIndexEntries(starts, cmids, 0, end);
+      siftDown(starts, cmids, 0, end);
+    }
+  }
+
+  private static void siftDown(AddressArray starts, int[] cmids, int root, int n) {
+    while (2 * root + 1 < n) {
+      int child = 2 * root + 1;
+      if (child + 1 < n && starts.get(child).LT(starts.get(child + 1))) {
+        child++;
+      }
+      if (!starts.get(root).LT(starts.get(child))) {
+        return;
+      }
+      swapCodeIndexEntries(starts, cmids, root, child);
+      root = child;
+    }
+  }
+
+  private static void swapCodeIndexEntries(AddressArray starts, int[] cmids, int a, int b) {
+    Address tmpStart = starts.get(a);
+    starts.set(a, starts.get(b));
+    starts.set(b, tmpStart);
+    int tmpCmid = cmids[a];
+    cmids[a] = cmids[b];
+    cmids[b] = tmpCmid;
+  }
+
+  /**
+   * Adds a compiled method whose code has just been installed to the
+   * code index. Called from {@link CompiledMethod#compileComplete}.
+   *
+   * @param cm the compiled method
+   */
+  static synchronized void addToCodeIndex(CompiledMethod cm) {
+    if (!codeIndexReady) return; // boot() will pick it up
+    // Allocate any larger arrays first, as allocation may trigger a GC,
+    // which may compact the index.
+    AddressArray newStarts = null;
+    int[] newCmids = null;
+    if (codeIndexSize == codeIndexCmids.length) {
+      int capacity = codeIndexCmids.length << 1;
+      newStarts = AddressArray.create(capacity);
+      newCmids = new int[capacity];
+    }
+    insertIntoCodeIndex(cm.getCodeStart(), cm.getId(), newStarts, newCmids);
+  }
+
+  /**
+   * Inserts an entry into the code index. This must not be interrupted
+   * by a GC, as {@link #compactCodeIndex()} would otherwise change the
+   * index under our feet.
+   *
+   * @param start the start address of the code
+   * @param cmid the id of the compiled method
+   * @param newStarts larger array for start addresses to move the index
+   *  to, or {@code null} if the index had space
+   * @param newCmids larger array for compiled method ids, parallel to
+   *  {@code newStarts}
+   */
+  @Uninterruptible
+  private static void insertIntoCodeIndex(Address start, int cmid, AddressArray newStarts, int[] newCmids) {
+    int n = codeIndexSize;
+    AddressArray starts = codeIndexStarts;
+    int[] cmids = codeIndexCmids;
+    codeIndexVersion++;
+    Magic.sync();
+    if (newCmids != null) {
+      for (int i = 0; i < n; i++) {
+        newStarts.set(i, starts.get(i));
+        newCmids[i] = cmids[i];
+      }
+      starts = newStarts;
+      cmids = newCmids;
+      codeIndexStarts = starts;
+      codeIndexCmids = cmids;
+    }
+    // Code is usually allocated at increasing addresses, so the shift
+    // below is normally short.
+    int pos = n;
+    while (pos > 0 && start.LT(starts.get(pos - 1))) {
+      starts.set(pos, starts.get(pos - 1));
+      cmids[pos] = cmids[pos - 1];
+      pos--;
+    }
+    starts.set(pos, start);
+    cmids[pos] = cmid;
+    codeIndexSize = n + 1;
+    Magic.sync();
+    codeIndexVersion++;
+  }
+
+  /**
+   * Removes entries for compiled methods that have been snipped from
+   * the code index. Only called during GC, so there can be no
+   * concurrent updates.
+   */
+  @Uninterruptible
+  private static void compactCodeIndex() {
+    if (!codeIndexReady) return;
+    codeIndexVersion++;
+    Magic.sync();
+    AddressArray starts = codeIndexStarts;
+    int[] cmids = codeIndexCmids;
+    int n = codeIndexSize;
+    int kept = 0;
+    for (int i = 0; i < n; i++) {
+      if (getCompiledMethodUnchecked(cmids[i]) != null) {
+        starts.set(kept, starts.get(i));
+        cmids[kept] = cmids[i];
+        kept++;
+      }
+    }
+    codeIndexSize = kept;
+    Magic.sync();
+    codeIndexVersion++;
+  }
+
+  /**
+   * Looks up the code index using binary search.
+   *
+   * @param ip the instruction address, with the same semantics as for
+   *  {@link #findMethodForInstruction(Address)}
+   * @return the compiled method or {@code null} if no method contains
+   *  the address
+   */
+  @Uninterruptible
+  private static CompiledMethod searchCodeIndex(Address ip) {
+    AddressArray starts = codeIndexStarts;
+    int[] cmids = codeIndexCmids;
+    int n = codeIndexSize;
+    if (n > cmids.length) n = cmids.length;
+    // find the last entry whose code starts strictly before ip
+    int lo = 0;
+    int hi = n - 1;
+    int found = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts.get(mid).LT(ip)) {
+        found = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    if (found < 0) return null;
+    CompiledMethod cm = getCompiledMethodUnchecked(cmids[found]);
+    if (cm == null || !cm.isCompiled() || !cm.containsReturnAddress(ip)) {
+      return null;
+    }
+    return cm;
+  }
+
   /**
    * @return number of methods compiled so far.
    */
@@ -164,8 +402,9 @@ public class CompiledMethods {
    * Assumption: caller has disabled gc (otherwise collector could move
    *                objects without fixing up the raw <code>ip</code> pointer)<p>
    *
-   * Note: this method is highly inefficient. Normally you should use the
-   * following instead:
+   * Note: once the VM has booted, this method uses an address ordered index
+   * over all code and takes logarithmic time. Still, when the frame is
+   * known you should normally use the following instead:
    *
    * <code>
    * RVMClassLoader.getCompiledMethod(Magic.getCompiledMethodID(fp))
@@ -185,6 +424,30 @@ public class CompiledMethods {
    */
   @Uninterruptible
   public static CompiledMethod findMethodForInstruction(Address ip) {
+    if (codeIndexReady) {
+      Magic.isync();
+      int version = codeIndexVersion;
+      if ((version & 1) == 0) {
+        CompiledMethod cm = searchCodeIndex(ip);
+        Magic.isync();
+        if (version == codeIndexVersion) {
+          return cm;
+        }
+      }
+      // the index is being updated concurrently: fall back to a linear scan
+    }
+    return scanForInstruction(ip);
+  }
+
+  /**
+   * Finds the method whose machine code contains the specified instruction
+   * by checking every compiled method in turn.
+   *
+   * @param ip instruction address, see {@link #findMethodForInstruction(Address)}
+   * @return method (<code>null</code> --&gt; not found)
+   */
+  @Uninterruptible
+  private static CompiledMethod scanForInstruction(Address ip) {
     for (int i = 0, n = numCompiledMethods(); i < n; ++i) {
       CompiledMethod compiledMethod = getCompiledMethodUnchecked(i);
       if (compiledMethod == null || !compiledMethod.isCompiled()) {
@@ -244,6 +507,7 @@ public class CompiledMethods {
         }
       }
     }
+    compactCodeIndex();
   }
 
   /**
@@ -21,6 +21,7 @@ import org.jikesrvm.adaptive.controller.ControllerMemory;
 import org.jikesrvm.adaptive.controller.ControllerPlan;
 import org.jikesrvm.adaptive.recompilation.InvocationCounts;
 import org.jikesrvm.adaptive.recompilation.BulkCompile;
+import org.jikesrvm.adaptive.recompilation.CompilationThread;
 import org.jikesrvm.adaptive.recompilation.instrumentation.AOSInstrumentationPlan;
 import org.jikesrvm.adaptive.util.AOSGenerator;
 import org.jikesrvm.adaptive.util.AOSLogging;
@@ -99,23 +100,33 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
   /** is the opt compiler usable? This will be the case after booting. */
   protected static boolean compilerEnabled;
 
-  // FIXME Make opt compiler reentrant and update documentation accordingly.
-
   /**
-   * is opt compiler currently in use? This flag is used to detect/avoid
+   * Threads that are currently opt compiling a method, used to detect/avoid
    * recursive opt compilation (ie when opt compilation causes a method to be
-   * compiled). We also make all public entrypoints static synchronized methods
-   * because the opt compiler is not reentrant. There are two cases here:
+   * compiled). There are two cases here:
    * <ol>
-   *   <li>recursive opt compilation by the same thread (always bad)
-   *   <li>parallel opt compilation (currently bad because opt compiler
-   *     is not reentrant, future ok)
+   *   <li>recursive opt compilation by the same thread (always bad): the
+   *     thread finds itself in this array and falls back to the baseline
+   *     compiler
+   *   <li>parallel opt compilation by different threads: allowed for up to
+   *     {@link #maxParallelOptCompilations} threads, additional threads wait
+   *     for a slot to become free
    * </ol>
    * <p>
    * NOTE: The associated code can be quite subtle, so please be absolutely sure
    * you know what you're doing before modifying it!!!
    */
-  protected static boolean compilationInProgress;
+  private static RVMThread[] optCompilingThreads = new RVMThread[1];
+
+  /** number of non-null entries in {@link #optCompilingThreads} */
+  private static int activeOptCompilations;
+
+  /**
+   * Maximum number of opt compilations that may be in progress at the
+   * same time. Set by the adaptive system to the number of compilation
+   * threads.
+   */
+  private static int maxParallelOptCompilations = 1;
 
   // Cache objects needed to cons up compilation plans
   // TODO: cutting link to opt compiler by declaring type as object.
@@ -182,7 +193,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    * @param MCLength the length of the generated machine code
    * @param compTime the compilation time in ms
    */
-  private static void recordCompilation(byte compiler, int BCLength, int MCLength, double compTime) {
+  private static synchronized void recordCompilation(byte compiler, int BCLength, int MCLength, double compTime) {
 
     totalMethods[compiler]++;
     totalMCLength[compiler] += MCLength;
@@ -262,6 +273,18 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
       VM.sysWriteln("BCKB:\t\tTotal number of bytecode bytes compiled in kilobytes");
     }
 
+    if (VM.BuildForAdaptiveSystem && Controller.compilationThreads != null) {
+      VM.sysWriteln();
+      VM.sysWriteln("Thread\t\t#Plans\tTime");
+      for (CompilationThread ct : Controller.compilationThreads) {
+        ct.report();
+      }
+      if (explain) {
+        VM.sysWriteln("#Plans:\t\tNumber of compilation plans performed by the compilation thread");
+        VM.sysWriteln("Time:\t\tTotal time in milliseconds spent performing the plans");
+      }
+    }
+
     BaselineCompiler.generateBaselineCompilerSubsystemReport(explain);
 
     if (VM.BuildForAdaptiveSystem) {
@@ -345,11 +368,90 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
     }
   }
 
+  /**
+   * Sets the number of opt compilations that may run in parallel.
+   *
+   * @param n the maximum number of parallel opt compilations, at least 1
+   */
+  public static synchronized void setMaxParallelOptCompilations(int n) {
+    if (VM.VerifyAssertions) VM._assert(n >= 1);
+    if (n > optCompilingThreads.length) {
+      RVMThread[] tmp = new RVMThread[n];
+      for (int i = 0; i < optCompilingThreads.length; i++) {
+        tmp[i] = optCompilingThreads[i];
+      }
+      optCompilingThreads = tmp;
+    }
+    maxParallelOptCompilations = n;
+    RuntimeCompiler.class.notifyAll();
+  }
+
+  /**
+   * @param t a thread
+   * @return whether the thread is currently opt compiling a method
+   */
+  private static boolean isOptCompiling(RVMThread t) {
+    RVMThread[] threads = optCompilingThreads;
+    for (RVMThread c : threads) {
+      if (c == t) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Acquires the right for the current thread to run the opt compiler.
+   *
+   * @param block whether to wait if the maximum number of parallel
+   *  opt compilations is already in progress
+   * @return {@code true} if the caller may opt compile and must call
+   *  {@link #releaseOptCompilation()} afterwards, {@code false} if
+   *  this would be a recursive opt compilation or if the opt compiler
+   *  is busy and {@code block} was {@code false}
+   */
+  private static synchronized boolean acquireOptCompilation(boolean block) {
+    RVMThread me = RVMThread.getCurrentThread();
+    if (isOptCompiling(me)) return false;
+    while (activeOptCompilations >= maxParallelOptCompilations) {
+      if (!block) return false;
+      try {
+        RuntimeCompiler.class.wait();
+      } catch (InterruptedException e) {
+        // keep waiting: the caller expects to compile the method
+      }
+    }
+    for (int i = 0; i < optCompilingThreads.length; i++) {
+      if (optCompilingThreads[i] == null) {
+        optCompilingThreads[i] = me;
+        activeOptCompilations++;
+        return true;
+      }
+    }
+    if (VM.VerifyAssertions) VM._assert(NOT_REACHED);
+    return false;
+  }
+
+  /**
+   * Gives up the current thread's right to run the opt compiler.
+   */
+  private static synchronized void releaseOptCompilation() {
+    RVMThread me = RVMThread.getCurrentThread();
+    for (int i = 0; i < optCompilingThreads.length; i++) {
+      if (optCompilingThreads[i] == me) {
+        optCompilingThreads[i] = null;
+        activeOptCompilations--;
+        RuntimeCompiler.class.notifyAll();
+        return;
+      }
+    }
+    if (VM.VerifyAssertions) VM._assert(NOT_REACHED);
+  }
+
   /**
    * Attempt to compile the passed method with the Compiler.
    * Don't handle OptimizingCompilerExceptions
    *   (leave it up to caller to decide what to do)<p>
-   * Precondition: compilationInProgress "lock" has been acquired
+   * Precondition: the current thread has acquired the right to opt compile
+   *   (see {@link #acquireOptCompilation(boolean)})
    * @param method the method to compile
    * @param plan the plan to use for compiling the method
    * @return a compiled method
@@ -358,7 +460,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
       throws OptimizingCompilerException {
     if (VM.BuildForOptCompiler) {
       if (VM.VerifyAssertions) {
-        VM._assert(compilationInProgress, "Failed to acquire compilationInProgress \"lock\"");
+        VM._assert(isOptCompiling(RVMThread.getCurrentThread()), "Failed to acquire right to opt compile");
       }
 
       Callbacks.notifyMethodCompile(method, CompiledMethod.OPT);
@@ -400,13 +502,12 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    * @return a compiled method (opt when possible, baseline when the opt compiler
    *  busy)
    */
-  public static synchronized CompiledMethod optCompileWithFallBack(NormalMethod method) {
+  public static CompiledMethod optCompileWithFallBack(NormalMethod method) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (!acquireOptCompilation(true)) {
         return fallback(method);
       } else {
         try {
-          compilationInProgress = true;
           CompilationPlan plan =
               new CompilationPlan(method,
                                       (OptimizationPlanElement[]) optimizationPlan,
@@ -414,7 +515,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
                                       (OptOptions) options);
           return optCompileWithFallBackInternal(method, plan);
         } finally {
-          compilationInProgress = false;
+          releaseOptCompilation();
         }
       }
     } else {
@@ -435,17 +536,16 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    * @return a compiled method (opt when possible, baseline when the opt compiler
    *  busy)
    */
-  public static synchronized CompiledMethod optCompileWithFallBack(NormalMethod method,
-                                                                      CompilationPlan plan) {
+  public static CompiledMethod optCompileWithFallBack(NormalMethod method,
+                                                         CompilationPlan plan) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (!acquireOptCompilation(true)) {
         return fallback(method);
       } else {
         try {
-          compilationInProgress = true;
           return optCompileWithFallBackInternal(method, plan);
         } finally {
-          compilationInProgress = false;
+          releaseOptCompilation();
         }
       }
     } else {
@@ -497,13 +597,11 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
       if (VM.VerifyAssertions) {
         VM._assert(plan.method.isForOsrSpecialization());
       }
-      if (compilationInProgress) {
+      if (!acquireOptCompilation(false)) {
         return null;
       }
 
       try {
-        compilationInProgress = true;
-
         // the compiler will check if isForOsrSpecialization of the method
         CompiledMethod cm = optCompile(plan.method, plan);
 
@@ -529,7 +627,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
         }
         return null;
       } finally {
-        compilationInProgress = false;
+        releaseOptCompilation();
       }
     } else {
       if (VM.VerifyAssertions) VM._assert(VM.NOT_REACHED);
@@ -549,13 +647,12 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
    *    recompilation failed.
    *
    **/
-  public static synchronized int recompileWithOpt(CompilationPlan plan) {
+  public static int recompileWithOpt(CompilationPlan plan) {
     if (VM.BuildForOptCompiler) {
-      if (compilationInProgress) {
+      if (!acquireOptCompilation(true)) {
         return -1;
       } else {
         try {
-          compilationInProgress = true;
           CompiledMethod cm = optCompile(plan.method, plan);
           try {
             plan.method.replaceCompiledMethod(cm);
@@ -582,7 +679,7 @@ public class RuntimeCompiler implements Callbacks.ExitMonitor {
           }
           return -1;
         } finally {
-          compilationInProgress = false;
+          releaseOptCompilation();
         }
       }
     } else {
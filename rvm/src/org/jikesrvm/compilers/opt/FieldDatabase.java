@@ -22,6 +22,9 @@ import org.jikesrvm.util.ImmutableEntryHashMapRVM;
 /**
  * database to hold field-level information
  * this is a mapping from RVMField -&gt; FieldDatabaseEntry
+ * <p>
+ * The database is shared by all opt compilations, which may run in
+ * parallel, so all accesses are synchronized on the database.
  */
 final class FieldDatabase {
   private static final boolean DEBUG = false;
@@ -29,7 +32,7 @@ final class FieldDatabase {
   private final ImmutableEntryHashMapRVM<RVMField, FieldDatabase.FieldDatabaseEntry> db =
     new ImmutableEntryHashMapRVM<RVMField, FieldDatabase.FieldDatabaseEntry>();
 
-  FieldDatabaseEntry findOrCreateEntry(RVMField f) {
+  synchronized FieldDatabaseEntry findOrCreateEntry(RVMField f) {
     FieldDatabaseEntry e = db.get(f);
     if (e == null) {
       e = new FieldDatabaseEntry(f);
@@ -42,7 +45,7 @@ final class FieldDatabase {
    * @param f the field in question
    * @return the concrete type of a field, or null if none determined
    */
-  public TypeReference getConcreteType(RVMField f) {
+  public synchronized TypeReference getConcreteType(RVMField f) {
     FieldDatabaseEntry e = db.get(f);
     if (e == null) return null;
 
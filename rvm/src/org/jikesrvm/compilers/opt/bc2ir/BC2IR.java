@@ -200,6 +200,12 @@ public final class BC2IR {
   // OSR field
   private boolean osrGuardedInline = false;
 
+  /**
+   * OSR field: should conditional branches with a side that was never
+   * executed be compiled as uncommon traps?
+   */
+  private boolean uncommonTraps = false;
+
   /**
    * OSR field: TODO rework this mechanism!
    * adjustment of bcIndex of instructions because of
@@ -326,6 +332,7 @@ public final class BC2IR {
        OptimizingCompiler.getAppStarted() &&
        (Controller.options != null) &&
        Controller.options.ENABLE_RECOMPILATION;
+    this.uncommonTraps = this.osrGuardedInline && context.getOptions().OSR_UNCOMMON_TRAPS;
   }
 
   private void finish(GenerationContext context) {
@@ -450,6 +457,16 @@ public final class BC2IR {
 
       lastOsrBarrier = null;
 
+      /* an uncommon trap resumes baseline code at the branch itself, so its
+       * barrier must be created before the branch pops its operands.
+       */
+      Instruction trapBarrier = null;
+      if (this.uncommonTraps &&
+          ((code >= JBC_ifeq && code <= JBC_if_acmpne) || code == JBC_ifnull || code == JBC_ifnonnull) &&
+          gc.hasUncommonBranchSide(instrIndex - bciAdjustment)) {
+        trapBarrier = _createOsrBarrier();
+      }
+
       switch (code) {
         case JBC_nop:
           break;
@@ -2642,6 +2659,10 @@ public final class BC2IR {
 
       if (s != null && !currentBBLE.isSelfRegen()) {
         appendInstruction(s);
+        if (trapBarrier != null && IfCmp.conforms(s)) {
+          // UncommonTrapInsertion finds the branches to turn into traps by their barriers
+          gc.saveOSRBarrierForInst(trapBarrier, s);
+        }
       }
 
       // check runoff
@@ -40,6 +40,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.jikesrvm.VM;
 import org.jikesrvm.classloader.NormalMethod;
@@ -65,6 +66,7 @@ import org.jikesrvm.compilers.opt.ir.ExceptionHandlerBasicBlock;
 import org.jikesrvm.compilers.opt.ir.ExceptionHandlerBasicBlockBag;
 import org.jikesrvm.compilers.opt.ir.GenericRegisterPool;
 import org.jikesrvm.compilers.opt.ir.IRTools;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
 import org.jikesrvm.compilers.opt.ir.Instruction;
 import org.jikesrvm.compilers.opt.ir.MonitorOp;
 import org.jikesrvm.compilers.opt.ir.Move;
@@ -241,6 +243,13 @@ public final class GenerationContext {
    */
   private Map<Instruction, Instruction> instToOSRBarriers;
 
+  /**
+   * The OSR yieldpoints that are uncommon traps (see
+   * {@link UncommonTrapInsertion}).  Like {@link #instToOSRBarriers},
+   * this is kept in the outermost context only.
+   */
+  private Set<Instruction> uncommonTrapPoints;
+
   //////////
   // Main public methods
   /////////
@@ -332,6 +341,7 @@ public final class GenerationContext {
 
     enclosingHandlers = null;
     instToOSRBarriers = new LinkedHashMap<Instruction, Instruction>();
+    uncommonTrapPoints = new HashSet<Instruction>();
 
     completePrologue(true);
     completeEpilogue(true);
@@ -708,6 +718,25 @@ public final class GenerationContext {
     return new BranchProfileOperand(prob);
   }
 
+  /**
+   * Was one side of a conditional branch never executed in baseline code,
+   * although the branch itself was executed often enough for its profile
+   * to be trusted?  Such a side can be compiled as an uncommon trap.
+   *
+   * @param bcIndex the bytecode index of the branch
+   * @return whether the branch has a side that was never executed
+   */
+  boolean hasUncommonBranchSide(int bcIndex) {
+    if (branchProfiles == null || options.inverseFrequencyCounters()) return false;
+    BranchProfile bp = branchProfiles.getEntry(bcIndex);
+    if (!(bp instanceof ConditionalBranchProfile) ||
+        bp.getFrequency() < options.OSR_UNCOMMON_TRAP_MIN_SAMPLES) {
+      return false;
+    }
+    float prob = ((ConditionalBranchProfile) bp).getTakenProbability();
+    return prob == BranchProfileOperand.NEVER || prob == BranchProfileOperand.ALWAYS;
+  }
+
   SwitchBranchProfile getSwitchProfile(int bcIndex) {
     if (branchProfiles != null) {
       return (SwitchBranchProfile) branchProfiles.getEntry(bcIndex);
@@ -950,7 +979,8 @@ public final class GenerationContext {
       VM._assert(osrBarrier.operator() == OSR_BARRIER,
           "Unexpected operator for OSR barrier");
       boolean sourceInstOk = inst.operator() == CALL ||
-          inst.operator() == YIELDPOINT_OSR;
+          inst.operator() == YIELDPOINT_OSR ||
+          IfCmp.conforms(inst);
       VM._assert(sourceInstOk,
           "Unexpected operator for instruction that has a barrier");
     }
@@ -964,6 +994,15 @@ public final class GenerationContext {
 
   public void discardOSRBarrierInformation() {
     instToOSRBarriers = null;
+    uncommonTrapPoints = null;
+  }
+
+  void markUncommonTrap(Instruction osrPoint) {
+    getOutermostContext().uncommonTrapPoints.add(osrPoint);
+  }
+
+  boolean isUncommonTrap(Instruction osrPoint) {
+    return getOutermostContext().uncommonTrapPoints.contains(osrPoint);
   }
 
 
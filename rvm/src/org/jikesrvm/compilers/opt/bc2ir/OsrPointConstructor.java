@@ -224,6 +224,7 @@ public class OsrPointConstructor extends CompilerPhase {
       // new make InlinedOsrTypeInfoOperand
       InlinedOsrTypeInfoOperand typeInfo =
           new InlinedOsrTypeInfoOperand(methodids, bcindexes, localTypeCodes, stackTypeCodes);
+      typeInfo.uncommonTrap = ir.getGc().isUncommonTrap(osr);
 
       OsrPoint.mutate(osr, osr.operator(), typeInfo, totalOperands);
 
@@ -0,0 +1,120 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.bc2ir;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.GOTO;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Goto;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.operand.BranchOperand;
+import org.jikesrvm.compilers.opt.ir.operand.BranchProfileOperand;
+
+/**
+ * Replaces the side of a conditional branch that baseline code never
+ * executed with an uncommon trap: an OSR point that transfers the activation
+ * to baseline code, which resumes at the branch.  The code that was only
+ * reachable through the never executed side then becomes unreachable and is
+ * removed, so it neither takes space nor merges imprecise state into the
+ * code that does execute.<p>
+ *
+ * BC2IR creates an OSR barrier for each branch that is to become a trap
+ * (see {@link GenerationContext#hasUncommonBranchSide(int)}), and this phase
+ * must run before {@link OsrPointConstructor} turns the barriers into OSR
+ * points.  When traps fire too often, the adaptive system recompiles the
+ * method without them (see {@link org.jikesrvm.osr.OSRProfiler}).
+ */
+public final class UncommonTrapInsertion extends CompilerPhase {
+
+  /**
+   * Return this instance of this phase. This phase contains no
+   * per-compilation instance fields.
+   * @param ir not used
+   * @return this
+   */
+  @Override
+  public CompilerPhase newExecution(IR ir) {
+    return this;
+  }
+
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return VM.runningVM && options.OSR_GUARDED_INLINING && options.OSR_UNCOMMON_TRAPS;
+  }
+
+  @Override
+  public String getName() {
+    return "Uncommon Trap Insertion";
+  }
+
+  @Override
+  public void perform(IR ir) {
+    GenerationContext gc = ir.getGc();
+    int traps = 0;
+    for (Instruction s = ir.firstInstructionInCodeOrder(); s != null; s = s.nextInstructionInCodeOrder()) {
+      if (IfCmp.conforms(s)) {
+        Instruction barrier = gc.getOSRBarrierFromInst(s);
+        if (barrier != null) {
+          insertTrap(s, barrier, ir);
+          traps++;
+        }
+      }
+    }
+    if (traps > 0) {
+      ir.compiledMethod.setUncommonTraps(true);
+    }
+  }
+
+  /**
+   * Redirect the never executed side of a branch to a new block holding
+   * an OSR point.
+   *
+   * @param s the conditional branch
+   * @param barrier the OSR barrier describing the state at the branch
+   * @param ir the containing IR
+   */
+  private static void insertTrap(Instruction s, Instruction barrier, IR ir) {
+    BasicBlock bb = s.getBasicBlock();
+    BasicBlock trap = new BasicBlock(s.getBytecodeIndex(), s.position(), ir.cfg);
+    Instruction osr = BC2IR._osrHelper(barrier, ir.getGc());
+    osr.copyPosition(s);
+    ir.getGc().markUncommonTrap(osr);
+    trap.appendInstruction(osr);
+    trap.insertOut(ir.cfg.exit());
+    trap.setInfrequent();
+    ir.cfg.addLastInCodeOrder(trap);
+
+    if (IfCmp.getBranchProfile(s).takenProbability != BranchProfileOperand.NEVER) {
+      // The branch was always taken: branch to the trap on the opposite
+      // condition and go to the old target otherwise.
+      BranchOperand target = IfCmp.getClearTarget(s);
+      IfCmp.setCond(s, IfCmp.getCond(s).flipCode());
+      Instruction next = s.nextInstructionInCodeOrder();
+      if (Goto.conforms(next)) {
+        Goto.setTarget(next, target);
+      } else {
+        Instruction g = Goto.create(GOTO, target);
+        g.copyPosition(s);
+        s.insertAfter(g);
+      }
+    }
+    IfCmp.setTarget(s, trap.makeJumpTarget());
+    IfCmp.setBranchProfile(s, BranchProfileOperand.never());
+    bb.recomputeNormalOut(ir);
+  }
+}
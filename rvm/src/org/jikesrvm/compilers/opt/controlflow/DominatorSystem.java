@@ -30,12 +30,20 @@ class DominatorSystem extends DF_System {
    */
   private final IR ir;
 
+  /**
+   * Are we computing post-dominators rather than dominators?
+   */
+  private final boolean postDominators;
+
   /**
    * Default constructor.
    * @param ir the governing IR
+   * @param postDominators whether to compute post-dominators instead of
+   *  dominators
    */
-  DominatorSystem(IR ir) {
+  DominatorSystem(IR ir, boolean postDominators) {
     this.ir = ir;
+    this.postDominators = postDominators;
     setupEquations();
   }
 
@@ -69,7 +77,7 @@ class DominatorSystem extends DF_System {
    */
   @Override
   protected void initializeLatticeCells() {
-    if (Dominators.COMPUTE_POST_DOMINATORS) {
+    if (postDominators) {
       BasicBlock exit = ir.cfg.exit();
       DominatorCell last = (DominatorCell) getCell(exit);
       for (final DF_LatticeCell latticeCell : cells.values()) {
@@ -101,7 +109,7 @@ class DominatorSystem extends DF_System {
    */
   @Override
   protected void initializeWorkList() {
-    if (Dominators.COMPUTE_POST_DOMINATORS) {
+    if (postDominators) {
       // Add every equation to work list (to be safe)
       // WARNING: an "end node" may be part of a cycle
       for (Enumeration<BasicBlock> e = ir.getBasicBlocks(); e.hasMoreElements();) {
@@ -139,7 +147,7 @@ class DominatorSystem extends DF_System {
    *  predecessors of a basic block
    */
   DF_LatticeCell[] getCellsForPredecessors(BasicBlock bb) {
-    if (Dominators.COMPUTE_POST_DOMINATORS) {
+    if (postDominators) {
       /****
        if ( bb.mayThrowUncaughtException() ) {
        if (Dominators.DEBUG) VM.sysWriteln("LOCATION #1 ...");
@@ -30,6 +30,7 @@ import org.jikesrvm.compilers.opt.OptOptions;
 import org.jikesrvm.compilers.opt.Simple;
 import org.jikesrvm.compilers.opt.bc2ir.ConvertBCtoHIR;
 import org.jikesrvm.compilers.opt.bc2ir.OsrPointConstructor;
+import org.jikesrvm.compilers.opt.bc2ir.UncommonTrapInsertion;
 import org.jikesrvm.compilers.opt.controlflow.BranchOptimizations;
 import org.jikesrvm.compilers.opt.controlflow.BuildLST;
 import org.jikesrvm.compilers.opt.controlflow.CFGTransformations;
@@ -44,8 +45,10 @@ import org.jikesrvm.compilers.opt.controlflow.YieldPoints;
 import org.jikesrvm.compilers.opt.escape.EscapeTransformations;
 import org.jikesrvm.compilers.opt.hir2lir.ConvertHIRtoLIR;
 import org.jikesrvm.compilers.opt.hir2lir.ExpandRuntimeServices;
+import org.jikesrvm.compilers.opt.hir2lir.InlineCacheExpansion;
 import org.jikesrvm.compilers.opt.ir.IR;
 import org.jikesrvm.compilers.opt.regalloc.CoalesceMoves;
+import org.jikesrvm.compilers.opt.ssa.ArrayBoundsCheckElimination;
 import org.jikesrvm.compilers.opt.ssa.GCP;
 import org.jikesrvm.compilers.opt.ssa.LeaveSSA;
 import org.jikesrvm.compilers.opt.ssa.LiveRangeSplitting;
@@ -189,7 +192,7 @@ public class OptimizationPlanner {
         // Generate HIR from bytecodes
         new ConvertBCtoHIR(),
 
-        new AdjustBCIndexes(), new OsrPointConstructor(),
+        new AdjustBCIndexes(), new UncommonTrapInsertion(), new OsrPointConstructor(),
 
         // Always do initial wave of peephole branch optimizations
         new BranchOptimizations(0, true, false),
@@ -335,6 +338,8 @@ public class OptimizationPlanner {
             new LoadElimination(5),
             // eliminate redundant conditional branches
             new RedundantBranchElimination(),
+            // eliminate redundant array bounds checks
+            new ArrayBoundsCheckElimination(),
             // path sensitive constant propagation
             new SSATuneUp(),
             // clean up Pi Nodes
@@ -437,6 +442,8 @@ public class OptimizationPlanner {
           }
         },
 
+        // Profile guided inline caches for the remaining dynamic calls
+        new InlineCacheExpansion(),
         // Inlining "runtime service" methods
         new ExpandRuntimeServices(),
         // Peephole branch optimizations
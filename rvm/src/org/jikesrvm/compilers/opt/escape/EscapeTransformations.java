@@ -17,6 +17,7 @@ import static org.jikesrvm.compilers.opt.ir.Operators.MONITOREXIT;
 import static org.jikesrvm.compilers.opt.ir.Operators.NEWARRAY_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.NEW_opcode;
 
+import org.jikesrvm.VM;
 import org.jikesrvm.classloader.RVMType;
 import org.jikesrvm.compilers.opt.DefUse;
 import org.jikesrvm.compilers.opt.LocalConstantProp;
@@ -42,6 +43,8 @@ import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
  * <ul>
  *  <li> 1. synchronization removal
  *  <li> 2. scalar replacement of aggregates and short arrays
+ *  <li> 3. scalar replacement of objects that only escape on infrequent
+ *          paths, materializing them where they escape
  * </ul>
  */
 public class EscapeTransformations extends CompilerPhase {
@@ -92,6 +95,9 @@ public class EscapeTransformations extends CompilerPhase {
     DefUse.computeDU(ir);
     DefUse.recomputeSSA(ir);
     SimpleEscape analyzer = new SimpleEscape();
+    int replaced = 0;
+    int partiallyReplaced = 0;
+    int materializations = 0;
     // do multiple passes to catch chains of objects that can be removed
     boolean removedAggregate;
     do {
@@ -123,6 +129,17 @@ public class EscapeTransformations extends CompilerPhase {
             // org.jikesrvm.VM.sysWriteln("Scalar replacing " + def + " in " + ir.method);
             s.transform();
             removedAggregate = true;
+            replaced++;
+          }
+        } else if (ir.options.ESCAPE_SCALAR_REPLACE_AGGREGATES && ir.options.ESCAPE_PARTIAL &&
+                   def.getOpcode() == NEW_opcode) {
+          // the object may escape, but perhaps only on infrequent paths
+          ObjectReplacer s = ObjectReplacer.getPartialReplacer(def, ir);
+          if (s != null) {
+            s.transform();
+            removedAggregate = true;
+            partiallyReplaced++;
+            materializations += s.getMaterializations();
           }
         }
         // *********************************************************
@@ -145,6 +162,11 @@ public class EscapeTransformations extends CompilerPhase {
         escapeCleanUp.perform(ir);
       }
     } while (removedAggregate);
+    if (ir.options.PRINT_ESCAPE_REPORT && (replaced > 0 || partiallyReplaced > 0)) {
+      VM.sysWriteln("Escape transformations for " + ir.method + ": " + replaced +
+                    " allocations removed, " + partiallyReplaced + " sunk to " +
+                    materializations + " escaping uses");
+    }
   }
 
   /**
@@ -42,11 +42,25 @@ class MethodSummary {
    */
   private long escapeInfo;
 
+  /**
+   * Whether each parameter may escape from the method, i.e. may be
+   * stored, returned or passed on to another method.
+   */
+  private long methodEscapeInfo;
+
+  /**
+   * Whether the fields or elements of each parameter may be written by
+   * the method.
+   */
+  private long writeInfo;
+
   /**
    * @param m RVMMethod representing this method.
    */
   MethodSummary(RVMMethod m) {
     escapeInfo = EVERYTHING_ESCAPES;
+    methodEscapeInfo = EVERYTHING_ESCAPES;
+    writeInfo = EVERYTHING_ESCAPES;
   }
 
   /**
@@ -77,6 +91,64 @@ class MethodSummary {
     return (escapeInfo & mask) != 0;
   }
 
+  /**
+   * Record that a parameter may or may not escape from this method.
+   *
+   * @param p the number of the parameter
+   * @param b may it escape?
+   */
+  public void setParameterMayEscapeMethod(int p, boolean b) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return;
+    long mask = 1L << p;
+    if (b) {
+      methodEscapeInfo |= mask;
+    } else {
+      methodEscapeInfo &= (~mask);
+    }
+  }
+
+  /**
+   * Query whether a parameter may escape from this method.
+   * @param p the number of the parameter
+   * @return {@code false} iff the parameter <em>cannot</em> outlive the
+   * invocation of this method, {@code true} otherwise.
+   */
+  public boolean parameterMayEscapeMethod(int p) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return true;
+    long mask = 1L << p;
+    return (methodEscapeInfo & mask) != 0;
+  }
+
+  /**
+   * Record that the fields or elements of a parameter may or may not be
+   * written by this method.
+   *
+   * @param p the number of the parameter
+   * @param b may it be written?
+   */
+  public void setParameterMayBeWritten(int p, boolean b) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return;
+    long mask = 1L << p;
+    if (b) {
+      writeInfo |= mask;
+    } else {
+      writeInfo &= (~mask);
+    }
+  }
+
+  /**
+   * Query whether the fields or elements of a parameter may be written
+   * by this method.
+   * @param p the number of the parameter
+   * @return {@code false} iff this method <em>cannot</em> write to the
+   * parameter, {@code true} otherwise.
+   */
+  public boolean parameterMayBeWritten(int p) {
+    if (p > MAXIMUM_PARAMETER_INDEX) return true;
+    long mask = 1L << p;
+    return (writeInfo & mask) != 0;
+  }
+
   /**
    * Record that a result of this method may or may not escape from a thread.
    *
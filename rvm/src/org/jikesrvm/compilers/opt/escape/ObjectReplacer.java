@@ -31,7 +31,9 @@ import static org.jikesrvm.compilers.opt.ir.Operators.LONG_STORE_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.MONITORENTER_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.MONITOREXIT_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.MUST_IMPLEMENT_INTERFACE_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.NEW;
 import static org.jikesrvm.compilers.opt.ir.Operators.NULL_CHECK_opcode;
+import static org.jikesrvm.compilers.opt.ir.Operators.PUTFIELD;
 import static org.jikesrvm.compilers.opt.ir.Operators.PUTFIELD_opcode;
 import static org.jikesrvm.compilers.opt.ir.Operators.READ_CEILING;
 import static org.jikesrvm.compilers.opt.ir.Operators.REF_IFCMP_opcode;
@@ -41,6 +43,7 @@ import static org.jikesrvm.compilers.opt.ir.Operators.TRAP;
 import static org.jikesrvm.compilers.opt.ir.Operators.WRITE_FLOOR;
 
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -66,10 +69,14 @@ import org.jikesrvm.compilers.opt.ir.PutField;
 import org.jikesrvm.compilers.opt.ir.Register;
 import org.jikesrvm.compilers.opt.ir.Trap;
 import org.jikesrvm.compilers.opt.ir.TypeCheck;
+import org.jikesrvm.compilers.opt.ir.operand.AddressConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.LocationOperand;
 import org.jikesrvm.compilers.opt.ir.operand.Operand;
 import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TIBConstantOperand;
 import org.jikesrvm.compilers.opt.ir.operand.TrapCodeOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TrueGuardOperand;
+import org.jikesrvm.compilers.opt.ir.operand.TypeOperand;
 
 /**
  * Class that performs scalar replacement of aggregates for non-array
@@ -88,6 +95,11 @@ final class ObjectReplacer implements AggregateReplacer {
    * the register holding the object reference
    */
   private final Register reg;
+  /**
+   * the result of partial escape analysis if the object escapes on
+   * some paths, {@code null} if it never escapes
+   */
+  private final PartialEscape partial;
 
   /**
    * Return an object representing this transformation for a given
@@ -104,7 +116,33 @@ final class ObjectReplacer implements AggregateReplacer {
     if (klass.hasFinalizer() || containsUnsupportedUse(ir, r, klass, null)) {
       return null;
     }
-    return new ObjectReplacer(r, klass, ir);
+    return new ObjectReplacer(r, klass, ir, null);
+  }
+
+  /**
+   * Return an object representing this transformation for a given
+   * allocation site whose object escapes on some (infrequent) paths
+   *
+   * @param inst the allocation site
+   * @param ir the governing IR
+   * @return the object, or null if illegal
+   */
+  public static ObjectReplacer getPartialReplacer(Instruction inst, IR ir) {
+    PartialEscape partial = PartialEscape.analyze(inst, ir);
+    if (partial == null) {
+      return null;
+    }
+    Register r = New.getResult(inst).getRegister();
+    RVMClass klass = New.getType(inst).getVMType().asClass();
+    return new ObjectReplacer(r, klass, ir, partial);
+  }
+
+  /**
+   * @return the number of places the object is materialized, zero if
+   * it never escapes
+   */
+  public int getMaterializations() {
+    return partial == null ? 0 : partial.getMaterializations().size();
   }
 
   @Override
@@ -122,6 +160,9 @@ final class ObjectReplacer implements AggregateReplacer {
       scalars[i] = IRTools.moveIntoRegister(ir.regpool, defI, defaultValue);
       scalars[i].setType(f.getType());
     }
+    if (partial != null) {
+      materialize(scalars, fields);
+    }
     transform2(this.reg, defI, scalars, fields, null);
   }
 
@@ -139,6 +180,42 @@ final class ObjectReplacer implements AggregateReplacer {
     }
   }
 
+  /**
+   * Allocates the object and fills it in from the scalars before each
+   * instruction that needs it, and makes the instruction use it.
+   *
+   * @param scalars the scalars holding the object's fields
+   * @param fields the object's fields
+   */
+  private void materialize(RegisterOperand[] scalars, ArrayList<RVMField> fields) {
+    for (Instruction inst : partial.getMaterializations()) {
+      RegisterOperand obj = ir.regpool.makeTemp(klass.getTypeRef());
+      obj.setPreciseType();
+      obj.setExtant();
+      Instruction s = New.create(NEW, obj, new TypeOperand(klass));
+      inst.insertBefore(s);
+      DefUse.updateDUForNewInstruction(s);
+      for (int i = 0; i < fields.size(); i++) {
+        RVMField f = fields.get(i);
+        s = PutField.create(PUTFIELD, scalars[i].copyRO(), obj.copyRO(),
+                            new AddressConstantOperand(f.getOffset()),
+                            new LocationOperand(f), new TrueGuardOperand());
+        inst.insertBefore(s);
+        DefUse.updateDUForNewInstruction(s);
+      }
+      ArrayList<RegisterOperand> uses = new ArrayList<RegisterOperand>();
+      for (Enumeration<Operand> e = inst.getUses(); e.hasMoreElements();) {
+        Operand op = e.nextElement();
+        if (op.isRegister() && partial.isAlias(op.asRegister().getRegister())) {
+          uses.add(op.asRegister());
+        }
+      }
+      for (RegisterOperand use : uses) {
+        DefUse.transferUse(use, obj);
+      }
+    }
+  }
+
   /**
    * Returns the instance fields of the object.
    * @param klass the type of the object
@@ -156,11 +233,13 @@ final class ObjectReplacer implements AggregateReplacer {
    * @param r the register holding the object reference
    * @param _klass the type of the object to replace
    * @param i the IR
+   * @param p the result of partial escape analysis, or {@code null}
    */
-  private ObjectReplacer(Register r, RVMClass _klass, IR i) {
+  private ObjectReplacer(Register r, RVMClass _klass, IR i, PartialEscape p) {
     reg = r;
     klass = _klass;
     ir = i;
+    partial = p;
   }
 
   /**
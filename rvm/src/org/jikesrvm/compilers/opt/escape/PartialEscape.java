@@ -0,0 +1,361 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.escape;
+
+import static org.jikesrvm.compilers.opt.driver.OptConstants.MAYBE;
+import static org.jikesrvm.compilers.opt.driver.OptConstants.YES;
+import static org.jikesrvm.compilers.opt.ir.Operators.*;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMField;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.opt.ClassLoaderProxy;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Call;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.InstanceOf;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.New;
+import org.jikesrvm.compilers.opt.ir.PutField;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.ResultCarrier;
+import org.jikesrvm.compilers.opt.ir.Store;
+import org.jikesrvm.compilers.opt.ir.TypeCheck;
+import org.jikesrvm.compilers.opt.ir.operand.MethodOperand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+
+/**
+ * Flow-sensitive partial escape analysis of an allocation site.
+ * <p>
+ * An object that {@link SimpleEscape} finds may escape the method can
+ * still be scalar replaced if it only escapes on infrequent paths.  The
+ * object is then kept in scalars, and is only materialized (allocated
+ * and filled in from the scalars) just before each use that lets it
+ * escape.  This is only legal if no use of the object can follow a
+ * materialization on any path, as the escaped object, not the scalars,
+ * is then the object.  The analysis checks this by solving a forward
+ * data-flow problem over the CFG: an allocation site's object is
+ * <em>escaped</em> at a point if a materialization may have happened
+ * since the object was last allocated.
+ * <p>
+ * A call that the callee's {@link MethodSummary} shows neither lets an
+ * argument outlive the call nor writes to it gets a materialized copy of
+ * the object, after which the object stays in scalars.  The callee can
+ * still observe the copy's identity, e.g. through its hash code, so a copy
+ * may only be followed by uses that scalar replacement handles: no other
+ * copy or materialization may follow it before the object is allocated
+ * again, as that would be a different object.
+ */
+final class PartialEscape {
+
+  /** A use that scalar replacement handles */
+  private static final int VIRTUAL = 0;
+  /** A use that needs a copy of the object, but does not keep or change it */
+  private static final int COPY = 1;
+  /** A use that needs the object, after which the object has escaped */
+  private static final int MATERIALIZE = 2;
+  /** Not a use that can be handled */
+  private static final int UNSUPPORTED = -1;
+
+  /** The allocation site */
+  private final Instruction alloc;
+  /** The registers holding the object: its def and copies of it */
+  private final Set<Register> aliases = new HashSet<Register>();
+  /** The instructions using the object, and the kind of use */
+  private final HashMap<Instruction, Integer> uses = new HashMap<Instruction, Integer>();
+  /** The instructions needing the object, in the order found */
+  private final ArrayList<Instruction> materializations = new ArrayList<Instruction>();
+
+  private PartialEscape(Instruction alloc) {
+    this.alloc = alloc;
+  }
+
+  /**
+   * Analyzes an allocation site.
+   *
+   * @param inst the allocation site, a NEW instruction whose result is
+   *  an SSA register
+   * @param ir the governing IR
+   * @return the result of the analysis, or {@code null} if the object
+   *  cannot be partially scalar replaced
+   */
+  static PartialEscape analyze(Instruction inst, IR ir) {
+    // nothing to gain if the object is only allocated on infrequent paths
+    if (inst.getBasicBlock().getInfrequent()) {
+      return null;
+    }
+    RVMClass klass = New.getType(inst).getVMType().asClass();
+    if (klass.hasFinalizer()) {
+      return null;
+    }
+    for (RVMField f : klass.getInstanceFields()) {
+      if (f.isVolatile()) {
+        return null;
+      }
+    }
+    PartialEscape result = new PartialEscape(inst);
+    if (!result.classifyUses(New.getResult(inst).getRegister(), klass, ir)) {
+      return null;
+    }
+    if (result.materializations.isEmpty() || !result.noUseAfterEscape(ir)) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * @return the instructions before which the object must be materialized
+   */
+  ArrayList<Instruction> getMaterializations() {
+    return materializations;
+  }
+
+  /**
+   * @param r a register
+   * @return whether the register holds the object
+   */
+  boolean isAlias(Register r) {
+    return aliases.contains(r);
+  }
+
+  /**
+   * Classifies the uses of a register holding the object, and of the
+   * copies of it.
+   *
+   * @param reg the register
+   * @param klass the class of the object
+   * @param ir the governing IR
+   * @return {@code false} if there is a use that cannot be handled
+   */
+  private boolean classifyUses(Register reg, RVMClass klass, IR ir) {
+    if (!reg.isSSA()) {
+      return false;
+    }
+    if (aliases.contains(reg)) {
+      return true;
+    }
+    aliases.add(reg);
+    for (RegisterOperand use = reg.useList; use != null; use = use.getNext()) {
+      Instruction inst = use.instruction;
+      int kind;
+      switch (inst.getOpcode()) {
+        case GETFIELD_opcode:
+        case MONITORENTER_opcode:
+        case MONITOREXIT_opcode:
+        case NULL_CHECK_opcode:
+        case GET_OBJ_TIB_opcode:
+          kind = VIRTUAL;
+          break;
+        case INSTANCEOF_opcode:
+        case INSTANCEOF_NOTNULL_opcode:
+        case INSTANCEOF_UNRESOLVED_opcode:
+          if (ClassLoaderProxy.includesType(InstanceOf.getType(inst).getTypeRef(),
+              klass.getTypeRef()) == MAYBE) {
+            return false;
+          }
+          kind = VIRTUAL;
+          break;
+        case CHECKCAST_opcode:
+        case CHECKCAST_NOTNULL_opcode:
+        case CHECKCAST_UNRESOLVED_opcode: {
+          TypeReference lhsType = TypeCheck.getType(inst).getTypeRef();
+          byte ans = ClassLoaderProxy.includesType(lhsType, klass.getTypeRef());
+          if (ans == MAYBE) {
+            return false;
+          }
+          if (ans == YES && !classifyUses(TypeCheck.getResult(inst).getRegister(), klass, ir)) {
+            return false;
+          }
+          kind = VIRTUAL;
+        }
+        break;
+        case REF_MOVE_opcode:
+          if (!classifyUses(ResultCarrier.getResult(inst).getRegister(), klass, ir)) {
+            return false;
+          }
+          kind = VIRTUAL;
+          break;
+        case PUTFIELD_opcode:
+          kind = PutField.getValue(inst) == use ? MATERIALIZE : VIRTUAL;
+          break;
+        case REF_ASTORE_opcode:
+          if (AStore.getValue(inst) != use) {
+            return false;
+          }
+          kind = MATERIALIZE;
+          break;
+        case REF_STORE_opcode:
+          if (Store.getValue(inst) != use) {
+            return false;
+          }
+          kind = MATERIALIZE;
+          break;
+        case PUTSTATIC_opcode:
+        case RETURN_opcode:
+        case ATHROW_opcode:
+          kind = MATERIALIZE;
+          break;
+        case CALL_opcode:
+          kind = classifyCall(use, ir);
+          if (kind == UNSUPPORTED) {
+            return false;
+          }
+          break;
+        default:
+          // identity comparisons, phis, conversions to words etc.
+          return false;
+      }
+      Integer previous = uses.get(inst);
+      if (previous == null) {
+        if (kind != VIRTUAL) {
+          // only worth it if the object is needed on infrequent paths alone
+          if (!inst.getBasicBlock().getInfrequent()) {
+            return false;
+          }
+          materializations.add(inst);
+        }
+        uses.put(inst, kind);
+      } else if (previous.intValue() != kind) {
+        // e.g. storing the object into itself
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Classifies an argument of a call.  The argument needs only a copy of
+   * the object if the callee is known, and its summary shows that it
+   * neither lets the argument escape nor writes to it.
+   *
+   * @param use the argument
+   * @param ir the governing IR
+   * @return the kind of use, or {@code UNSUPPORTED} if the object is not
+   *  an argument
+   */
+  private static int classifyCall(RegisterOperand use, IR ir) {
+    Instruction inst = use.instruction;
+    int p = -1;
+    for (int i = 0; i < Call.getNumberOfParams(inst); i++) {
+      if (Call.getParam(inst, i) == use) {
+        p = i;
+      }
+    }
+    if (p < 0) {
+      return UNSUPPORTED;
+    }
+    MethodOperand mop = Call.getMethod(inst);
+    if (mop == null || !mop.hasPreciseTarget() || mop.getTarget().isNative()) {
+      return MATERIALIZE;
+    }
+    MethodSummary summ = SimpleEscape.getMethodSummaryIfAvailable(mop.getTarget(), ir.options);
+    if (summ == null || summ.inProgress() ||
+        summ.parameterMayEscapeMethod(p) || summ.parameterMayBeWritten(p)) {
+      return MATERIALIZE;
+    }
+    return COPY;
+  }
+
+  /**
+   * Solves the data-flow problem, and checks that no use of the object
+   * may follow a materialization of it, and that only uses handled by
+   * scalar replacement may follow a copy of it.
+   *
+   * @param ir the governing IR
+   * @return {@code true} if the object may be partially scalar replaced
+   */
+  private boolean noUseAfterEscape(IR ir) {
+    HashMap<BasicBlock, Integer> stateOut = new HashMap<BasicBlock, Integer>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Enumeration<BasicBlock> e = ir.forwardBlockEnumerator(); e.hasMoreElements();) {
+        BasicBlock bb = e.nextElement();
+        int out = transfer(bb, stateIn(bb, stateOut), false);
+        if (out > state(bb, stateOut)) {
+          stateOut.put(bb, out);
+          changed = true;
+        }
+      }
+    }
+    for (Enumeration<BasicBlock> e = ir.forwardBlockEnumerator(); e.hasMoreElements();) {
+      BasicBlock bb = e.nextElement();
+      if (transfer(bb, stateIn(bb, stateOut), true) != VIRTUAL) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param bb a basic block
+   * @param stateOut the state of the object at the end of each block
+   * @return the state of the object at the end of the block
+   */
+  private static int state(BasicBlock bb, HashMap<BasicBlock, Integer> stateOut) {
+    Integer state = stateOut.get(bb);
+    return state == null ? VIRTUAL : state.intValue();
+  }
+
+  /**
+   * @param bb a basic block
+   * @param stateOut the state of the object at the end of each block
+   * @return the state of the object on entry to the block: {@code VIRTUAL}
+   *  if it is only held in scalars on all paths, {@code COPY} if it may have
+   *  been copied, and {@code MATERIALIZE} if it may have escaped
+   */
+  private static int stateIn(BasicBlock bb, HashMap<BasicBlock, Integer> stateOut) {
+    int state = VIRTUAL;
+    for (Enumeration<BasicBlock> in = bb.getIn(); in.hasMoreElements();) {
+      state = Math.max(state, state(in.nextElement(), stateOut));
+    }
+    return state;
+  }
+
+  /**
+   * The transfer function of the data-flow problem.  The states are
+   * ordered {@code VIRTUAL < COPY < MATERIALIZE}.
+   *
+   * @param bb a basic block
+   * @param state the state of the object on entry to the block
+   * @param check if {@code true}, look for a use of the object that may not
+   *  follow a copy or materialization, rather than computing the state at
+   *  the end of the block
+   * @return if checking, {@code VIRTUAL} if no such use was found, otherwise
+   *  the state of the object at the end of the block
+   */
+  private int transfer(BasicBlock bb, int state, boolean check) {
+    for (Enumeration<Instruction> e = bb.forwardInstrEnumerator(); e.hasMoreElements();) {
+      Instruction inst = e.nextElement();
+      if (inst == alloc) {
+        // a new object, held in the scalars again
+        state = VIRTUAL;
+      }
+      Integer kind = uses.get(inst);
+      if (kind != null) {
+        if (check && (state == MATERIALIZE || (state == COPY && kind.intValue() != VIRTUAL))) {
+          return MATERIALIZE;
+        }
+        state = Math.max(state, kind.intValue());
+      }
+    }
+    return check ? VIRTUAL : state;
+  }
+}
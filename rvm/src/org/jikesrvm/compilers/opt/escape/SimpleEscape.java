@@ -176,6 +176,13 @@ class SimpleEscape extends CompilerPhase {
       } else {
         summ.setParameterMayEscapeThread(numParam, true);
       }
+      if (result.isMethodLocal(p)) {
+        summ.setParameterMayEscapeMethod(numParam, false);
+        summ.setParameterMayBeWritten(numParam, checkIfWritten(p, null));
+      } else {
+        summ.setParameterMayEscapeMethod(numParam, true);
+        summ.setParameterMayBeWritten(numParam, true);
+      }
     }
 
     // update the method summary to note whether the return value
@@ -282,6 +289,59 @@ class SimpleEscape extends CompilerPhase {
     return false;
   }
 
+  /**
+   * Checks whether the fields or elements of the object a register points
+   * to may be written through it, or through copies of it.
+   * <p> PRECONDITION: the object does not escape the method, so it only
+   * flows through moves and casts
+   *
+   * @param reg the register to check
+   * @param visited visited registers
+   * @return {@code true} if it may be written, {@code false} otherwise
+   */
+  private static boolean checkIfWritten(Register reg, Set<Register> visited) {
+    for (RegisterOperand use = reg.useList; use != null; use = use.getNext()) {
+      Instruction inst = use.instruction;
+      switch (inst.getOpcode()) {
+        case INT_ASTORE_opcode:
+        case LONG_ASTORE_opcode:
+        case FLOAT_ASTORE_opcode:
+        case DOUBLE_ASTORE_opcode:
+        case BYTE_ASTORE_opcode:
+        case SHORT_ASTORE_opcode:
+        case REF_ASTORE_opcode:
+        case PUTFIELD_opcode:
+        case BYTE_STORE_opcode:
+        case SHORT_STORE_opcode:
+        case REF_STORE_opcode:
+        case INT_STORE_opcode:
+        case LONG_STORE_opcode:
+        case FLOAT_STORE_opcode:
+        case DOUBLE_STORE_opcode:
+        case CALL_opcode:
+          // the object does not escape, so it must be the object written to
+          return true;
+        case CHECKCAST_opcode:
+        case CHECKCAST_NOTNULL_opcode:
+        case CHECKCAST_UNRESOLVED_opcode:
+        case REF_MOVE_opcode: {
+          if (visited == null) {
+            visited = new HashSet<Register>();
+          }
+          visited.add(reg);
+          Register copy = ResultCarrier.getResult(inst).getRegister();
+          if (!visited.contains(copy) && checkIfWritten(copy, visited)) {
+            return true;
+          }
+        }
+        break;
+        default:
+          break;
+      }
+    }
+    return false;
+  }
+
   private static void assertThatTypeIsNotNull(IR ir, RegisterOperand useOrDef) {
     if (VM.VerifyAssertions && useOrDef.getType() == null) {
       ir.printInstructions();
@@ -771,7 +831,7 @@ class SimpleEscape extends CompilerPhase {
    *  if it does not exist
    * @return a method summary or {@code null}.
    */
-  private static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
+  static MethodSummary getMethodSummaryIfAvailable(RVMMethod m, OptOptions options) {
     MethodSummary summ = SummaryDatabase.findMethodSummary(m);
     if (summ == null) {
       if (options.ESCAPE_SIMPLE_IPA) {
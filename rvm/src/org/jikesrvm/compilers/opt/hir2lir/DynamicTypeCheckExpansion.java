@@ -19,6 +19,8 @@ import org.jikesrvm.classloader.DynamicTypeCheck;
 import org.jikesrvm.classloader.RVMMethod;
 import org.jikesrvm.classloader.RVMType;
 import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.baseline.TypeProfile;
+import org.jikesrvm.compilers.baseline.TypeProfiles;
 import org.jikesrvm.compilers.opt.OptimizingCompilerException;
 import org.jikesrvm.compilers.opt.ir.ALoad;
 import org.jikesrvm.compilers.opt.ir.Binary;
@@ -37,6 +39,8 @@ import static org.jikesrvm.compilers.opt.ir.Operators.ARRAYLENGTH;
 import static org.jikesrvm.compilers.opt.ir.Operators.BBEND;
 import static org.jikesrvm.compilers.opt.ir.Operators.BOOLEAN_CMP_ADDR;
 import static org.jikesrvm.compilers.opt.ir.Operators.CALL;
+import static org.jikesrvm.compilers.opt.ir.Operators.CHECKCAST;
+import static org.jikesrvm.compilers.opt.ir.Operators.CHECKCAST_NOTNULL;
 import static org.jikesrvm.compilers.opt.ir.Operators.GET_ARRAY_ELEMENT_TIB_FROM_TIB;
 import static org.jikesrvm.compilers.opt.ir.Operators.GET_DOES_IMPLEMENT_FROM_TIB;
 import static org.jikesrvm.compilers.opt.ir.Operators.GET_SUPERCLASS_IDS_FROM_TIB;
@@ -44,6 +48,8 @@ import static org.jikesrvm.compilers.opt.ir.Operators.GET_TYPE_FROM_TIB;
 import static org.jikesrvm.compilers.opt.ir.Operators.GOTO;
 import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_COMBINE;
 import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.INSTANCEOF;
+import static org.jikesrvm.compilers.opt.ir.Operators.INSTANCEOF_NOTNULL;
 import static org.jikesrvm.compilers.opt.ir.Operators.INT_2ADDRZerExt;
 import static org.jikesrvm.compilers.opt.ir.Operators.INT_AND;
 import static org.jikesrvm.compilers.opt.ir.Operators.INT_IFCMP;
@@ -80,6 +86,18 @@ import org.vmmagic.unboxed.Offset;
  */
 abstract class DynamicTypeCheckExpansion extends ConvertToLowLevelIR {
 
+  /**
+   * The most types from a receiver type profile to test for before the
+   * general type check
+   */
+  private static final int MAX_PROFILED_TYPE_TESTS = 2;
+
+  /**
+   * The fraction of the objects seen at a type check that must have a type
+   * for it to be tested for before the general type check
+   */
+  private static final float MIN_PROFILED_TYPE_FRACTION = 0.2f;
+
   /**
    * Expand an instanceof instruction into the LIR sequence that implements
    * the dynamic type check.  Ref may contain a null ptr at runtime.
@@ -845,6 +863,11 @@ abstract class DynamicTypeCheckExpansion extends ConvertToLowLevelIR {
     if (LHStype.isClassType()) {
       RVMClass LHSclass = (RVMClass) LHStype.peekType();
       if (LHSclass != null && LHSclass.isResolved()) {
+        if (!LHSclass.isFinal() && ir.options.TYPE_PROFILE_GUIDED &&
+            (s.operator() == CHECKCAST || s.operator() == CHECKCAST_NOTNULL ||
+             s.operator() == INSTANCEOF || s.operator() == INSTANCEOF_NOTNULL)) {
+          insertProfiledTypeTests(continueAt, ir, LHSclass, RHStib, trueBlock, falseBlock);
+        }
         // Cases 4, 5, and 6 of DynamicTypeCheck: LHSclass is a resolved
         // class or interface
         if (LHSclass.isInterface()) {
@@ -1075,6 +1098,51 @@ abstract class DynamicTypeCheckExpansion extends ConvertToLowLevelIR {
     return null;
   }
 
+  /**
+   * Insert tests of the TIB of the object being checked against the TIBs
+   * of the types that the receiver type profile of the type check shows to
+   * be frequent, most frequent first.  Each test branches straight to the
+   * known outcome for its type, so the common cases skip the general check
+   * that follows.
+   *
+   * @param continueAt the instruction to insert the tests before
+   * @param ir the enclosing IR
+   * @param LHSclass the resolved class or interface being tested against
+   * @param RHStib the TIB of the object being checked
+   * @param trueBlock the block to continue at if the check succeeds
+   * @param falseBlock the block to continue at if the check fails
+   */
+  private static void insertProfiledTypeTests(Instruction continueAt, IR ir, RVMClass LHSclass, Operand RHStib,
+                                              BasicBlock trueBlock, BasicBlock falseBlock) {
+    if (continueAt.position() == null) return;
+    TypeProfile profile = TypeProfiles.getTypeProfile(continueAt.position().getMethod(), continueAt.getBytecodeIndex());
+    if (profile == null) return;
+    float untested = 1f;
+    int tests = 0;
+    for (int i = 0; i < profile.getNumberOfTypes() && tests < MAX_PROFILED_TYPE_TESTS; i++) {
+      RVMType type = profile.getType(i);
+      float fraction = profile.getFraction(i);
+      if (fraction < MIN_PROFILED_TYPE_FRACTION) break;
+      if (!type.isResolved()) continue;
+      BasicBlock target = LHSclass.isAssignableFrom(type) ? trueBlock : falseBlock;
+      Instruction test =
+          IfCmp.create(REF_IFCMP,
+                       ir.regpool.makeTempValidation(),
+                       RHStib.copy(),
+                       getTIB(continueAt, ir, type),
+                       ConditionOperand.EQUAL(),
+                       target.makeJumpTarget(),
+                       new BranchProfileOperand(Math.min(1f, fraction / untested)));
+      test.copyPosition(continueAt);
+      continueAt.insertBefore(test);
+      BasicBlock myBlock = test.getBasicBlock();
+      myBlock.splitNodeWithLinksAt(test, ir);
+      myBlock.insertOut(target);       // must come after the splitNodeAt
+      untested -= fraction;
+      tests++;
+    }
+  }
+
   // helper routine.
   // s is a conditional branch; Make it the last instruction in its block
   // if it isn't already and return the fallthrough block.
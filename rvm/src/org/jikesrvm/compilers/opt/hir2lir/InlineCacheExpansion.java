@@ -0,0 +1,262 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.hir2lir;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.CALL;
+import static org.jikesrvm.compilers.opt.ir.Operators.GETSTATIC;
+import static org.jikesrvm.compilers.opt.ir.Operators.GOTO;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ALOAD;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ASTORE;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_IFCMP;
+
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMClass;
+import org.jikesrvm.classloader.RVMField;
+import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.baseline.BaselineOptions;
+import org.jikesrvm.compilers.baseline.InlineCaches;
+import org.jikesrvm.compilers.baseline.TypeProfile;
+import org.jikesrvm.compilers.baseline.TypeProfiles;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.ir.ALoad;
+import org.jikesrvm.compilers.opt.ir.AStore;
+import org.jikesrvm.compilers.opt.ir.BasicBlock;
+import org.jikesrvm.compilers.opt.ir.Binary;
+import org.jikesrvm.compilers.opt.ir.Call;
+import org.jikesrvm.compilers.opt.ir.GetStatic;
+import org.jikesrvm.compilers.opt.ir.Goto;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IRTools;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.operand.AddressConstantOperand;
+import org.jikesrvm.compilers.opt.ir.operand.BranchProfileOperand;
+import org.jikesrvm.compilers.opt.ir.operand.ConditionOperand;
+import org.jikesrvm.compilers.opt.ir.operand.LocationOperand;
+import org.jikesrvm.compilers.opt.ir.operand.MethodOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+import org.jikesrvm.compilers.opt.runtimesupport.InlineCacheCounters;
+import org.jikesrvm.runtime.Entrypoints;
+
+/**
+ * Expands virtual and interface calls whose receivers were seen by baseline
+ * code to be of only a few types (see {@link TypeProfiles} and
+ * {@link InlineCaches}) into polymorphic inline caches.  The TIB of the receiver is compared with the TIB of each
+ * cached type and, on a match, the implementation of the method for that
+ * type is called directly.  Receivers of any other type fall through to the
+ * original call, which dispatches through the TIB or the IMT as before.<p>
+ *
+ * Calls the inliner chose to inline have already been replaced by guarded
+ * inline code, so this catches the sites whose targets were too big to
+ * inline.  When {@link OptOptions#H2L_INLINE_CACHE_COUNTERS} is set, the
+ * hits on each cached type and the misses of each cache are counted (see
+ * {@link InlineCacheCounters}).<p>
+ *
+ * The receiver type profiles come from baseline code, so by default this
+ * phase does nothing: virtual and interface calls are only profiled under
+ * {@link BaselineOptions#PROFILE_RECEIVER_TYPES}, and the baseline inline
+ * caches of interface calls, whose hit counts are used when a call has no
+ * receiver type profile, only exist under
+ * {@link BaselineOptions#INLINE_CACHES}.
+ */
+public final class InlineCacheExpansion extends CompilerPhase {
+
+  /** The largest number of types cached at a call site */
+  private static final int MAX_CACHED_TYPES = 3;
+
+  /** The smallest fraction of a site's receivers a type must have to be cached */
+  private static final float MIN_CACHED_TYPE_FRACTION = 0.1f;
+
+  /**
+   * Return this instance of this phase. This phase contains no
+   * per-compilation instance fields.
+   * @param ir not used
+   * @return this
+   */
+  @Override
+  public CompilerPhase newExecution(IR ir) {
+    return this;
+  }
+
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return options.H2L_INLINE_CACHES;
+  }
+
+  @Override
+  public String getName() {
+    return "Inline Cache Expansion";
+  }
+
+  /**
+   * Expand each virtual or interface call with a profile into an inline cache.
+   *
+   * @param ir  The HIR to expand
+   */
+  @Override
+  public void perform(IR ir) {
+    boolean count = ir.options.H2L_INLINE_CACHE_COUNTERS;
+    Instruction next;
+    for (Instruction s = ir.firstInstructionInCodeOrder(); s != null; s = next) {
+      next = s.nextInstructionInCodeOrder();
+      if (s.operator() == CALL) {
+        BasicBlock after = expand(s, ir, count);
+        if (after != null) {
+          next = after.firstInstruction();
+        }
+      }
+    }
+  }
+
+  /**
+   * Expand a call into an inline cache if it is a dynamically dispatched
+   * call whose receiver type profile has a few dominant types.
+   *
+   * @param s the call
+   * @param ir the containing IR
+   * @param count whether to insert hit and miss counters
+   * @return the block following the expanded call, or {@code null} if the
+   *  call was left alone
+   */
+  private static BasicBlock expand(Instruction s, IR ir, boolean count) {
+    if (!Call.hasMethod(s) || s.position() == null) return null;
+    MethodOperand methOp = Call.getMethod(s);
+    if (!(methOp.isVirtual() || methOp.isInterface()) ||
+        methOp.hasPreciseTarget() ||
+        methOp.isGuardedInlineOffBranch() ||
+        methOp.hasDesignatedTarget() ||
+        methOp.spMethod != null) {
+      return null;
+    }
+    RVMMethod declared = methOp.getTarget();
+    if (declared == null || Call.getGuard(s) == null ||
+        Call.getNumberOfParams(s) == 0 || !Call.getParam(s, 0).isRegister()) {
+      return null;
+    }
+    BasicBlock callBlock = s.getBasicBlock();
+    if (callBlock.getInfrequent()) return null;
+    NormalMethod caller = s.position().getMethod();
+    TypeProfile profile = TypeProfiles.getTypeProfile(caller, s.getBytecodeIndex());
+    if (profile == null) {
+      profile = InlineCaches.getTypeProfile(caller, s.getBytecodeIndex());
+      if (profile == null) return null;
+    }
+
+    // (1) Choose the types to cache and find their implementations
+    RVMClass declaringClass = declared.getDeclaringClass();
+    RVMType[] types = new RVMType[MAX_CACHED_TYPES];
+    RVMMethod[] targets = new RVMMethod[MAX_CACHED_TYPES];
+    float[] fractions = new float[MAX_CACHED_TYPES];
+    int cached = 0;
+    for (int i = 0; i < profile.getNumberOfTypes() && cached < MAX_CACHED_TYPES; i++) {
+      float fraction = profile.getFraction(i);
+      if (fraction < MIN_CACHED_TYPE_FRACTION) break;
+      RVMType type = profile.getType(i);
+      if (!type.isClassType() || !type.isResolved() || !type.isInstantiated() ||
+          !declaringClass.isAssignableFrom(type)) {
+        continue;
+      }
+      RVMMethod target = type.findVirtualMethod(declared.getName(), declared.getDescriptor());
+      if (target == null || target.isAbstract()) continue;
+      types[cached] = type;
+      targets[cached] = target;
+      fractions[cached] = fraction;
+      cached++;
+    }
+    if (cached == 0) return null;
+
+    // (2) Make the call the last instruction of its block, so the calls
+    //     of the hits can rejoin the original code after it.
+    BasicBlock after = callBlock.splitNodeWithLinksAt(s, ir);
+    int counter = -1;
+    if (count) {
+      String[] names = new String[cached];
+      for (int i = 0; i < cached; i++) {
+        names[i] = types[i].toString();
+      }
+      counter = InlineCacheCounters.allocateCounters(caller, s.getBytecodeIndex(), names);
+    }
+
+    // (3) Compare the receiver's TIB with each cached type's, branching to
+    //     a block holding a direct call to the type's implementation.
+    Operand tib = ConvertToLowLevelIR.getTIB(s, ir, Call.getParam(s, 0).copy(), Call.getGuard(s).copy());
+    float untested = 1f;
+    for (int i = 0; i < cached; i++) {
+      BasicBlock hit = callBlock.createSubBlock(s.getBytecodeIndex(), ir, fractions[i]);
+      Instruction call = s.copyWithoutLinks();
+      RVMMethod target = targets[i];
+      Call.setMethod(call, MethodOperand.SPECIAL(target.getMemberRef().asMethodReference(), target));
+      Call.setAddress(call, new AddressConstantOperand(target.getOffset()));
+      call.copyPosition(s);
+      hit.appendInstruction(call);
+      if (count) {
+        insertCounter(call, counter + i, ir);
+      }
+      hit.appendInstruction(Goto.create(GOTO, after.makeJumpTarget()));
+      hit.insertOut(after);
+      ir.cfg.addLastInCodeOrder(hit);
+
+      Instruction test =
+          IfCmp.create(REF_IFCMP,
+                       ir.regpool.makeTempValidation(),
+                       tib.copy(),
+                       ConvertToLowLevelIR.getTIB(s, ir, types[i]),
+                       ConditionOperand.EQUAL(),
+                       hit.makeJumpTarget(),
+                       new BranchProfileOperand(Math.min(1f, fractions[i] / untested)));
+      test.copyPosition(s);
+      s.insertBefore(test);
+      BasicBlock testBlock = test.getBasicBlock();
+      testBlock.splitNodeWithLinksAt(test, ir);
+      testBlock.insertOut(hit);       // must come after the splitNodeAt
+      untested -= fractions[i];
+    }
+
+    // (4) What is left is the original call, now only reached on a miss
+    if (count) {
+      insertCounter(s, counter + cached, ir);
+    }
+    return after;
+  }
+
+  /**
+   * Insert the increment of an inline cache counter.
+   *
+   * @param s the instruction to insert the increment before
+   * @param counter the index of the counter
+   * @param ir the containing IR
+   */
+  private static void insertCounter(Instruction s, int counter, IR ir) {
+    RVMField field = Entrypoints.inlineCacheCountersField;
+    RegisterOperand counters = ir.regpool.makeTemp(TypeReference.IntArray);
+    Instruction load = GetStatic.create(GETSTATIC, counters,
+                                        new AddressConstantOperand(field.getOffset()),
+                                        new LocationOperand(field));
+    RegisterOperand value = ir.regpool.makeTempInt();
+    Instruction get = ALoad.create(INT_ALOAD, value, counters.copyD2U(), IRTools.IC(counter),
+                                   new LocationOperand(TypeReference.Int), IRTools.TG());
+    RegisterOperand sum = ir.regpool.makeTempInt();
+    Instruction add = Binary.create(INT_ADD, sum, value.copyD2U(), IRTools.IC(1));
+    Instruction put = AStore.create(INT_ASTORE, sum.copyD2U(), counters.copyD2U(), IRTools.IC(counter),
+                                    new LocationOperand(TypeReference.Int), IRTools.TG());
+    for (Instruction i : new Instruction[] {load, get, add, put}) {
+      i.copyPosition(s);
+      s.insertBefore(i);
+    }
+  }
+}
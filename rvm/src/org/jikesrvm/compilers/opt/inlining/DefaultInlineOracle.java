@@ -24,6 +24,7 @@ import static org.jikesrvm.compilers.opt.inlining.InlineTools.isForbiddenSpecula
 import static org.jikesrvm.compilers.opt.inlining.InlineTools.needsGuard;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import org.jikesrvm.VM;
@@ -33,6 +34,9 @@ import org.jikesrvm.adaptive.database.callgraph.WeightedCallTargets;
 import org.jikesrvm.classloader.NormalMethod;
 import org.jikesrvm.classloader.RVMClass;
 import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.baseline.TypeProfile;
+import org.jikesrvm.compilers.baseline.TypeProfiles;
 import org.jikesrvm.compilers.common.CompiledMethod;
 import org.jikesrvm.compilers.opt.OptOptions;
 import org.jikesrvm.compilers.opt.driver.OptimizingCompiler;
@@ -153,6 +157,23 @@ public final class DefaultInlineOracle implements InlineOracle {
       }
     }
 
+    // Without call graph samples for the site, fall back on the histogram of
+    // receiver types that baseline code recorded for it (if any).
+    final HashSet<RVMMethod> classTestable = new HashSet<RVMMethod>();
+    boolean fromTypeProfile = false;
+    if (targets == null && opts.TYPE_PROFILE_GUIDED && !state.getHasPreciseTarget() &&
+        caller instanceof NormalMethod) {
+      TypeProfile profile = TypeProfiles.getTypeProfile((NormalMethod) caller, bcIndex);
+      if (profile != null) {
+        reportProfilingIfVerbose("Found receiver type profile " + profile, verbose);
+        targets = typeProfileTargets(profile, staticCallee, classTestable);
+        if (targets != null) {
+          purelyStatic = false;
+          fromTypeProfile = true;
+        }
+      }
+    }
+
     // Critical section: must prevent class hierarchy from changing while
     // we are inspecting it to determine how/whether to do the inline guard.
     synchronized (RVMClass.classLoadListener) {
@@ -378,7 +399,7 @@ public final class DefaultInlineOracle implements InlineOracle {
               isCurrentlyFinal(target, !opts.guardWithClassTest())) {
             InlineDecision d =
               guardedYES(target,
-                  chooseGuard(caller, target, staticCallee, state, true),
+                  chooseGuard(caller, target, staticCallee, state, true, classTestable),
                   "Guarded inline of single static target");
             /*
              * Determine if it is allowable to put an OSR point in the failed case of
@@ -403,8 +424,11 @@ public final class DefaultInlineOracle implements InlineOracle {
           } else {
             InlineDecision d =
               guardedYES(target,
-                  chooseGuard(caller, target, staticCallee, state, false),
+                  chooseGuard(caller, target, staticCallee, state, false, classTestable),
                   "Guarded inlining of one potential target");
+            if (fromTypeProfile) {
+              d.setTargetFrequencies(new float[] {profileFrequencyOf(targets, target)});
+            }
             reportGuardedDecisionIfVerbose(d, verbose);
             return d;
           }
@@ -435,10 +459,17 @@ public final class DefaultInlineOracle implements InlineOracle {
             }
           }
           methods[idx] = target;
-          guards[idx] = chooseGuard(caller, target, staticCallee, state, false);
+          guards[idx] = chooseGuard(caller, target, staticCallee, state, false, classTestable);
           idx++;
         }
         InlineDecision d = guardedYES(methods, guards, "Inline multiple targets");
+        if (fromTypeProfile) {
+          float[] frequencies = new float[methods.length];
+          for (int i = 0; i < methods.length; i++) {
+            frequencies[i] = profileFrequencyOf(targets, methods[i]);
+          }
+          d.setTargetFrequencies(frequencies);
+        }
         reportGuardedDecisionIfVerbose(d, verbose);
         return d;
       }
@@ -479,10 +510,12 @@ public final class DefaultInlineOracle implements InlineOracle {
    * @param callee The callee method
    * @param state compilation state at this point
    * @param codePatchSupported   Can we use code patching at this call site?
+   * @param classTestable targets that the receiver type profile of the call site
+   *   shows are only reached from receivers of their own declaring class
    * @return the chosen guard
    */
   private byte chooseGuard(RVMMethod caller, RVMMethod singleImpl, RVMMethod callee, CompilationState state,
-                           boolean codePatchSupported) {
+                           boolean codePatchSupported, HashSet<RVMMethod> classTestable) {
     byte guard = state.getOptions().INLINE_GUARD_KIND;
     if (codePatchSupported) {
       if (VM.VerifyAssertions && VM.runningVM) {
@@ -499,13 +532,91 @@ public final class DefaultInlineOracle implements InlineOracle {
       guard = OptOptions.INLINE_GUARD_METHOD_TEST;
     }
 
-    if (guard == OptOptions.INLINE_GUARD_METHOD_TEST && singleImpl.getDeclaringClass().isFinal()) {
-      // class test is more efficient and just as effective
+    if (guard == OptOptions.INLINE_GUARD_METHOD_TEST &&
+        (singleImpl.getDeclaringClass().isFinal() || classTestable.contains(singleImpl))) {
+      // class test is more efficient and (as far as we know) just as effective
       guard = OptOptions.INLINE_GUARD_CLASS_TEST;
     }
     return guard;
   }
 
+  /**
+   * Turn the receiver type profile of a call site into call targets.
+   * The weights are scaled so that the site as a whole just passes as
+   * trustworthy profile data (see INLINE_AI_SEED_MULTIPLIER), while the
+   * site's relative weight in the dynamic call graph stays small: the
+   * counts say how the receivers are distributed, not how hot the site is.
+   * The whole profile, including the receivers that no target is created
+   * for, weighs {@code 2 * INLINE_AI_SEED_MULTIPLIER}.
+   * Targets are created most frequent first, which is the order in which
+   * their guards will be tested.
+   *
+   * @param profile the receiver type profile of the call site
+   * @param staticCallee the statically resolved target of the call
+   * @param classTestable set to the targets that were only reached from
+   *   receivers whose type is the target's declaring class
+   * @return the targets, or {@code null} if no profiled type dispatches
+   *   to a known method
+   */
+  private WeightedCallTargets typeProfileTargets(TypeProfile profile, RVMMethod staticCallee,
+                                                 HashSet<RVMMethod> classTestable) {
+    double scale = 2 * Controller.options.INLINE_AI_SEED_MULTIPLIER / profile.getTotal();
+    HashSet<RVMMethod> inherited = new HashSet<RVMMethod>();
+    WeightedCallTargets targets = null;
+    for (int i = 0; i < profile.getNumberOfTypes(); i++) {
+      RVMType type = profile.getType(i);
+      if (!type.isResolved()) continue;
+      RVMMethod target = type.findVirtualMethod(staticCallee.getName(), staticCallee.getDescriptor());
+      if (target == null || target.isAbstract()) continue;
+      double weight = profile.getCount(i) * scale;
+      targets = targets == null ? WeightedCallTargets.create(target, weight) : targets.augmentCount(target, weight);
+      if (type == target.getDeclaringClass()) {
+        if (!inherited.contains(target)) classTestable.add(target);
+      } else {
+        inherited.add(target);
+        classTestable.remove(target);
+      }
+    }
+    if (targets == null) {
+      classTestable.clear();
+      return null;
+    }
+    WeightedCallTargets filtered = targets.filter(staticCallee, false);
+    if (filtered == null) {
+      classTestable.clear();
+    }
+    return filtered;
+  }
+
+  /**
+   * @param targets the targets of a call site, made from its receiver type
+   *   profile by {@link #typeProfileTargets}
+   * @param target one of the targets
+   * @return the fraction of all the profiled calls that went to the target.
+   *   Calls from types that were not resolved, or that fell into the
+   *   profile's overflow count, belong to no target, so the fractions of
+   *   the targets may add up to less than one.
+   */
+  private static float profileFrequencyOf(WeightedCallTargets targets, RVMMethod target) {
+    return (float) (weightOf(targets, target) / (2 * Controller.options.INLINE_AI_SEED_MULTIPLIER));
+  }
+
+  /**
+   * @param targets the weighted targets of a call site
+   * @param target one of the targets
+   * @return the weight of the target
+   */
+  private static double weightOf(WeightedCallTargets targets, final RVMMethod target) {
+    final double[] weight = new double[1];
+    targets.visitTargets(new WeightedCallTargets.Visitor() {
+      @Override
+      public void visit(RVMMethod callee, double w) {
+        if (callee == target) weight[0] = w;
+      }
+    });
+    return weight[0];
+  }
+
   /**
    * Estimate the expected cost of the inlining action
    * (includes both the inline body and the guard/off-branch code).
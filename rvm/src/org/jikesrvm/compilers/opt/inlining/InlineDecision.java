@@ -56,6 +56,12 @@ public final class InlineDecision {
    */
   private boolean testFailedOSR = false;
 
+  /**
+   * The fraction of the calls at the site that reach each target, when
+   * known from a receiver type profile, otherwise {@code null}
+   */
+  private float[] targetFrequencies;
+
   /**
    * @param targets   The methods to inline
    * @param guards the chosen guards. will be {@code null} if no guards are necessary
@@ -185,6 +191,23 @@ public final class InlineDecision {
     return testFailedOSR;
   }
 
+  /**
+   * @param frequencies the fraction of the calls at the site that reach
+   *  each target, in the same order as the targets.  They add up to less
+   *  than one when some of the calls reach none of the targets.
+   */
+  public void setTargetFrequencies(float[] frequencies) {
+    targetFrequencies = frequencies;
+  }
+
+  /**
+   * @return the fraction of the calls at the site that reach each target,
+   *  or {@code null} if not known
+   */
+  public float[] getTargetFrequencies() {
+    return targetFrequencies;
+  }
+
   @Override
   public String toString() {
     StringBuilder s = new StringBuilder(code.toString());
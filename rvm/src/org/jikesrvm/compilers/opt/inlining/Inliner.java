@@ -264,6 +264,16 @@ public class Inliner {
           }
         }
       }
+      // With a receiver type profile, the chance of each guard failing
+      // follows from the fraction of the calls that reach its target and
+      // the targets tested before it.  The calls that reach none of the
+      // targets fail every guard, so the last guard fails that often too.
+      float[] frequencies = inlDec.getTargetFrequencies();
+      float untested = 1f;
+      if (frequencies != null) {
+        for (float f : frequencies) untested -= f;
+      }
+
       // Basic idea of loop: Path together an if...else if.... else...
       // chain from the bottom (testFailed). Some excessive cuteness
       // to allow us to have multiple if blocks for a single
@@ -274,6 +284,13 @@ public class Inliner {
         BasicBlock lastIfBlock = firstIfBlock;
         RVMMethod target = children[i].getMethod();
         Instruction tmp;
+        BranchProfileOperand guardFails = BranchProfileOperand.unlikely();
+        if (frequencies != null) {
+          untested += frequencies[i];
+          if (untested > 0f) {
+            guardFails = new BranchProfileOperand(Math.max(0f, Math.min(1f, 1f - frequencies[i] / untested)));
+          }
+        }
 
         if (isInterface) {
           RVMClass callDeclClass = mo.getTarget().getDeclaringClass();
@@ -353,7 +370,7 @@ public class Inliner {
                                  Call.getGuard(callSite).copy(),
                                  new TypeOperand(target.getDeclaringClass()),
                                  testFailed.makeJumpTarget(),
-                                 BranchProfileOperand.unlikely());
+                                 guardFails);
         } else if (guards[i] == OptOptions.INLINE_GUARD_METHOD_TEST) {
           // method test for interface requires additional check if
           // the reciever's class is a subclass of inlined method's
@@ -395,7 +412,7 @@ public class Inliner {
                                  Call.getGuard(callSite).copy(),
                                  MethodOperand.VIRTUAL(target.getMemberRef().asMethodReference(), target),
                                  testFailed.makeJumpTarget(),
-                                 BranchProfileOperand.unlikely());
+                                 guardFails);
         } else {
           tmp =
               InlineGuard.create(IG_PATCH_POINT,
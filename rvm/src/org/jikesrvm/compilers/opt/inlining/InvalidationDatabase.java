@@ -33,6 +33,11 @@ import org.jikesrvm.util.HashSetRVM;
  *     We don't want the invalidaton database to keep code alive!
  *     This would be an ideal use of weak references if we had them.
  *
+ * <p> The database itself is not synchronized. It is only accessed through
+ *     the synchronized methods of {@link ClassLoadingDependencyManager},
+ *     which makes it safe to record dependencies from parallel opt
+ *     compilations.
+ *
  * <p> TODO: In the future, we should think about implementing a general
  *       dependency mechanism.
  *   See Chambers, Dean, Grove in ICSE-17 (1995) for one possible design
@@ -40,6 +40,9 @@ public final class InlinedOsrTypeInfoOperand extends Operand {
 
   public int validOps;
 
+  /** is the OSR point an uncommon trap rather than a guard of inlining? */
+  public boolean uncommonTrap;
+
   /* operands of OsrPoint is laid out as following:
      | locals 1 | stacks 1 | locals 2 | stacks 2 | ....
    */
@@ -53,7 +56,10 @@ public final class InlinedOsrTypeInfoOperand extends Operand {
 
   @Override
   public Operand copy() {
-    return new InlinedOsrTypeInfoOperand(methodids, bcindexes, localTypeCodes, stackTypeCodes);
+    InlinedOsrTypeInfoOperand result =
+        new InlinedOsrTypeInfoOperand(methodids, bcindexes, localTypeCodes, stackTypeCodes);
+    result.uncommonTrap = uncommonTrap;
+    return result;
   }
 
   @Override
@@ -67,6 +73,7 @@ public final class InlinedOsrTypeInfoOperand extends Operand {
     InlinedOsrTypeInfoOperand other = (InlinedOsrTypeInfoOperand) op;
 
     result =
+        this.uncommonTrap == other.uncommonTrap &&
         Arrays.equals(this.methodids, other.methodids) &&
         Arrays.equals(this.bcindexes, other.bcindexes) &&
         Arrays.equals(this.localTypeCodes, other.localTypeCodes) &&
@@ -0,0 +1,130 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.runtimesupport;
+
+import java.util.ArrayList;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.runtime.Callbacks;
+import org.jikesrvm.runtime.Magic;
+import org.vmmagic.pragma.Entrypoint;
+
+/**
+ * The hit and miss counters of the inline caches of opt compiled code (see
+ * {@link org.jikesrvm.compilers.opt.OptOptions#H2L_INLINE_CACHE_COUNTERS}).
+ * Each site has a counter for the hits on each cached type, followed by
+ * one for its misses.  Compiled code loads the array of counters afresh
+ * for each increment, so the array can grow as more sites are compiled;
+ * increments that race with the growth, or with each other, may be lost,
+ * as the counts only need to be approximately right.  The counts of each
+ * site are reported at exit, and can be read with {@link #getCounts}.
+ */
+public final class InlineCacheCounters implements Callbacks.ExitMonitor {
+
+  /** The counters of all sites */
+  @Entrypoint
+  private static int[] counters;
+
+  /** The sites, in the order of their counters */
+  private static final ArrayList<Site> sites = new ArrayList<Site>();
+
+  /** The number of counters handed out */
+  private static int used;
+
+  /** A site with an inline cache */
+  private static final class Site {
+    /** The method containing the site */
+    final NormalMethod method;
+    /** The bytecode index of the site */
+    final int bcIndex;
+    /** The cached types */
+    final String[] types;
+    /** The index of the site's first counter */
+    final int first;
+
+    Site(NormalMethod method, int bcIndex, String[] types, int first) {
+      this.method = method;
+      this.bcIndex = bcIndex;
+      this.types = types;
+      this.first = first;
+    }
+  }
+
+  /**
+   * Allocate the counters for an inline cache.
+   *
+   * @param method the method containing the site
+   * @param bcIndex the bytecode index of the site
+   * @param types the names of the cached types
+   * @return the index of the counter of the first type's hits; the counter
+   *  of the misses follows that of the last type
+   */
+  public static synchronized int allocateCounters(NormalMethod method, int bcIndex, String[] types) {
+    if (sites.isEmpty()) {
+      Callbacks.addExitMonitor(new InlineCacheCounters());
+    }
+    int first = used;
+    used += types.length + 1;
+    if (counters == null || used > counters.length) {
+      int[] tmp = new int[Math.max(used, counters == null ? 256 : counters.length * 2)];
+      if (counters != null) {
+        System.arraycopy(counters, 0, tmp, 0, counters.length);
+      }
+      Magic.sync();
+      counters = tmp;
+    }
+    sites.add(new Site(method, bcIndex, types, first));
+    return first;
+  }
+
+  /**
+   * Read the counters of the most recently compiled inline cache of a site.
+   *
+   * @param method the method containing the site
+   * @param bcIndex the bytecode index of the site
+   * @return the hits on each cached type, in the order the types are
+   *  tested, followed by the misses, or {@code null} if no inline cache
+   *  with counters was compiled for the site
+   */
+  public static synchronized int[] getCounts(NormalMethod method, int bcIndex) {
+    for (int i = sites.size() - 1; i >= 0; i--) {
+      Site site = sites.get(i);
+      if (site.method == method && site.bcIndex == bcIndex) {
+        int[] counts = new int[site.types.length + 1];
+        System.arraycopy(counters, site.first, counts, 0, counts.length);
+        return counts;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void notifyExit(int value) {
+    VM.sysWriteln("Inline cache counters:");
+    for (Site site : sites) {
+      long hits = 0;
+      for (int i = 0; i < site.types.length; i++) {
+        hits += counters[site.first + i];
+      }
+      int misses = counters[site.first + site.types.length];
+      long total = hits + misses;
+      if (total == 0) continue;
+      VM.sysWriteln(site.method + " @ " + site.bcIndex + ": " + hits + " hits, " + misses + " misses (" +
+                    (100 * hits / total) + "% hit)");
+      for (int i = 0; i < site.types.length; i++) {
+        VM.sysWriteln("  " + site.types[i] + " " + counters[site.first + i]);
+      }
+    }
+  }
+}
@@ -352,6 +352,10 @@ public final class OptCompiledMethod extends CompiledMethod {
   private boolean volatilesSaved;
   /** is the current method executing with instrumentation */
   private boolean instrumented;
+  /** does the code contain uncommon traps? */
+  private boolean uncommonTraps;
+  /** the number of times the code's uncommon traps have fired */
+  private int trapsFired;
 
   public int getUnsignedNonVolatileOffset() {
     return nonvolatileOffset;
@@ -381,6 +385,20 @@ public final class OptCompiledMethod extends CompiledMethod {
     return instrumented;
   }
 
+  public boolean hasUncommonTraps() {
+    return uncommonTraps;
+  }
+
+  /**
+   * Records that an uncommon trap in this code fired, deoptimizing the
+   * activation that reached it.
+   *
+   * @return the number of times the code's traps have fired so far
+   */
+  public int recordUncommonTrap() {
+    return ++trapsFired;
+  }
+
   public int getFrameFixedSize() {
     return stackFrameFixedSize;
   }
@@ -418,6 +436,10 @@ public final class OptCompiledMethod extends CompiledMethod {
     instrumented = _instrumented;
   }
 
+  public void setUncommonTraps(boolean traps) {
+    uncommonTraps = traps;
+  }
+
   public void setFrameFixedSize(int x) {
     if (VM.VerifyAssertions) VM._assert(x >= 0 && x < 0xFFFF);
     stackFrameFixedSize = (char) x;
@@ -103,9 +103,9 @@ public final class OptMachineCodeMap {
     final OptMachineCodeMap map = generateMCInformation(ir.MIRInfo.gcIRMap, DUMP_MAPS, mcOffsets);
 
     if (DUMP_MAP_SIZES) {
-      map.recordStats(ir.method,
-                      map.size(),
-                      machineCodeSize << ArchConstants.getLogInstructionWidth(), DUMP_MAP_SIZES);
+      recordStats(ir.method,
+                  map.size(),
+                  machineCodeSize << ArchConstants.getLogInstructionWidth(), DUMP_MAP_SIZES);
     }
 
     if (DUMP_MAPS) {
@@ -715,7 +715,7 @@ public final class OptMachineCodeMap {
     }
   }
 
-  private void recordStats(RVMMethod method, int mapSize, int machineCodeSize, boolean DUMP_MAP_SIZES) {
+  private static synchronized void recordStats(RVMMethod method, int mapSize, int machineCodeSize, boolean DUMP_MAP_SIZES) {
     if (DUMP_MAP_SIZES) {
       double mapMCPercent = (double) mapSize / machineCodeSize;
       VM.sysWrite(method);
@@ -850,7 +850,9 @@ public final class OptMachineCodeMap {
    */
   public final int[] inlineEncoding;
   /**
-   * Running totals for the size of machine code and maps
+   * Running totals for the size of machine code and maps, updated
+   * under the class lock as maps may be created by several compiler
+   * threads at once
    */
   private static int totalMCSize = 0;
   private static int totalMapSize = 0;
@@ -15,6 +15,7 @@ package org.jikesrvm.compilers.opt.specialization;
 import java.util.Iterator;
 
 import org.jikesrvm.classloader.RVMMethod;
+import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.util.ImmutableEntryHashMapRVM;
 import org.jikesrvm.util.HashSetRVM;
 
@@ -32,7 +33,11 @@ import org.jikesrvm.util.HashSetRVM;
  */
 public final class SpecializationDatabase {
 
-  private static boolean specializationInProgress;
+  /**
+   * The thread draining the queue of deferred methods, or {@code null}.
+   * Guarded by the class lock.
+   */
+  private static RVMThread specializingThread;
 
   private static final HashSetRVM<SpecializedMethod> deferredMethods =
     new HashSetRVM<SpecializedMethod>();
@@ -42,32 +47,50 @@ public final class SpecializationDatabase {
 
   /**
    * Drain the queue of methods waiting for specialized code
-   * generation.
+   * generation.  The methods are compiled without holding the lock of
+   * the database, so that other compiler threads can use it meanwhile.
+   * Only one thread drains the queue at a time; a recursive call from
+   * that thread or a call from another thread while it is busy returns
+   * immediately, leaving the work to the draining thread.
    */
-  public static synchronized void doDeferredSpecializations() {
-    // prevent recursive entry to this method
-    if (specializationInProgress) {
-      return;
+  public static void doDeferredSpecializations() {
+    synchronized (SpecializationDatabase.class) {
+      if (specializingThread != null) {
+        return;
+      }
+      specializingThread = RVMThread.getCurrentThread();
     }
-    specializationInProgress = true;
-    Iterator<SpecializedMethod> methods = deferredMethods.iterator();
-    while (methods.hasNext()) {
-      SpecializedMethod m = methods.next();
-      if (m.getCompiledMethod() == null) {
-        m.compile();
-        registerCompiledMethod(m);
+    try {
+      SpecializedMethod m;
+      while ((m = nextDeferredMethod()) != null) {
+        if (m.getCompiledMethod() == null) {
+          m.compile();
+          registerCompiledMethod(m);
+        }
+      }
+    } finally {
+      synchronized (SpecializationDatabase.class) {
+        specializingThread = null;
       }
-      deferredMethods.remove(m);
-      // since we modified the set, reset the iterator.
-      // TODO: use a better abstraction
-      // (ModifiableSetIterator of some kind?)
-      methods = deferredMethods.iterator();
     }
-    specializationInProgress = false;
+  }
+
+  /**
+   * @return a method removed from the queue of methods waiting for
+   *  specialized code generation, or {@code null} if the queue is empty
+   */
+  private static synchronized SpecializedMethod nextDeferredMethod() {
+    Iterator<SpecializedMethod> methods = deferredMethods.iterator();
+    if (!methods.hasNext()) {
+      return null;
+    }
+    SpecializedMethod m = methods.next();
+    deferredMethods.remove(m);
+    return m;
   }
 
   // write the new compiled method in the specialized method pool
-  private static void registerCompiledMethod(SpecializedMethod m) {
+  private static synchronized void registerCompiledMethod(SpecializedMethod m) {
     SpecializedMethodPool.registerCompiledMethod(m);
   }
 
@@ -57,7 +57,7 @@ public final class SpecializedMethodPool {
   /**
    * @return a new unique integer identifier for a specialized method
    */
-  public static int createSpecializedMethodID() {
+  public static synchronized int createSpecializedMethodID() {
     specializedMethodCount++;
     if (specializedMethodCount >= specializedMethods.length) {
       growSpecializedMethods();
@@ -69,7 +69,7 @@ public final class SpecializedMethodPool {
    * Increase the capacity of the internal data structures to track
    * specialized methods.
    */
-  public static void growSpecializedMethods() {
+  public static synchronized void growSpecializedMethods() {
     int org_length = specializedMethods.length;
     int new_length = 2 * org_length;
     CodeArray[] temp = new CodeArray[new_length];
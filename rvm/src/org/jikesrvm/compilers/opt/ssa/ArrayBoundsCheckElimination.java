@@ -0,0 +1,494 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.ssa;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.ARRAYLENGTH;
+import static org.jikesrvm.compilers.opt.ir.Operators.BOUNDS_CHECK;
+import static org.jikesrvm.compilers.opt.ir.Operators.GUARD_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_ADD;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_IFCMP;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_MOVE;
+import static org.jikesrvm.compilers.opt.ir.Operators.INT_SUB;
+import static org.jikesrvm.compilers.opt.ir.Operators.PHI;
+import static org.jikesrvm.compilers.opt.ir.Operators.PI;
+import static org.jikesrvm.compilers.opt.ir.Operators.REF_MOVE;
+
+import java.util.Enumeration;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.compilers.opt.DefUse;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.controlflow.DominanceFrontier;
+import org.jikesrvm.compilers.opt.controlflow.DominatorsPhase;
+import org.jikesrvm.compilers.opt.driver.CompilerPhase;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanAtomicElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanCompositeElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanElement;
+import org.jikesrvm.compilers.opt.ir.Binary;
+import org.jikesrvm.compilers.opt.ir.BoundsCheck;
+import org.jikesrvm.compilers.opt.ir.GuardedUnary;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.IfCmp;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.Move;
+import org.jikesrvm.compilers.opt.ir.NewArray;
+import org.jikesrvm.compilers.opt.ir.Phi;
+import org.jikesrvm.compilers.opt.ir.Register;
+import org.jikesrvm.compilers.opt.ir.operand.ConditionOperand;
+import org.jikesrvm.compilers.opt.ir.operand.Operand;
+import org.jikesrvm.compilers.opt.ir.operand.RegisterOperand;
+
+/**
+ * Array bounds check elimination after ABCD (Array Bounds Checks on
+ * Demand, Bodik, Gupta and Sarkar, PLDI 2000).<p>
+ *
+ * Pi nodes are inserted on the edges out of conditional branches and after
+ * bounds checks, and the IR is put in SSA form, so that each fact a branch
+ * or check establishes about a value belongs to a name of its own.  The
+ * facts relating SSA values are then collected into two
+ * {@link InequalityGraph}s, one of upper and one of lower bounds.  A
+ * BOUNDS_CHECK of <code>a[i]</code> is redundant if <code>i &lt;=
+ * a.length - 1</code> and <code>i &gt;= 0</code> can both be proven from
+ * them, and is replaced by a move of its guard.  Each proof only visits the
+ * part of the graph it needs.<p>
+ *
+ * Facts from arithmetic only hold if the arithmetic cannot overflow, so
+ * <code>i + k</code> only gets a lower bound from <code>i</code> when
+ * <code>i</code> is known to be small enough, and an upper bound when k is
+ * negative only when <code>i</code> is known to be large enough.
+ */
+public final class ArrayBoundsCheckElimination extends OptimizationPlanCompositeElement {
+
+  @Override
+  public boolean shouldPerform(OptOptions options) {
+    return options.SSA_ABCD;
+  }
+
+  /**
+   * Create this phase element as a composite of other elements
+   */
+  public ArrayBoundsCheckElimination() {
+    super("Array Bounds Check Elimination", new OptimizationPlanElement[]{
+        // Stage 1: Give new names to values constrained by branches and checks
+        new OptimizationPlanAtomicElement(new InsertPiNodes()),
+
+        // Stage 2: Require SSA form
+        new OptimizationPlanAtomicElement(new DominatorsPhase(true)),
+        new OptimizationPlanAtomicElement(new DominanceFrontier()),
+        new OptimizationPlanAtomicElement(new EnsureSSA()),
+
+        // Stage 3: Do the optimization
+        new OptimizationPlanAtomicElement(new ABCD()),
+
+        // Stage 4: Turn the pi nodes back into moves
+        new OptimizationPlanAtomicElement(new RemovePiNodes())});
+  }
+
+  private static final class InsertPiNodes extends CompilerPhase {
+
+    @Override
+    public String getName() {
+      return "ABCD Insert Pi Nodes";
+    }
+
+    @Override
+    public void perform(IR ir) {
+      new PiNodes(true).perform(ir);
+    }
+
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+  }
+
+  private static final class EnsureSSA extends CompilerPhase {
+
+    @Override
+    public String getName() {
+      return "ABCD Ensure SSA";
+    }
+
+    @Override
+    public void perform(IR ir) {
+      if (!ir.HIRInfo.dominatorsAreComputed) return;
+      ir.desiredSSAOptions = new SSAOptions();
+      new EnterSSA().perform(ir);
+    }
+
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+  }
+
+  private static final class RemovePiNodes extends CompilerPhase {
+
+    @Override
+    public String getName() {
+      return "ABCD Remove Pi Nodes";
+    }
+
+    @Override
+    public void perform(IR ir) {
+      PiNodes.cleanUp(ir);
+    }
+
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+  }
+
+  private static final class ABCD extends CompilerPhase {
+    private static final boolean DEBUG = false;
+
+    /** The constant zero, the lower bound of every index */
+    private static final Integer ZERO = 0;
+
+    @Override
+    public String getName() {
+      return "ABCD Transform";
+    }
+
+    /**
+     * Return this instance of this phase. This phase contains
+     * no per-compilation instance fields.
+     * @param ir not used
+     * @return this
+     */
+    @Override
+    public CompilerPhase newExecution(IR ir) {
+      return this;
+    }
+
+    /**
+     * Build the inequality graphs of the method and replace each bounds
+     * check they show to be redundant by a move of its guard.
+     *
+     * @param ir   The IR on which to apply the phase
+     */
+    @Override
+    public void perform(IR ir) {
+      if (ir.actualSSAOptions == null || !ir.actualSSAOptions.getScalarValid()) return;
+      DefUse.computeDU(ir);
+      DefUse.recomputeSSA(ir);
+
+      // (1) Collect the facts relating the method's SSA values
+      InequalityGraph upper = new InequalityGraph(false);
+      InequalityGraph lower = new InequalityGraph(true);
+      for (Enumeration<Instruction> e = ir.forwardInstrEnumerator(); e.hasMoreElements();) {
+        addFacts(e.nextElement(), upper, lower);
+      }
+
+      // (2) Remove the checks the facts prove redundant
+      int checks = 0;
+      int removed = 0;
+      for (Enumeration<Instruction> e = ir.forwardInstrEnumerator(); e.hasMoreElements();) {
+        Instruction s = e.nextElement();
+        if (s.operator() != BOUNDS_CHECK) continue;
+        checks++;
+        if (isRedundant(s, upper, lower)) {
+          if (DEBUG) VM.sysWriteln("ABCD removes " + s);
+          Move.mutate(s, GUARD_MOVE, BoundsCheck.getClearGuardResult(s), BoundsCheck.getClearGuard(s));
+          removed++;
+        }
+      }
+      if (ir.options.PRINT_BOUNDS_CHECK_REPORT && checks > 0) {
+        VM.sysWriteln("ABCD for " + ir.method + ": " + removed + " of " + checks +
+                      " bounds checks removed");
+      }
+    }
+
+    /**
+     * Can a bounds check be shown never to fail?
+     *
+     * @param s the BOUNDS_CHECK
+     * @param upper the graph of upper bounds
+     * @param lower the graph of lower bounds
+     * @return {@code true} if the index is always within the array
+     */
+    private static boolean isRedundant(Instruction s, InequalityGraph upper, InequalityGraph lower) {
+      Object array = node(BoundsCheck.getRef(s));
+      Object index = node(BoundsCheck.getIndex(s));
+      if (!(array instanceof Register) || index == null) return false;
+      if (index instanceof Integer) {
+        // a[k] is in bounds if a.length >= k + 1
+        int k = (Integer) index;
+        return k >= 0 && lower.prove(ZERO, array, (long) k + 1);
+      }
+      return upper.prove(array, index, -1) && lower.prove(ZERO, index, 0);
+    }
+
+    /**
+     * Add the facts an instruction establishes about the value it defines.
+     *
+     * @param s the instruction
+     * @param upper the graph of upper bounds
+     * @param lower the graph of lower bounds
+     */
+    private static void addFacts(Instruction s, InequalityGraph upper, InequalityGraph lower) {
+      if (s.operator() == PHI) {
+        Object result = node(Phi.getResult(s));
+        if (!(result instanceof Register)) return;
+        int n = Phi.getNumberOfValues(s);
+        for (int i = 0; i < n; i++) {
+          if (node(Phi.getValue(s, i)) == null) return;
+        }
+        for (int i = 0; i < n; i++) {
+          Object value = node(Phi.getValue(s, i));
+          upper.addEdge(value, result, 0);
+          lower.addEdge(value, result, 0);
+        }
+        upper.markPhi(result);
+        lower.markPhi(result);
+      } else if (s.operator() == INT_MOVE || s.operator() == REF_MOVE) {
+        addEquality(node(Move.getVal(s)), node(Move.getResult(s)), upper, lower);
+      } else if (s.operator() == ARRAYLENGTH) {
+        // the register holding the array stands for its length
+        addEquality(node(GuardedUnary.getVal(s)), node(GuardedUnary.getResult(s)), upper, lower);
+      } else if (NewArray.conforms(s)) {
+        addEquality(node(NewArray.getSize(s)), node(NewArray.getResult(s)), upper, lower);
+      } else if (s.operator() == INT_ADD || s.operator() == INT_SUB) {
+        addArithmetic(s, upper, lower);
+      } else if (s.operator() == PI) {
+        addPi(s, upper, lower);
+      }
+    }
+
+    /**
+     * Add the facts for a value equal to another.
+     *
+     * @param from the existing value
+     * @param to the new value
+     * @param upper the graph of upper bounds
+     * @param lower the graph of lower bounds
+     */
+    private static void addEquality(Object from, Object to, InequalityGraph upper, InequalityGraph lower) {
+      if (from == null || !(to instanceof Register)) return;
+      upper.addEdge(from, to, 0);
+      lower.addEdge(from, to, 0);
+    }
+
+    /**
+     * Add the facts for the sum of a value and a constant, where the sum
+     * cannot overflow.
+     *
+     * @param s the INT_ADD or INT_SUB
+     * @param upper the graph of upper bounds
+     * @param lower the graph of lower bounds
+     */
+    private static void addArithmetic(Instruction s, InequalityGraph upper, InequalityGraph lower) {
+      Object result = node(Binary.getResult(s));
+      if (!(result instanceof Register)) return;
+      Operand val1 = Binary.getVal1(s);
+      Operand val2 = Binary.getVal2(s);
+      Register value;
+      long k;
+      if (val1.isRegister() && val2.isIntConstant()) {
+        value = val1.asRegister().getRegister();
+        k = val2.asIntConstant().value;
+        if (s.operator() == INT_SUB) k = -k;
+      } else if (s.operator() == INT_ADD && val1.isIntConstant() && val2.isRegister()) {
+        value = val2.asRegister().getRegister();
+        k = val1.asIntConstant().value;
+      } else {
+        return;
+      }
+      if (!value.isSSA()) return;
+      // a wrapped sum is below any upper bound if k > 0, and above any
+      // lower bound if k < 0, so only the other direction needs a range
+      if (k >= 0 || minValue(value) + k >= Integer.MIN_VALUE) {
+        upper.addEdge(value, result, k);
+      }
+      if (k <= 0 || maxValue(value) + k <= Integer.MAX_VALUE) {
+        lower.addEdge(value, result, k);
+      }
+    }
+
+    /**
+     * Add the facts for a pi node: it equals the value it renames, and is
+     * bounded by the branch or check that created it.
+     *
+     * @param s the PI
+     * @param upper the graph of upper bounds
+     * @param lower the graph of lower bounds
+     */
+    private static void addPi(Instruction s, InequalityGraph upper, InequalityGraph lower) {
+      Object result = node(GuardedUnary.getResult(s));
+      if (!(result instanceof Register)) return;
+      addEquality(node(GuardedUnary.getVal(s)), result, upper, lower);
+      Instruction generator = generator(s);
+      if (generator == null) return;
+      if (generator.operator() == BOUNDS_CHECK) {
+        if (isIndexPi(s, generator)) {
+          // 0 <= result <= a.length - 1
+          Object array = node(BoundsCheck.getRef(generator));
+          if (array instanceof Register) {
+            upper.addEdge(array, result, -1);
+          }
+          lower.addEdge(ZERO, result, 0);
+        }
+        return;
+      }
+      Operand[] other = new Operand[1];
+      ConditionOperand cond = condition(s, generator, other);
+      if (cond == null) return;
+      Object bound = node(other[0]);
+      if (bound == null) return;
+      if (cond.isLESS()) {
+        upper.addEdge(bound, result, -1);
+      } else if (cond.isLESS_EQUAL()) {
+        upper.addEdge(bound, result, 0);
+      } else if (cond.isGREATER()) {
+        lower.addEdge(bound, result, 1);
+      } else if (cond.isGREATER_EQUAL()) {
+        lower.addEdge(bound, result, 0);
+      } else if (cond.isEQUAL()) {
+        upper.addEdge(bound, result, 0);
+        lower.addEdge(bound, result, 0);
+      }
+    }
+
+    /**
+     * @param pi a PI
+     * @return the instruction defining the PI's guard, or {@code null} if
+     *  it has none
+     */
+    private static Instruction generator(Instruction pi) {
+      Operand guard = GuardedUnary.getGuard(pi);
+      if (guard == null || !guard.isRegister() || guard.asRegister().getRegister().defList == null) {
+        return null;
+      }
+      return PiNodes.getGenerator(pi);
+    }
+
+    /**
+     * Does a PI rename the index of the BOUNDS_CHECK defining its guard?
+     * Other PIs may depend on a bounds check, e.g. one renaming the
+     * array reference after it was checked, and are not bounded by it.
+     *
+     * @param pi a PI
+     * @param generator the instruction defining the PI's guard
+     * @return {@code true} if the PI renames the checked index
+     */
+    private static boolean isIndexPi(Instruction pi, Instruction generator) {
+      if (generator.operator() != BOUNDS_CHECK || !GuardedUnary.getGuard(pi).asRegister().isBoundsCheck()) {
+        return false;
+      }
+      Operand val = GuardedUnary.getVal(pi);
+      Operand index = BoundsCheck.getIndex(generator);
+      return val.isRegister() && index.isRegister() &&
+          val.asRegister().getRegister() == index.asRegister().getRegister();
+    }
+
+    /**
+     * Find the relation a PI on an edge out of an INT_IFCMP establishes
+     * between the value it renames and the other operand of the compare.
+     *
+     * @param pi the PI
+     * @param ifcmp the instruction defining the PI's guard
+     * @param other receives the other operand of the compare
+     * @return the condition that holds between the renamed value and the
+     *  other operand, or {@code null} if there is none
+     */
+    private static ConditionOperand condition(Instruction pi, Instruction ifcmp, Operand[] other) {
+      if (ifcmp.operator() != INT_IFCMP) return null;
+      RegisterOperand guard = GuardedUnary.getGuard(pi).asRegister();
+      if (!guard.isTaken() && !guard.isNotTaken()) return null;
+      Operand val = GuardedUnary.getVal(pi);
+      if (!val.isRegister()) return null;
+      Register value = val.asRegister().getRegister();
+      ConditionOperand cond = (ConditionOperand) IfCmp.getCond(ifcmp).copy();
+      if (guard.isNotTaken()) cond.flipCode();
+      Operand val1 = IfCmp.getVal1(ifcmp);
+      Operand val2 = IfCmp.getVal2(ifcmp);
+      if (val1.isRegister() && val1.asRegister().getRegister() == value) {
+        other[0] = val2;
+      } else if (val2.isRegister() && val2.asRegister().getRegister() == value) {
+        other[0] = val1;
+        cond.flipOperands();
+      } else {
+        return null;
+      }
+      return cond;
+    }
+
+    /**
+     * @param value an int register
+     * @return the smallest value the register can hold, from the
+     *  instruction defining it
+     */
+    private static long minValue(Register value) {
+      Instruction def = value.getFirstDef();
+      if (def == null) return Integer.MIN_VALUE;
+      if (def.operator() == ARRAYLENGTH) return 0;
+      if (def.operator() != PI) return Integer.MIN_VALUE;
+      Instruction generator = generator(def);
+      if (generator == null) return Integer.MIN_VALUE;
+      if (isIndexPi(def, generator)) {
+        return 0;
+      }
+      Operand[] other = new Operand[1];
+      ConditionOperand cond = condition(def, generator, other);
+      if (cond == null) return Integer.MIN_VALUE;
+      boolean constant = other[0].isIntConstant();
+      long bound = constant ? other[0].asIntConstant().value : Integer.MIN_VALUE;
+      if (cond.isGREATER()) return bound + 1;
+      if (constant && (cond.isGREATER_EQUAL() || cond.isEQUAL())) return bound;
+      return Integer.MIN_VALUE;
+    }
+
+    /**
+     * @param value an int register
+     * @return the largest value the register can hold, from the
+     *  instruction defining it
+     */
+    private static long maxValue(Register value) {
+      Instruction def = value.getFirstDef();
+      if (def == null || def.operator() != PI) return Integer.MAX_VALUE;
+      Instruction generator = generator(def);
+      if (generator == null) return Integer.MAX_VALUE;
+      if (isIndexPi(def, generator)) {
+        // below an array length
+        return Integer.MAX_VALUE - 1;
+      }
+      Operand[] other = new Operand[1];
+      ConditionOperand cond = condition(def, generator, other);
+      if (cond == null) return Integer.MAX_VALUE;
+      boolean constant = other[0].isIntConstant();
+      long bound = constant ? other[0].asIntConstant().value : Integer.MAX_VALUE;
+      if (cond.isLESS()) return bound - 1;
+      if (constant && (cond.isLESS_EQUAL() || cond.isEQUAL())) return bound;
+      return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param op an operand
+     * @return the node of the inequality graphs standing for the operand:
+     *  its register if that has a single definition, its value if it is an
+     *  int constant, and {@code null} otherwise
+     */
+    private static Object node(Operand op) {
+      if (op == null) return null;
+      if (op.isRegister()) {
+        Register r = op.asRegister().getRegister();
+        return r.isSSA() && !r.isPhysical() ? r : null;
+      }
+      if (op.isIntConstant()) {
+        return op.asIntConstant().value;
+      }
+      return null;
+    }
+  }
+}
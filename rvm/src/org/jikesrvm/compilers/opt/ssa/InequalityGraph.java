@@ -0,0 +1,180 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.ssa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * The inequality graph of the ABCD (Array Bounds Checks on Demand)
+ * algorithm of Bodik, Gupta and Sarkar, PLDI 2000.<p>
+ *
+ * The nodes are SSA values: a {@link org.jikesrvm.compilers.opt.ir.Register}
+ * stands for the value of an int register, or for the length of the array
+ * held in a reference register, and an {@link Integer} stands for that
+ * constant.  A graph for upper bounds has an edge <code>u -w-&gt; v</code>
+ * for each fact <code>v &lt;= u + w</code>; a graph for lower bounds has one
+ * for each fact <code>v &gt;= u + w</code>.  The facts about a value hold
+ * wherever it is defined, so with pi nodes giving new names to values on
+ * the paths where a branch or a check constrains them, a fact proven
+ * between two values holds wherever both are defined.<p>
+ *
+ * Most values are bounded by any one of the facts about them, but a phi is
+ * only bounded by what bounds all of its operands.  Proofs go around loops
+ * by induction: a cycle of facts that returns to a value with a bound no
+ * weaker than the one being proven shows nothing new is needed.
+ */
+final class InequalityGraph {
+
+  /** The most nodes visited while attempting a single proof */
+  private static final int MAX_STEPS = 1000;
+
+  /** An edge of the graph */
+  private static final class Edge {
+    /** The node the edge comes from */
+    final Object from;
+    /** The weight of the edge, negated in a graph for lower bounds */
+    final long weight;
+
+    Edge(Object from, long weight) {
+      this.from = from;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * Is this a graph for lower bounds?  These are kept as upper bounds on
+   * the negated values, so only the weights and the constants change.
+   */
+  private final boolean lower;
+
+  /** The edges into each node */
+  private final HashMap<Object, ArrayList<Edge>> in = new HashMap<Object, ArrayList<Edge>>();
+
+  /** The nodes that are phis */
+  private final HashSet<Object> phis = new HashSet<Object>();
+
+  /** The nodes on the path of the current proof, with the bound sought for each */
+  private final HashMap<Object, Long> active = new HashMap<Object, Long>();
+
+  /** The nodes left to visit in the current proof */
+  private int steps;
+
+  /**
+   * @param lower {@code true} for a graph of lower bounds, {@code false}
+   *  for a graph of upper bounds
+   */
+  InequalityGraph(boolean lower) {
+    this.lower = lower;
+  }
+
+  /**
+   * Add the fact <code>to &lt;= from + weight</code> to a graph of upper
+   * bounds, or <code>to &gt;= from + weight</code> to a graph of lower bounds.
+   *
+   * @param from the bounding node
+   * @param to the bounded node
+   * @param weight the distance between them
+   */
+  void addEdge(Object from, Object to, long weight) {
+    ArrayList<Edge> edges = in.get(to);
+    if (edges == null) {
+      edges = new ArrayList<Edge>(2);
+      in.put(to, edges);
+    }
+    edges.add(new Edge(from, lower ? -weight : weight));
+  }
+
+  /**
+   * Record that a node is a phi, so it is only bounded by what bounds every
+   * node with an edge into it.  The edges from all of the phi's operands
+   * must be added, or none of them.
+   *
+   * @param node the phi
+   */
+  void markPhi(Object node) {
+    phis.add(node);
+  }
+
+  /**
+   * Attempt to prove <code>node &lt;= source + c</code> in a graph of upper
+   * bounds, or <code>node &gt;= source + c</code> in a graph of lower bounds.
+   *
+   * @param source the node bounding the other
+   * @param node the node to bound
+   * @param c the distance between them
+   * @return {@code true} if the bound holds, {@code false} if it could not
+   *  be proven
+   */
+  boolean prove(Object source, Object node, long c) {
+    steps = MAX_STEPS;
+    active.clear();
+    return demand(source, node, lower ? -c : c);
+  }
+
+  /**
+   * Attempt to prove <code>v &lt;= a + c</code>, with the values and
+   * weights negated in a graph of lower bounds.
+   *
+   * @param a the source of the proof
+   * @param v the node to bound
+   * @param c the distance sought
+   * @return whether the bound was proven
+   */
+  private boolean demand(Object a, Object v, long c) {
+    if (--steps < 0) return false;
+    if (v.equals(a)) return c >= 0;
+    if (v instanceof Integer && a instanceof Integer) {
+      return value((Integer) v) <= value((Integer) a) + c;
+    }
+    Long sought = active.get(v);
+    if (sought != null) {
+      // back around a cycle: it cannot increase v unless v now needs a
+      // tighter bound than before
+      return c >= sought;
+    }
+    ArrayList<Edge> edges = in.get(v);
+    if (edges == null) return false;
+    active.put(v, c);
+    boolean proven;
+    if (phis.contains(v)) {
+      proven = true;
+      for (Edge e : edges) {
+        if (!demand(a, e.from, c - e.weight)) {
+          proven = false;
+          break;
+        }
+      }
+    } else {
+      proven = false;
+      for (Edge e : edges) {
+        if (demand(a, e.from, c - e.weight)) {
+          proven = true;
+          break;
+        }
+      }
+    }
+    active.remove(v);
+    return proven;
+  }
+
+  /**
+   * @param constant a constant node
+   * @return its value, negated in a graph of lower bounds
+   */
+  private long value(Integer constant) {
+    long value = constant.intValue();
+    return lower ? -value : value;
+  }
+}
@@ -92,7 +92,7 @@ public abstract class SortedGraphNode extends SpaceEffGraphNode {
   //  public int isForwardSorted(SortedGraphNode node) {
   //    return forwardSortNumber - node.forwardSortNumber;
   //  }
-  public static int getNewSortMarker(SortedGraphNode anchor) {
+  public static synchronized int getNewSortMarker(SortedGraphNode anchor) {
     if (currentSortMarker == Integer.MAX_VALUE) {
       SortedGraphNode current;
       for (current = anchor; current != null; current = current.sortedPrev) {
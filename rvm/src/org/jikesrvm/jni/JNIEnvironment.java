@@ -536,10 +536,11 @@ public final class JNIEnvironment {
   }
 
   /**
-   * Initialization required during VM booting; only does something if
-   * we are on a platform that needs linkage triplets.
+   * Initialization required during VM booting; fills in linkage triplets
+   * on platforms that need them.
    */
   public static void boot() {
+    JNIGlobalRefTable.boot();
     if (VM.BuildForPower64ELF_ABI) {
       // fill in the TOC and IP entries for each linkage triplet
       for (int i = 0; i < JNIFunctions.length(); i++) {
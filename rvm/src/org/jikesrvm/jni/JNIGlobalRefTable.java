@@ -12,63 +12,116 @@
  */
 package org.jikesrvm.jni;
 
-import java.lang.ref.WeakReference;
 import org.jikesrvm.VM;
+import org.jikesrvm.runtime.Callbacks;
+import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
 import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.scheduler.Synchronization;
 import org.vmmagic.pragma.Entrypoint;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NonMovingAllocation;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
 import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
 
 /**
- * Weak Global References are global references (negative numbers), with the
- * 2^30 bit UNset.  Mask in the 2^30 bit to get the real index into the table.
+ * Tables of JNI global references.
+ * <p>
+ * Global references are negative numbers: the negated index of the
+ * reference in its table.  Weak Global References are global references
+ * with the 2^30 bit UNset.  Mask in the 2^30 bit to get the real index into
+ * the weak table.
+ * <p>
+ * Each table is a spine of fixed-size segments.  Segments are allocated in
+ * a non-moving space and are never freed, so the GC can update their slots
+ * in place and the spine only has to be copied when it grows.  Slots are
+ * allocated and freed without locking: freed slots are kept on a free list
+ * that is threaded through the slots themselves (tagged so the GC skips
+ * them), and a slot is only taken from the end of the table if the free
+ * list is empty.  The slots of the strong table are roots; the slots of the
+ * weak table are cleared by the GC once their referents die.  Both can be
+ * processed by several collector threads in parallel, one segment at a time.
  */
-public class JNIGlobalRefTable {
+public final class JNIGlobalRefTable {
 
+  public static final int LOG_SEGMENT_SIZE = 10;
+  public static final int SEGMENT_SIZE = 1 << LOG_SEGMENT_SIZE;
+  public static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  /** Number of segments the spine initially has room for */
+  private static final int INITIAL_SPINE_LENGTH = 8;
+
+  /** Free slots hold the index of the next free slot, tagged with this bit */
+  private static final Word FREE_TAG = Word.one();
+
+  /* Weak references are returned with the STRONG_REF_BIT bit UNset.  */
+  public static final int STRONG_REF_BIT = 1 << 30;
+
+  /** The table of strong global references */
+  @Entrypoint(fieldMayBeFinal = true)
+  public static final JNIGlobalRefTable JNIGlobalRefs = new JNIGlobalRefTable();
+
+  /** The table of weak global references */
+  @Entrypoint(fieldMayBeFinal = true)
+  public static final JNIGlobalRefTable JNIWeakGlobalRefs = new JNIGlobalRefTable();
+
+  /**
+   * The segments of this table, or {@code null} if none has been allocated
+   * yet.  Only replaced (by a longer copy) while holding the table's lock.
+   */
   @Entrypoint
-  public static AddressArray JNIGlobalRefs = AddressArray.create(100);
-  private static int free = 1;
+  private AddressArray[] segments;
 
-  static int newGlobalRef(Object referent) {
-    if (VM.VerifyAssertions) VM._assert(MemoryManager.validRef(ObjectReference.fromObject(referent)));
+  /**
+   * Head of the free list: the index of the first free slot (0 if the list
+   * is empty) in the low 32 bits, and a version number that is bumped on
+   * every change in the high 32 bits.
+   */
+  @Entrypoint
+  private volatile long freeList;
 
-    if (free >= JNIGlobalRefs.length()) {
-      AddressArray newGlobalRefs = AddressArray.create(JNIGlobalRefs.length() * 2);
-      copyAndReplaceGlobalRefs(newGlobalRefs);
-    }
+  /** The lowest index that has never been handed out; index 0 means null */
+  @Entrypoint
+  private int highWater = 1;
 
-    JNIGlobalRefs.set(free, Magic.objectAsAddress(referent));
-    return -free++;
-  }
+  /** Number of references currently in the table */
+  @Entrypoint
+  private int live;
 
-  @Uninterruptible
-  private static void copyAndReplaceGlobalRefs(AddressArray newGlobalRefs) {
-    for (int i = 0; i < JNIGlobalRefs.length(); i++) {
-      newGlobalRefs.set(i, JNIGlobalRefs.get(i));
-    }
-    JNIGlobalRefs = newGlobalRefs;
+  /** Largest number of references that were ever in the table at once */
+  @Entrypoint
+  private volatile int peak;
+
+  private JNIGlobalRefTable() {
   }
 
-  /* Weak references are returned with the STRONG_REF_BIT bit UNset.  */
-  public static final int STRONG_REF_BIT = 1 << 30;
+  static int newGlobalRef(Object referent) {
+    if (VM.VerifyAssertions) VM._assert(MemoryManager.validRef(ObjectReference.fromObject(referent)));
+    return -JNIGlobalRefs.allocate(referent);
+  }
 
   static int newWeakRef(Object referent) {
-    int gref = newGlobalRef(new WeakReference<Object>(referent));
+    if (VM.VerifyAssertions) VM._assert(MemoryManager.validRef(ObjectReference.fromObject(referent)));
+    int gref = -JNIWeakGlobalRefs.allocate(referent);
     return gref & ~STRONG_REF_BIT;
   }
 
   static void deleteGlobalRef(int index) {
     if (VM.VerifyAssertions) VM._assert(!isWeakRef(index));
-    JNIGlobalRefs.set(-index, Address.zero());
+    if (index != 0) {
+      JNIGlobalRefs.free(-index);
+    }
   }
 
   static void deleteWeakRef(int index) {
     if (VM.VerifyAssertions) VM._assert(isWeakRef(index));
-    int gref = index | STRONG_REF_BIT;
-    deleteGlobalRef(gref);
+    if (index != 0) {
+      JNIWeakGlobalRefs.free(-(index | STRONG_REF_BIT));
+    }
   }
 
   @Uninterruptible
@@ -81,9 +134,8 @@ public class JNIGlobalRefTable {
   @Uninterruptible
   static Object weakRef(int index) {
     if (VM.VerifyAssertions) VM._assert(isWeakRef(index));
-    @SuppressWarnings("unchecked") // yes, we're being bad.
-    WeakReference<Object> ref = (WeakReference<Object>) globalRef(index | STRONG_REF_BIT);
-    return java.lang.ref.JikesRVMSupport.uninterruptibleReferenceGet(ref);
+    // the slot is cleared by the GC when the referent dies
+    return Magic.addressAsObject(JNIWeakGlobalRefs.get(-(index | STRONG_REF_BIT)));
   }
 
   @Uninterruptible
@@ -99,4 +151,212 @@ public class JNIGlobalRefTable {
   static boolean isWeakRef(int index) {
     return (index & STRONG_REF_BIT) == 0;
   }
+
+  /*
+   * Slot allocation
+   */
+
+  /**
+   * Allocates a slot and stores the given referent in it.
+   *
+   * @param referent the object to refer to
+   * @return the (positive) index of the slot
+   */
+  private int allocate(Object referent) {
+    int index = popFree();
+    if (index == 0) {
+      index = Synchronization.fetchAndAdd(this, Entrypoints.jniGlobalRefTableHighWaterField.getOffset(), 1);
+      if (index >= STRONG_REF_BIT) {
+        throw new OutOfMemoryError("Too many JNI global references");
+      }
+      int segment = index >> LOG_SEGMENT_SIZE;
+      AddressArray[] spine = segments;
+      if (spine == null || segment >= spine.length || spine[segment] == null) {
+        addSegment(segment);
+      }
+    }
+    set(index, referent);
+
+    int nowLive = Synchronization.fetchAndAdd(this, Entrypoints.jniGlobalRefTableLiveField.getOffset(), 1) + 1;
+    Offset peakOffset = Entrypoints.jniGlobalRefTablePeakField.getOffset();
+    for (int oldPeak = peak; nowLive > oldPeak; oldPeak = peak) {
+      if (Synchronization.tryCompareAndSwap(this, peakOffset, oldPeak, nowLive)) break;
+    }
+    return index;
+  }
+
+  /**
+   * Returns a slot to the free list.
+   *
+   * @param index the index of the slot
+   */
+  private void free(int index) {
+    if (VM.VerifyAssertions) VM._assert(!isFree(get(index)));
+    Offset offset = Entrypoints.jniGlobalRefTableFreeListField.getOffset();
+    for (;;) {
+      long head = freeList;
+      setFreeLink(index, (int) head);
+      long newHead = nextVersion(head) | index;
+      if (Synchronization.tryCompareAndSwap(this, offset, head, newHead)) break;
+    }
+    Synchronization.fetchAndAdd(this, Entrypoints.jniGlobalRefTableLiveField.getOffset(), -1);
+  }
+
+  /**
+   * Takes a slot from the free list.
+   *
+   * @return the index of the slot, or 0 if the free list is empty
+   */
+  private int popFree() {
+    Offset offset = Entrypoints.jniGlobalRefTableFreeListField.getOffset();
+    for (;;) {
+      long head = freeList;
+      int index = (int) head;
+      if (index == 0) return 0;
+      // if the slot is taken by someone else in the meantime, this reads
+      // garbage, but then the version has changed and the CAS fails
+      int next = get(index).toWord().rshl(1).toInt();
+      long newHead = nextVersion(head) | next;
+      if (Synchronization.tryCompareAndSwap(this, offset, head, newHead)) return index;
+    }
+  }
+
+  /**
+   * @param head a free list head
+   * @return the version part of the head for the next change of the list
+   */
+  @Inline
+  private static long nextVersion(long head) {
+    return ((head >>> 32) + 1) << 32;
+  }
+
+  /**
+   * Makes sure the given segment exists, growing the spine if necessary.
+   *
+   * @param segment the number of the segment
+   */
+  private synchronized void addSegment(int segment) {
+    AddressArray[] spine = segments;
+    if (spine == null || segment >= spine.length) {
+      int length = spine == null ? INITIAL_SPINE_LENGTH : spine.length;
+      while (length <= segment) length <<= 1;
+      AddressArray[] newSpine = new AddressArray[length];
+      if (spine != null) {
+        for (int i = 0; i < spine.length; i++) {
+          newSpine[i] = spine[i];
+        }
+      }
+      spine = newSpine;
+    }
+    if (spine[segment] == null) {
+      spine[segment] = createSegment();
+    }
+    segments = spine;
+  }
+
+  /**
+   * Creates a segment in a non-moving space, since the GC updates its slots
+   * in place and native code may read them.
+   *
+   * @return the new segment
+   */
+  @NonMovingAllocation
+  private static AddressArray createSegment() {
+    return AddressArray.create(SEGMENT_SIZE);
+  }
+
+  /*
+   * Slot access
+   */
+
+  @Uninterruptible
+  private Address get(int index) {
+    return segments[index >> LOG_SEGMENT_SIZE].get(index & SEGMENT_MASK);
+  }
+
+  /**
+   * Stores a referent in a slot.  Uninterruptible, so the address of the
+   * referent can't become stale before it is stored.
+   *
+   * @param index the index of the slot
+   * @param referent the referent
+   */
+  @Uninterruptible
+  private void set(int index, Object referent) {
+    segments[index >> LOG_SEGMENT_SIZE].set(index & SEGMENT_MASK, Magic.objectAsAddress(referent));
+  }
+
+  @Uninterruptible
+  private void setFreeLink(int index, int next) {
+    Address link = Word.fromIntZeroExtend(next).lsh(1).or(FREE_TAG).toAddress();
+    segments[index >> LOG_SEGMENT_SIZE].set(index & SEGMENT_MASK, link);
+  }
+
+  /**
+   * @param slotContents the contents of a slot
+   * @return whether the slot is on the free list rather than holding a reference
+   */
+  @Uninterruptible
+  public static boolean isFree(Address slotContents) {
+    return !slotContents.toWord().and(FREE_TAG).isZero();
+  }
+
+  /*
+   * Support for the GC
+   */
+
+  /**
+   * @return the number of segments the GC has to look at
+   */
+  @Uninterruptible
+  public int numSegments() {
+    AddressArray[] spine = segments;
+    return spine == null ? 0 : spine.length;
+  }
+
+  /**
+   * @param segment the number of a segment
+   * @return the segment, or {@code null} if it was never allocated
+   */
+  @Uninterruptible
+  public AddressArray getSegment(int segment) {
+    return segments[segment];
+  }
+
+  /*
+   * Statistics
+   */
+
+  /**
+   * Set up a callback to report the statistics, if requested.
+   */
+  static void boot() {
+    if (VM.reportJNIGlobalRefs) {
+      Callbacks.addExitMonitor(new Callbacks.ExitMonitor() {
+        @Override
+        public void notifyExit(int value) {
+          VM.sysWrite("JNI global references: ", JNIGlobalRefs.getLive());
+          VM.sysWriteln(" live, ", JNIGlobalRefs.getPeak(), " peak");
+          VM.sysWrite("JNI weak global references: ", JNIWeakGlobalRefs.getLive());
+          VM.sysWriteln(" live, ", JNIWeakGlobalRefs.getPeak(), " peak");
+        }
+      });
+    }
+  }
+
+  /**
+   * @return the number of references currently in this table
+   */
+  @Uninterruptible
+  public int getLive() {
+    return live;
+  }
+
+  /**
+   * @return the largest number of references that were in this table at once
+   */
+  @Uninterruptible
+  public int getPeak() {
+    return peak;
+  }
 }
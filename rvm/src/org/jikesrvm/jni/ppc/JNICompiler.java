@@ -413,24 +413,28 @@ public abstract class JNICompiler {
       globalRef.resolve(asm);
       asm.emitLVAL(T3, JNIGlobalRefTable.STRONG_REF_BIT);
       asm.emitAND(T1, T0, T3);
-      asm.emitLAddrOffset(T2, JTOC, Entrypoints.JNIGlobalRefsField.getOffset());
       asm.emitCMPI(T1, 0);
       ForwardReference weakGlobalRef = asm.emitForwardBC(EQ);
 
       // Strong global references
-      asm.emitNEG(T0, T0);
-      asm.emitSLWI(T0, T0, LOG_BYTES_IN_ADDRESS);  // convert index to offset
-      asm.emitLAddrX(T0, T2, T0);
-      ForwardReference afterWeakGlobalRef = asm.emitForwardB();
+      asm.emitLAddrOffset(T2, JTOC, Entrypoints.JNIGlobalRefsField.getOffset());
+      ForwardReference lookupGlobalRef = asm.emitForwardB();
 
       // Weak global references
       weakGlobalRef.resolve(asm);
       asm.emitOR(T0, T0, T3); // STRONG_REF_BIT
+      asm.emitLAddrOffset(T2, JTOC, Entrypoints.JNIWeakGlobalRefsField.getOffset());
+
+      // Load the reference from its segment of the table in T2
+      lookupGlobalRef.resolve(asm);
       asm.emitNEG(T0, T0);
+      asm.emitLAddrOffset(T2, T2, Entrypoints.JNIGlobalRefTableSegmentsField.getOffset());
+      asm.emitSRAWI(T1, T0, JNIGlobalRefTable.LOG_SEGMENT_SIZE);
+      asm.emitSLWI(T1, T1, LOG_BYTES_IN_ADDRESS);  // convert segment number to offset
+      asm.emitLAddrX(T2, T2, T1);
+      asm.emitANDI(T0, T0, JNIGlobalRefTable.SEGMENT_MASK);
       asm.emitSLWI(T0, T0, LOG_BYTES_IN_ADDRESS);  // convert index to offset
       asm.emitLAddrX(T0, T2, T0);
-      asm.emitLAddrOffset(T0, T0, Entrypoints.referenceReferentField.getOffset());
-      afterWeakGlobalRef.resolve(asm);
       afterGlobalRef.resolve(asm);
     }
 
@@ -28,7 +28,9 @@ import org.vmmagic.unboxed.Word;
  * 1Z..Z where Z..Z is the id of a heavy lock, or it is in
  * thin state in which case it looks like 0I..IC..C where
  * I is the thread id of the thread that owns the lock and
- * C is the recursion count of the lock.
+ * C is the recursion count of the lock.  A biased lock word additionally
+ * carries the bias epoch of the object's type; a bias whose epoch differs
+ * from the type's current epoch is stale (see {@link org.jikesrvm.scheduler.ThinLock}).
  * <pre>
  * aaaaTTTTTTTTTTbbbbb
  * JavaHeader.NUM_THIN_LOCK_BITS = # of T's
@@ -41,24 +43,34 @@ public final class ThinLockConstants {
   // 00 -> thin biasable, and biased if TID is non-zero
   // 01 -> thin unbiasable
   // 10 -> fat unbiasable
+  //
+  // layout of a thin lock word (high to low): stat, epoch, count, tid.
+  // the epoch is only meaningful while the lock is biased, and is zero
+  // in thin locks.
 
   public static final int TL_NUM_BITS_STAT = 2;
+  public static final int TL_NUM_BITS_EPOCH = 2;
   public static final int TL_NUM_BITS_TID = RVMThread.LOG_MAX_THREADS;
-  public static final int TL_NUM_BITS_RC = JavaHeader.NUM_THIN_LOCK_BITS - TL_NUM_BITS_TID - TL_NUM_BITS_STAT;
+  public static final int TL_NUM_BITS_RC = JavaHeader.NUM_THIN_LOCK_BITS - TL_NUM_BITS_TID - TL_NUM_BITS_EPOCH - TL_NUM_BITS_STAT;
 
   public static final int TL_THREAD_ID_SHIFT = JavaHeader.THIN_LOCK_SHIFT;
   public static final int TL_LOCK_COUNT_SHIFT = TL_THREAD_ID_SHIFT + TL_NUM_BITS_TID;
-  public static final int TL_STAT_SHIFT = TL_LOCK_COUNT_SHIFT + TL_NUM_BITS_RC;
+  public static final int TL_EPOCH_SHIFT = TL_LOCK_COUNT_SHIFT + TL_NUM_BITS_RC;
+  public static final int TL_STAT_SHIFT = TL_EPOCH_SHIFT + TL_NUM_BITS_EPOCH;
   public static final int TL_LOCK_ID_SHIFT = JavaHeader.THIN_LOCK_SHIFT;
   public static final int TL_DEDICATED_U16_OFFSET = JavaHeader.THIN_LOCK_DEDICATED_U16_OFFSET;
   public static final int TL_DEDICATED_U16_SHIFT = JavaHeader.THIN_LOCK_DEDICATED_U16_SHIFT;
 
   public static final Word TL_LOCK_COUNT_UNIT = Word.fromIntSignExtend(1 << TL_LOCK_COUNT_SHIFT);
 
+  /** Number of distinct bias epochs; epochs wrap around */
+  public static final int TL_NUM_EPOCHS = 1 << TL_NUM_BITS_EPOCH;
+
   public static final Word TL_LOCK_COUNT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_RC).lsh(TL_LOCK_COUNT_SHIFT);
   public static final Word TL_THREAD_ID_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_THREAD_ID_SHIFT);
+  public static final Word TL_EPOCH_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_EPOCH).lsh(TL_EPOCH_SHIFT);
   public static final Word TL_LOCK_ID_MASK =
-      Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - (TL_NUM_BITS_RC + TL_NUM_BITS_TID)).lsh(TL_LOCK_ID_SHIFT);
+      Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - (TL_NUM_BITS_RC + TL_NUM_BITS_TID + TL_NUM_BITS_EPOCH)).lsh(TL_LOCK_ID_SHIFT);
   public static final Word TL_STAT_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - TL_NUM_BITS_TID).lsh(TL_STAT_SHIFT);
   public static final Word TL_UNLOCK_MASK = Word.fromIntSignExtend(-1).rshl(BITS_IN_ADDRESS - JavaHeader
       .NUM_THIN_LOCK_BITS).lsh(JavaHeader.THIN_LOCK_SHIFT).not();
@@ -33,6 +33,7 @@ import java.util.LinkedList;
 import org.jikesrvm.VM;
 import org.jikesrvm.compilers.opt.inlining.CallSiteTree;
 import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.jikesrvm.compilers.opt.ir.OsrPoint;
 import org.jikesrvm.compilers.opt.mir2mc.MachineCodeOffsets;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.unboxed.Offset;
@@ -197,6 +198,9 @@ public final class EncodedOSRMap {
       setMCOffset(i, mcOffset);
       setOSRMapIndex(i, osrMapIndex);
       setBCIndex(i, instr.getBytecodeIndex());
+      if (OsrPoint.getInlinedTypeInfo(instr).uncommonTrap) {
+        setUncommonTrap(i);
+      }
     }
   }
 
@@ -410,6 +414,18 @@ public final class EncodedOSRMap {
     return getBCIndex(entry);
   }
 
+  /**
+   * NOTE: It is the caller's reponsibility to make sure there are OSR
+   * entry exist for a machine instruction offset.
+   *
+   * @param mcOffset the instruction offset in bytes
+   * @return whether the OSR point at the offset is an uncommon trap
+   */
+  public boolean isUncommonTrapForMCOffset(Offset mcOffset) {
+    int entry = findOSREntry(mcOffset);
+    return (mapEntries[entry] & TRAP_MASK) != 0;
+  }
+
   /* TODO!
    * get inline encoding index for the machine instruction offset
    */
@@ -514,7 +530,11 @@ public final class EncodedOSRMap {
   }
 
   private void setIEIndex(int entry, int index) {
-    mapEntries[entry] = (mapEntries[entry] & ~IEI_MASK) | (((long) index) << IEI_SHIFT);
+    mapEntries[entry] = (mapEntries[entry] & ~IEI_MASK) | ((((long) index) << IEI_SHIFT) & IEI_MASK);
+  }
+
+  private void setUncommonTrap(int entry) {
+    mapEntries[entry] |= TRAP_MASK;
   }
 
   /**
@@ -531,7 +551,8 @@ public final class EncodedOSRMap {
       int mcOffset = getMCOffset(i);
       VM.sysWrite("  mc " + mcOffset + ", ");
       int bcIndex = getBCIndex(i);
-      VM.sysWriteln("bc " + bcIndex);
+      VM.sysWrite("bc " + bcIndex);
+      VM.sysWriteln((mapEntries[i] & TRAP_MASK) != 0 ? ", uncommon trap" : "");
 
       /*
       for (int j=0; j<osrMaps.length; j++) {
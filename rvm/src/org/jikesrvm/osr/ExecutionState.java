@@ -89,6 +89,13 @@ public class ExecutionState {
    */
   public int cmid;
 
+  /**
+   * was the state extracted at an uncommon trap, rather than at an OSR
+   * point guarding an inlining decision?  Only set on the state of the
+   * outermost method, whose compiled code the OSR invalidates.
+   */
+  public boolean uncommonTrap;
+
   public ExecutionState(RVMThread whichThread, Offset framePointerOffset, int compiledMethodID, int pc,
                             Offset tsFPOffset) {
     this.thread = whichThread;
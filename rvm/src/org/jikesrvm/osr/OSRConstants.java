@@ -29,14 +29,16 @@ public final class OSRConstants {
    *    o : an index into the OSR maps array
    *    b : the bytecode index of the instruction
    *    i : index into the inline encoding
+   *    t : set if the OSR point is an uncommon trap
    *
-   * (HIGH)  iiii iiii iiii iiib bbbb bbbb bbbb bbbo
+   * (HIGH)  tiii iiii iiii iiib bbbb bbbb bbbb bbbo
    * (LOW)   oooo oooo oooo ommm mmmm mmmm mmmm mmmm
    */
   public static final long OFFSET_MASK = 0x000000000007ffffL;
   public static final long OSRI_MASK = 0x00000001fff80000L;
   public static final long BCI_MASK = 0x0001fffe00000000L;
-  public static final long IEI_MASK = 0xfffe000000000000L;
+  public static final long IEI_MASK = 0x7ffe000000000000L;
+  public static final long TRAP_MASK = 0x8000000000000000L;
   public static final int OFFSET_SHIFT = 0;
   public static final int OSRI_SHIFT = 19;
   public static final int BCI_SHIFT = 33;
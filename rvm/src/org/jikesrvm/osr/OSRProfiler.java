@@ -32,11 +32,13 @@ import org.jikesrvm.runtime.Callbacks;
 public class OSRProfiler implements Callbacks.ExitMonitor {
 
   private static int invalidations = 0;
+  private static int uncommonTraps = 0;
   private static boolean registered = false;
 
   @Override
   public void notifyExit(int value) {
     VM.sysWriteln("OSR invalidations " + invalidations);
+    VM.sysWriteln("OSR uncommon traps " + uncommonTraps);
   }
 
   // we know which assumption is invalidated
@@ -83,6 +85,24 @@ public class OSRProfiler implements Callbacks.ExitMonitor {
       return;
     }
 
+    // code with uncommon traps is kept until its traps have fired often
+    // enough to show that the branches they replaced do execute; until then
+    // only the activation that reached the trap falls back to baseline code.
+    // Any other OSR point means an inlining assumption no longer holds, so
+    // the code is invalidated at once.
+    if (state.uncommonTrap) {
+      OptCompiledMethod optCM = (OptCompiledMethod) mostRecentlyCompiledMethod;
+      if (VM.VerifyAssertions) VM._assert(optCM.hasUncommonTraps());
+      int traps = optCM.recordUncommonTrap();
+      if (VM.TraceOnStackReplacement || VM.MeasureCompilation) {
+        OSRProfiler.uncommonTraps++;
+      }
+      AOSLogging.logger.logOsrEvent("Uncommon trap " + traps + " in " + state.meth);
+      if (Controller.enabled && traps < Controller.options.UNCOMMON_TRAP_LIMIT) {
+        return;
+      }
+    }
+
     // reset the compiled method to null first, if other thread invokes
     // this method before following opt recompilation, it can avoid OSR
     state.meth.invalidateCompiledMethod(mostRecentlyCompiledMethod);
@@ -124,7 +144,8 @@ public class OSRProfiler implements Callbacks.ExitMonitor {
           VM._assert(cmplplan.getMethod() == state.meth);
         }
 
-        // for invalidated method, we do not perform OSR guarded inlining anymore.
+        // for invalidated method, we do not perform OSR guarded inlining
+        // (nor the uncommon traps that depend on it) anymore.
         // the Options object may be shared by several methods,
         // we have to reset it back
         boolean savedOsr = cmplplan.options.OSR_GUARDED_INLINING;
@@ -145,6 +145,7 @@ public final class OptExecutionStateExtractor extends ExecutionStateExtractor {
     // a chain of recoverd methods.
     ExecutionState state =
         getExecStateSequence(thread, stack, ipOffset, methFPoff, cmid, osrFPoff, registers, fooOSRMap);
+    state.uncommonTrap = fooOSRMap.isUncommonTrapForMCOffset(ipOffset);
 
     // reverse callerState points, it becomes callee -> caller
     ExecutionState prevState = null;
@@ -150,6 +150,7 @@ public final class OptExecutionStateExtractor extends ExecutionStateExtractor {
     // a chain of recoverd methods.
     ExecutionState state =
         getExecStateSequence(thread, stack, ipOffset, methFPoff, cmid, osrFPoff, registers, fooOSRMap);
+    state.uncommonTrap = fooOSRMap.isUncommonTrapForMCOffset(ipOffset);
 
     // reverse callerState points
     ExecutionState prevState = null;
@@ -260,11 +260,17 @@ public class BootRecord {
   public Address sysMMapIP;
   public Address sysMMapErrnoIP;
   public Address sysMProtectIP;
+  public Address sysMAdviseHugePagesIP;
+
+  // NUMA placement
+  public Address sysNumaNodeIP;
+  public Address sysNumaBindIP;
 
   // threads
   public Address sysNumProcessorsIP;
   public Address sysThreadBindSupportedIP;
   public Address sysThreadBindIP;
+  public Address sysThreadBindToNumaNodeIP;
   public Address sysThreadCreateIP;
   public Address sysThreadYieldIP;
   public Address sysGetThreadIdIP;
@@ -404,6 +404,8 @@ public class Entrypoints {
 
   public static final RVMField JNIEnvBasePointerOnEntryToNative;
   public static final RVMField JNIGlobalRefsField;
+  public static final RVMField JNIWeakGlobalRefsField;
+  public static final RVMField JNIGlobalRefTableSegmentsField;
   public static final RVMField JNIRefsField;
   public static final RVMField JNIRefsTopField;
   public static final RVMField JNIRefsSavedFPField;
@@ -419,7 +421,13 @@ public class Entrypoints {
       JNIEnvBasePointerOnEntryToNative = null;
       JNIGlobalRefsField = getField(org.jikesrvm.jni.JNIGlobalRefTable.class,
                                               "JNIGlobalRefs",
-                                              org.vmmagic.unboxed.AddressArray.class);
+                                              org.jikesrvm.jni.JNIGlobalRefTable.class);
+      JNIWeakGlobalRefsField = getField(org.jikesrvm.jni.JNIGlobalRefTable.class,
+                                              "JNIWeakGlobalRefs",
+                                              org.jikesrvm.jni.JNIGlobalRefTable.class);
+      JNIGlobalRefTableSegmentsField = getField(org.jikesrvm.jni.JNIGlobalRefTable.class,
+                                              "segments",
+                                              org.vmmagic.unboxed.AddressArray[].class);
       JNIRefsField =  getField(org.jikesrvm.jni.JNIEnvironment.class,
                                               "JNIRefs",
                                               org.vmmagic.unboxed.AddressArray.class);
@@ -446,6 +454,8 @@ public class Entrypoints {
           "basePointerOnEntryToNative",
            org.vmmagic.unboxed.Address.class);
       JNIGlobalRefsField = null;
+      JNIWeakGlobalRefsField = null;
+      JNIGlobalRefTableSegmentsField = null;
       JNIRefsField = null;
       JNIRefsTopField = null;
       JNIRefsSavedFPField = null;
@@ -486,10 +496,25 @@ public class Entrypoints {
 
   public static final RVMField edgeCountersField =
       getField(org.jikesrvm.compilers.baseline.EdgeCounts.class, "data", int[][].class);
+  public static final NormalMethod typeProfileMethod =
+      getMethod(org.jikesrvm.compilers.baseline.TypeProfiles.class, "record", "(Ljava/lang/Object;II)V");
+  public static final RVMField inlineCachesField =
+      getField(org.jikesrvm.compilers.baseline.InlineCaches.class, "data", org.vmmagic.unboxed.WordArray[].class);
+  public static final NormalMethod inlineCacheFillMethod =
+      getMethod(org.jikesrvm.compilers.baseline.InlineCaches.class, "fill", "(Ljava/lang/Object;III)V");
 
   public static final RVMField classLoadedCountField =
       getField(org.jikesrvm.classloader.JMXSupport.class, "classLoadedCount", int.class);
 
+  public static final RVMField jniGlobalRefTableFreeListField =
+      getField(org.jikesrvm.jni.JNIGlobalRefTable.class, "freeList", long.class);
+  public static final RVMField jniGlobalRefTableHighWaterField =
+      getField(org.jikesrvm.jni.JNIGlobalRefTable.class, "highWater", int.class);
+  public static final RVMField jniGlobalRefTableLiveField =
+      getField(org.jikesrvm.jni.JNIGlobalRefTable.class, "live", int.class);
+  public static final RVMField jniGlobalRefTablePeakField =
+      getField(org.jikesrvm.jni.JNIGlobalRefTable.class, "peak", int.class);
+
   //////////////////
   // Entrypoints that are valid only when the opt compiler is included in the build
   //////////////////
@@ -503,6 +528,7 @@ public class Entrypoints {
   public static final NormalMethod optNewArrayArrayMethod;
   public static final NormalMethod optNew2DArrayMethod;
   public static final NormalMethod sysArrayCopy;
+  public static final RVMField inlineCacheCountersField;
 
   // Initialize opt-compiler specific fields
   static {
@@ -527,6 +553,8 @@ public class Entrypoints {
           getMethod(org.jikesrvm.compilers.opt.runtimesupport.OptLinker.class, "new2DArray", "(IIII)Ljava/lang/Object;");
       sysArrayCopy = getMethod("Ljava/lang/VMCommonLibrarySupport;", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V");
       sysArrayCopy.setRuntimeServiceMethod(false);
+      inlineCacheCountersField =
+          getField(org.jikesrvm.compilers.opt.runtimesupport.InlineCacheCounters.class, "counters", int[].class);
     } else {
       specializedMethodsField = null;
       optThreadSwitchFromOsrOptMethod = null;
@@ -537,6 +565,7 @@ public class Entrypoints {
       optNewArrayArrayMethod = null;
       optNew2DArrayMethod = null;
       sysArrayCopy = null;
+      inlineCacheCountersField = null;
     }
   }
 
@@ -161,6 +161,16 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysMProtect(Address start, Extent length, int prot);
 
+  @SysCallTemplate
+  public abstract int sysMAdviseHugePages(Address start, Extent length);
+
+  // NUMA placement
+  @SysCallTemplate
+  public abstract int sysNumaNode();
+
+  @SysCallTemplate
+  public abstract int sysNumaBind(Address start, Extent length, int node);
+
   // threads
   @SysCallTemplate
   public abstract int sysNumProcessors();
@@ -186,6 +196,9 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract void sysThreadBind(int cpuId);
 
+  @SysCallTemplate
+  public abstract void sysThreadBindToNumaNode(int node);
+
   @SysCallTemplate
   public abstract void sysThreadYield();
 
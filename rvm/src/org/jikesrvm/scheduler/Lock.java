@@ -20,6 +20,7 @@ import org.jikesrvm.VM;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.runtime.Callbacks;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.util.Services;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
@@ -85,7 +86,13 @@ java.lang.Object#notifyAll}, and {@link java.lang.Object#wait()}.
  inflate the lock and yield to the heavy-weight lock's entering
  queue.  Currently, yield n times, then inflate.
  (This seemed to be best for the portBOB benchmark on a 12-way AIX
- SMP in the Fall of '99.)
+ SMP in the Fall of '99.)  Once the lock is inflated, a contending
+ thread spins for a while before joining the entering queue.  The
+ spin budget is learned per lock from its recent hold times (see
+ {@link #spinForLock}), and is bounded by <code>-X:vm:lockSpinCycles</code>.
+ With <code>-X:vm:lockHandoff=true</code> an unlocking thread hands
+ ownership directly to the thread at the head of the entering queue,
+ rather than waking it to contend for the lock again.
  <LI> <EM>When should a heavy-weight lock be deflated?</EM>  Currently,
  deflation happens when the lock is unlocked with nothing on either
  of its queues.  Probably better, would be to periodically (what
@@ -176,14 +183,36 @@ public final class Lock {
   /** Number of deflations */
   public static int deflations;
 
+  // Contention statistics (gathered with -X:vm:reportLockContention)
+
+  /** Contention statistics of locks that have since been freed: spins */
+  private static long freedSpins;
+  /** Contention statistics of locks that have since been freed: parks */
+  private static long freedParks;
+  /** Contention statistics of locks that have since been freed: handoffs */
+  private static long freedHandoffs;
+  /** Contention statistics of locks that have since been freed: wait time */
+  private static long freedWaitCycles;
+  /** Number of contended locks to report individually on exit */
+  private static final int CONTENDED_LOCKS_TO_REPORT = 10;
+
+  // Adaptive spinning
+
+  /** Weight (as a shift) of the history in the average hold time */
+  private static final int LOG_HOLD_HISTORY_WEIGHT = 3;
+  /** Consecutive failed spins after which a lock is no longer spun on */
+  private static final int SPIN_FAILURE_LIMIT = 4;
+  /** While not spinning on a lock, still spin on every n-th contention */
+  private static final int SPIN_REPROBE_INTERVAL = 16;
+
   /****************************************************************************
    * Instance
    */
 
   /** The object being locked (if any). */
   protected Object lockedObject;
-  /** The id of the thread that owns this lock (if any). */
-  protected int ownerId;
+  /** The id of the thread that owns this lock (if any).  Read without the mutex by spinning threads. */
+  protected volatile int ownerId;
   /** The number of times the owning thread (if any) has acquired this lock. */
   protected int recursionCount;
   /** A spin lock to handle contention for the data structures of this lock. */
@@ -198,6 +227,22 @@ public final class Lock {
   ThreadQueue entering;
   /** Queue for waiting on a notify, guarded by mutex as well. */
   ThreadQueue waiting;
+  /** Cycle count when the current owner acquired this lock */
+  private long acquiredCycles;
+  /** Average number of cycles for which this lock is held */
+  private long averageHoldCycles;
+  /** Number of consecutive contentions in which spinning failed */
+  private int spinFailures;
+  /** Number of contentions while spinning was given up */
+  private int contentionsWithoutSpinning;
+  /** Number of contended acquisitions obtained by spinning */
+  private int spins;
+  /** Number of times a thread parked waiting for this lock */
+  private int parks;
+  /** Number of times ownership was handed directly to a parked thread */
+  private int handoffs;
+  /** Total cycles threads spent waiting for this lock */
+  private long waitCycles;
 
   /**
    * A heavy weight lock to handle extreme contention and wait/notify
@@ -245,9 +290,26 @@ public final class Lock {
     if (ownerId == threadId) {
       recursionCount++;
     } else if (ownerId == 0) {
-      ownerId = threadId;
-      recursionCount = 1;
+      acquire(threadId);
     } else {
+      long start = VM.reportLockContention ? Time.cycles() : 0;
+      if (shouldSpin()) {
+        mutex.unlock();
+        if (spinForLock(o, threadId)) {
+          return true;
+        }
+        mutex.lock();
+        if (lockedObject != o) { // lock disappeared while we were spinning
+          mutex.unlock();
+          return false;
+        }
+        if (ownerId == 0) {
+          acquire(threadId);
+          mutex.unlock();
+          return true;
+        }
+      }
+      if (VM.reportLockContention) parks++;
       entering.enqueue(me);
       mutex.unlock();
       me.monitor().lockNoHandshake();
@@ -255,12 +317,92 @@ public final class Lock {
         me.monitor().waitWithHandshake(); // this may spuriously return
       }
       me.monitor().unlock();
-      return false;
+      if (VM.reportLockContention) {
+        long waited = Time.cycles() - start;
+        mutex.lock();
+        if (lockedObject == o) { // otherwise deflation already folded the totals
+          waitCycles += waited;
+        }
+        mutex.unlock();
+      }
+      // with direct handoff the unlocking thread made us the owner
+      return VM.lockHandoff && ownerId == threadId;
     }
     mutex.unlock(); // thread-switching benign
     return true;
   }
 
+  /**
+   * Makes the given thread the owner of this (unowned) lock.  The mutex
+   * must be held.
+   *
+   * @param threadId the locking id of the new owner
+   */
+  private void acquire(int threadId) {
+    ownerId = threadId;
+    recursionCount = 1;
+    if (VM.lockSpinCycles > 0) acquiredCycles = Time.cycles();
+  }
+
+  /**
+   * Decides whether a thread contending for this lock should spin
+   * before parking.  Spinning pays off only when the lock is held for
+   * less time than it takes to park and wake a thread, so it is
+   * avoided when the lock's average hold time exceeds the spin limit,
+   * and given up on a lock where it keeps failing (apart from an
+   * occasional probe, in case the lock's behaviour has changed).  The
+   * mutex must be held.
+   *
+   * @return whether to spin
+   */
+  private boolean shouldSpin() {
+    if (VM.lockSpinCycles <= 0 || averageHoldCycles > VM.lockSpinCycles) {
+      return false;
+    }
+    if (spinFailures >= SPIN_FAILURE_LIMIT) {
+      return (++contentionsWithoutSpinning % SPIN_REPROBE_INTERVAL) == 0;
+    }
+    return true;
+  }
+
+  /**
+   * Spins waiting for this lock to be released, then tries to take it.
+   * The spin lasts for about twice the lock's average hold time, bounded
+   * by the spin limit.  The mutex must NOT be held.
+   *
+   * @param o the object to be locked
+   * @param threadId the locking id of the current thread
+   * @return whether the lock was obtained
+   */
+  @Unpreemptible
+  private boolean spinForLock(Object o, int threadId) {
+    long budget = averageHoldCycles << 1;
+    if (budget <= 0 || budget > VM.lockSpinCycles) budget = VM.lockSpinCycles;
+    long start = Time.cycles();
+    do {
+      if (ownerId == 0) {
+        mutex.lock();
+        if (lockedObject == o && ownerId == 0 && entering.isEmpty()) {
+          acquire(threadId);
+          spinFailures = 0;
+          if (VM.reportLockContention) {
+            spins++;
+            waitCycles += Time.cycles() - start;
+          }
+          mutex.unlock();
+          return true;
+        }
+        mutex.unlock();
+        if (lockedObject != o) return false;
+      }
+      Magic.pause();
+    } while (Time.cycles() - start < budget);
+    mutex.lock();
+    spinFailures++;
+    mutex.unlock();
+    return false;
+  }
+
   @UnpreemptibleNoWarn
   private static void raiseIllegalMonitorStateException(String msg, Object o) {
     throw new IllegalMonitorStateException(msg + o);
@@ -286,8 +428,20 @@ public final class Lock {
       return;
     }
     if (STATS) unlockOperations++;
-    ownerId = 0;
+    if (VM.lockSpinCycles > 0) {
+      long held = Time.cycles() - acquiredCycles;
+      if (held > 0) {
+        averageHoldCycles += (held - averageHoldCycles) >> LOG_HOLD_HISTORY_WEIGHT;
+      }
+    }
     RVMThread toAwaken = entering.dequeue();
+    if (toAwaken != null && VM.lockHandoff) {
+      // pass ownership straight to the longest waiting thread
+      acquire(toAwaken.getLockingId());
+      if (VM.reportLockContention) handoffs++;
+    } else {
+      ownerId = 0;
+    }
     if (toAwaken == null && entering.isEmpty() && waiting.isEmpty()) { // heavy lock can be deflated
       // Possible project: decide on a heuristic to control when lock should be deflated
       Offset lockOffset = Magic.getObjectType(o).getThinLockOffset();
@@ -320,15 +474,40 @@ public final class Lock {
     if (STATS) deflations++;
     ThinLock.markDeflated(o, lockOffset, index);
     lockedObject = null;
+    resetContentionState();
     free(this);
   }
 
   /**
-   * Set the owner of a lock
+   * Forget what has been learned about contention on this lock, so
+   * that it starts afresh when reused for another object.  Statistics
+   * are folded into the totals for freed locks.
+   */
+  private void resetContentionState() {
+    acquiredCycles = 0;
+    averageHoldCycles = 0;
+    spinFailures = 0;
+    contentionsWithoutSpinning = 0;
+    if (VM.reportLockContention) {
+      freedSpins += spins;
+      freedParks += parks;
+      freedHandoffs += handoffs;
+      freedWaitCycles += waitCycles;
+      spins = 0;
+      parks = 0;
+      handoffs = 0;
+      waitCycles = 0;
+    }
+  }
+
+  /**
+   * Set the owner of a lock.  When a thin lock is inflated on behalf of
+   * its owner, the hold time is measured from the inflation.
    * @param id The thread id of the owner.
    */
   public void setOwnerId(int id) {
     ownerId = id;
+    if (id != 0 && VM.lockSpinCycles > 0) acquiredCycles = Time.cycles();
   }
 
   /**
@@ -702,6 +881,86 @@ public final class Lock {
       Callbacks.addExitMonitor(new Lock.ExitMonitor());
       Callbacks.addAppRunStartMonitor(new Lock.AppRunStartMonitor());
     }
+    if (VM.reportLockContention) {
+      Callbacks.addExitMonitor(new Lock.ContentionExitMonitor());
+    }
+    ThinLock.boot();
+  }
+
+  /**
+   * @return the number of contended acquisitions of this lock
+   */
+  private int contentions() {
+    return spins + parks;
+  }
+
+  /**
+   * Report contention statistics for all locks, and for the most
+   * contended locks individually, at the end of execution.
+   */
+  private static final class ContentionExitMonitor implements Callbacks.ExitMonitor {
+    @Override
+    public void notifyExit(int value) {
+      long totalSpins = freedSpins;
+      long totalParks = freedParks;
+      long totalHandoffs = freedHandoffs;
+      long totalWaitCycles = freedWaitCycles;
+      for (int i = 0; i < numLocks(); i++) {
+        Lock l = getLock(i);
+        if (l != null) {
+          totalSpins += l.spins;
+          totalParks += l.parks;
+          totalHandoffs += l.handoffs;
+          totalWaitCycles += l.waitCycles;
+        }
+      }
+      VM.sysWriteln("Heavyweight lock contention:");
+      writeContention(totalSpins, totalParks, totalHandoffs, totalWaitCycles);
+      // report the most contended live locks, most contended first
+      int reported = 0;
+      int lastContentions = Integer.MAX_VALUE;
+      while (reported < CONTENDED_LOCKS_TO_REPORT) {
+        Lock most = null;
+        for (int i = 0; i < numLocks(); i++) {
+          Lock l = getLock(i);
+          if (l != null && l.contentions() > 0 && l.contentions() < lastContentions &&
+              (most == null || l.contentions() > most.contentions())) {
+            most = l;
+          }
+        }
+        if (most == null) break;
+        lastContentions = most.contentions();
+        for (int i = 0; i < numLocks() && reported < CONTENDED_LOCKS_TO_REPORT; i++) {
+          Lock l = getLock(i);
+          if (l != null && l.contentions() == lastContentions) {
+            VM.sysWrite("  lock ", l.index);
+            if (l.lockedObject != null) {
+              VM.sysWrite(" on ");
+              VM.sysWrite(Magic.getObjectType(l.lockedObject).getDescriptor());
+            }
+            VM.sysWrite(": ");
+            writeContention(l.spins, l.parks, l.handoffs, l.waitCycles);
+            reported++;
+          }
+        }
+      }
+    }
+
+    /**
+     * Write a line of contention statistics.
+     *
+     * @param spins number of acquisitions obtained by spinning
+     * @param parks number of times a thread parked
+     * @param handoffs number of direct handoffs
+     * @param waitCycles total cycles spent waiting
+     */
+    private static void writeContention(long spins, long parks, long handoffs, long waitCycles) {
+      VM.sysWrite("spins ", spins);
+      VM.sysWrite(", parks ", parks);
+      VM.sysWrite(", handoffs ", handoffs);
+      long contentions = spins + parks;
+      VM.sysWriteln(", average wait (cycles) ", contentions == 0 ? 0 : waitCycles / contentions);
+    }
   }
 
   /**
@@ -14,11 +14,14 @@ package org.jikesrvm.scheduler;
 
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_DEDICATED_U16_OFFSET;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_DEDICATED_U16_SHIFT;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_EPOCH_MASK;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_EPOCH_SHIFT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_COUNT_MASK;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_COUNT_SHIFT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_COUNT_UNIT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_ID_MASK;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_LOCK_ID_SHIFT;
+import static org.jikesrvm.objectmodel.ThinLockConstants.TL_NUM_EPOCHS;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_STAT_BIASABLE;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_STAT_FAT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_STAT_MASK;
@@ -28,10 +31,14 @@ import static org.jikesrvm.objectmodel.ThinLockConstants.TL_THREAD_ID_SHIFT;
 import static org.jikesrvm.objectmodel.ThinLockConstants.TL_UNLOCK_MASK;
 
 import org.jikesrvm.VM;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.runtime.Callbacks;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
 import org.jikesrvm.util.Services;
 import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.NoNullCheck;
 import org.vmmagic.pragma.Uninterruptible;
@@ -41,6 +48,21 @@ import org.vmmagic.unboxed.Word;
 
 /**
  * Implementation of thin locks.
+ * <p>
+ * Objects are biased to the first thread that locks them.  The owner of a
+ * bias locks and unlocks the object with plain stores, so taking a bias
+ * away from it normally needs a pair handshake with the owner.  To keep
+ * this cheap for types whose instances are routinely handed between
+ * threads, a biased lock word also records the bias epoch of the object's
+ * type (see {@link RVMType#getBiasEpoch()}).  Once biases on instances of a
+ * type have been revoked <code>-X:vm:biasedLockingBulkRebiasThreshold</code>
+ * times, the type's epoch is bumped while all mutators are stopped.  From
+ * then on, every thread, including the owner, updates a lock word with a
+ * stale epoch with a CAS, so such a bias can be taken over or revoked
+ * without a handshake.  If revocations keep happening (reaching
+ * <code>-X:vm:biasedLockingBulkRevokeThreshold</code> within
+ * <code>-X:vm:biasedLockingDecayTime</code> of the bulk rebias), biasing is
+ * disabled for the type altogether.
  */
 @Uninterruptible
 public final class ThinLock {
@@ -53,9 +75,9 @@ public final class ThinLock {
   @Entrypoint
   public static void inlineLock(Object o, Offset lockOffset) {
     Word old = Magic.prepareWord(o, lockOffset); // FIXME: bad for PPC?
-    Word id = old.and(TL_THREAD_ID_MASK.or(TL_STAT_MASK));
+    Word id = old.and(TL_THREAD_ID_MASK.or(TL_STAT_MASK).or(TL_EPOCH_MASK));
     Word tid = Word.fromIntSignExtend(RVMThread.getCurrentThread().getLockingId());
-    if (id.EQ(tid)) {
+    if (id.EQ(tid.or(biasEpochBits(Magic.getObjectType(o))))) {
       Word changed = old.plus(TL_LOCK_COUNT_UNIT);
       if (!changed.and(TL_LOCK_COUNT_MASK).isZero()) {
         setDedicatedU16(o, lockOffset, changed);
@@ -77,9 +99,9 @@ public final class ThinLock {
   @Entrypoint
   public static void inlineUnlock(Object o, Offset lockOffset) {
     Word old = Magic.prepareWord(o, lockOffset); // FIXME: bad for PPC?
-    Word id = old.and(TL_THREAD_ID_MASK.or(TL_STAT_MASK));
+    Word id = old.and(TL_THREAD_ID_MASK.or(TL_STAT_MASK).or(TL_EPOCH_MASK));
     Word tid = Word.fromIntSignExtend(RVMThread.getCurrentThread().getLockingId());
-    if (id.EQ(tid)) {
+    if (id.EQ(tid.or(biasEpochBits(Magic.getObjectType(o))))) {
       if (!old.and(TL_LOCK_COUNT_MASK).isZero()) {
         setDedicatedU16(o, lockOffset, old.minus(TL_LOCK_COUNT_UNIT));
         return;
@@ -106,14 +128,16 @@ public final class ThinLock {
       Word stat = old.and(TL_STAT_MASK);
       boolean tryToInflate = false;
       if (stat.EQ(TL_STAT_BIASABLE)) {
+        RVMType type = Magic.getObjectType(o);
+        Word epoch = biasEpochBits(type);
         Word id = old.and(TL_THREAD_ID_MASK);
         if (id.isZero()) {
-          if (ENABLE_BIASED_LOCKING) {
+          if (ENABLE_BIASED_LOCKING && !type.isBiasingDisabled()) {
             // lock is unbiased, bias it in our favor and grab it
             if (Synchronization.tryCompareAndSwap(
                   o, lockOffset,
                   old,
-                  old.or(threadId).plus(TL_LOCK_COUNT_UNIT))) {
+                  old.or(threadId).or(epoch).plus(TL_LOCK_COUNT_UNIT))) {
               Magic.isync();
               return;
             }
@@ -128,6 +152,22 @@ public final class ThinLock {
               return;
             }
           }
+        } else if (old.and(TL_EPOCH_MASK).NE(epoch)) {
+          // the bias is stale, so the owner also changes the lock word
+          // with a CAS and we can take the bias away without a handshake.
+          if (old.and(TL_LOCK_COUNT_MASK).isZero() && !type.isBiasingDisabled()) {
+            // nobody holds it, rebias it in our favor and grab it
+            Word changed = old.and(TL_THREAD_ID_MASK.or(TL_EPOCH_MASK).not())
+              .or(threadId).or(epoch).plus(TL_LOCK_COUNT_UNIT);
+            if (Synchronization.tryCompareAndSwap(o, lockOffset, old, changed)) {
+              if (id.NE(threadId)) type.recordBiasRebias();
+              Magic.isync();
+              return;
+            }
+          } else if (Synchronization.tryCompareAndSwap(
+                       o, lockOffset, old, biasBitsToThinBits(old))) {
+            continue; // don't spin, since it's thin now
+          }
         } else if (id.EQ(threadId)) {
           // lock is biased in our favor
           Word changed = old.plus(TL_LOCK_COUNT_UNIT);
@@ -139,6 +179,7 @@ public final class ThinLock {
           }
         } else {
           if (casFromBiased(o, lockOffset, old, biasBitsToThinBits(old), cnt)) {
+            considerBulkRebias(type);
             continue; // don't spin, since it's thin now
           }
         }
@@ -201,8 +242,14 @@ public final class ThinLock {
           if (old.and(TL_LOCK_COUNT_MASK).isZero()) {
             RVMThread.raiseIllegalMonitorStateException("biased unlocking: we own this object but the count is already zero", o);
           }
-          setDedicatedU16(o, lockOffset, old.minus(TL_LOCK_COUNT_UNIT));
-          return;
+          if (old.and(TL_EPOCH_MASK).EQ(biasEpochBits(Magic.getObjectType(o)))) {
+            setDedicatedU16(o, lockOffset, old.minus(TL_LOCK_COUNT_UNIT));
+            return;
+          } else if (Synchronization.tryCompareAndSwap(
+                       o, lockOffset, old, old.minus(TL_LOCK_COUNT_UNIT))) {
+            // the bias is stale, so other threads may be changing the lock word
+            return;
+          }
         } else {
           RVMThread.raiseIllegalMonitorStateException("biased unlocking: we don't own this object", o);
         }
@@ -343,9 +390,14 @@ public final class ThinLock {
                                       int cnt) {
     RVMThread me = RVMThread.getCurrentThread();
     Word id = oldLockWord.and(TL_THREAD_ID_MASK);
+    RVMType type = Magic.getObjectType(o);
     if (id.isZero()) {
       if (false) VM.sysWriteln("id is zero - easy case.");
       return Synchronization.tryCompareAndSwap(o, lockOffset, oldLockWord, changed);
+    } else if (oldLockWord.and(TL_EPOCH_MASK).NE(biasEpochBits(type))) {
+      // the bias is stale, so its owner only changes the lock word with a
+      // CAS, too.
+      return Synchronization.tryCompareAndSwap(o, lockOffset, oldLockWord, changed);
     } else {
       if (false) VM.sysWriteln("id = ",id);
       int slot = id.toInt() >> TL_THREAD_ID_SHIFT;
@@ -384,6 +436,7 @@ public final class ThinLock {
           o, lockOffset, oldLockWord, changed);
         owner.endPairHandshake();
         if (false) VM.sysWriteln("that worked.");
+        if (result) type.recordBiasRevocation();
 
         return result;
       }
@@ -592,6 +645,79 @@ public final class ThinLock {
     }
   }
 
+  ////////////////////////////////////////////////////////////////
+  /// Support for bulk rebiasing and revocation
+  ////////////////////////////////////////////////////////////////
+
+  /**
+   * @param type the type of a locked object
+   * @return the current bias epoch of the type, positioned as in a lock word
+   */
+  @Inline
+  @Uninterruptible
+  private static Word biasEpochBits(RVMType type) {
+    return Word.fromIntZeroExtend(type.getBiasEpoch()).lsh(TL_EPOCH_SHIFT);
+  }
+
+  /**
+   * Called after a bias on an instance of the given type was revoked with
+   * a handshake.  Once the type has seen enough revocations, all of its
+   * biases are invalidated at once by moving it to a new epoch; if it
+   * keeps revoking before the bulk rebias decays, biasing is disabled for
+   * the type.
+   *
+   * @param type the type whose instance had its bias revoked
+   */
+  @NoInline
+  @Unpreemptible
+  private static void considerBulkRebias(RVMType type) {
+    int rebiasThreshold = VM.biasedLockingBulkRebiasThreshold;
+    int revocations = type.getRecentBiasRevocations();
+    if (rebiasThreshold <= 0 || revocations < rebiasThreshold || type.isBiasingDisabled()) {
+      return;
+    }
+    RVMThread me = RVMThread.getCurrentThread();
+    if (me.isCollectorThread() || me.ignoreHandshakesAndGC()) {
+      return; // can't stop the world from here
+    }
+    long lastBulkRebias = type.getLastBulkRebiasTime();
+    if (lastBulkRebias == 0) {
+      bulkRebias(type, false);
+    } else if (Time.nanoTime() - lastBulkRebias >= VM.biasedLockingDecayTime * 1000000L) {
+      // the last bulk rebias has been good for long enough, start afresh
+      type.decayBiasRevocations();
+    } else if (VM.biasedLockingBulkRevokeThreshold > 0 &&
+               revocations >= VM.biasedLockingBulkRevokeThreshold) {
+      bulkRebias(type, true);
+    }
+  }
+
+  /**
+   * Stops all mutators and moves the given type to a new bias epoch, which
+   * makes every existing bias on its instances stale.  Mutators can't be
+   * in the middle of updating a biased lock word of the type without a CAS
+   * at this point, since there are no yieldpoints in the locking fast
+   * paths.
+   *
+   * @param type the type to rebias
+   * @param revoke whether to also disable biasing for the type
+   */
+  @NoInline
+  @Unpreemptible
+  private static void bulkRebias(RVMType type, boolean revoke) {
+    RVMThread.hardHandshakeSuspend();
+    // some other thread may have beaten us to it
+    if (!type.isBiasingDisabled()) {
+      int epoch = (type.getBiasEpoch() + 1) & (TL_NUM_EPOCHS - 1);
+      if (revoke) {
+        type.bulkRevokeBiases(epoch);
+      } else if (type.getLastBulkRebiasTime() == 0) {
+        type.bulkRebias(epoch, Time.nanoTime());
+      }
+    }
+    RVMThread.hardHandshakeResume();
+  }
+
   ///////////////////////////////////////////////////////////////
   /// Support for debugging and performance tuning ///
   ///////////////////////////////////////////////////////////////
@@ -618,6 +744,40 @@ public final class ThinLock {
     slowLocks = 0;
   }
 
+  /**
+   * Set up callbacks to report biased locking statistics.
+   */
+  @Interruptible
+  static void boot() {
+    if (VM.reportBiasedLocking) {
+      Callbacks.addExitMonitor(new BiasedLockingExitMonitor());
+    }
+  }
+
+  /**
+   * Report, for each type whose instances had their biases taken away,
+   * how often that happened and what bulk operations were performed.
+   */
+  private static final class BiasedLockingExitMonitor implements Callbacks.ExitMonitor {
+    @Override
+    public void notifyExit(int value) {
+      VM.sysWriteln("Biased locking (revocations, rebiases, bulk rebiases):");
+      for (int i = 1; i <= RVMType.numTypes(); i++) {
+        RVMType type = RVMType.getType(i);
+        if (type == null ||
+            (type.getBiasRevocations() == 0 && type.getBiasRebiases() == 0)) {
+          continue;
+        }
+        VM.sysWrite("  ");
+        VM.sysWrite(type.getDescriptor());
+        VM.sysWrite(": ", type.getBiasRevocations());
+        VM.sysWrite(", ", type.getBiasRebiases());
+        VM.sysWrite(", ", type.getBulkRebiases());
+        VM.sysWriteln(type.isBiasingDisabled() ? ", biasing disabled" : "");
+      }
+    }
+  }
+
   static void notifyExit(int value) {
     if (!STATS) return;
     VM.sysWrite("ThinLocks: ");
@@ -0,0 +1,233 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.util;
+
+import static org.jikesrvm.runtime.UnboxedSizeConstants.LOG_BYTES_IN_ADDRESS;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.Synchronization;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A hash map with entirely immutable buckets that can be read and added to
+ * by several threads at once.  Lookups never lock, and new entries are
+ * published by compare-and-swapping them onto the head of their chain.
+ * Entries can't be removed or replaced.
+ * <p>
+ * Growing the map is done under a lock, one chain at a time: each chain of
+ * the old bucket array is frozen by swapping a forwarding bucket onto it,
+ * which keeps the frozen chain and points to the new bucket array, and is
+ * then copied.  Threads that run into a forwarding bucket search the frozen
+ * chain and then carry on in the new bucket array, so neither lookups nor
+ * additions have to wait for the growth to finish.
+ */
+public final class ConcurrentImmutableEntryHashMapRVM<K, V> {
+
+  private static final int DEFAULT_SIZE = 7;
+  private static final int LOAD = 3;
+
+  static class Bucket<K, V> {
+    final K key;
+    final V value;
+    final int hash;
+    final Bucket<K, V> next;
+
+    Bucket(K key, V value, int hash, Bucket<K, V> next) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+
+  /**
+   * Replaces a chain of a bucket array that has been superseded by a larger one.
+   */
+  static final class Forward<K, V> extends Bucket<K, V> {
+    /** The bucket array entries that are added from now on go into */
+    final Bucket<K, V>[] target;
+
+    Forward(Bucket<K, V> frozen, Bucket<K, V>[] target) {
+      super(null, null, 0, frozen);
+      this.target = target;
+    }
+  }
+
+  /** The current bucket array, replaced once a growth has finished */
+  private Bucket<K, V>[] buckets;
+
+  /** Approximate number of entries: only used to decide when to grow */
+  private final int[] numElems = new int[1];
+
+  public ConcurrentImmutableEntryHashMapRVM() {
+    this(DEFAULT_SIZE);
+  }
+
+  public ConcurrentImmutableEntryHashMapRVM(int size) {
+    buckets = newBucketArray(size);
+  }
+
+  public int size() {
+    return numElems[0];
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the value for the key, or {@code null} if there is none
+   */
+  public V get(K key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = key.hashCode();
+    Bucket<K, V>[] table = buckets;
+    while (true) {
+      Bucket<K, V> head = table[bucketIndex(hash, table.length)];
+      if (head instanceof Forward) {
+        V value = find(head.next, key, hash);
+        if (value != null) return value;
+        table = ((Forward<K, V>) head).target;
+      } else {
+        return find(head, key, hash);
+      }
+    }
+  }
+
+  /**
+   * Adds an entry, unless the map already has one for the key.
+   *
+   * @param key the key, not {@code null}
+   * @param value the value, not {@code null}
+   * @return the value that was already in the map for the key, or
+   *  {@code null} if the given value was added
+   */
+  public V putIfAbsent(K key, V value) {
+    if (VM.VerifyAssertions) VM._assert(key != null && value != null);
+    int hash = key.hashCode();
+    Bucket<K, V>[] table = buckets;
+    while (true) {
+      int idx = bucketIndex(hash, table.length);
+      Bucket<K, V> head = table[idx];
+      if (head instanceof Forward) {
+        V existing = find(head.next, key, hash);
+        if (existing != null) return existing;
+        table = ((Forward<K, V>) head).target;
+        continue;
+      }
+      V existing = find(head, key, hash);
+      if (existing != null) return existing;
+      if (tryCompareAndSwap(table, idx, head, new Bucket<K, V>(key, value, hash, head))) {
+        break;
+      }
+    }
+    int elems = incrementNumElems();
+    Bucket<K, V>[] current = buckets;
+    if (elems > current.length * LOAD && growMapAllowed(current)) {
+      growMap(current);
+    }
+    return null;
+  }
+
+  private V find(Bucket<K, V> cur, K key, int hash) {
+    while (cur != null) {
+      if (cur.hash == hash && key.equals(cur.key)) {
+        return cur.value;
+      }
+      cur = cur.next;
+    }
+    return null;
+  }
+
+  private static int bucketIndex(int hash, int divisor) {
+    return (hash & 0x7fffffff) % divisor;
+  }
+
+  /**
+   * Advise against growing the buckets if they are immortal, as it will lead
+   * to multiple sets of buckets that will be scanned.
+   *
+   * @param table the bucket array that would be replaced
+   * @return whether it is allowed to grow the map
+   */
+  private static boolean growMapAllowed(Object table) {
+    return !VM.runningVM || !MemoryManager.isImmortal(table);
+  }
+
+  /**
+   * Replaces the given bucket array by one twice its size, unless another
+   * thread has done so already.
+   *
+   * @param old the bucket array that has become too small
+   */
+  private synchronized void growMap(Bucket<K, V>[] old) {
+    if (buckets != old) return;
+    Bucket<K, V>[] newBuckets = newBucketArray(old.length * 2 + 1);
+    for (int i = 0; i < old.length; i++) {
+      // freeze the chain, then copy it; entries added in the meantime are
+      // added to the new buckets by whoever adds them
+      Bucket<K, V> head;
+      do {
+        head = old[i];
+        if (VM.VerifyAssertions) VM._assert(!(head instanceof Forward));
+      } while (!tryCompareAndSwap(old, i, head, new Forward<K, V>(head, newBuckets)));
+      for (Bucket<K, V> cur = head; cur != null; cur = cur.next) {
+        int idx = bucketIndex(cur.hash, newBuckets.length);
+        Bucket<K, V> newHead;
+        do {
+          newHead = newBuckets[idx];
+        } while (!tryCompareAndSwap(newBuckets, idx, newHead, new Bucket<K, V>(cur.key, cur.value, cur.hash, newHead)));
+      }
+    }
+    buckets = newBuckets;
+  }
+
+  /**
+   * Atomically replaces an element of a bucket array.
+   *
+   * @param table the bucket array
+   * @param idx the index of the element
+   * @param expected the value the element is expected to have
+   * @param update the new value
+   * @return whether the element had the expected value and was replaced
+   */
+  private static <K, V> boolean tryCompareAndSwap(Bucket<K, V>[] table, int idx, Bucket<K, V> expected, Bucket<K, V> update) {
+    if (VM.runningVM) {
+      // make the fields of the new bucket visible before the bucket itself
+      Magic.storeStoreBarrier();
+      return Synchronization.tryCompareAndSwap(table, Offset.fromIntZeroExtend(idx << LOG_BYTES_IN_ADDRESS), expected, update);
+    } else {
+      synchronized (table) {
+        if (table[idx] != expected) return false;
+        table[idx] = update;
+        return true;
+      }
+    }
+  }
+
+  private int incrementNumElems() {
+    if (VM.runningVM) {
+      return Synchronization.fetchAndAdd(numElems, Offset.zero(), 1) + 1;
+    } else {
+      synchronized (numElems) {
+        return ++numElems[0];
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> Bucket<K, V>[] newBucketArray(int size) {
+    return new Bucket[size];
+  }
+}
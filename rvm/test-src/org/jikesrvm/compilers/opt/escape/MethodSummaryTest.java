@@ -74,4 +74,54 @@ public class MethodSummaryTest {
     }
   }
 
+  @Test
+  public void parametersMayEscapeTheMethodAndBeWrittenInNewlyCreatedMethodSummaries() {
+    for (int i = 0; i < 62; i++) {
+      assertThat(summary.parameterMayEscapeMethod(i), is(true));
+      assertThat(summary.parameterMayBeWritten(i), is(true));
+    }
+  }
+
+  @Test
+  public void methodParametersLessThanOrEqualTo62CanBeSetToNotEscapeTheMethod() {
+    for (int i = 0; i < 62; i++) {
+      summary.setParameterMayEscapeMethod(i, false);
+      assertThat(summary.parameterMayEscapeMethod(i), is(false));
+      summary.setParameterMayEscapeMethod(i, true);
+      assertThat(summary.parameterMayEscapeMethod(i), is(true));
+    }
+  }
+
+  @Test
+  public void methodParametersLessThanOrEqualTo62CanBeSetToNotBeWritten() {
+    for (int i = 0; i < 62; i++) {
+      summary.setParameterMayBeWritten(i, false);
+      assertThat(summary.parameterMayBeWritten(i), is(false));
+      summary.setParameterMayBeWritten(i, true);
+      assertThat(summary.parameterMayBeWritten(i), is(true));
+    }
+  }
+
+  @Test
+  public void methodParametersGreaterThan62AlwaysEscapeTheMethodAndMayBeWritten() {
+    for (int i = 63; i < 255; i++) {
+      summary.setParameterMayEscapeMethod(i, false);
+      summary.setParameterMayBeWritten(i, false);
+      assertThat(summary.parameterMayEscapeMethod(i), is(true));
+      assertThat(summary.parameterMayBeWritten(i), is(true));
+    }
+  }
+
+  @Test
+  public void perParameterFactsAreIndependent() {
+    summary.setParameterMayEscapeThread(3, false);
+    summary.setParameterMayEscapeMethod(3, false);
+    assertThat(summary.parameterMayBeWritten(3), is(true));
+    summary.setParameterMayBeWritten(4, false);
+    assertThat(summary.parameterMayEscapeMethod(4), is(true));
+    assertThat(summary.parameterMayEscapeThread(4), is(true));
+    assertThat(summary.parameterMayBeWritten(3), is(true));
+    assertThat(summary.parameterMayEscapeMethod(3), is(false));
+  }
+
 }
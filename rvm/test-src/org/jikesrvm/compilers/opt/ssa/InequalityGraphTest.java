@@ -0,0 +1,92 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.compilers.opt.ssa;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class InequalityGraphTest {
+
+  private static final Integer ZERO = 0;
+
+  /**
+   * <pre>
+   *   i0 = 0
+   *   loop:
+   *   i1 = phi(i0, i3)
+   *   if (i1 &lt; a.length) {
+   *     i2 = pi(i1)
+   *     a[i2]
+   *     i3 = i2 + 1
+   *     goto loop
+   *   }
+   * </pre>
+   */
+  private static InequalityGraph countingLoop(boolean lower, String a) {
+    InequalityGraph g = new InequalityGraph(lower);
+    g.addEdge(ZERO, "i1", 0);
+    g.addEdge("i3", "i1", 0);
+    g.markPhi("i1");
+    g.addEdge("i1", "i2", 0);
+    if (!lower) g.addEdge(a, "i2", -1);
+    g.addEdge("i2", "i3", 1);
+    return g;
+  }
+
+  @Test
+  public void testUpperBoundFromBranch() {
+    InequalityGraph upper = countingLoop(false, "a");
+    assertTrue(upper.prove("a", "i2", -1));
+    assertFalse(upper.prove("a", "i2", -2));
+    assertFalse(upper.prove("b", "i2", -1));
+  }
+
+  @Test
+  public void testPhiIsNotBoundedByOneOperand() {
+    InequalityGraph upper = countingLoop(false, "a");
+    assertFalse(upper.prove("a", "i1", -1));
+  }
+
+  @Test
+  public void testLowerBoundAroundLoop() {
+    InequalityGraph lower = countingLoop(true, "a");
+    assertTrue(lower.prove(ZERO, "i2", 0));
+    assertTrue(lower.prove(ZERO, "i1", 0));
+    assertFalse(lower.prove(ZERO, "i1", 1));
+  }
+
+  @Test
+  public void testConstants() {
+    InequalityGraph lower = new InequalityGraph(true);
+    lower.addEdge(10, "a", 0);
+    assertTrue(lower.prove(ZERO, "a", 10));
+    assertFalse(lower.prove(ZERO, "a", 11));
+
+    InequalityGraph upper = new InequalityGraph(false);
+    upper.addEdge(10, "x", -1);
+    assertTrue(upper.prove(9, "x", 0));
+    assertFalse(upper.prove(8, "x", 0));
+  }
+
+  @Test
+  public void testAmplifyingCycleIsNotProven() {
+    // i1 = phi(0, i2), i2 = i1 + 1: i1 grows without bound
+    InequalityGraph upper = new InequalityGraph(false);
+    upper.addEdge(ZERO, "i1", 0);
+    upper.addEdge("i2", "i1", 0);
+    upper.markPhi("i1");
+    upper.addEdge("i1", "i2", 1);
+    assertFalse(upper.prove(ZERO, "i1", 100));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentImmutableEntryHashMapRVMTest {
+
+  private static final String TEST1 = "Test1";
+  private static final String TEST2 = "Test2";
+
+  private ConcurrentImmutableEntryHashMapRVM<Integer, String> map;
+
+  @Before
+  public void initializeMap() {
+    map = new ConcurrentImmutableEntryHashMapRVM<Integer, String>(5);
+  }
+
+  @Test
+  public void testGet() {
+    map.putIfAbsent(0, TEST1);
+    map.putIfAbsent(1, TEST2);
+    assertEquals(TEST2, map.get(1));
+    assertNull(map.get(2));
+  }
+
+  @Test
+  public void testGetNullKey() {
+    assertNull(map.get(null));
+  }
+
+  @Test
+  public void testPutIfAbsentKeepsFirstValue() {
+    assertNull(map.putIfAbsent(0, TEST1));
+    assertEquals(TEST1, map.putIfAbsent(0, TEST2));
+    assertEquals(TEST1, map.get(0));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void testGrowth() {
+    for (int i = 0; i < 1000; i++) {
+      assertNull(map.putIfAbsent(i, Integer.toString(i)));
+    }
+    assertEquals(1000, map.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Integer.toString(i), map.get(i));
+    }
+  }
+
+  @Test
+  public void testConcurrentPutIfAbsent() throws InterruptedException {
+    final int numThreads = 8;
+    final int numKeys = 5000;
+    final String[][] results = new String[numThreads][numKeys];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int id = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < numKeys; i++) {
+            String mine = new String("value" + i);
+            String existing = map.putIfAbsent(i, mine);
+            results[id][i] = existing == null ? mine : existing;
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numKeys, map.size());
+    for (int i = 0; i < numKeys; i++) {
+      String winner = map.get(i);
+      assertNotNull(winner);
+      for (int t = 0; t < numThreads; t++) {
+        assertSame(winner, results[t][i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.basic.stats;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * This "test" measures how long it takes several threads to load all the
+ * classes of a set of jars at once, each thread through its own class
+ * loader.  Loading parses the class files, so it mostly stresses the
+ * interning of the atoms of their constant pools.
+ */
+public class ParallelClassLoading {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Expect at least 2 arguments. <threads> <jar>...");
+      System.exit(1);
+    }
+    final int numThreads = Integer.parseInt(args[0]);
+    final URL[] urls = new URL[args.length - 1];
+    final List<String> classNames = new ArrayList<String>();
+    for (int i = 1; i < args.length; i++) {
+      File file = new File(args[i]);
+      if (!file.exists()) {
+        System.err.println("Jar " + args[i] + " does not exist.");
+        System.exit(2);
+      }
+      urls[i - 1] = file.toURI().toURL();
+      addClassNames(file, classNames);
+    }
+
+    final int[] loaded = new int[numThreads];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int id = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          // no parent, so that every thread defines its own copy of each class
+          ClassLoader loader = new URLClassLoader(urls, null);
+          for (String name : classNames) {
+            try {
+              Class.forName(name, false, loader);
+              loaded[id]++;
+            } catch (Throwable e) {
+              // classes that can't be loaded outside the boot class path are skipped
+            }
+          }
+        }
+      };
+    }
+
+    final long start = System.currentTimeMillis();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    final long time = System.currentTimeMillis() - start;
+
+    int total = 0;
+    for (int count : loaded) {
+      total += count;
+    }
+    System.out.println("Threads: " + numThreads);
+    System.out.println("Classes Loaded: " + total);
+    System.out.println("Load Time: " + time);
+  }
+
+  private static void addClassNames(File file, List<String> classNames) throws Exception {
+    JarFile jar = new JarFile(file);
+    try {
+      for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements();) {
+        String name = e.nextElement().getName();
+        if (name.endsWith(".class")) {
+          classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        }
+      }
+    } finally {
+      jar.close();
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * A microbenchmark of the reference write barrier.  It times stores of
+ * references into fields and array elements of long lived (mature)
+ * objects, both of young (nursery) objects and of other mature objects,
+ * and stores into young objects, which a generational barrier filters
+ * out.  Comparing the times reported for builds with different barriers
+ * (for example with and without card marking) shows the cost of each.<p>
+ *
+ * Each kind of store is run for a number of warm up iterations, so the
+ * methods are compiled by the optimizing compiler, before the timed
+ * iterations.  Afterwards enough is allocated to force nursery collections,
+ * and the values stored are read back, so a barrier that fails to remember
+ * a store from a mature object into a nursery object is caught.
+ */
+class WriteBarrierBenchmark {
+
+  static final class Holder {
+    Object f0, f1, f2, f3;
+  }
+
+  static final class Target {
+    final int id;
+
+    Target(int id) {
+      this.id = id;
+    }
+  }
+
+  static int warmup;
+  static int iterations;
+  static final int OBJECTS = 1024;
+  static final int STORES = 64 * 1024;
+  static final int CHURN = 1024 * 1024;
+
+  static Holder[] mature;
+  static Object[] matureArray;
+  static Target[] targets;
+  static Holder[] young;
+  static int nextId;
+  static Object sink;
+  static boolean success = true;
+
+  public static void main(String[] args) {
+    boolean base = true;
+    if (args.length == 0) {
+      System.out.println("No argument.  Assuming base");
+    } else if (args[0].compareTo("opt") == 0 || args[0].compareTo("perf") == 0) {
+      base = false;
+    }
+    warmup = base ? 5 : 20;
+    iterations = base ? 10 : 50;
+
+    mature = new Holder[OBJECTS];
+    for (int i = 0; i < OBJECTS; i++) {
+      mature[i] = new Holder();
+    }
+    matureArray = new Object[STORES];
+    targets = new Target[OBJECTS];
+    for (int i = 0; i < OBJECTS; i++) {
+      targets[i] = new Target(nextId++);
+    }
+    /* Promote everything allocated so far */
+    System.gc();
+
+    run("Field, mature to nursery", 0);
+    run("Field, mature to mature", 1);
+    run("Field, nursery to any", 2);
+    run("Array, mature to nursery", 3);
+    run("Array, mature to mature", 4);
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  /**
+   * Warm up and then time one kind of store, then check the values stored
+   * survived the collections that follow.
+   *
+   * @param name The name to report the time under
+   * @param kind The kind of store
+   */
+  static void run(String name, int kind) {
+    int last = -1;
+    for (int i = 0; i < warmup; i++) {
+      last = iterate(kind);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      last = iterate(kind);
+    }
+    long elapsed = System.nanoTime() - start;
+    double perStore = (double) elapsed / ((double) iterations * STORES);
+    System.out.println(name + ": " + chop(perStore) + " ns/store");
+    churn();
+    verify(name, kind, last);
+  }
+
+  /**
+   * Run one iteration of a kind of store.
+   *
+   * @param kind The kind of store
+   * @return The id of the object stored
+   */
+  static int iterate(int kind) {
+    switch (kind) {
+      case 0: {
+        Target value = new Target(nextId++);
+        storeFields(mature, value);
+        return value.id;
+      }
+      case 1:
+        storeFields(mature, targets[OBJECTS - 1]);
+        return targets[OBJECTS - 1].id;
+      case 2: {
+        young = new Holder[OBJECTS];
+        for (int i = 0; i < OBJECTS; i++) {
+          young[i] = new Holder();
+        }
+        storeFields(young, targets[0]);
+        return targets[0].id;
+      }
+      case 3: {
+        Target value = new Target(nextId++);
+        storeElements(matureArray, value);
+        return value.id;
+      }
+      default:
+        storeElements(matureArray, targets[0]);
+        return targets[0].id;
+    }
+  }
+
+  static void storeFields(Holder[] holders, Object value) {
+    for (int i = 0; i < STORES; i++) {
+      Holder h = holders[i & (OBJECTS - 1)];
+      switch (i & 3) {
+        case 0: h.f0 = value; break;
+        case 1: h.f1 = value; break;
+        case 2: h.f2 = value; break;
+        default: h.f3 = value; break;
+      }
+    }
+  }
+
+  static void storeElements(Object[] array, Object value) {
+    for (int i = 0; i < array.length; i++) {
+      array[i] = value;
+    }
+  }
+
+  /**
+   * Allocate enough short lived objects to force nursery collections.
+   */
+  static void churn() {
+    for (int i = 0; i < CHURN; i++) {
+      sink = new int[16];
+    }
+    sink = null;
+  }
+
+  /**
+   * Check that every slot stored into by the last iteration of a kind of
+   * store still refers to the object stored.
+   *
+   * @param name The name of the kind of store
+   * @param kind The kind of store
+   * @param id The id of the object stored
+   */
+  static void verify(String name, int kind, int id) {
+    if (kind <= 2) {
+      Holder[] holders = kind == 2 ? young : mature;
+      for (int i = 0; i < OBJECTS; i++) {
+        Holder h = holders[i];
+        Object value;
+        switch (i & 3) {
+          case 0: value = h.f0; break;
+          case 1: value = h.f1; break;
+          case 2: value = h.f2; break;
+          default: value = h.f3; break;
+        }
+        check(name, i, value, id);
+      }
+    } else {
+      for (int i = 0; i < matureArray.length; i++) {
+        check(name, i, matureArray[i], id);
+      }
+    }
+  }
+
+  static void check(String name, int index, Object value, int id) {
+    if (!(value instanceof Target) || ((Target) value).id != id) {
+      if (success) {
+        System.out.println("FAILED: " + name + ": slot " + index + " lost the object stored");
+      }
+      success = false;
+    }
+  }
+
+  static double chop(double x) {
+    return ((int) (1000 * x)) / 1000.0;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import static org.mmtk.utility.heap.layout.VMLayoutConstants.LOG_MMAP_CHUNK_BYTES;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mmtk.harness.Harness;
+import org.mmtk.harness.scheduler.MMTkThread;
+import org.mmtk.harness.tests.BaseMMTkTest;
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.generational.Gen;
+import org.mmtk.plan.generational.immix.GenImmix;
+import org.mmtk.utility.Conversions;
+import org.mmtk.utility.options.Options;
+
+/**
+ * Checks which spaces get the initial heap to pre-touch on the 64-bit heap
+ * layout, where every space is contiguous: the nursery, up to its largest
+ * size, and then the mature space, but not the immortal space that was
+ * created before them.
+ */
+public class PreTouchContextTest64 extends BaseMMTkTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    Harness.initArchitecture(Arrays.asList("bits=64"));
+    Harness.init("plan=org.mmtk.plan.generational.immix.GenImmix", "bits=64", "initHeap=48M", "maxHeap=64M");
+  }
+
+  @Test
+  public void testNurseryThenMatureSpace() throws Throwable {
+    Thread t = new MMTkThread() {
+      @Override
+      public void run() {
+        Assert.assertTrue(SpaceDescriptor.isContiguous(Plan.immortalSpace.getDescriptor()));
+        Assert.assertTrue(SpaceDescriptor.isContiguous(Gen.nurserySpace.getDescriptor()));
+        Assert.assertTrue(SpaceDescriptor.isContiguous(GenImmix.immixSpace.getDescriptor()));
+
+        PreTouchContext.chooseRanges();
+        int nurseryChunks = Conversions.pagesToBytes(Options.nurserySize.getMaxNursery())
+            .toWord().rshl(LOG_MMAP_CHUNK_BYTES).toInt();
+        int initialChunks = HeapGrowthManager.getInitialHeapSize().toWord().rshl(LOG_MMAP_CHUNK_BYTES).toInt();
+        Assert.assertTrue(nurseryChunks < initialChunks);
+
+        Assert.assertEquals(2, PreTouchContext.getRangeCount());
+        Assert.assertTrue(PreTouchContext.getRangeStart(0).EQ(Gen.nurserySpace.getStart()));
+        Assert.assertEquals(nurseryChunks, PreTouchContext.getRangeChunks(0));
+        Assert.assertTrue(PreTouchContext.getRangeStart(1).EQ(GenImmix.immixSpace.getStart()));
+        Assert.assertEquals(initialChunks - nurseryChunks, PreTouchContext.getRangeChunks(1));
+        for (int i = 0; i < PreTouchContext.getRangeCount(); i++) {
+          Assert.assertFalse(PreTouchContext.getRangeStart(i).EQ(Plan.immortalSpace.getStart()));
+        }
+      }
+    };
+    runMMTkThread(t);
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import static org.jikesrvm.compilers.opt.ir.Operators.BOUNDS_CHECK;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Enumeration;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanElement;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.jikesrvm.compilers.opt.ir.IR;
+import org.jikesrvm.compilers.opt.ir.Instruction;
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Runs array bounds check elimination (SSA_ABCD) on real methods.  The
+ * HIR of each method is built with and without the pass to count the
+ * bounds checks it removes, and the methods are then compiled with it
+ * and run: a check that can fail, including one whose index wraps around
+ * from Integer.MAX_VALUE, must still throw.<p>
+ *
+ * This test reaches into the internals of the VM, so it will only run on
+ * Jikes RVM.  Without the opt compiler there is nothing to test.
+ */
+public class BoundsCheckElimination {
+
+  private static boolean success = true;
+
+  @NoInline
+  static int sum(int[] a) {
+    int s = 0;
+    for (int i = 0; i < a.length; i++) {
+      s += a[i];
+    }
+    return s;
+  }
+
+  @NoInline
+  static int sumDown(int[] a) {
+    int s = 0;
+    for (int i = a.length - 1; i >= 0; i--) {
+      s += a[i];
+    }
+    return s;
+  }
+
+  @NoInline
+  static int sumInclusive(int[] a) {
+    int s = 0;
+    for (int i = 0; i <= a.length; i++) {
+      s += a[i];
+    }
+    return s;
+  }
+
+  @NoInline
+  static int pastEnd(int[] a) {
+    return a[a.length];
+  }
+
+  @NoInline
+  static int next(int[] a, int i) {
+    if (i >= 0) {
+      int j = i + 1;
+      if (j < a.length) {
+        // j wraps to Integer.MIN_VALUE when i is Integer.MAX_VALUE
+        return a[j];
+      }
+    }
+    return -1;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (VM.BuildForOptCompiler) {
+      run();
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static void run() throws Exception {
+    checkRemoved("sum", int[].class);
+    checkRemoved("sumDown", int[].class);
+    checkKept("sumInclusive", int[].class);
+    checkKept("pastEnd", int[].class);
+    checkKept("next", int[].class, Integer.TYPE);
+
+    compile("sum", int[].class);
+    compile("sumDown", int[].class);
+    compile("sumInclusive", int[].class);
+    compile("pastEnd", int[].class);
+    compile("next", int[].class, Integer.TYPE);
+
+    int[] a = {1, 2, 3, 4};
+    check("sum", sum(a), 10);
+    check("sumDown", sumDown(a), 10);
+    check("next", next(a, 2), 4);
+    check("next at end", next(a, 3), -1);
+    try {
+      sumInclusive(a);
+      fail("sumInclusive did not throw");
+    } catch (ArrayIndexOutOfBoundsException e) {
+    }
+    try {
+      pastEnd(a);
+      fail("a[a.length] did not throw");
+    } catch (ArrayIndexOutOfBoundsException e) {
+    }
+    try {
+      next(a, Integer.MAX_VALUE);
+      fail("a[Integer.MAX_VALUE + 1] did not throw");
+    } catch (ArrayIndexOutOfBoundsException e) {
+    }
+  }
+
+  /**
+   * Check that ABCD removes every bounds check of a method.
+   *
+   * @param name the name of the method
+   * @param params the types of its parameters
+   */
+  private static void checkRemoved(String name, Class<?>... params) throws Exception {
+    int without = boundsChecks(name, false, params);
+    int with = boundsChecks(name, true, params);
+    if (without == 0) {
+      fail(name + " has no bounds checks to remove");
+    } else if (with != 0) {
+      fail(name + ": " + with + " of " + without + " bounds checks left");
+    }
+  }
+
+  /**
+   * Check that ABCD removes none of the bounds checks of a method.
+   *
+   * @param name the name of the method
+   * @param params the types of its parameters
+   */
+  private static void checkKept(String name, Class<?>... params) throws Exception {
+    int without = boundsChecks(name, false, params);
+    int with = boundsChecks(name, true, params);
+    if (with != without) {
+      fail(name + ": " + (without - with) + " bounds checks that can fail were removed");
+    }
+  }
+
+  private static NormalMethod method(String name, Class<?>... params) throws Exception {
+    Method m = BoundsCheckElimination.class.getDeclaredMethod(name, params);
+    return (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(m);
+  }
+
+  private static OptOptions options(boolean abcd) {
+    OptOptions options = new OptOptions();
+    options.setOptLevel(3);
+    options.SSA_ABCD = abcd;
+    return options;
+  }
+
+  /**
+   * Build the HIR of a method, up to its conversion to LIR, and count its
+   * bounds checks.
+   *
+   * @param name the name of the method
+   * @param abcd whether to run ABCD
+   * @param params the types of its parameters
+   * @return the number of BOUNDS_CHECK instructions left
+   */
+  private static int boundsChecks(String name, boolean abcd, Class<?>... params) throws Exception {
+    OptOptions options = options(abcd);
+    ArrayList<OptimizationPlanElement> hir = new ArrayList<OptimizationPlanElement>();
+    for (OptimizationPlanElement element : OptimizationPlanner.createOptimizationPlan(options)) {
+      if (element.getName().equals("Convert HIR to LIR")) break;
+      hir.add(element);
+    }
+    CompilationPlan plan = new CompilationPlan(method(name, params),
+        hir.toArray(new OptimizationPlanElement[hir.size()]), null, options);
+    IR ir = plan.execute();
+    int checks = 0;
+    for (Enumeration<Instruction> e = ir.forwardInstrEnumerator(); e.hasMoreElements();) {
+      if (e.nextElement().operator() == BOUNDS_CHECK) checks++;
+    }
+    return checks;
+  }
+
+  private static void compile(String name, Class<?>... params) throws Exception {
+    NormalMethod method = method(name, params);
+    OptOptions options = options(true);
+    CompilationPlan plan =
+        new CompilationPlan(method, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    if (RuntimeCompiler.recompileWithOpt(plan) == -1) {
+      fail("could not compile " + method + " with the opt compiler");
+    }
+  }
+
+  private static void check(String what, int actual, int expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    success = false;
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import static org.jikesrvm.classloader.BytecodeConstants.JBC_invokeinterface;
+
+import java.lang.reflect.Method;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.BytecodeStream;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.baseline.BaselineCompiler;
+import org.jikesrvm.compilers.baseline.InlineCaches;
+import org.jikesrvm.compilers.baseline.TypeProfile;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.jikesrvm.compilers.opt.runtimesupport.InlineCacheCounters;
+import org.jikesrvm.mm.mminterface.Barriers;
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Drives interface call sites of baseline code compiled with INLINE_CACHES
+ * through one, two, three and more receiver classes, checking every result
+ * of the calls and the hits and misses the caches count.  The profile of
+ * the megamorphic site is then used to compile it with opt inline caches,
+ * whose counters must record a hit for each call on a cached class and a
+ * miss for each other call, also once the cached classes no longer arrive.
+ * A site is also kept calling through its cached entry after the target
+ * the entry points to has been recompiled, and a site is filled by several
+ * threads at once, which must cache each class at most once.<p>
+ *
+ * This test reaches into the internals of the VM, so it will only run on
+ * Jikes RVM.  It must be run with {@code -X:base:inline_caches=true}.
+ * Collectors with read barriers disable the caches, and the sites must be
+ * baseline compiled for their caches to be filled, so in either case there
+ * is nothing to test.  The calls of each step are too few for the adaptive
+ * system to recompile the sites behind the test's back.
+ */
+public class InlineCacheDispatch {
+
+  private static boolean success = true;
+
+  /** The number of calls made by each receiver in each step */
+  private static final int CALLS = 20;
+
+  interface Shape {
+    int value(int x);
+  }
+
+  static final class A implements Shape {
+    @NoInline
+    public int value(int x) {
+      return x + 1;
+    }
+  }
+
+  static final class B implements Shape {
+    @NoInline
+    public int value(int x) {
+      return x * 2;
+    }
+  }
+
+  static final class C implements Shape {
+    @NoInline
+    public int value(int x) {
+      return x - 3;
+    }
+  }
+
+  static final class D implements Shape {
+    @NoInline
+    public int value(int x) {
+      return x ^ 5;
+    }
+  }
+
+  static final class E implements Shape {
+    @NoInline
+    public int value(int x) {
+      return 7 * x;
+    }
+  }
+
+  private static final Shape a = new A();
+  private static final Shape b = new B();
+  private static final Shape c = new C();
+  private static final Shape d = new D();
+  private static final Shape e = new E();
+
+  @NoInline
+  static int call(Shape s, int x) {
+    return s.value(x);
+  }
+
+  @NoInline
+  static int callRecompiled(Shape s, int x) {
+    return s.value(x);
+  }
+
+  @NoInline
+  static int callRaced(Shape s, int x) {
+    return s.value(x);
+  }
+
+  /**
+   * @param s a receiver
+   * @param x the argument
+   * @return what {@code s.value(x)} must return, worked out without
+   *  dispatching on s
+   */
+  static int expected(Shape s, int x) {
+    if (s == a) return x + 1;
+    if (s == b) return x * 2;
+    if (s == c) return x - 3;
+    if (s == d) return x ^ 5;
+    return 7 * x;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (!BaselineCompiler.options.INLINE_CACHES) {
+      fail("run with -X:base:inline_caches=true");
+    } else if (!Barriers.NEEDS_OBJECT_ALOAD_BARRIER && !Barriers.NEEDS_OBJECT_GETSTATIC_BARRIER) {
+      run();
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static void run() throws Exception {
+    NormalMethod site = method("call", Shape.class, Integer.TYPE);
+    int bci = interfaceCall(site);
+
+    // monomorphic: the first call fills an entry, the rest hit it
+    drive("monomorphic", a);
+    if (!isBaseline(site)) return;
+    checkProfile("monomorphic", site, bci, new Shape[] {a}, new int[] {CALLS - 1}, 1);
+
+    // bimorphic
+    drive("bimorphic", b);
+    checkProfile("bimorphic", site, bci, new Shape[] {a, b}, new int[] {CALLS - 1, CALLS - 1}, 2);
+
+    // trimorphic: the cache is now full
+    drive("trimorphic", c);
+    Shape[] cached = {a, b, c};
+    checkProfile("trimorphic", site, bci, cached, new int[] {CALLS - 1, CALLS - 1, CALLS - 1}, 3);
+
+    // megamorphic: the cached classes keep hitting, the others always miss
+    drive("megamorphic", a, b, c, d, e);
+    int[] hits = {2 * CALLS - 1, 2 * CALLS - 1, 2 * CALLS - 1};
+    checkProfile("megamorphic", site, bci, cached, hits, 3 + 2 * CALLS);
+    checkProfile("megamorphic, uncached classes", site, bci, new Shape[] {d, e}, new int[] {0, 0}, 3 + 2 * CALLS);
+
+    checkRecompiledTarget();
+    checkRace();
+
+    if (VM.BuildForOptCompiler) {
+      checkOptCache(site, bci);
+    }
+  }
+
+  /**
+   * Compile the megamorphic site with opt inline caches and counters, and
+   * check that the classes cached by baseline code hit and the others miss.
+   * Then stop calling with the cached classes, which makes the cache stale:
+   * only the misses may grow.
+   */
+  private static void checkOptCache(NormalMethod site, int bci) {
+    OptOptions options = new OptOptions();
+    options.setOptLevel(2);
+    options.H2L_INLINE_CACHES = true;
+    options.H2L_INLINE_CACHE_COUNTERS = true;
+    CompilationPlan plan =
+        new CompilationPlan(site, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    if (RuntimeCompiler.recompileWithOpt(plan) == -1) {
+      fail("could not compile " + site + " with the opt compiler");
+      return;
+    }
+    int[] counts = InlineCacheCounters.getCounts(site, bci);
+    if (counts == null) {
+      fail("no inline cache was compiled into " + site);
+      return;
+    }
+    check("opt cached classes", counts.length - 1, 3);
+
+    drive("opt megamorphic", a, b, c, d, e);
+    checkCounts("opt megamorphic", site, bci, 3 * CALLS, 2 * CALLS);
+
+    drive("opt stale", d, e);
+    checkCounts("opt stale", site, bci, 3 * CALLS, 4 * CALLS);
+  }
+
+  /**
+   * Fill a site's cache, then recompile the target of the cached entry.
+   * The entry holds the target's TIB offset rather than its code, so the
+   * site must keep hitting and call the recompiled code.
+   */
+  private static void checkRecompiledTarget() throws Exception {
+    NormalMethod site = method("callRecompiled", Shape.class, Integer.TYPE);
+    int bci = interfaceCall(site);
+    for (int i = 0; i < CALLS; i++) {
+      check("before recompiling the target", callRecompiled(a, i), expected(a, i));
+    }
+    if (!VM.BuildForOptCompiler) return;
+    NormalMethod target = (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(
+        A.class.getDeclaredMethod("value", Integer.TYPE));
+    CompiledMethod before = target.getCurrentCompiledMethod();
+    if (RuntimeCompiler.recompileWithOpt(target) == -1) {
+      fail("could not compile " + target + " with the opt compiler");
+      return;
+    }
+    if (target.getCurrentCompiledMethod() == before) {
+      fail(target + " was not replaced");
+    }
+    for (int i = 0; i < CALLS; i++) {
+      check("after recompiling the target", callRecompiled(a, i), expected(a, i));
+    }
+    checkProfile("recompiled target", site, bci, new Shape[] {a}, new int[] {2 * CALLS - 1}, 1);
+  }
+
+  /**
+   * Fill an empty cache from several threads at once, each calling with its
+   * own class.  Every call must dispatch correctly, and no class may take
+   * more than one entry.  The counts are not synchronized, so only their
+   * classes are checked.
+   */
+  private static void checkRace() throws Exception {
+    NormalMethod site = method("callRaced", Shape.class, Integer.TYPE);
+    int bci = interfaceCall(site);
+    final Shape[] receivers = {a, b, c, d};
+    final boolean[] failed = new boolean[receivers.length];
+    final Object start = new Object();
+    final boolean[] go = new boolean[1];
+    Thread[] threads = new Thread[receivers.length];
+    for (int t = 0; t < threads.length; t++) {
+      final int id = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          synchronized (start) {
+            while (!go[0]) {
+              try {
+                start.wait();
+              } catch (InterruptedException ie) {
+                return;
+              }
+            }
+          }
+          Shape s = receivers[id];
+          for (int i = 0; i < 50 * CALLS; i++) {
+            if (callRaced(s, i) != expected(s, i)) {
+              failed[id] = true;
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    synchronized (start) {
+      go[0] = true;
+      start.notifyAll();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int t = 0; t < failed.length; t++) {
+      if (failed[t]) {
+        fail("racing calls on " + receivers[t].getClass().getName() + " dispatched wrongly");
+      }
+    }
+
+    TypeProfile profile = InlineCaches.getTypeProfile(site, bci);
+    if (profile == null) {
+      fail("racing calls left no profile");
+      return;
+    }
+    if (profile.getNumberOfTypes() > InlineCaches.ENTRIES) {
+      fail("racing calls cached " + profile.getNumberOfTypes() + " classes");
+    }
+    for (int i = 0; i < profile.getNumberOfTypes(); i++) {
+      for (int j = i + 1; j < profile.getNumberOfTypes(); j++) {
+        if (profile.getType(i) == profile.getType(j)) {
+          fail("racing calls cached " + profile.getType(i) + " twice");
+        }
+      }
+    }
+  }
+
+  /**
+   * Call {@link #call} {@link #CALLS} times with each receiver, in turn,
+   * and check each result.
+   */
+  private static void drive(String what, Shape... receivers) {
+    for (int i = 0; i < CALLS; i++) {
+      for (Shape s : receivers) {
+        check(what + " " + s.getClass().getName(), call(s, i), expected(s, i));
+      }
+    }
+  }
+
+  /**
+   * Check the hits of the given receivers' classes, and the misses, in the
+   * baseline cache of a site.
+   */
+  private static void checkProfile(String what, NormalMethod site, int bci, Shape[] receivers, int[] hits, int misses) {
+    TypeProfile profile = InlineCaches.getTypeProfile(site, bci);
+    if (profile == null) {
+      fail(what + ": no inline cache profile for " + site + " @ " + bci);
+      return;
+    }
+    for (int i = 0; i < receivers.length; i++) {
+      RVMType type = java.lang.JikesRVMSupport.getTypeForClass(receivers[i].getClass());
+      int count = 0;
+      for (int j = 0; j < profile.getNumberOfTypes(); j++) {
+        if (profile.getType(j) == type) {
+          count = (int) profile.getCount(j);
+        }
+      }
+      check(what + " hits on " + type, count, hits[i]);
+    }
+    check(what + " misses", (int) profile.getOtherCount(), misses);
+  }
+
+  /**
+   * Check the total hits and the misses of the opt inline cache of a site.
+   */
+  private static void checkCounts(String what, NormalMethod site, int bci, int hits, int misses) {
+    int[] counts = InlineCacheCounters.getCounts(site, bci);
+    if (counts == null) {
+      fail(what + ": no inline cache counters for " + site + " @ " + bci);
+      return;
+    }
+    int sum = 0;
+    for (int i = 0; i < counts.length - 1; i++) {
+      sum += counts[i];
+    }
+    check(what + " hits", sum, hits);
+    check(what + " misses", counts[counts.length - 1], misses);
+  }
+
+  /**
+   * @return whether the site is still baseline code, whose cache the
+   *  calls fill; if it is not, there is nothing to check
+   */
+  private static boolean isBaseline(NormalMethod site) {
+    return site.getCurrentCompiledMethod().getCompilerType() == CompiledMethod.BASELINE;
+  }
+
+  private static NormalMethod method(String name, Class<?>... params) throws Exception {
+    Method m = InlineCacheDispatch.class.getDeclaredMethod(name, params);
+    return (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(m);
+  }
+
+  /**
+   * @return the bytecode index of the only interface call of a method
+   */
+  private static int interfaceCall(NormalMethod m) {
+    BytecodeStream bcodes = m.getBytecodes();
+    while (bcodes.hasMoreBytecodes()) {
+      int bci = bcodes.index();
+      if (bcodes.nextInstruction() == JBC_invokeinterface) {
+        return bci;
+      }
+      bcodes.skipInstruction();
+    }
+    throw new Error("no interface call in " + m);
+  }
+
+  private static void check(String what, int actual, int expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    success = false;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import java.lang.reflect.Method;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Compiles methods whose objects escape only on paths that baseline code
+ * never took with ESCAPE_PARTIAL, then takes those paths.  The objects
+ * that escape must hold the values of the scalars they were kept in, and
+ * must keep their identity when they escape more than once.<p>
+ *
+ * This test reaches into the internals of the VM, so it will only run on
+ * Jikes RVM.  Without the opt compiler there is nothing to test.
+ */
+public class PartialEscapes {
+
+  private static boolean success = true;
+
+  static final class Pair {
+    int a;
+    int b;
+
+    Pair(int a, int b) {
+      this.a = a;
+      this.b = b;
+    }
+  }
+
+  static final class Carrier extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    final Pair pair;
+
+    Carrier(Pair pair) {
+      this.pair = pair;
+    }
+  }
+
+  static Pair escaped;
+  static Pair escapedAgain;
+
+  static int sum(Pair p) {
+    return p.a + p.b;
+  }
+
+  @NoInline
+  static int sinkToStatic(int x) {
+    Pair p = new Pair(x, x * 2);
+    p.a++;
+    if (x < 0) {
+      escaped = p;
+      return 0;
+    }
+    return p.a + p.b;
+  }
+
+  @NoInline
+  static int sinkToThrow(int x) {
+    Pair p = new Pair(x, x * 2);
+    if (x < 0) {
+      throw new Carrier(p);
+    }
+    return p.a - p.b;
+  }
+
+  @NoInline
+  static int copyThenRead(int x) {
+    Pair p = new Pair(x, x * 3);
+    if (x < 0) {
+      int s = sum(p);
+      p.b = s;
+      return s + sum(p) + p.a;
+    }
+    return p.a;
+  }
+
+  @NoInline
+  static boolean copyThenEscape(int x) {
+    Pair p = new Pair(x, x + 1);
+    if (x < 0) {
+      int s = sum(p);
+      escaped = p;
+      escapedAgain = p;
+      return s == 2 * x + 1;
+    }
+    return p.b > p.a;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (VM.BuildForOptCompiler) {
+      run();
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static void run() throws Exception {
+    // profile the methods in baseline code: x < 0 is never true
+    for (int i = 0; i < 10000; i++) {
+      int x = i & 0xff;
+      check("warm up sinkToStatic", sinkToStatic(x), 3 * x + 1);
+      check("warm up sinkToThrow", sinkToThrow(x), -x);
+      check("warm up copyThenRead", copyThenRead(x), x);
+      check("warm up copyThenEscape", copyThenEscape(x) ? 1 : 0, 1);
+    }
+
+    compile("sinkToStatic");
+    compile("sinkToThrow");
+    compile("copyThenRead");
+    compile("copyThenEscape");
+
+    for (int x = -1; x >= -3; x--) {
+      escaped = null;
+      check("sinkToStatic", sinkToStatic(x), 0);
+      if (escaped == null) {
+        fail("sinkToStatic(" + x + ") did not store its object");
+      } else {
+        check("sinkToStatic a", escaped.a, x + 1);
+        check("sinkToStatic b", escaped.b, 2 * x);
+      }
+
+      try {
+        sinkToThrow(x);
+        fail("sinkToThrow(" + x + ") did not throw");
+      } catch (Carrier c) {
+        check("sinkToThrow a", c.pair.a, x);
+        check("sinkToThrow b", c.pair.b, 2 * x);
+      }
+
+      // s = 4x, then p.b = 4x: 4x + 5x + x
+      check("copyThenRead", copyThenRead(x), 10 * x);
+
+      escaped = null;
+      escapedAgain = null;
+      check("copyThenEscape", copyThenEscape(x) ? 1 : 0, 1);
+      if (escaped == null || escaped != escapedAgain) {
+        fail("copyThenEscape(" + x + ") stored two different objects");
+      } else {
+        check("copyThenEscape a", escaped.a, x);
+        check("copyThenEscape b", escaped.b, x + 1);
+      }
+    }
+    check("sinkToStatic after", sinkToStatic(7), 22);
+    check("copyThenRead after", copyThenRead(7), 7);
+  }
+
+  private static void compile(String name) throws Exception {
+    Method m = PartialEscapes.class.getDeclaredMethod(name, Integer.TYPE);
+    NormalMethod method = (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(m);
+    OptOptions options = new OptOptions();
+    options.setOptLevel(2);
+    options.ESCAPE_PARTIAL = true;
+    CompilationPlan plan =
+        new CompilationPlan(method, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    if (RuntimeCompiler.recompileWithOpt(plan) == -1) {
+      fail("could not compile " + method + " with the opt compiler");
+    }
+  }
+
+  private static void check(String what, int actual, int expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    success = false;
+  }
+}
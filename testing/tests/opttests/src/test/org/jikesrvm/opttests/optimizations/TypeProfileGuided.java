@@ -0,0 +1,252 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import static org.jikesrvm.classloader.BytecodeConstants.JBC_checkcast;
+import static org.jikesrvm.classloader.BytecodeConstants.JBC_instanceof;
+import static org.jikesrvm.classloader.BytecodeConstants.JBC_invokevirtual;
+
+import java.lang.reflect.Method;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.BytecodeStream;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.classloader.RVMType;
+import org.jikesrvm.compilers.baseline.BaselineCompiler;
+import org.jikesrvm.compilers.baseline.TypeProfile;
+import org.jikesrvm.compilers.baseline.TypeProfiles;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Warms up a bimorphic invokevirtual site and checkcast and instanceof
+ * sites in baseline code compiled with PROFILE_RECEIVER_TYPES, and checks
+ * the receiver type histograms recorded for them.  The sites are then
+ * compiled with TYPE_PROFILE_GUIDED, which guards the inlined targets and
+ * the type checks with tests of the profiled classes.  Every result must
+ * stay right for the profiled classes and for a class the sites never saw,
+ * which has to take the fallback path of each guard.<p>
+ *
+ * This test reaches into the internals of the VM, so it will only run on
+ * Jikes RVM.  It must be run with
+ * {@code -X:base:profile_receiver_types=true}.  The sites must be baseline
+ * compiled to be profiled, so if they are not there is nothing to test.
+ * The calls are too few for the adaptive system to recompile the sites
+ * behind the test's back.
+ */
+public class TypeProfileGuided {
+
+  private static boolean success = true;
+
+  /** The number of calls made in each round of the warm up */
+  private static final int CALLS = 20;
+
+  abstract static class Shape {
+    abstract int value(int x);
+  }
+
+  static class P extends Shape {
+    @Override
+    int value(int x) {
+      return x + 1;
+    }
+  }
+
+  static class Q extends Shape {
+    @Override
+    int value(int x) {
+      return x * 2;
+    }
+  }
+
+  /** Instantiated, but never seen by the profiled sites */
+  static class R extends Shape {
+    @Override
+    int value(int x) {
+      return x - 3;
+    }
+  }
+
+  private static final Shape p = new P();
+  private static final Shape q = new Q();
+  private static final Shape r = new R();
+  private static final Object other = Integer.valueOf(42);
+
+  @NoInline
+  static int call(Shape s, int x) {
+    return s.value(x);
+  }
+
+  @NoInline
+  static boolean isShape(Object o) {
+    return o instanceof Shape;
+  }
+
+  @NoInline
+  static Shape asShape(Object o) {
+    return (Shape) o;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (!BaselineCompiler.options.PROFILE_RECEIVER_TYPES) {
+      fail("run with -X:base:profile_receiver_types=true");
+    } else {
+      run();
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static void run() throws Exception {
+    NormalMethod callSite = method("call", Shape.class, Integer.TYPE);
+    NormalMethod instanceofSite = method("isShape", Object.class);
+    NormalMethod checkcastSite = method("asShape", Object.class);
+
+    // warm up: three P to each Q at the call, P and Integer at the
+    // instanceof, and P and Q at the checkcast
+    for (int i = 0; i < CALLS; i++) {
+      check("warm up call P", call(p, i), i + 1);
+      check("warm up call P", call(p, i), i + 1);
+      check("warm up call P", call(p, i), i + 1);
+      check("warm up call Q", call(q, i), i * 2);
+      check("warm up instanceof P", isShape(p), true);
+      check("warm up instanceof Integer", isShape(other), false);
+      check("warm up checkcast P", asShape(p) == p, true);
+      check("warm up checkcast Q", asShape(q) == q, true);
+    }
+    if (!isBaseline(callSite) || !isBaseline(instanceofSite) || !isBaseline(checkcastSite)) return;
+
+    checkProfile("call", callSite, site(callSite, JBC_invokevirtual),
+                 new Object[] {p, q}, new int[] {3 * CALLS, CALLS});
+    checkProfile("instanceof", instanceofSite, site(instanceofSite, JBC_instanceof),
+                 new Object[] {p, other}, new int[] {CALLS, CALLS});
+    checkProfile("checkcast", checkcastSite, site(checkcastSite, JBC_checkcast),
+                 new Object[] {p, q}, new int[] {CALLS, CALLS});
+
+    if (!VM.BuildForOptCompiler) return;
+    compile(callSite);
+    compile(instanceofSite);
+    compile(checkcastSite);
+
+    for (int i = 0; i < CALLS; i++) {
+      check("call P", call(p, i), i + 1);
+      check("call Q", call(q, i), i * 2);
+      check("call R", call(r, i), i - 3);
+    }
+    check("instanceof P", isShape(p), true);
+    check("instanceof Integer", isShape(other), false);
+    check("instanceof Q", isShape(q), true);
+    check("instanceof R", isShape(r), true);
+    check("instanceof String", isShape("not a shape"), false);
+    check("instanceof null", isShape(null), false);
+    check("checkcast P", asShape(p) == p, true);
+    check("checkcast Q", asShape(q) == q, true);
+    check("checkcast R", asShape(r) == r, true);
+    check("checkcast null", asShape(null) == null, true);
+    try {
+      asShape(other);
+      fail("checkcast Integer did not throw");
+    } catch (ClassCastException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Recompile a site with guidance from its type profile.  Inline caches
+   * are left off, so a receiver that fails the guards of the inlined
+   * targets takes the original virtual call.
+   */
+  private static void compile(NormalMethod method) {
+    OptOptions options = new OptOptions();
+    options.setOptLevel(2);
+    options.TYPE_PROFILE_GUIDED = true;
+    options.H2L_INLINE_CACHES = false;
+    CompilationPlan plan =
+        new CompilationPlan(method, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    if (RuntimeCompiler.recompileWithOpt(plan) == -1) {
+      fail("could not compile " + method + " with the opt compiler");
+    }
+  }
+
+  /**
+   * Check the histogram recorded for a site: the classes of the given
+   * objects, most frequent first, with the given counts, and nothing else.
+   */
+  private static void checkProfile(String what, NormalMethod method, int bci, Object[] objects, int[] counts) {
+    TypeProfile profile = TypeProfiles.getTypeProfile(method, bci);
+    if (profile == null) {
+      fail(what + ": no type profile for " + method + " @ " + bci);
+      return;
+    }
+    check(what + " types", profile.getNumberOfTypes(), objects.length);
+    for (int i = 0; i < objects.length && i < profile.getNumberOfTypes(); i++) {
+      RVMType type = java.lang.JikesRVMSupport.getTypeForClass(objects[i].getClass());
+      if (profile.getType(i) != type) {
+        fail(what + ": expected " + type + " at rank " + i + " but got " + profile.getType(i));
+      }
+      check(what + " count of " + type, (int) profile.getCount(i), counts[i]);
+    }
+    check(what + " other", (int) profile.getOtherCount(), 0);
+  }
+
+  /**
+   * @return whether a site is baseline code, which records its profile;
+   *  if it is not, there is nothing to check
+   */
+  private static boolean isBaseline(NormalMethod method) {
+    return method.getCurrentCompiledMethod().getCompilerType() == CompiledMethod.BASELINE;
+  }
+
+  private static NormalMethod method(String name, Class<?>... params) throws Exception {
+    Method m = TypeProfileGuided.class.getDeclaredMethod(name, params);
+    return (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(m);
+  }
+
+  /**
+   * @return the bytecode index of the only bytecode of a method with the
+   *  given opcode
+   */
+  private static int site(NormalMethod m, int opcode) {
+    BytecodeStream bcodes = m.getBytecodes();
+    while (bcodes.hasMoreBytecodes()) {
+      int bci = bcodes.index();
+      if (bcodes.nextInstruction() == opcode) {
+        return bci;
+      }
+      bcodes.skipInstruction();
+    }
+    throw new Error("no bytecode " + opcode + " in " + m);
+  }
+
+  private static void check(String what, int actual, int expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void check(String what, boolean actual, boolean expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    success = false;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package test.org.jikesrvm.opttests.optimizations;
+
+import java.lang.reflect.Method;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.adaptive.controller.Controller;
+import org.jikesrvm.classloader.NormalMethod;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.RuntimeCompiler;
+import org.jikesrvm.compilers.opt.OptOptions;
+import org.jikesrvm.compilers.opt.driver.CompilationPlan;
+import org.jikesrvm.compilers.opt.driver.OptimizationPlanner;
+import org.jikesrvm.compilers.opt.runtimesupport.OptCompiledMethod;
+import org.vmmagic.pragma.NoInline;
+
+/**
+ * Compiles a method with the side of a branch that baseline code never
+ * took as an uncommon trap, then takes it.  Each time the trap fires the
+ * result must be that of the original code, and once the traps have fired
+ * UNCOMMON_TRAP_LIMIT times the method must have been recompiled without
+ * them.<p>
+ *
+ * This test reaches into the internals of the VM, so it will only run on
+ * Jikes RVM.  Without the adaptive system there are no uncommon traps, and
+ * nothing to test.
+ */
+public class UncommonTraps {
+
+  private static boolean success = true;
+
+  @NoInline
+  static int branchy(int x) {
+    if (x < 0) {
+      return -x * 3 + 1;
+    }
+    return x + 1;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (VM.BuildForAdaptiveSystem && Controller.enabled && Controller.options.ENABLE_RECOMPILATION) {
+      run();
+    }
+    if (success) {
+      System.out.println("ALL TESTS PASSED");
+    }
+  }
+
+  private static void run() throws Exception {
+    // profile the branch in baseline code: x < 0 is never true
+    int sum = 0;
+    int expected = 0;
+    for (int i = 0; i < 10000; i++) {
+      sum += branchy(i & 0xff);
+      expected += (i & 0xff) + 1;
+    }
+    check("warm up", sum, expected);
+
+    Method m = UncommonTraps.class.getDeclaredMethod("branchy", Integer.TYPE);
+    NormalMethod method = (NormalMethod) java.lang.reflect.JikesRVMSupport.getMethodOf(m);
+    OptOptions options = new OptOptions();
+    options.setOptLevel(2);
+    options.OSR_UNCOMMON_TRAPS = true;
+    CompilationPlan plan =
+        new CompilationPlan(method, OptimizationPlanner.createOptimizationPlan(options), null, options);
+    if (RuntimeCompiler.recompileWithOpt(plan) == -1) {
+      fail("could not compile " + method + " with the opt compiler");
+      return;
+    }
+    CompiledMethod trapped = method.getCurrentCompiledMethod();
+    if (!(trapped instanceof OptCompiledMethod) || !((OptCompiledMethod) trapped).hasUncommonTraps()) {
+      fail("no uncommon trap was compiled into " + method);
+      return;
+    }
+
+    int limit = Controller.options.UNCOMMON_TRAP_LIMIT;
+    for (int i = 1; i <= limit; i++) {
+      check("trap " + i, branchy(-i), 3 * i + 1);
+      check("after trap " + i, branchy(i), i + 1);
+      boolean replaced = method.getCurrentCompiledMethod() != trapped;
+      if (i < limit && replaced) {
+        fail(method + " was recompiled after " + i + " of " + limit + " traps");
+      } else if (i == limit && !replaced) {
+        fail(method + " was not recompiled after " + limit + " traps");
+      }
+    }
+
+    CompiledMethod recompiled = method.getCurrentCompiledMethod();
+    if (recompiled instanceof OptCompiledMethod && ((OptCompiledMethod) recompiled).hasUncommonTraps()) {
+      fail(method + " was recompiled with uncommon traps");
+    }
+    check("recompiled", branchy(-5), 16);
+  }
+
+  private static void check(String what, int actual, int expected) {
+    if (actual != expected) {
+      fail(what + ": expected " + expected + " but got " + actual);
+    }
+  }
+
+  private static void fail(String message) {
+    System.out.println("FAILED: " + message);
+    success = false;
+  }
+}
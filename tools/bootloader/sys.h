@@ -231,6 +231,9 @@ EXTERNAL void * sysMMapErrno(char *start , size_t length ,
                              int protection , int flags ,
                              int fd , Offset offset);
 EXTERNAL int sysMProtect(char *start, size_t length, int prot);
+EXTERNAL int sysMAdviseHugePages(char *start, size_t length);
+EXTERNAL int sysNumaNode();
+EXTERNAL int sysNumaBind(char *start, size_t length, int node);
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysMemmove(void *dst, const void *src, Extent cnt);
 EXTERNAL void sysSyncCache(void *address, size_t size);
@@ -293,6 +296,7 @@ EXTERNAL void sysCreateThreadSpecificDataKeys(void);
 EXTERNAL void sysStashVMThread(Address vmThread);
 EXTERNAL int sysThreadBindSupported();
 EXTERNAL void sysThreadBind(int cpuId);
+EXTERNAL void sysThreadBindToNumaNode(int node);
 EXTERNAL void * sysThreadStartup(void *args);
 EXTERNAL Word sysGetThreadId();
 EXTERNAL void sysThreadTerminate();
@@ -18,6 +18,11 @@
 #include <string.h> // memcpy & memmove
 #include <sys/mman.h> // mmap
 
+#ifdef RVM_FOR_LINUX
+#  include <sys/syscall.h> // SYS_getcpu, SYS_mbind
+#  include <unistd.h> // syscall
+#endif
+
 int inRVMAddressSpace(Address a);
 
 void* checkMalloc(int length)
@@ -257,6 +262,61 @@ EXTERNAL int sysMProtect(char *start, size_t length, int prot)
   return mprotect(start, length, prot);
 }
 
+/**
+ * Ask for a range of memory to be backed by transparent huge pages
+ * (madvise with MADV_HUGEPAGE).
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ * Returned:  0 on success, otherwise errno
+ */
+EXTERNAL int sysMAdviseHugePages(char *start, size_t length)
+{
+  TRACE_PRINTF("%s: sysMAdviseHugePages %p %zu\n", Me, start, length);
+#ifdef MADV_HUGEPAGE
+  if (madvise(start, length, MADV_HUGEPAGE) != 0) {
+    return errno;
+  }
+#endif
+  return 0;
+}
+
+/**
+ * Find the NUMA node of the processor the calling thread is running on.
+ * Returned:  the node, or 0 if it is not known
+ */
+EXTERNAL int sysNumaNode()
+{
+#if defined(RVM_FOR_LINUX) && defined(SYS_getcpu)
+  unsigned cpu, node;
+  if (syscall(SYS_getcpu, &cpu, &node, NULL) == 0) {
+    return (int) node;
+  }
+#endif
+  return 0;
+}
+
+/**
+ * Prefer a NUMA node for the pages backing a range of memory that
+ * have not yet been touched (mbind with MPOL_PREFERRED).
+ * Taken:     start address (Java ADDRESS)
+ *            length of region (Java EXTENT)
+ *            node (Java int)
+ * Returned:  0 (success) or errno (failure) (Java int)
+ */
+EXTERNAL int sysNumaBind(char *start, size_t length, int node)
+{
+  TRACE_PRINTF("%s: sysNumaBind %p %zu %d\n", Me, start, length, node);
+#if defined(RVM_FOR_LINUX) && defined(SYS_mbind)
+  const int MPOL_PREFERRED_MODE = 1;
+  unsigned long nodemask = 1UL << node;
+  if (syscall(SYS_mbind, start, length, MPOL_PREFERRED_MODE, &nodemask,
+              sizeof(nodemask) * 8, 0) != 0) {
+    return errno;
+  }
+#endif
+  return 0;
+}
+
 /** Memory to memory copy. Memory regions must not overlap. */
 EXTERNAL void sysCopy(void *dst, const void *src, Extent cnt)
 {
@@ -472,6 +472,49 @@ EXTERNAL void sysThreadBind(int cpuId)
 #endif
 }
 
+/**
+ * Bind the calling thread to the processors of a NUMA node, as listed
+ * in /sys/devices/system/node/node<n>/cpulist (e.g. "0-7,16-23").  The
+ * thread is left unbound if the list can't be read.
+ */
+EXTERNAL void sysThreadBindToNumaNode(int node)
+{
+  TRACE_PRINTF("%s: sysThreadBindToNumaNode %d\n", Me, node);
+#ifndef RVM_FOR_HARMONY
+#ifdef RVM_FOR_LINUX
+  char path[64];
+  FILE *cpulist;
+  cpu_set_t cpuset;
+  int first, last, separator;
+  int found = 0;
+
+  snprintf(path, sizeof(path), "/sys/devices/system/node/node%d/cpulist", node);
+  cpulist = fopen(path, "r");
+  if (cpulist == NULL) {
+    return;
+  }
+  CPU_ZERO(&cpuset);
+  while (fscanf(cpulist, "%d", &first) == 1) {
+    last = first;
+    separator = fgetc(cpulist);
+    if (separator == '-') {
+      if (fscanf(cpulist, "%d", &last) != 1) break;
+      separator = fgetc(cpulist);
+    }
+    for (; first <= last && first < CPU_SETSIZE; first++) {
+      CPU_SET(first, &cpuset);
+      found = 1;
+    }
+    if (separator != ',') break;
+  }
+  fclose(cpulist);
+  if (found) {
+    pthread_setaffinity_np(pthread_self(), sizeof(cpuset), &cpuset);
+  }
+#endif
+#endif
+}
+
 /**
  * Function called by pthread startup
  *